@@ -1,6 +1,7 @@
 plugins {
     id("java-library")
     id("com.gradleup.shadow") version "9.3.1"
+    id("me.champeau.jmh") version "0.7.3"
     id("run-hytale")
 }
 
@@ -27,6 +28,31 @@ dependencies {
     // Test dependencies
     testImplementation("org.junit.jupiter:junit-jupiter:5.10.0")
     testRuntimeOnly("org.junit.platform:junit-platform-launcher")
+    // Only for HytaleLogger, which the stores under test log to
+    testImplementation(files("libs/HytaleServer.jar"))
+    
+    // Benchmark dependencies (the server JAR is only on the classpath, never bundled)
+    jmhImplementation(files("libs/HytaleServer.jar"))
+}
+
+// Configure benchmarks: "./gradlew jmh", results in build/results/jmh
+jmh {
+    // Allocation rate per operation next to the timings
+    profilers.add("gc")
+    resultFormat.set("JSON")
+    fork.set(1)
+    warmupIterations.set(3)
+    iterations.set(5)
+    findProperty("jmhInclude")?.let { includes.add(it as String) }
+}
+
+// Headless load simulator: "./gradlew simulate --args=\"--players 2000 --ticks 600\""
+tasks.register<JavaExec>("simulate") {
+    group = "verification"
+    description = "Runs the plugin load simulator with fake players"
+    classpath = sourceSets["jmh"].runtimeClasspath
+    mainClass.set("com.edgelinegames.cameraplugin.LoadSimulator")
+    jvmArgs("-Xms512m", "-Xmx512m")
 }
 
 // Configure server testing
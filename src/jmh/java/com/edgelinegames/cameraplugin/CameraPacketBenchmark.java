@@ -0,0 +1,93 @@
+package com.edgelinegames.cameraplugin;
+
+import com.hypixel.hytale.protocol.ClientCameraView;
+import com.hypixel.hytale.protocol.Packet;
+import com.hypixel.hytale.protocol.Position;
+import com.hypixel.hytale.protocol.ServerCameraSettings;
+import com.hypixel.hytale.protocol.packets.camera.SetServerCamera;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Cost of producing and sending one camera packet, the way setCameraDistance does it.
+ * buildPerCall is the old path that allocated a new packet for every send.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.AverageTime, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class CameraPacketBenchmark {
+
+    @Param({"1024"})
+    public int players;
+
+    private CameraPacketCache cache;
+    private FakePacketHandler handler;
+    private UUID[] playerUuids;
+    private int next;
+
+    @Setup
+    public void setup() {
+        cache = new CameraPacketCache(0.4);
+        handler = new FakePacketHandler();
+        playerUuids = new UUID[players];
+        for (int i = 0; i < players; i++) {
+            playerUuids[i] = UUID.randomUUID();
+        }
+    }
+
+    @Benchmark
+    public Packet buildPerCall() {
+        float distance = 1.0f + (next++ & 1023) * 0.1f;
+        ServerCameraSettings cameraSettings = new ServerCameraSettings();
+        cameraSettings.distance = distance;
+        cameraSettings.positionLerpSpeed = 1.0f;
+        cameraSettings.rotationLerpSpeed = 1.0f;
+        cameraSettings.isFirstPerson = false;
+        cameraSettings.displayCursor = true;
+        cameraSettings.displayReticle = true;
+        cameraSettings.allowPitchControls = true;
+        cameraSettings.eyeOffset = true;
+        cameraSettings.positionOffset = new Position(0.4, 0.0, 0.0);
+        Packet packet = new SetServerCamera(ClientCameraView.Custom, false, cameraSettings);
+        handler.writeNoCache(packet);
+        return packet;
+    }
+
+    @Benchmark
+    public Packet templateSend() {
+        // Masked so the index stays positive when next wraps during a long fork
+        int index = next++ & Integer.MAX_VALUE;
+        // Alternate the distance on every pass over the players, so each call is a real send, not a suppressed duplicate
+        float distance = 1.0f + ((index / players) & 1) * 0.1f;
+        UUID playerUuid = playerUuids[index % players];
+        CameraPacketCache.Template template = cache.template(distance, true);
+        if (cache.markSent(playerUuid, template)) {
+            handler.writeNoCache(template.getPacket());
+            cache.recordSent(template);
+        } else {
+            cache.recordSuppressed(template);
+        }
+        return template.getPacket();
+    }
+
+    @Benchmark
+    public boolean templateDuplicateSuppressed() {
+        UUID playerUuid = playerUuids[Math.floorMod(next++, players)];
+        CameraPacketCache.Template template = cache.template(15.0f, true);
+        if (cache.markSent(playerUuid, template)) {
+            handler.writeNoCache(template.getPacket());
+            cache.recordSent(template);
+            return true;
+        }
+        cache.recordSuppressed(template);
+        return false;
+    }
+}
@@ -0,0 +1,141 @@
+package com.edgelinegames.cameraplugin;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Per-tick cost of camera zone tracking, one operation is one tick for all players.
+ *
+ * Players walk randomly over a 8192 x 8192 block world with randomly placed zones.
+ * cellCrossing is CameraZoneManager's tick: a grid lookup only when a player changes cell
+ * (or stands in a cell a zone edge runs through). gridLookup looks every player up in the
+ * grid every tick, scanAllZones tests every zone for every player. The cellCrossing cost
+ * should stay flat as the zone count grows.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.AverageTime, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class CameraZoneBenchmark {
+
+    private static final int WORLD_SIZE = 8192;
+    // Walking speed, about 4.3 blocks per second at 30 ticks per second
+    private static final double STEP = 0.15;
+
+    @Param({"100", "10000"})
+    public int zones;
+
+    @Param({"2000"})
+    public int players;
+
+    private CameraZoneIndex index;
+    private CameraZone[] allZones;
+    private CameraZoneManager.Tracker[] trackers;
+    private double[] x;
+    private double[] y;
+    private double[] z;
+    private double[] headingX;
+    private double[] headingZ;
+    private SplittableRandom random;
+
+    @Setup
+    public void setup() {
+        random = new SplittableRandom(42);
+        List<CameraZone> list = new ArrayList<>(zones);
+        for (int i = 0; i < zones; i++) {
+            int centerX = random.nextInt(WORLD_SIZE);
+            int centerZ = random.nextInt(WORLD_SIZE);
+            int radius = 8 + random.nextInt(56);
+            // Half of the zones are whole columns (towns), half are boxes (dungeons)
+            int minY = i % 2 == 0 ? Integer.MIN_VALUE : 40 + random.nextInt(40);
+            int maxY = i % 2 == 0 ? Integer.MAX_VALUE : minY + 8 + random.nextInt(24);
+            list.add(CameraZone.of("zone" + i, "world", centerX - radius, minY, centerZ - radius,
+                centerX + radius, maxY, centerZ + radius, 5.0f + random.nextInt(20), random.nextBoolean()));
+        }
+        index = CameraZoneIndex.build(list);
+        allZones = list.toArray(new CameraZone[0]);
+
+        trackers = new CameraZoneManager.Tracker[players];
+        x = new double[players];
+        y = new double[players];
+        z = new double[players];
+        headingX = new double[players];
+        headingZ = new double[players];
+        for (int i = 0; i < players; i++) {
+            trackers[i] = new CameraZoneManager.Tracker();
+            trackers[i].reset(index, 0);
+            x[i] = random.nextDouble() * WORLD_SIZE;
+            y[i] = 40 + random.nextDouble() * 60;
+            z[i] = random.nextDouble() * WORLD_SIZE;
+            double angle = random.nextDouble() * Math.PI * 2;
+            headingX[i] = Math.cos(angle) * STEP;
+            headingZ[i] = Math.sin(angle) * STEP;
+        }
+    }
+
+    @Benchmark
+    public int cellCrossing() {
+        move();
+        int changed = 0;
+        for (int i = 0; i < players; i++) {
+            if (trackers[i].update(x[i], y[i], z[i])) {
+                changed++;
+            }
+        }
+        return changed;
+    }
+
+    @Benchmark
+    public int gridLookup() {
+        move();
+        int inZone = 0;
+        for (int i = 0; i < players; i++) {
+            if (index.find(x[i], y[i], z[i]) != null) {
+                inZone++;
+            }
+        }
+        return inZone;
+    }
+
+    @Benchmark
+    public int scanAllZones() {
+        move();
+        int inZone = 0;
+        for (int i = 0; i < players; i++) {
+            for (CameraZone zone : allZones) {
+                if (zone.contains(x[i], y[i], z[i])) {
+                    inZone++;
+                    break;
+                }
+            }
+        }
+        return inZone;
+    }
+
+    private void move() {
+        for (int i = 0; i < players; i++) {
+            // Now and then a player turns around, and always at the world border
+            if (random.nextInt(200) == 0) {
+                headingX[i] = -headingX[i];
+                headingZ[i] = -headingZ[i];
+            }
+            if (x[i] + headingX[i] < 0 || x[i] + headingX[i] >= WORLD_SIZE) {
+                headingX[i] = -headingX[i];
+            }
+            if (z[i] + headingZ[i] < 0 || z[i] + headingZ[i] >= WORLD_SIZE) {
+                headingZ[i] = -headingZ[i];
+            }
+            x[i] += headingX[i];
+            z[i] += headingZ[i];
+        }
+    }
+}
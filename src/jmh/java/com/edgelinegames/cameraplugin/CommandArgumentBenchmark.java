@@ -0,0 +1,35 @@
+package com.edgelinegames.cameraplugin;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Argument handling done by the commands on every call.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.AverageTime, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class CommandArgumentBenchmark {
+
+    private static final String[] TOGGLES = {"enable", "OFF", "status", "whatever", null};
+
+    private final PluginConfig config = new PluginConfig();
+    private int next;
+
+    @Benchmark
+    public PreventDeathItemDropCommand.Toggle parseToggle() {
+        return PreventDeathItemDropCommand.parseToggle(TOGGLES[Math.floorMod(next++, TOGGLES.length)]);
+    }
+
+    @Benchmark
+    public String zoomConfirmation() {
+        // Validation and the formatted distance sent back by /camerazoom
+        float distance = 1.0f + (next++ & 1023) * 0.1f;
+        return CameraZoomCommand.isValidDistance(config, distance) ? CameraZoomCommand.formatApplied(distance) : null;
+    }
+}
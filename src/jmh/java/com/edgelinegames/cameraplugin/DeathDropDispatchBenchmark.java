@@ -0,0 +1,93 @@
+package com.edgelinegames.cameraplugin;
+
+import com.hypixel.hytale.logger.HytaleLogger;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Per-tick cost of death drop prevention during a mass death (PvP event), over synthetic chunks.
+ *
+ * tickEveryDeadEntity is the old EntityTickingSystem: every tick it visits every entity
+ * that still has a DeathComponent and looks the player up in the manager.
+ * onDeathAdded is the current RefChangeSystem: a tick only runs PreventDeathItemDropSystem.handleDeath
+ * for entities whose DeathComponent was added in that tick. In a tick without new deaths it does nothing.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.AverageTime, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class DeathDropDispatchBenchmark {
+
+    @Param({"2000"})
+    public int players;
+
+    // Fraction of players lying dead at the same time
+    @Param({"0.5"})
+    public double deadFraction;
+
+    // New deaths in the measured tick
+    @Param({"0", "20"})
+    public int newDeathsPerTick;
+
+    private SyntheticChunk chunk;
+    private PreventDeathItemDropManager manager;
+    private PluginMetrics.Histogram duration;
+    private PluginMetrics.Counter matches;
+    private int[] newDeaths;
+
+    @Setup
+    public void setup() {
+        chunk = new SyntheticChunk(players, deadFraction, 0.3, DeathDropRuleSet.EMPTY, "arena", new SplittableRandom(13));
+        manager = new PreventDeathItemDropManager(HytaleLogger.forEnclosingClass(), new PluginLog(HytaleLogger.forEnclosingClass(), 16));
+        for (int i = 0; i < players; i++) {
+            if (chunk.marked[i]) {
+                manager.setFlag(chunk.playerUuids[i], true);
+            }
+        }
+
+        PluginMetrics metrics = new PluginMetrics("benchmark");
+        duration = metrics.histogram("death_drop_system_seconds", null, "Time spent deciding and archiving one death");
+        matches = metrics.counter("death_drop_kept_total", null, "Deaths where the player kept their items");
+
+        newDeaths = new int[newDeathsPerTick];
+        int found = 0;
+        for (int i = 0; i < players && found < newDeathsPerTick; i++) {
+            if (chunk.dead[i]) {
+                newDeaths[found++] = i;
+            }
+        }
+    }
+
+    @Benchmark
+    public int tickEveryDeadEntity() {
+        int matched = 0;
+        for (int i = 0; i < chunk.size; i++) {
+            if (!chunk.dead[i]) {
+                continue;
+            }
+            if (manager.isPreventDeathItemDropEnabled(chunk.playerUuids[i])) {
+                chunk.itemsLossMode[i] = SyntheticChunk.LOSS_NONE;
+                matched++;
+            }
+        }
+        return matched;
+    }
+
+    @Benchmark
+    public int onDeathAdded() {
+        int matched = 0;
+        for (int index : newDeaths) {
+            if (PreventDeathItemDropSystem.handleDeath(chunk.entity(index), duration, matches)) {
+                matched++;
+            }
+        }
+        return matched;
+    }
+}
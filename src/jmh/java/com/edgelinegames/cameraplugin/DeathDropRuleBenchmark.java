@@ -0,0 +1,106 @@
+package com.edgelinegames.cameraplugin;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Cost of one death drop rule evaluation, with hundreds of rules over a few worlds.
+ *
+ * interpret walks the declarative rules in order for every death.
+ * decide is a cache miss: compiling the player's world and groups into a Decision.
+ * cachedDecision is the normal case in PreventDeathItemDropManager.keepsItemsByRule:
+ * the cached Decision only checks the region rules left for the player's world and groups.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.AverageTime, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class DeathDropRuleBenchmark {
+
+    private static final String[] WORLDS = {"spawn", "default", "arena", "dungeon"};
+    private static final String[] GROUPS = {"Default", "VIP", "Builder", "Moderator", "Event"};
+
+    @Param({"10", "500"})
+    public int rules;
+
+    private List<DeathDropRule> ruleList;
+    private DeathDropRuleSet ruleSet;
+    private DeathDropRuleSet.Decision decision;
+    private Set<String> groups;
+    private double[] positions;
+    private int next;
+
+    @Setup
+    public void setup() {
+        SplittableRandom random = new SplittableRandom(7);
+        ruleList = new ArrayList<>(rules);
+        for (int i = 0; i < rules; i++) {
+            String world = random.nextInt(4) == 0 ? null : WORLDS[random.nextInt(WORLDS.length)];
+            // Most rules are arena regions, some are group rules
+            String group = random.nextInt(5) == 0 ? GROUPS[1 + random.nextInt(GROUPS.length - 1)] : null;
+            DeathDropRule.Region region = null;
+            if (group == null) {
+                int x = random.nextInt(4096);
+                int z = random.nextInt(4096);
+                region = new DeathDropRule.Region(x, 0, z, x + 32 + random.nextInt(64), 255, z + 32 + random.nextInt(64));
+            }
+            ruleList.add(new DeathDropRule("rule" + i, world, group, region, random.nextBoolean() ? "keep" : "drop"));
+        }
+        ruleSet = DeathDropRuleSet.compile(ruleList);
+        groups = Set.of("Default");
+        decision = ruleSet.decide("default", groups);
+
+        positions = new double[3 * 1024];
+        for (int i = 0; i < positions.length; i += 3) {
+            positions[i] = random.nextDouble() * 4096;
+            positions[i + 1] = random.nextDouble() * 128;
+            positions[i + 2] = random.nextDouble() * 4096;
+        }
+    }
+
+    @Benchmark
+    public boolean interpret() {
+        int p = (next++ & 1023) * 3;
+        double x = positions[p];
+        double y = positions[p + 1];
+        double z = positions[p + 2];
+        for (DeathDropRule rule : ruleList) {
+            if (rule.world() != null && !rule.world().equals("default")) {
+                continue;
+            }
+            if (rule.group() != null && !groups.contains(rule.group())) {
+                continue;
+            }
+            if (rule.region() != null && !rule.region().contains(x, y, z)) {
+                continue;
+            }
+            return rule.keepsItems();
+        }
+        return false;
+    }
+
+    @Benchmark
+    public DeathDropRuleSet.Decision decide() {
+        return ruleSet.decide("default", groups);
+    }
+
+    @Benchmark
+    public boolean cachedDecision() {
+        int p = (next++ & 1023) * 3;
+        DeathDropRuleSet.Decision cached = decision;
+        if (!cached.needsPosition()) {
+            return cached.keepsItems();
+        }
+        return cached.keepsItems(positions[p], positions[p + 1], positions[p + 2]);
+    }
+}
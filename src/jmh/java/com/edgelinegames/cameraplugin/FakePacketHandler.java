@@ -0,0 +1,27 @@
+package com.edgelinegames.cameraplugin;
+
+import com.hypixel.hytale.protocol.Packet;
+import javax.annotation.Nonnull;
+
+/**
+ * Stand-in for a player's packet handler in benchmarks.
+ * Counts writes and keeps the last packet so the JIT cannot drop the work.
+ */
+public class FakePacketHandler {
+
+    private long writes;
+    private Packet lastPacket;
+
+    public void writeNoCache(@Nonnull Packet packet) {
+        writes++;
+        lastPacket = packet;
+    }
+
+    public long getWrites() {
+        return writes;
+    }
+
+    public Packet getLastPacket() {
+        return lastPacket;
+    }
+}
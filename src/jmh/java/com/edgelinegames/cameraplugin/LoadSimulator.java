@@ -0,0 +1,278 @@
+package com.edgelinegames.cameraplugin;
+
+import com.hypixel.hytale.logger.HytaleLogger;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.logging.Level;
+import javax.annotation.Nonnull;
+
+/**
+ * Headless load simulator for the plugin's building blocks.
+ *
+ * Runs scripted scenarios with thousands of fake players, fully offline and single threaded,
+ * and reports per-tick latency percentiles, packets sent, heap use and allocation. A fixed
+ * seed makes every run repeatable.
+ *
+ * A real CameraPlugin needs a running server (JavaPluginInit, Universe, PlayerRef), so this
+ * does not go through it. It drives CameraPacketCache, CameraBroadcaster (with the inline
+ * dispatcher), the flags of PreventDeathItemDropManager and PluginLog directly, and runs
+ * every death through PreventDeathItemDropSystem.handleDeath over a SyntheticChunk in the
+ * arena world, with 50 compiled death drop rules. Everything else that needs a PlayerRef or a
+ * world is not part of the numbers: the zoom coalescer and its rate limit, world threads,
+ * tweens, camera tracks and spectator cameras, and the archive writer. The results compare
+ * builds of these parts; they are not a player capacity for a server.
+ *
+ * Usage: ./gradlew simulate --args="--players 2000 --ticks 600 --scenario all"
+ */
+public class LoadSimulator {
+
+    private static final long SEED = 0x5EED_CA3EL;
+    private static final String[] SCENARIOS = {"joinStorm", "zoomSpam", "dropSpam", "massDeath", "broadcastZoom"};
+    // Death drop rules the deaths are decided with, see SyntheticChunk.arenaRules
+    private static final int DEATH_DROP_RULES = 50;
+
+    /**
+     * A fake online player.
+     */
+    static final class SimPlayer {
+        final UUID uuid;
+        final String username;
+        final FakePacketHandler packetHandler = new FakePacketHandler();
+        boolean online;
+        boolean dead;
+        boolean keptItems;
+
+        SimPlayer(@Nonnull UUID uuid, @Nonnull String username) {
+            this.uuid = uuid;
+            this.username = username;
+        }
+    }
+
+    /**
+     * Result of one scenario run.
+     */
+    record Report(String scenario, int players, int ticks, long[] tickNanos, long packets, long suppressed,
+                  long allocatedBytes, long heapBefore, long heapAfter) {
+
+        long percentile(double fraction) {
+            long[] sorted = tickNanos.clone();
+            Arrays.sort(sorted);
+            return sorted[Math.min(sorted.length - 1, (int) Math.ceil(fraction * sorted.length) - 1)];
+        }
+
+        void print() {
+            System.out.printf(Locale.ROOT,
+                "%-14s players=%-6d ticks=%-5d p50=%8.1fus p90=%8.1fus p99=%8.1fus max=%8.1fus packets=%-8d suppressed=%-8d alloc=%8.1fKB/tick heap=%6.1fMB->%6.1fMB%n",
+                scenario, players, ticks,
+                percentile(0.50) / 1000.0, percentile(0.90) / 1000.0, percentile(0.99) / 1000.0, percentile(1.0) / 1000.0,
+                packets, suppressed, allocatedBytes / 1024.0 / ticks, heapBefore / 1048576.0, heapAfter / 1048576.0);
+        }
+    }
+
+    private final HytaleLogger logger = HytaleLogger.forEnclosingClass();
+    private final int playerCount;
+    private final int ticks;
+    private final SplittableRandom random = new SplittableRandom(SEED);
+
+    private CameraPacketCache packetCache;
+    private CameraBroadcaster<SimPlayer> broadcaster;
+    private PreventDeathItemDropManager dropManager;
+    private PluginLog pluginLog;
+    private PluginLog.Category cameraLog;
+    private SyntheticChunk chunk;
+    private PluginMetrics.Histogram deathDuration;
+    private PluginMetrics.Counter deathMatches;
+    private SimPlayer[] players;
+    private List<SimPlayer> onlinePlayers;
+
+    LoadSimulator(int playerCount, int ticks) {
+        this.playerCount = playerCount;
+        this.ticks = ticks;
+    }
+
+    public static void main(String[] args) {
+        int players = 2000;
+        int ticks = 600;
+        String scenario = "all";
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--players" -> players = Integer.parseInt(args[++i]);
+                case "--ticks" -> ticks = Integer.parseInt(args[++i]);
+                case "--scenario" -> scenario = args[++i];
+                default -> throw new IllegalArgumentException("Unknown argument: " + args[i]);
+            }
+        }
+
+        List<String> toRun = scenario.equals("all") ? List.of(SCENARIOS) : List.of(scenario.split(","));
+        for (String name : toRun) {
+            new LoadSimulator(players, ticks).run(name).print();
+        }
+    }
+
+    @Nonnull
+    Report run(@Nonnull String scenario) {
+        setup();
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        System.gc();
+        long heapBefore = memory.getHeapMemoryUsage().getUsed();
+        long allocatedBefore = threads.getCurrentThreadAllocatedBytes();
+
+        long[] tickNanos = new long[ticks];
+        for (int tick = 0; tick < ticks; tick++) {
+            long start = System.nanoTime();
+            switch (scenario) {
+                case "joinStorm" -> joinStorm(tick);
+                case "zoomSpam" -> zoomSpam();
+                case "dropSpam" -> dropSpam();
+                case "massDeath" -> massDeath(tick);
+                case "broadcastZoom" -> broadcastZoom(tick);
+                default -> throw new IllegalArgumentException("Unknown scenario: " + scenario);
+            }
+            broadcaster.tick(tick);
+            tickNanos[tick] = System.nanoTime() - start;
+        }
+
+        long allocated = threads.getCurrentThreadAllocatedBytes() - allocatedBefore;
+        long heapAfter = memory.getHeapMemoryUsage().getUsed();
+        pluginLog.close();
+        return new Report(scenario, playerCount, ticks, tickNanos, packetCache.getPacketsSent(),
+            packetCache.getPacketsSuppressed(), allocated, heapBefore, heapAfter);
+    }
+
+    private void setup() {
+        packetCache = new CameraPacketCache(0.4);
+        broadcaster = new CameraBroadcaster<>(logger, CameraBroadcaster.DEFAULT_PACKETS_PER_TICK);
+        pluginLog = new PluginLog(logger, PluginLog.DEFAULT_CAPACITY);
+        pluginLog.setMinimumLevel(Level.WARNING);
+        cameraLog = pluginLog.category("camera", 1, 50);
+        dropManager = new PreventDeathItemDropManager(logger, pluginLog);
+        // Nobody is dead or flagged yet, massDeath sets the columns
+        chunk = new SyntheticChunk(playerCount, 0.0, 0.0, SyntheticChunk.arenaRules(DEATH_DROP_RULES, random), "arena", random);
+        PluginMetrics metrics = new PluginMetrics("simulator");
+        deathDuration = metrics.histogram("death_drop_system_seconds", null, "Time spent deciding and archiving one death");
+        deathMatches = metrics.counter("death_drop_kept_total", null, "Deaths where the player kept their items");
+        players = new SimPlayer[playerCount];
+        onlinePlayers = new ArrayList<>(playerCount);
+        for (int i = 0; i < playerCount; i++) {
+            players[i] = new SimPlayer(chunk.playerUuids[i], chunk.usernames[i]);
+        }
+    }
+
+    // Scenarios
+
+    /**
+     * Everyone joins within the first ten ticks and gets their camera applied.
+     */
+    private void joinStorm(int tick) {
+        int perTick = Math.max(1, playerCount / 10);
+        int from = tick * perTick;
+        int to = Math.min(playerCount, from + perTick);
+        for (int i = from; i < to; i++) {
+            SimPlayer player = players[i];
+            player.online = true;
+            onlinePlayers.add(player);
+            setCameraDistance(player, 15.0f, true);
+        }
+    }
+
+    /**
+     * 10% of the players run /camerazoom every tick with a random distance.
+     */
+    private void zoomSpam() {
+        int commands = Math.max(1, playerCount / 10);
+        for (int i = 0; i < commands; i++) {
+            SimPlayer player = players[random.nextInt(playerCount)];
+            float distance = 1.0f + random.nextInt(20) * 0.5f;
+            if (distance >= 1.0f && distance <= 100.0f) {
+                setCameraDistance(player, distance, true);
+            }
+        }
+    }
+
+    /**
+     * 5% of the players run /preventdeathdrop every tick.
+     */
+    private void dropSpam() {
+        int commands = Math.max(1, playerCount / 20);
+        for (int i = 0; i < commands; i++) {
+            SimPlayer player = players[random.nextInt(playerCount)];
+            PreventDeathItemDropCommand.Toggle toggle = PreventDeathItemDropCommand.parseToggle(random.nextBoolean() ? "enable" : null);
+            boolean enabled = dropManager.isPreventDeathItemDropEnabled(player.uuid);
+            dropManager.setFlag(player.uuid, toggle == PreventDeathItemDropCommand.Toggle.ENABLE || !enabled);
+        }
+    }
+
+    /**
+     * Half of the players die over five ticks and respawn 100 ticks later; a third are flagged to
+     * keep their items, and the death drop rules decide for the others.
+     */
+    private void massDeath(int tick) {
+        if (tick == 0) {
+            for (int i = 0; i < playerCount; i++) {
+                if (random.nextInt(3) == 0) {
+                    // The marker system adds the marker to flagged players
+                    dropManager.setFlag(players[i].uuid, true);
+                    chunk.marked[i] = true;
+                }
+            }
+        }
+        int perTick = Math.max(1, playerCount / 10);
+        int phase = tick % 200;
+        if (phase < 5) {
+            // Death: the death system runs once per new death
+            for (int i = phase * perTick; i < Math.min(playerCount, (phase + 1) * perTick); i++) {
+                SimPlayer player = players[i];
+                player.dead = true;
+                chunk.dead[i] = true;
+                player.keptItems = PreventDeathItemDropSystem.handleDeath(chunk.entity(i), deathDuration, deathMatches);
+            }
+        } else if (phase == 100) {
+            for (int i = 0; i < playerCount; i++) {
+                SimPlayer player = players[i];
+                if (player.dead) {
+                    // Respawn re-applies the camera, which is suppressed when unchanged
+                    player.dead = false;
+                    player.keptItems = false;
+                    chunk.dead[i] = false;
+                    chunk.itemsLossMode[i] = SyntheticChunk.LOSS_DEFAULT;
+                    setCameraDistance(player, 15.0f, true);
+                }
+            }
+        }
+    }
+
+    /**
+     * An admin changes everyone's zoom every 100 ticks.
+     */
+    private void broadcastZoom(int tick) {
+        if (tick == 0) {
+            onlinePlayers.addAll(Arrays.asList(players));
+        }
+        if (tick % 100 == 0) {
+            float distance = 10.0f + (tick / 100 % 3) * 5.0f;
+            broadcaster.submit("zoom " + distance, onlinePlayers, player -> setCameraDistance(player, distance, true));
+        }
+    }
+
+    /**
+     * The packet cache part of CameraPlugin.sendCameraTemplate (suppress, write, count) and the
+     * sampled log line, against a fake player. See the class comment for what is left out.
+     */
+    private void setCameraDistance(@Nonnull SimPlayer player, float distance, boolean rightShoulder) {
+        CameraPacketCache.Template template = packetCache.template(distance, rightShoulder);
+        if (!packetCache.markSent(player.uuid, template)) {
+            packetCache.recordSuppressed(template);
+            return;
+        }
+        player.packetHandler.writeNoCache(template.getPacket());
+        packetCache.recordSent(template);
+        pluginLog.log(Level.INFO, cameraLog, "CameraPlugin: Set camera zoom to %s for player %s", distance, player.username);
+    }
+}
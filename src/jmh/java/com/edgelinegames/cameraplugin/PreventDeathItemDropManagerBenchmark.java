@@ -0,0 +1,67 @@
+package com.edgelinegames.cameraplugin;
+
+import com.hypixel.hytale.logger.HytaleLogger;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Flag lookups while other threads toggle flags, like world threads checking deaths while
+ * commands on other worlds change the set.
+ */
+@State(Scope.Group)
+@BenchmarkMode({Mode.AverageTime, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class PreventDeathItemDropManagerBenchmark {
+
+    @Param({"1000", "100000"})
+    public int flaggedPlayers;
+
+    private PreventDeathItemDropManager manager;
+    private UUID[] playerUuids;
+
+    @Setup
+    public void setup() {
+        manager = new PreventDeathItemDropManager(HytaleLogger.forEnclosingClass(), new PluginLog(HytaleLogger.forEnclosingClass(), 16));
+        // Half of the looked up players are flagged
+        playerUuids = new UUID[flaggedPlayers * 2];
+        for (int i = 0; i < playerUuids.length; i++) {
+            playerUuids[i] = UUID.randomUUID();
+            if ((i & 1) == 0) {
+                manager.setFlag(playerUuids[i], true);
+            }
+        }
+    }
+
+    @Benchmark
+    @Group("contended")
+    @GroupThreads(3)
+    public boolean lookup() {
+        return manager.isPreventDeathItemDropEnabled(playerUuids[ThreadLocalRandom.current().nextInt(playerUuids.length)]);
+    }
+
+    @Benchmark
+    @Group("contended")
+    @GroupThreads(1)
+    public boolean toggle() {
+        int index = ThreadLocalRandom.current().nextInt(playerUuids.length);
+        return manager.setFlag(playerUuids[index], !manager.isPreventDeathItemDropEnabled(playerUuids[index]));
+    }
+
+    @Benchmark
+    @Group("uncontended")
+    @GroupThreads(1)
+    public boolean lookupAlone() {
+        return manager.isPreventDeathItemDropEnabled(playerUuids[ThreadLocalRandom.current().nextInt(playerUuids.length)]);
+    }
+}
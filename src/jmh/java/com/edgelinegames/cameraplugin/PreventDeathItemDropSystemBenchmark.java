@@ -0,0 +1,53 @@
+package com.edgelinegames.cameraplugin;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Cost of one death in PreventDeathItemDropSystem, over a synthetic chunk.
+ *
+ * Every call runs PreventDeathItemDropSystem.handleDeath, the code the system runs when a
+ * DeathComponent is added: marker check, cached rule decision (with region checks for arena
+ * rules), the items loss mode, the archive hand-off, the metrics and the JFR event.
+ * With rules=0 only the marker decides, as without deathDropRules in config.json.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.AverageTime, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class PreventDeathItemDropSystemBenchmark {
+
+    @Param({"0", "50"})
+    public int rules;
+
+    @Param({"2000"})
+    public int players;
+
+    private SyntheticChunk chunk;
+    private PluginMetrics.Histogram duration;
+    private PluginMetrics.Counter matches;
+    private int next;
+
+    @Setup
+    public void setup() {
+        SplittableRandom random = new SplittableRandom(11);
+        chunk = new SyntheticChunk(players, 1.0, 0.3, SyntheticChunk.arenaRules(rules, random), "arena", random);
+
+        PluginMetrics metrics = new PluginMetrics("benchmark");
+        duration = metrics.histogram("death_drop_system_seconds", null, "Time spent deciding and archiving one death");
+        matches = metrics.counter("death_drop_kept_total", null, "Deaths where the player kept their items");
+    }
+
+    @Benchmark
+    public boolean handleDeath() {
+        int index = Math.floorMod(next++, chunk.size);
+        return PreventDeathItemDropSystem.handleDeath(chunk.entity(index), duration, matches);
+    }
+}
@@ -0,0 +1,135 @@
+package com.edgelinegames.cameraplugin;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * Stand-in for an ArchetypeChunk of player entities, and the Store around it, in benchmarks.
+ *
+ * Column arrays hold what the death path reads and writes: the player UUID and name, whether
+ * the entity has a DeathComponent, whether it carries the prevention marker, the rule decision
+ * cached in the player's session, the position and the items loss mode. entity(index) is the
+ * PreventDeathItemDropSystem.DeathEntity view of a row, the same seam the system adapts a Ref
+ * and Store to. Archiving only counts the deaths; the archive writer is not part of the numbers.
+ */
+public class SyntheticChunk {
+
+    public static final byte LOSS_DEFAULT = 0;
+    public static final byte LOSS_NONE = 1;
+
+    private static final String[] GROUPS = {"Default", "VIP", "Event"};
+
+    public final int size;
+    public final UUID[] playerUuids;
+    public final String[] usernames;
+    public final boolean[] dead;
+    public final boolean[] marked;
+    public final DeathDropRuleSet.Decision[] decisions;
+    public final double[] positions;
+    public final byte[] itemsLossMode;
+    public long archived;
+
+    private final Row row = new Row();
+
+    /**
+     * @param size Number of entities in the chunk
+     * @param deadFraction Fraction of entities that currently have a DeathComponent
+     * @param markedFraction Fraction of entities flagged to keep their items
+     * @param rules Rules to cache a decision from for every player, as keepsItemsByRule does on the first death
+     * @param world World the chunk is in
+     * @param random Source of the player UUIDs, flags and positions
+     */
+    public SyntheticChunk(int size, double deadFraction, double markedFraction, @Nonnull DeathDropRuleSet rules,
+                          @Nonnull String world, @Nonnull SplittableRandom random) {
+        this.size = size;
+        this.playerUuids = new UUID[size];
+        this.usernames = new String[size];
+        this.dead = new boolean[size];
+        this.marked = new boolean[size];
+        this.decisions = new DeathDropRuleSet.Decision[size];
+        this.positions = new double[size * 3];
+        this.itemsLossMode = new byte[size];
+        for (int i = 0; i < size; i++) {
+            playerUuids[i] = new UUID(random.nextLong(), random.nextLong());
+            usernames[i] = "player" + i;
+            dead[i] = random.nextDouble() < deadFraction;
+            marked[i] = random.nextDouble() < markedFraction;
+            decisions[i] = rules.decide(world, Set.of(GROUPS[random.nextInt(GROUPS.length)]));
+            positions[i * 3] = random.nextDouble() * 512;
+            positions[i * 3 + 1] = random.nextDouble() * 128;
+            positions[i * 3 + 2] = random.nextDouble() * 512;
+        }
+    }
+
+    /**
+     * Build rules for the arena world: regions of 16 to 48 blocks, and every tenth rule for the
+     * event group instead.
+     * @param count Number of rules
+     * @param random Source of the region positions and sizes
+     */
+    @Nonnull
+    public static DeathDropRuleSet arenaRules(int count, @Nonnull SplittableRandom random) {
+        List<DeathDropRule> rules = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            if (i % 10 == 0) {
+                rules.add(new DeathDropRule("rule" + i, "arena", "Event", null, "keep"));
+            } else {
+                int x = random.nextInt(512);
+                int z = random.nextInt(512);
+                rules.add(new DeathDropRule("rule" + i, "arena", null,
+                    new DeathDropRule.Region(x, 0, z, x + 16 + random.nextInt(32), 127, z + 16 + random.nextInt(32)), "keep"));
+            }
+        }
+        return DeathDropRuleSet.compile(rules);
+    }
+
+    /**
+     * Get the death path view of a row. The view is reused, so it is only valid until the next call.
+     */
+    @Nonnull
+    public PreventDeathItemDropSystem.DeathEntity entity(int index) {
+        row.index = index;
+        return row;
+    }
+
+    private final class Row implements PreventDeathItemDropSystem.DeathEntity {
+
+        int index;
+
+        @Override
+        public boolean hasMarker() {
+            return marked[index];
+        }
+
+        @Override
+        public boolean keepsItemsByRule() {
+            DeathDropRuleSet.Decision decision = decisions[index];
+            if (!decision.needsPosition()) {
+                return decision.keepsItems();
+            }
+            int p = index * 3;
+            return decision.keepsItems(positions[p], positions[p + 1], positions[p + 2]);
+        }
+
+        @Override
+        public void keepItems() {
+            itemsLossMode[index] = LOSS_NONE;
+        }
+
+        @Override
+        public void archive() {
+            archived++;
+        }
+
+        @Nullable
+        @Override
+        public String getPlayerName() {
+            return usernames[index];
+        }
+    }
+}
@@ -0,0 +1,231 @@
+package com.edgelinegames.cameraplugin;
+
+import com.hypixel.hytale.logger.HytaleLogger;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * Spreads camera changes for many players over several ticks.
+ *
+ * Each broadcast takes a snapshot of its target players and is worked off in batches,
+ * with at most packetsPerTick players handled per tick across all running broadcasts.
+ * Broadcasts run in the order they were started.
+ * Each batch is handed to a Dispatcher, which decides on which threads the action runs.
+ * The plugin's broadcaster works on PlayerRefs; the type parameter lets the load simulator
+ * drive the same pacing with its own fake players.
+ * @param <T> The type of the targets, normally PlayerRef
+ */
+public class CameraBroadcaster<T> implements TickScheduler.TickTask {
+
+    // Default number of camera packets sent per tick across all broadcasts
+    public static final int DEFAULT_PACKETS_PER_TICK = 200;
+
+    /**
+     * Runs the action for one batch of targets.
+     * @param <T> The type of the targets
+     */
+    @FunctionalInterface
+    public interface Dispatcher<T> {
+        /**
+         * @param name Short name used in log messages
+         * @param targets The targets of this batch (owned by the dispatcher)
+         * @param action The action to run for each target; failures must be caught and logged
+         * @return A future that completes once the action ran for every target
+         */
+        @Nonnull
+        CompletableFuture<Void> dispatch(@Nonnull String name, @Nonnull List<T> targets, @Nonnull Consumer<? super T> action);
+    }
+
+    private final HytaleLogger logger;
+    private final Dispatcher<T> dispatcher;
+    private final Deque<Broadcast<T>> queue = new ArrayDeque<>();
+    private volatile int packetsPerTick;
+
+    /**
+     * Constructor for a broadcaster that runs every batch right away on the tick thread.
+     * @param logger The logger to use for logging messages
+     * @param packetsPerTick Maximum number of players handled per tick
+     */
+    public CameraBroadcaster(@Nonnull HytaleLogger logger, int packetsPerTick) {
+        this(logger, packetsPerTick, null);
+    }
+
+    /**
+     * Constructor.
+     * @param logger The logger to use for logging messages
+     * @param packetsPerTick Maximum number of players handled per tick
+     * @param dispatcher Runs each batch, or null to run batches on the tick thread
+     */
+    public CameraBroadcaster(@Nonnull HytaleLogger logger, int packetsPerTick, @Nullable Dispatcher<T> dispatcher) {
+        this.logger = logger;
+        this.dispatcher = dispatcher != null ? dispatcher : this::runInline;
+        setPacketsPerTick(packetsPerTick);
+    }
+
+    /**
+     * Queue an action for every given player.
+     * @param name Short name used in log messages
+     * @param players The players to apply the action to (copied right away)
+     * @param action The action to run for each player
+     * @return The broadcast handle with progress and completion future
+     */
+    @Nonnull
+    public Broadcast<T> submit(@Nonnull String name, @Nonnull Collection<? extends T> players, @Nonnull Consumer<? super T> action) {
+        Broadcast<T> broadcast = new Broadcast<>(name, new ArrayList<>(players), action);
+        if (broadcast.total == 0) {
+            broadcast.completion.complete(broadcast);
+            return broadcast;
+        }
+        synchronized (queue) {
+            queue.addLast(broadcast);
+        }
+        return broadcast;
+    }
+
+    @Override
+    public void tick(long tick) {
+        int budget = packetsPerTick;
+        while (budget > 0) {
+            Broadcast<T> broadcast;
+            synchronized (queue) {
+                broadcast = queue.peekFirst();
+            }
+            if (broadcast == null) {
+                return;
+            }
+
+            budget -= broadcast.runBatch(budget, dispatcher);
+
+            if (broadcast.isDone()) {
+                synchronized (queue) {
+                    queue.pollFirst();
+                }
+                // Batches may still be running on other threads
+                CompletableFuture.allOf(broadcast.batches.toArray(new CompletableFuture[0])).whenComplete((ignored, error) -> {
+                    broadcast.completion.complete(broadcast);
+                    logger.at(Level.INFO).log("CameraBroadcaster: Finished " + broadcast.name + " for " + broadcast.total + " players");
+                });
+            }
+        }
+    }
+
+    @Nonnull
+    private CompletableFuture<Void> runInline(@Nonnull String name, @Nonnull List<T> targets, @Nonnull Consumer<? super T> action) {
+        for (T target : targets) {
+            try {
+                action.accept(target);
+            } catch (Exception e) {
+                logger.at(Level.WARNING).withCause(e).log("CameraBroadcaster: " + name + " failed for a player");
+            }
+        }
+        return CompletableFuture.completedFuture(null);
+    }
+
+    /**
+     * Cancel every queued broadcast. Their futures complete with the players handled so far.
+     */
+    public void cancelAll() {
+        synchronized (queue) {
+            for (Broadcast<T> broadcast : queue) {
+                broadcast.completion.complete(broadcast);
+            }
+            queue.clear();
+        }
+    }
+
+    /**
+     * Set the maximum number of players handled per tick.
+     */
+    public void setPacketsPerTick(int packetsPerTick) {
+        this.packetsPerTick = Math.max(1, packetsPerTick);
+    }
+
+    public int getPacketsPerTick() {
+        return packetsPerTick;
+    }
+
+    /**
+     * Get the number of broadcasts that have not finished yet.
+     */
+    public int getPendingCount() {
+        synchronized (queue) {
+            return queue.size();
+        }
+    }
+
+    /**
+     * A running or finished broadcast.
+     * @param <T> The type of the targets
+     */
+    public static final class Broadcast<T> {
+
+        private final String name;
+        private final List<T> targets;
+        private final int total;
+        private final Consumer<? super T> action;
+        private final CompletableFuture<Broadcast<T>> completion = new CompletableFuture<>();
+        // Futures of the dispatched batches, only touched from the tick thread
+        private final List<CompletableFuture<Void>> batches = new ArrayList<>();
+        private volatile int processed;
+
+        private Broadcast(@Nonnull String name, @Nonnull List<T> targets, @Nonnull Consumer<? super T> action) {
+            this.name = name;
+            this.targets = targets;
+            this.total = targets.size();
+            this.action = action;
+        }
+
+        private int runBatch(int budget, @Nonnull Dispatcher<T> dispatcher) {
+            int start = processed;
+            int end = Math.min(total, start + budget);
+            List<T> batch = new ArrayList<>(end - start);
+            for (int i = start; i < end; i++) {
+                batch.add(targets.get(i));
+                targets.set(i, null); // Let go of the player as soon as it is handed off
+            }
+            batches.add(dispatcher.dispatch(name, batch, action));
+            processed = end;
+            return end - start;
+        }
+
+        private boolean isDone() {
+            return processed >= total;
+        }
+
+        @Nonnull
+        public String getName() {
+            return name;
+        }
+
+        public int getTotal() {
+            return total;
+        }
+
+        public int getProcessed() {
+            return processed;
+        }
+
+        /**
+         * Get the progress as a fraction between 0 and 1.
+         */
+        public float getProgress() {
+            return total == 0 ? 1.0f : (float) processed / total;
+        }
+
+        /**
+         * Get a future that completes once every player was handled (or the broadcast was cancelled).
+         */
+        @Nonnull
+        public CompletableFuture<Broadcast<T>> getCompletion() {
+            return completion;
+        }
+    }
+}
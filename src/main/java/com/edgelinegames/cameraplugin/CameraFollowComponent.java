@@ -0,0 +1,23 @@
+package com.edgelinegames.cameraplugin;
+
+import com.hypixel.hytale.component.Component;
+import com.hypixel.hytale.server.core.universe.world.storage.EntityStore;
+import javax.annotation.Nonnull;
+
+/**
+ * Marker component for entities that at least one player's camera is following.
+ * Carries no data; the observers are kept in CameraFollowManager's index. The marker only
+ * exists so that CameraFollowSystem visits followed entities and nothing else. It is not
+ * saved with the entity.
+ */
+public class CameraFollowComponent implements Component<EntityStore> {
+
+    // The component is stateless, so every entity can share one instance
+    public static final CameraFollowComponent INSTANCE = new CameraFollowComponent();
+
+    @Nonnull
+    @Override
+    public Component<EntityStore> clone() {
+        return INSTANCE;
+    }
+}
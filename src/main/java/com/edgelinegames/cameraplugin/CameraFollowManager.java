@@ -0,0 +1,431 @@
+package com.edgelinegames.cameraplugin;
+
+import com.hypixel.hytale.component.CommandBuffer;
+import com.hypixel.hytale.component.ComponentRegistryProxy;
+import com.hypixel.hytale.component.ComponentType;
+import com.hypixel.hytale.component.Ref;
+import com.hypixel.hytale.component.Store;
+import com.hypixel.hytale.logger.HytaleLogger;
+import com.hypixel.hytale.math.vector.Vector3d;
+import com.hypixel.hytale.protocol.ClientCameraView;
+import com.hypixel.hytale.protocol.Position;
+import com.hypixel.hytale.protocol.PositionType;
+import com.hypixel.hytale.protocol.ServerCameraSettings;
+import com.hypixel.hytale.protocol.packets.camera.SetServerCamera;
+import com.hypixel.hytale.server.core.universe.PlayerRef;
+import com.hypixel.hytale.server.core.universe.world.World;
+import com.hypixel.hytale.server.core.universe.world.storage.EntityStore;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * Spectator cameras: players whose camera follows another entity.
+ *
+ * The index runs from each followed entity to its observers, so the work per tick depends
+ * on how many entities are followed, not on how many players are watching. Followed entities
+ * carry a CameraFollowComponent marker, and CameraFollowSystem visits only those, on their
+ * world thread. When a target has moved more than the move threshold since its last update,
+ * one packet is built for it and written to every observer; smaller moves send nothing and
+ * the client keeps smoothing towards the last position.
+ *
+ * Follows and unfollows may come from any thread. The observer lists are copy on write,
+ * since they are read on every update and change only when someone starts or stops watching.
+ * While a player observes, other camera changes are held back by CameraPlugin; when they
+ * stop, the target goes away or they leave the target's world, the listener gives them their
+ * own camera back.
+ */
+public class CameraFollowManager {
+
+    // Defaults, see followCameraDistance and followMoveThreshold in config.json
+    public static final float DEFAULT_DISTANCE = 6.0f;
+    public static final double DEFAULT_MOVE_THRESHOLD = 0.1;
+
+    // Height above the target's feet the camera looks at
+    private static final double EYE_HEIGHT = 1.6;
+
+    /**
+     * Writes a follow packet to a player.
+     */
+    @FunctionalInterface
+    public interface Sender {
+        void send(@Nonnull PlayerRef playerRef, @Nonnull SetServerCamera packet);
+    }
+
+    /**
+     * Called when players stop observing, because they stopped or the target went away.
+     */
+    @FunctionalInterface
+    public interface Listener {
+        void stopped(@Nonnull List<PlayerRef> observers);
+    }
+
+    /**
+     * A followed entity and the players watching it.
+     */
+    private static final class Target {
+
+        private final Ref<EntityStore> ref;
+        private final String name;
+        // World of the target, updates are only sent to observers in it
+        private final UUID worldUuid;
+        private final List<PlayerRef> observers = new CopyOnWriteArrayList<>();
+        // Set under the target monitor once the target left the index, a new follow makes a new target
+        private boolean closed;
+
+        // Last position an update was sent for (only touched by the target's world thread)
+        private double lastX;
+        private double lastY;
+        private double lastZ;
+        // Packet of the last update, sent right away to players who start watching
+        private volatile SetServerCamera packet;
+
+        private Target(@Nonnull Ref<EntityStore> ref, @Nonnull String name, @Nullable UUID worldUuid) {
+            this.ref = ref;
+            this.name = name;
+            this.worldUuid = worldUuid;
+        }
+    }
+
+    private final HytaleLogger logger;
+    private final CameraPacketCache packetCache;
+    private final Sender sender;
+    private final Listener listener;
+    private final Map<Ref<EntityStore>, Target> targets = new ConcurrentHashMap<>();
+    private final Map<UUID, Target> targetByObserver = new ConcurrentHashMap<>();
+
+    // Marker component type, registered in setup()
+    private ComponentType<EntityStore, CameraFollowComponent> markerType;
+
+    private volatile float distance = DEFAULT_DISTANCE;
+    private volatile double moveThreshold = DEFAULT_MOVE_THRESHOLD;
+    private volatile float lerpSpeed = 1.0f;
+
+    // Counters
+    private final LongAdder updates = new LongAdder();
+    private final LongAdder updatesSkipped = new LongAdder();
+    private final LongAdder packetsSent = new LongAdder();
+
+    /**
+     * Constructor.
+     * @param logger The logger to use for logging messages
+     * @param packetCache The camera packet cache, told to forget what observers had before
+     * @param sender Writes follow packets to players
+     * @param listener Gives players their camera back when they stop observing
+     */
+    public CameraFollowManager(@Nonnull HytaleLogger logger, @Nonnull CameraPacketCache packetCache,
+                               @Nonnull Sender sender, @Nonnull Listener listener) {
+        this.logger = logger;
+        this.packetCache = packetCache;
+        this.sender = sender;
+        this.listener = listener;
+    }
+
+    /**
+     * Register the marker component and the systems that update and clean up followed entities.
+     * @param entityStoreRegistry The entity store registry (from getEntityStoreRegistry())
+     */
+    public void setup(@Nonnull ComponentRegistryProxy<EntityStore> entityStoreRegistry) {
+        try {
+            this.markerType = entityStoreRegistry.registerComponent(CameraFollowComponent.class, () -> CameraFollowComponent.INSTANCE);
+            entityStoreRegistry.registerSystem(new CameraFollowSystem(this, markerType));
+            entityStoreRegistry.registerSystem(new CameraFollowTargetSystem(this, markerType));
+        } catch (Exception e) {
+            logger.at(Level.SEVERE).withCause(e).log("CameraFollowManager: Could not register camera follow systems");
+        }
+    }
+
+    /**
+     * Set the camera distance, move threshold and lerp speed of follow cameras.
+     * Takes effect with the next update of each target.
+     */
+    public void configure(float distance, double moveThreshold, float lerpSpeed) {
+        this.distance = distance;
+        this.moveThreshold = Math.max(0.0, moveThreshold);
+        this.lerpSpeed = lerpSpeed;
+    }
+
+    /**
+     * Make a player's camera follow an entity, replacing what they followed before.
+     * @param observer The player whose camera follows
+     * @param target The entity to follow, in the observer's world
+     * @param targetName Name of the target for messages and logs
+     * @return true if the player now follows the target, false if it is gone
+     */
+    public boolean follow(@Nonnull PlayerRef observer, @Nonnull Ref<EntityStore> target, @Nonnull String targetName) {
+        if (markerType == null || !target.isValid() || target.equals(observer.getReference())) {
+            return false;
+        }
+
+        UUID observerUuid = observer.getUuid();
+        Target previous = targetByObserver.get(observerUuid);
+        if (previous != null && previous.ref.equals(target)) {
+            return true;
+        }
+        if (previous != null) {
+            removeObserver(previous, observerUuid);
+        }
+
+        while (true) {
+            Target created = new Target(target, targetName, observer.getWorldUuid());
+            Target existing = targets.putIfAbsent(target, created);
+            Target joined = existing != null ? existing : created;
+            synchronized (joined) {
+                // A closed target is already out of the index, take the next round with a new one
+                if (joined.closed) {
+                    continue;
+                }
+                joined.observers.add(observer);
+                targetByObserver.put(observerUuid, joined);
+            }
+            // Follow packets bypass the cache, the camera the player had before is no longer on the client
+            packetCache.forget(observerUuid);
+
+            SetServerCamera current = joined.packet;
+            if (current != null) {
+                // Start at the view everyone else has, instead of waiting for the target to move
+                send(observer, current);
+            }
+            if (existing == null) {
+                attachMarker(target);
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Stop following and give the player their camera back.
+     * Cheap when the player is not following anything.
+     * @return true if the player was following something
+     */
+    public boolean unfollow(@Nonnull PlayerRef observer) {
+        Target target = targetByObserver.get(observer.getUuid());
+        if (target == null || !removeObserver(target, observer.getUuid())) {
+            return false;
+        }
+        stopped(List.of(observer));
+        return true;
+    }
+
+    /**
+     * Drop a player that left, without giving their camera back.
+     */
+    public void forget(@Nonnull UUID observerUuid) {
+        Target target = targetByObserver.get(observerUuid);
+        if (target != null) {
+            removeObserver(target, observerUuid);
+        }
+    }
+
+    /**
+     * Check if a player's camera is following an entity.
+     */
+    public boolean isFollowing(@Nonnull UUID observerUuid) {
+        return targetByObserver.containsKey(observerUuid);
+    }
+
+    /**
+     * Get the name of the entity a player is following.
+     * @return The name, or null if the player is not following anything
+     */
+    @Nullable
+    public String getFollowing(@Nonnull UUID observerUuid) {
+        Target target = targetByObserver.get(observerUuid);
+        return target != null ? target.name : null;
+    }
+
+    /**
+     * Get the number of followed entities.
+     */
+    public int getTargetCount() {
+        return targets.size();
+    }
+
+    /**
+     * Get the number of players following an entity.
+     */
+    public int getObserverCount() {
+        return targetByObserver.size();
+    }
+
+    public long getUpdates() {
+        return updates.sum();
+    }
+
+    public long getUpdatesSkipped() {
+        return updatesSkipped.sum();
+    }
+
+    public long getPacketsSent() {
+        return packetsSent.sum();
+    }
+
+    /**
+     * Update the observers of a followed entity. Called by CameraFollowSystem on the entity's
+     * world thread, once per tick. Observers that went to another world stop following and get
+     * their camera back.
+     */
+    void update(@Nonnull Ref<EntityStore> ref, @Nonnull Vector3d position, @Nonnull CommandBuffer<EntityStore> commandBuffer) {
+        Target target = targets.get(ref);
+        if (target == null || close(target, false)) {
+            // Nobody is watching anymore
+            commandBuffer.tryRemoveComponent(ref, markerType);
+            return;
+        }
+
+        double x = position.getX();
+        double y = position.getY();
+        double z = position.getZ();
+        if (target.packet != null) {
+            double dx = x - target.lastX;
+            double dy = y - target.lastY;
+            double dz = z - target.lastZ;
+            double threshold = moveThreshold;
+            if (dx * dx + dy * dy + dz * dz <= threshold * threshold) {
+                updatesSkipped.increment();
+                return;
+            }
+        }
+
+        target.lastX = x;
+        target.lastY = y;
+        target.lastZ = z;
+        // One packet per target and update, shared by every observer
+        SetServerCamera packet = buildPacket(x, y, z);
+        target.packet = packet;
+        updates.increment();
+
+        List<PlayerRef> left = null;
+        for (PlayerRef observer : target.observers) {
+            if (!observer.isValid()) {
+                removeObserver(target, observer.getUuid());
+                continue;
+            }
+            if (!Objects.equals(observer.getWorldUuid(), target.worldUuid)) {
+                // Their connection belongs to another world thread now
+                if (removeObserver(target, observer.getUuid())) {
+                    if (left == null) {
+                        left = new ArrayList<>();
+                    }
+                    left.add(observer);
+                }
+                continue;
+            }
+            send(observer, packet);
+        }
+        if (left != null) {
+            stopped(left);
+        }
+    }
+
+    /**
+     * End a target whose entity was removed (left the world, despawned) and give its
+     * observers their camera back. Called by CameraFollowTargetSystem on the world thread.
+     */
+    void targetRemoved(@Nonnull Ref<EntityStore> ref) {
+        Target target = targets.get(ref);
+        if (target == null) {
+            return;
+        }
+        close(target, true);
+
+        List<PlayerRef> observers = new ArrayList<>(target.observers.size());
+        for (PlayerRef observer : target.observers) {
+            if (targetByObserver.remove(observer.getUuid(), target)) {
+                observers.add(observer);
+            }
+        }
+        target.observers.clear();
+        if (!observers.isEmpty()) {
+            stopped(observers);
+        }
+    }
+
+    /**
+     * Take a target out of the index if nobody watches it, or always if forced.
+     * @return true if the target was closed
+     */
+    private boolean close(@Nonnull Target target, boolean force) {
+        synchronized (target) {
+            if (!target.closed && (force || target.observers.isEmpty())) {
+                target.closed = true;
+                targets.remove(target.ref, target);
+            }
+            return target.closed;
+        }
+    }
+
+    /**
+     * Remove an observer from a target.
+     * @return true if the observer was following this target
+     */
+    private boolean removeObserver(@Nonnull Target target, @Nonnull UUID observerUuid) {
+        if (!targetByObserver.remove(observerUuid, target)) {
+            return false;
+        }
+        target.observers.removeIf(observer -> observer.getUuid().equals(observerUuid));
+        // The marker is removed by the next update that finds the target without observers
+        return true;
+    }
+
+    private void stopped(@Nonnull List<PlayerRef> observers) {
+        for (PlayerRef observer : observers) {
+            packetCache.forget(observer.getUuid());
+        }
+        try {
+            listener.stopped(observers);
+        } catch (Exception e) {
+            logger.at(Level.WARNING).withCause(e).log("CameraFollowManager: Could not restore cameras of " + observers.size() + " observers");
+        }
+    }
+
+    private void send(@Nonnull PlayerRef observer, @Nonnull SetServerCamera packet) {
+        try {
+            sender.send(observer, packet);
+            packetsSent.increment();
+        } catch (Exception e) {
+            logger.at(Level.WARNING).withCause(e).log("CameraFollowManager: Could not send a follow camera to " + observer.getUsername());
+        }
+    }
+
+    /**
+     * Put the marker on a newly followed entity, on its world thread.
+     */
+    private void attachMarker(@Nonnull Ref<EntityStore> ref) {
+        Store<EntityStore> store = ref.getStore();
+        World world = store.getExternalData().getWorld();
+        // Runs after the current tick, so it lands after a removal the last update queued for the same entity
+        world.execute(() -> {
+            if (ref.isValid() && targets.containsKey(ref) && store.getComponent(ref, markerType) == null) {
+                store.putComponent(ref, markerType, CameraFollowComponent.INSTANCE);
+            }
+        });
+    }
+
+    @Nonnull
+    private SetServerCamera buildPacket(double x, double y, double z) {
+        float lerp = lerpSpeed;
+        ServerCameraSettings cameraSettings = new ServerCameraSettings();
+        cameraSettings.distance = distance;
+        cameraSettings.positionLerpSpeed = lerp;
+        cameraSettings.rotationLerpSpeed = lerp;
+        cameraSettings.isFirstPerson = false;
+        cameraSettings.displayCursor = false;
+        cameraSettings.displayReticle = false;
+        // Spectators orbit the target with the mouse
+        cameraSettings.allowPitchControls = true;
+        cameraSettings.eyeOffset = false;
+        // Centered on the target instead of on the spectator
+        cameraSettings.positionType = PositionType.Custom;
+        cameraSettings.position = new Position(x, y + EYE_HEIGHT, z);
+        return new SetServerCamera(ClientCameraView.Custom, false, cameraSettings);
+    }
+}
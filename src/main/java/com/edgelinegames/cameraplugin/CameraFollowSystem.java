@@ -0,0 +1,41 @@
+package com.edgelinegames.cameraplugin;
+
+import com.hypixel.hytale.component.ArchetypeChunk;
+import com.hypixel.hytale.component.CommandBuffer;
+import com.hypixel.hytale.component.ComponentType;
+import com.hypixel.hytale.component.Store;
+import com.hypixel.hytale.component.query.Query;
+import com.hypixel.hytale.component.system.tick.EntityTickingSystem;
+import com.hypixel.hytale.server.core.modules.entity.component.TransformComponent;
+import com.hypixel.hytale.server.core.universe.world.storage.EntityStore;
+import javax.annotation.Nonnull;
+
+/**
+ * System that sends follow camera updates for followed entities.
+ * Its query only matches entities with the CameraFollowComponent marker, so entities nobody
+ * watches cost nothing; CameraFollowManager decides whether the entity moved far enough.
+ */
+public class CameraFollowSystem extends EntityTickingSystem<EntityStore> {
+
+    private final CameraFollowManager manager;
+    private final Query<EntityStore> query;
+
+    public CameraFollowSystem(@Nonnull CameraFollowManager manager,
+                              @Nonnull ComponentType<EntityStore, CameraFollowComponent> markerType) {
+        this.manager = manager;
+        this.query = Query.and(markerType, TransformComponent.getComponentType());
+    }
+
+    @Nonnull
+    @Override
+    public Query<EntityStore> getQuery() {
+        return query;
+    }
+
+    @Override
+    public void tick(float dt, int index, @Nonnull ArchetypeChunk<EntityStore> chunk,
+                     @Nonnull Store<EntityStore> store, @Nonnull CommandBuffer<EntityStore> commandBuffer) {
+        TransformComponent transform = chunk.getComponent(index, TransformComponent.getComponentType());
+        manager.update(chunk.getReferenceTo(index), transform.getPosition(), commandBuffer);
+    }
+}
@@ -0,0 +1,46 @@
+package com.edgelinegames.cameraplugin;
+
+import com.hypixel.hytale.component.AddReason;
+import com.hypixel.hytale.component.CommandBuffer;
+import com.hypixel.hytale.component.ComponentType;
+import com.hypixel.hytale.component.Ref;
+import com.hypixel.hytale.component.RemoveReason;
+import com.hypixel.hytale.component.Store;
+import com.hypixel.hytale.component.query.Query;
+import com.hypixel.hytale.component.system.RefSystem;
+import com.hypixel.hytale.server.core.universe.world.storage.EntityStore;
+import javax.annotation.Nonnull;
+
+/**
+ * System that ends follow cameras when the followed entity is removed from its world
+ * (it left, despawned or changed worlds), so the observers get their own camera back.
+ */
+public class CameraFollowTargetSystem extends RefSystem<EntityStore> {
+
+    private final CameraFollowManager manager;
+    private final ComponentType<EntityStore, CameraFollowComponent> markerType;
+
+    public CameraFollowTargetSystem(@Nonnull CameraFollowManager manager,
+                                    @Nonnull ComponentType<EntityStore, CameraFollowComponent> markerType) {
+        this.manager = manager;
+        this.markerType = markerType;
+    }
+
+    @Nonnull
+    @Override
+    public Query<EntityStore> getQuery() {
+        return markerType;
+    }
+
+    @Override
+    public void onEntityAdded(@Nonnull Ref<EntityStore> ref, @Nonnull AddReason reason,
+                              @Nonnull Store<EntityStore> store, @Nonnull CommandBuffer<EntityStore> commandBuffer) {
+        // Nothing to do, the marker is put on by CameraFollowManager when the first player follows
+    }
+
+    @Override
+    public void onEntityRemove(@Nonnull Ref<EntityStore> ref, @Nonnull RemoveReason reason,
+                               @Nonnull Store<EntityStore> store, @Nonnull CommandBuffer<EntityStore> commandBuffer) {
+        manager.targetRemoved(ref);
+    }
+}
@@ -0,0 +1,125 @@
+package com.edgelinegames.cameraplugin;
+
+import com.hypixel.hytale.server.core.universe.PlayerRef;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Consumer;
+import javax.annotation.Nonnull;
+
+/**
+ * Applies the saved or default camera to players after they join.
+ *
+ * Joins are only queued by the connect handler; the queue is drained by the shared
+ * TickScheduler with at most perTick players per tick. After a restart several hundred
+ * players can connect at once, and this spreads their profile lookups and camera packets
+ * over the following ticks instead of doing all of them in one. Each join also waits
+ * delayTicks so the client has finished loading before its camera is set. The budget is
+ * counted on the scheduler thread; each tick's batch is applied on the players' world threads.
+ */
+public class CameraJoinQueue implements TickScheduler.TickTask {
+
+    // Default number of joining players handled per tick, and ticks to wait after a join
+    public static final int DEFAULT_PER_TICK = 50;
+    public static final int DEFAULT_DELAY_TICKS = 15;
+
+    private record Join(@Nonnull PlayerRef playerRef, long enqueuedNanos) {}
+
+    private final Consumer<PlayerRef> applier;
+    private final CameraBroadcaster.Dispatcher<PlayerRef> dispatcher;
+    private final Queue<Join> queue = new ConcurrentLinkedQueue<>();
+    private final Map<UUID, Join> queued = new ConcurrentHashMap<>();
+    private volatile int perTick = DEFAULT_PER_TICK;
+    private volatile int delayTicks = DEFAULT_DELAY_TICKS;
+    private volatile long tickNanos = TickScheduler.DEFAULT_TICK_MILLIS * 1_000_000L;
+
+    /**
+     * Constructor.
+     * @param applier Applies the camera to a joined player
+     * @param dispatcher Runs the applier on the players' world threads
+     */
+    public CameraJoinQueue(@Nonnull Consumer<PlayerRef> applier, @Nonnull CameraBroadcaster.Dispatcher<PlayerRef> dispatcher) {
+        this.applier = applier;
+        this.dispatcher = dispatcher;
+    }
+
+    /**
+     * Queue a player who just joined. Does nothing if the player is already queued.
+     */
+    public void enqueue(@Nonnull PlayerRef playerRef) {
+        Join join = new Join(playerRef, System.nanoTime());
+        if (queued.putIfAbsent(playerRef.getUuid(), join) == null) {
+            queue.add(join);
+        }
+    }
+
+    /**
+     * Drop a queued join (called when the player disconnects before it was applied).
+     * The entry itself is skipped when it reaches the head of the queue.
+     */
+    public void forget(@Nonnull UUID playerUuid) {
+        queued.remove(playerUuid);
+    }
+
+    /**
+     * Set the number of joining players handled per tick.
+     */
+    public void setPerTick(int perTick) {
+        this.perTick = Math.max(1, perTick);
+    }
+
+    /**
+     * Set the number of ticks to wait after a join before applying the camera.
+     */
+    public void setDelayTicks(int delayTicks) {
+        this.delayTicks = Math.max(0, delayTicks);
+    }
+
+    /**
+     * Set the tick length used to turn delayTicks into time.
+     */
+    public void setTickMillis(long tickMillis) {
+        this.tickNanos = tickMillis * 1_000_000L;
+    }
+
+    /**
+     * Get the number of joins waiting to be applied.
+     */
+    public int getPendingCount() {
+        return queued.size();
+    }
+
+    @Override
+    public void tick(long tick) {
+        int budget = perTick;
+        long readyBefore = System.nanoTime() - delayTicks * tickNanos;
+        List<PlayerRef> batch = null;
+        while (budget > 0) {
+            Join join = queue.peek();
+            // Joins are queued in order, so the first one still waiting ends the drain
+            if (join == null || join.enqueuedNanos() - readyBefore > 0) {
+                break;
+            }
+            queue.poll();
+
+            PlayerRef playerRef = join.playerRef();
+            if (!queued.remove(playerRef.getUuid(), join) || !playerRef.isValid()) {
+                // Disconnected while waiting (a rejoin has its own, newer entry)
+                continue;
+            }
+            if (batch == null) {
+                batch = new ArrayList<>(Math.min(budget, queued.size() + 1));
+            }
+            batch.add(playerRef);
+            budget--;
+        }
+
+        if (batch != null) {
+            dispatcher.dispatch("join camera", batch, applier);
+        }
+    }
+}
@@ -0,0 +1,400 @@
+package com.edgelinegames.cameraplugin;
+
+import com.hypixel.hytale.protocol.ClientCameraView;
+import com.hypixel.hytale.protocol.Position;
+import com.hypixel.hytale.protocol.ServerCameraSettings;
+import com.hypixel.hytale.protocol.packets.camera.SetServerCamera;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * Cache of pre-built camera packets plus per-player "last sent" tracking.
+ *
+ * Camera packets are built once per quantized (distance, shoulder offset, lerp speeds) and then shared
+ * between every player that asks for the same settings. Templates are never mutated after
+ * they are built, so the same instance can safely be written to many connections.
+ *
+ * The cache also remembers which template each player received last, so re-applying the
+ * exact same camera (respawn, world change, admin broadcasts) does not send anything.
+ *
+ * The number of templates is bounded: when the cache is full an arbitrary template is evicted
+ * to make room, and a config change of the shoulder offset or lerp speed drops every template.
+ * A player whose last template was evicted is still compared by key, so nothing is resent.
+ * Intermediate tween keyframes are kept in a smaller cache of their own, so a burst of
+ * transitions cannot push the templates of saved and zone cameras out.
+ */
+public class CameraPacketCache {
+
+    // Distances are quantized to this step before being used as a cache key (0.1 blocks)
+    public static final float DISTANCE_STEP = 0.1f;
+
+    // Shoulder offsets and lerp speeds are quantized to this step
+    public static final float FINE_STEP = 0.01f;
+
+    // Upper bound on cached templates; past this an old template is evicted for each new one
+    private static final int MAX_TEMPLATES = 4096;
+
+    // Upper bound on cached tween keyframes
+    private static final int MAX_KEYFRAMES = 1024;
+
+    // Shared packet that resets the camera back to the client default
+    public static final SetServerCamera RESET_PACKET = new SetServerCamera(ClientCameraView.Custom, false, null);
+
+    // Template marking a player whose camera was reset to the client default
+    public static final Template RESET_TEMPLATE = new Template(-1L, 0.0f, 0.0, 1.0f, 1.0f, RESET_PACKET, 0);
+
+    private volatile double shoulderOffsetDistance;
+    private volatile float lerpSpeed = 1.0f;
+    private final Map<Long, Template> templates = new ConcurrentHashMap<>();
+    private final Map<Long, Template> keyframes = new ConcurrentHashMap<>();
+    private final Map<UUID, Template> lastSent = new ConcurrentHashMap<>();
+
+    // Counters
+    private final LongAdder packetsSent = new LongAdder();
+    private final LongAdder packetsSuppressed = new LongAdder();
+    private final LongAdder templatesBuilt = new LongAdder();
+    private final LongAdder templatesEvicted = new LongAdder();
+    private final LongAdder allocationsSaved = new LongAdder();
+    private final LongAdder bytesSaved = new LongAdder();
+
+    /**
+     * Constructor.
+     * @param shoulderOffsetDistance The sideways offset used for the shoulder camera
+     */
+    public CameraPacketCache(double shoulderOffsetDistance) {
+        this.shoulderOffsetDistance = shoulderOffsetDistance;
+    }
+
+    /**
+     * Change the shoulder offset and lerp speed used by template(distance, rightShoulder).
+     * If either changed, the cached templates are dropped: they were built for the old values
+     * and would otherwise take up room in the cache until they are evicted.
+     */
+    public void configure(double shoulderOffsetDistance, float lerpSpeed) {
+        boolean changed = shoulderOffsetDistance != this.shoulderOffsetDistance || lerpSpeed != this.lerpSpeed;
+        this.shoulderOffsetDistance = shoulderOffsetDistance;
+        this.lerpSpeed = lerpSpeed;
+        if (changed) {
+            templates.clear();
+            keyframes.clear();
+        }
+    }
+
+    /**
+     * Quantize a camera distance to the cache step.
+     * @param distance The camera distance
+     * @return The distance in units of DISTANCE_STEP
+     */
+    public static int quantizeDistance(float distance) {
+        return Math.round(distance / DISTANCE_STEP);
+    }
+
+    /**
+     * Build the cache key for a camera setting.
+     * Layout: distance (20 bits) | shoulder offset (14 bits, signed) | position lerp speed (15 bits)
+     * | rotation lerp speed (15 bits), which covers distances up to 100000 blocks, offsets up to
+     * 80 blocks and lerp speeds up to 320.
+     * @param distance The camera distance
+     * @param shoulderOffset Sideways offset, positive = right shoulder
+     * @param positionLerpSpeed How fast the camera moves to its new position
+     * @param rotationLerpSpeed How fast the camera turns to its new rotation
+     * @return The cache key
+     */
+    public static long key(float distance, double shoulderOffset, float positionLerpSpeed, float rotationLerpSpeed) {
+        long distanceBits = quantizeDistance(distance) & 0xFFFFFL;
+        long offsetBits = Math.round(shoulderOffset / FINE_STEP) & 0x3FFFL;
+        long positionLerpBits = Math.round(positionLerpSpeed / FINE_STEP) & 0x7FFFL;
+        long rotationLerpBits = Math.round(rotationLerpSpeed / FINE_STEP) & 0x7FFFL;
+        return (distanceBits << 44) | (offsetBits << 30) | (positionLerpBits << 15) | rotationLerpBits;
+    }
+
+    /**
+     * Get the shoulder offset for a side.
+     * @param rightShoulder true for right shoulder, false for left shoulder
+     */
+    public double shoulderOffset(boolean rightShoulder) {
+        return rightShoulder ? shoulderOffsetDistance : -shoulderOffsetDistance;
+    }
+
+    /**
+     * Get the shared packet for a camera setting, building it on first use.
+     * @param distance The camera distance
+     * @param rightShoulder true for right shoulder, false for left shoulder
+     * @return The template holding the shared packet
+     */
+    @Nonnull
+    public Template template(float distance, boolean rightShoulder) {
+        return template(distance, shoulderOffset(rightShoulder), lerpSpeed);
+    }
+
+    /**
+     * Get the shared packet for a saved camera profile, building it on first use.
+     * Lerp speeds the player never chose use the configured lerp speed.
+     * @param profile The player's camera profile
+     * @return The template holding the shared packet
+     */
+    @Nonnull
+    public Template template(@Nonnull CameraProfile profile) {
+        float fallback = lerpSpeed;
+        return template(profile.distance(), shoulderOffset(profile.rightShoulder()),
+            profile.hasPositionLerpSpeed() ? profile.positionLerpSpeed() : fallback,
+            profile.hasRotationLerpSpeed() ? profile.rotationLerpSpeed() : fallback);
+    }
+
+    /**
+     * Get the shared packet for a camera setting, building it on first use.
+     * @param distance The camera distance
+     * @param shoulderOffset Sideways offset, positive = right shoulder
+     * @param lerpSpeed Position and rotation lerp speed
+     * @return The template holding the shared packet
+     */
+    @Nonnull
+    public Template template(float distance, double shoulderOffset, float lerpSpeed) {
+        return template(distance, shoulderOffset, lerpSpeed, lerpSpeed);
+    }
+
+    /**
+     * Get the shared packet for a camera setting, building it on first use.
+     * @param distance The camera distance
+     * @param shoulderOffset Sideways offset, positive = right shoulder
+     * @param positionLerpSpeed How fast the camera moves to its new position
+     * @param rotationLerpSpeed How fast the camera turns to its new rotation
+     * @return The template holding the shared packet
+     */
+    @Nonnull
+    public Template template(float distance, double shoulderOffset, float positionLerpSpeed, float rotationLerpSpeed) {
+        return cached(templates, MAX_TEMPLATES, distance, shoulderOffset, positionLerpSpeed, rotationLerpSpeed);
+    }
+
+    /**
+     * Get the packet for an intermediate tween keyframe, from the keyframe cache.
+     * @param distance The camera distance
+     * @param shoulderOffset Sideways offset, positive = right shoulder
+     * @param lerpSpeed Position and rotation lerp speed
+     * @return The template holding the shared packet
+     */
+    @Nonnull
+    public Template keyframe(float distance, double shoulderOffset, float lerpSpeed) {
+        return cached(keyframes, MAX_KEYFRAMES, distance, shoulderOffset, lerpSpeed, lerpSpeed);
+    }
+
+    /**
+     * Check whether the given template was the last one sent to a player, and record it if not.
+     * @param playerUuid The player UUID
+     * @param template The template about to be sent
+     * @return true if the packet should be sent, false if the player already has it
+     */
+    public boolean markSent(@Nonnull UUID playerUuid, @Nonnull Template template) {
+        Template previous = lastSent.put(playerUuid, template);
+        return previous == null || previous.key != template.key;
+    }
+
+    /**
+     * Get the last template sent to a player.
+     * @return The template, RESET_TEMPLATE after a reset, or null if nothing was sent
+     */
+    @Nullable
+    public Template getLastSent(@Nonnull UUID playerUuid) {
+        return lastSent.get(playerUuid);
+    }
+
+    /**
+     * Record that a template was sent to a player.
+     */
+    public void recordSent(@Nonnull Template template) {
+        packetsSent.increment();
+        if (template.sendCount.getAndIncrement() > 0) {
+            // Every send after the first one reuses the settings, offset and packet objects
+            allocationsSaved.add(3);
+        }
+    }
+
+    /**
+     * Record that a send was skipped because the player already had the same camera.
+     */
+    public void recordSuppressed(@Nonnull Template template) {
+        packetsSuppressed.increment();
+        allocationsSaved.add(3);
+        bytesSaved.add(template.size);
+    }
+
+    /**
+     * Record that the camera of a player was reset to the client default.
+     * @return true if the reset packet should be sent, false if the player was already reset
+     */
+    public boolean markReset(@Nonnull UUID playerUuid) {
+        return markSent(playerUuid, RESET_TEMPLATE);
+    }
+
+    /**
+     * Forget what was sent to a player (called when the player disconnects or the client
+     * camera may have been changed by something else).
+     */
+    public void forget(@Nonnull UUID playerUuid) {
+        lastSent.remove(playerUuid);
+    }
+
+    public long getPacketsSent() {
+        return packetsSent.sum();
+    }
+
+    public long getPacketsSuppressed() {
+        return packetsSuppressed.sum();
+    }
+
+    public long getTemplatesBuilt() {
+        return templatesBuilt.sum();
+    }
+
+    public long getTemplatesEvicted() {
+        return templatesEvicted.sum();
+    }
+
+    public long getAllocationsSaved() {
+        return allocationsSaved.sum();
+    }
+
+    public long getBytesSaved() {
+        return bytesSaved.sum();
+    }
+
+    public float getLerpSpeed() {
+        return lerpSpeed;
+    }
+
+    public int getTemplateCount() {
+        return templates.size();
+    }
+
+    public int getKeyframeCount() {
+        return keyframes.size();
+    }
+
+    public int getTrackedPlayerCount() {
+        return lastSent.size();
+    }
+
+    @Nonnull
+    private Template cached(@Nonnull Map<Long, Template> cache, int maxSize, float distance, double shoulderOffset,
+                            float positionLerpSpeed, float rotationLerpSpeed) {
+        long key = key(distance, shoulderOffset, positionLerpSpeed, rotationLerpSpeed);
+        Template template = cache.get(key);
+        if (template != null) {
+            return template;
+        }
+
+        template = buildTemplate(key, distance, shoulderOffset, positionLerpSpeed, rotationLerpSpeed);
+        if (cache.size() >= maxSize) {
+            evictOne(cache);
+        }
+        Template existing = cache.putIfAbsent(key, template);
+        return existing != null ? existing : template;
+    }
+
+    /**
+     * Remove one template to make room for a new one. Which one is not tracked, keeping
+     * lookups free of any recency bookkeeping; a hot template that is evicted is simply rebuilt.
+     */
+    private void evictOne(@Nonnull Map<Long, Template> cache) {
+        Iterator<Long> keys = cache.keySet().iterator();
+        if (keys.hasNext()) {
+            keys.next();
+            keys.remove();
+            templatesEvicted.increment();
+        }
+    }
+
+    @Nonnull
+    private Template buildTemplate(long key, float distance, double shoulderOffset, float positionLerpSpeed, float rotationLerpSpeed) {
+        float quantizedDistance = quantizeDistance(distance) * DISTANCE_STEP;
+        double quantizedOffset = Math.round(shoulderOffset / FINE_STEP) * (double) FINE_STEP;
+        float quantizedPositionLerp = Math.round(positionLerpSpeed / FINE_STEP) * FINE_STEP;
+        float quantizedRotationLerp = Math.round(rotationLerpSpeed / FINE_STEP) * FINE_STEP;
+
+        ServerCameraSettings cameraSettings = new ServerCameraSettings();
+        cameraSettings.distance = quantizedDistance;
+        cameraSettings.positionLerpSpeed = quantizedPositionLerp; // Smooth transition speed
+        cameraSettings.rotationLerpSpeed = quantizedRotationLerp;
+        cameraSettings.isFirstPerson = false; // Third-person view
+        cameraSettings.displayCursor = true;
+        cameraSettings.displayReticle = true;
+        cameraSettings.allowPitchControls = true; // Allow mouse pitch/yaw control
+        cameraSettings.eyeOffset = true; // Use eye offset for proper third-person positioning
+        // Set shoulder offset for third-person camera
+        // X offset: positive = right shoulder, negative = left shoulder
+        cameraSettings.positionOffset = new Position(quantizedOffset, 0.0, 0.0);
+        // Keep defaults for rotation and look that follow the player:
+        // - rotationType = RotationType.AttachedToPlusOffset (default) - follows player rotation
+        // - applyLookType = ApplyLookType.LocalPlayerLookOrientation (default) - applies player look
+        // - mouseInputType = MouseInputType.LookAtTarget (default) - mouse controls look direction
+        // - positionDistanceOffsetType = PositionDistanceOffsetType.DistanceOffset (default) - uses distance field
+        // - attachedToType = AttachedToType.LocalPlayer (default) - attached to local player
+        // - movementForceRotationType = MovementForceRotationType.AttachedToHead (default) - follows head rotation
+
+        // isLocked = false allows the player to control the camera with mouse
+        SetServerCamera packet = new SetServerCamera(ClientCameraView.Custom, false, cameraSettings);
+        templatesBuilt.increment();
+        return new Template(key, quantizedDistance, quantizedOffset, quantizedPositionLerp, quantizedRotationLerp, packet, packet.computeSize());
+    }
+
+    /**
+     * A pre-built, shared camera packet. Must never be modified after it is built.
+     */
+    public static final class Template {
+
+        private final long key;
+        private final float distance;
+        private final double shoulderOffset;
+        private final float positionLerpSpeed;
+        private final float rotationLerpSpeed;
+        private final SetServerCamera packet;
+        private final int size;
+        private final AtomicLong sendCount = new AtomicLong();
+
+        private Template(long key, float distance, double shoulderOffset, float positionLerpSpeed, float rotationLerpSpeed,
+                         @Nonnull SetServerCamera packet, int size) {
+            this.key = key;
+            this.distance = distance;
+            this.shoulderOffset = shoulderOffset;
+            this.positionLerpSpeed = positionLerpSpeed;
+            this.rotationLerpSpeed = rotationLerpSpeed;
+            this.packet = packet;
+            this.size = size;
+        }
+
+        public long getKey() {
+            return key;
+        }
+
+        public float getDistance() {
+            return distance;
+        }
+
+        public double getShoulderOffset() {
+            return shoulderOffset;
+        }
+
+        public float getPositionLerpSpeed() {
+            return positionLerpSpeed;
+        }
+
+        public float getRotationLerpSpeed() {
+            return rotationLerpSpeed;
+        }
+
+        @Nonnull
+        public SetServerCamera getPacket() {
+            return packet;
+        }
+
+        public int getSize() {
+            return size;
+        }
+    }
+}
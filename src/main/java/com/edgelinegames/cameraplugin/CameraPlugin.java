@@ -1,17 +1,31 @@
 package com.edgelinegames.cameraplugin;
 
-import com.hypixel.hytale.protocol.ClientCameraView;
 import com.hypixel.hytale.protocol.Packet;
-import com.hypixel.hytale.protocol.Position;
-import com.hypixel.hytale.protocol.ServerCameraSettings;
-import com.hypixel.hytale.protocol.packets.camera.SetServerCamera;
 import com.hypixel.hytale.server.core.command.system.AbstractCommand;
+import com.hypixel.hytale.server.core.event.events.player.PlayerConnectEvent;
+import com.hypixel.hytale.server.core.event.events.permissions.PlayerGroupEvent;
+import com.hypixel.hytale.server.core.event.events.player.PlayerDisconnectEvent;
 import com.hypixel.hytale.server.core.universe.PlayerRef;
 import com.hypixel.hytale.server.core.universe.Universe;
+import com.hypixel.hytale.server.core.universe.world.World;
 import com.hypixel.hytale.server.core.plugin.JavaPlugin;
 import com.hypixel.hytale.server.core.plugin.JavaPluginInit;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 
 /**
  * Main plugin class.
@@ -27,14 +41,51 @@ import javax.annotation.Nonnull;
 public class CameraPlugin extends JavaPlugin {
 
     private static CameraPlugin instance;
-    private float defaultCameraDistance = 15.0f; // Default zoom distance
     
-    // Shoulder offset distance for third-person camera
-    // This value can be adjusted to match the game's default camera shoulder offset
-    // Common values: 0.3-0.5 blocks (positive = right, negative = left)
-    private static final double SHOULDER_OFFSET_DISTANCE = 0.4;
+    // Shutdown groups players that are not in a world under this key
+    private static final UUID NO_WORLD = new UUID(0L, 0L);
     
-    // Manager for prevent death item drop functionality
+    // JFR settings profile shipped in the jar and copied to the data directory
+    private static final String RECORDING_SETTINGS = "cameraplugin.jfc";
+    
+    // Hot-reloadable config; tunables are read from its current snapshot
+    private final PluginConfigManager configManager;
+    
+    // Asynchronous logging for hot paths, with one sampled and rate limited category per feature
+    private final PluginLog pluginLog;
+    private final PluginLog.Category cameraLog;
+    
+    // Shared camera packet templates and per-player last sent tracking
+    private final CameraPacketCache packetCache;
+    
+    // Counters and timings, shown by /camerastats and optionally served over HTTP
+    private final PluginMetrics metrics;
+    private final MetricsHttpServer metricsServer;
+    
+    // Persistent per-player camera preferences (null if the store could not be opened)
+    private CameraProfileStore profileStore;
+    
+    // Shared tick driver and the engine that spreads bulk camera changes over ticks
+    private TickScheduler tickScheduler;
+    private CameraBroadcaster<PlayerRef> broadcaster;
+    private WorldDispatcher worldDispatcher;
+    private CameraTweenEngine tweenEngine;
+    private CameraZoomCoalescer zoomCoalescer;
+    private CameraJoinQueue joinQueue;
+    
+    // Regions that set the camera of players inside them (null if the module is switched off)
+    private CameraZoneManager zoneManager;
+    
+    // Cinematic camera paths played from mapped files (null if the module is switched off)
+    private CameraTrackPlayer trackPlayer;
+    
+    // Spectator cameras that follow another entity (null if the module is switched off)
+    private CameraFollowManager followManager;
+    
+    // Per-player state shared by the camera and death drop features, evicted after players leave
+    private final PlayerSessionRegistry sessions;
+    
+    // Manager for prevent death item drop functionality (null if the module is switched off)
     private PreventDeathItemDropManager preventDeathItemDropManager;
     
     /**
@@ -43,49 +94,538 @@ public class CameraPlugin extends JavaPlugin {
     public CameraPlugin(@Nonnull JavaPluginInit init) {
         super(init);
         instance = this;
-        this.preventDeathItemDropManager = new PreventDeathItemDropManager(getLogger());
+        this.configManager = new PluginConfigManager(getLogger(), getDataDirectory());
+        this.packetCache = new CameraPacketCache(configManager.get().getShoulderOffsetDistance());
+        this.pluginLog = new PluginLog(getLogger(), PluginLog.DEFAULT_CAPACITY);
+        this.cameraLog = pluginLog.category("camera", 1, 50);
+        this.sessions = new PlayerSessionRegistry();
+        this.metrics = new PluginMetrics("cameraplugin");
+        this.metricsServer = new MetricsHttpServer(getLogger(), metrics);
         getLogger().at(Level.INFO).log("CameraPlugin Plugin loaded!");
     }
     
     /**
      * Called when plugin is enabled - setup commands and event listeners.
+     * Optional modules (camera zones, death drop, death archive) are only created and
+     * registered when switched on in config.json; the time each module takes is logged once.
      */
     @Override
     protected void setup() {
         getLogger().at(Level.INFO).log("CameraPlugin Plugin enabled!");
+        StartupTimer startup = new StartupTimer();
+        startup.run("config", () -> {
+            configManager.load();
+            pluginLog.start();
+        });
+        PluginConfig config = configManager.get();
+        
+        startup.run("camera", this::setupCamera);
+        
+        if (config.isCameraZonesEnabled()) {
+            startup.run("zones", this::setupCameraZones);
+        } else {
+            startup.skip("zones");
+        }
+        
+        if (config.isCameraFollowEnabled()) {
+            startup.run("follow", this::setupCameraFollow);
+        } else {
+            startup.skip("follow");
+        }
+        
+        if (config.isDeathDropEnabled()) {
+            startup.run("death-drop", () -> setupDeathDrop(config.isDeathArchiveEnabled()));
+            if (!config.isDeathArchiveEnabled()) {
+                startup.skip("death-archive");
+            }
+        } else {
+            startup.skip("death-drop");
+            startup.skip("death-archive");
+        }
+        
+        startup.run("scheduler", this::setupScheduler);
+        
+        if (config.isCameraTracksEnabled()) {
+            startup.run("tracks", this::setupCameraTracks);
+        } else {
+            startup.skip("tracks");
+        }
+        
+        startup.run("metrics", this::setupMetrics);
+        
+        // Push config values into the running components now and on every reload
+        configManager.addListener(this::applyConfig);
+        configManager.startWatching();
+        
+        getLogger().at(Level.INFO).log("CameraPlugin: " + startup.report());
+    }
+    
+    /**
+     * Camera core: the zoom command, saved camera profiles and the join and leave hooks.
+     */
+    private void setupCamera() {
+        // Created first, the zone and scheduler modules both hand player work to it
+        this.worldDispatcher = new WorldDispatcher(getLogger());
+        
+        metrics.counterFunction("camera_packets_sent_total", "Camera packets sent to players", packetCache::getPacketsSent);
+        metrics.counterFunction("camera_packets_suppressed_total", "Camera packets not sent because the player already had that camera",
+            packetCache::getPacketsSuppressed);
+        metrics.gauge("camera_templates", "Pre-built camera packets in the shared cache", packetCache::getTemplateCount);
+        metrics.gauge("camera_keyframe_templates", "Pre-built tween keyframe packets", packetCache::getKeyframeCount);
+        metrics.counterFunction("camera_templates_evicted_total", "Pre-built camera packets evicted because the cache was full",
+            packetCache::getTemplatesEvicted);
         
         // Register the camera zoom command
         try {
-            getCommandRegistry().registerCommand((AbstractCommand) new CameraZoomCommand());
-            getLogger().at(Level.INFO).log("CameraPlugin: Camera zoom command registered!");
+            getCommandRegistry().registerCommand((AbstractCommand) new CameraZoomCommand(
+                metrics.histogram("command_seconds", "command=\"camerazoom\"", "Command execution time")));
+            getLogger().at(Level.INFO).log("CameraPlugin: Camera zoom command registered! Players can use /camerazoom <distance>");
         } catch (Exception e) {
             getLogger().at(Level.SEVERE).withCause(e).log("CameraPlugin: Could not register command");
         }
         
-        // Setup prevent death item drop functionality
-        preventDeathItemDropManager.setup(getCommandRegistry(), getEntityStoreRegistry());
+        // Open the persistent camera profile store
+        try {
+            Files.createDirectories(getDataDirectory());
+            this.profileStore = CameraProfileStore.open(getLogger(), getDataDirectory().resolve("camera_profiles.dat"));
+        } catch (Exception e) {
+            getLogger().at(Level.SEVERE).withCause(e).log("CameraPlugin: Could not open camera profile store, camera preferences will not be saved");
+        }
+        
+        // Put the JFR settings next to config.json so a recording can be started with jcmd
+        writeRecordingSettings();
+        
+        // Apply the saved camera to joining players, and drop per-player camera state when they leave
+        getEventRegistry().register(PlayerConnectEvent.class, this::onPlayerConnect);
+        getEventRegistry().register(PlayerDisconnectEvent.class, this::onPlayerDisconnect);
+    }
+    
+    /**
+     * Camera zones: load the saved zones and register the command to edit them.
+     */
+    private void setupCameraZones() {
+        this.zoneManager = new CameraZoneManager(getLogger(), getDataDirectory(), this::applyCameraZone, worldDispatcher);
+        zoneManager.load(configManager.get());
+        try {
+            getCommandRegistry().registerCommand((AbstractCommand) new CameraZoneCommand(zoneManager,
+                metrics.histogram("command_seconds", "command=\"camerazone\"", "Command execution time")));
+        } catch (Exception e) {
+            getLogger().at(Level.SEVERE).withCause(e).log("CameraPlugin: Could not register camera zone command");
+        }
+    }
+    
+    /**
+     * Spectator cameras: the follow index, its entity systems and the spectate command.
+     */
+    private void setupCameraFollow() {
+        this.followManager = new CameraFollowManager(getLogger(), packetCache,
+            (playerRef, packet) -> playerRef.getPacketHandler().writeNoCache((Packet) packet),
+            observers -> restoreCameras("follow", observers));
+        followManager.setup(getEntityStoreRegistry());
+        metrics.gauge("follow_targets", "Entities followed by at least one spectator camera", followManager::getTargetCount);
+        metrics.gauge("follow_observers", "Players whose camera follows another entity", followManager::getObserverCount);
+        metrics.counterFunction("follow_updates_total", "Follow camera updates, each one packet shared by all observers of a target",
+            followManager::getUpdates);
+        metrics.counterFunction("follow_updates_skipped_total", "Ticks a followed entity moved less than followMoveThreshold",
+            followManager::getUpdatesSkipped);
+        metrics.counterFunction("follow_packets_sent_total", "Follow camera packets sent to players", followManager::getPacketsSent);
+        try {
+            getCommandRegistry().registerCommand((AbstractCommand) new CameraSpectateCommand(followManager,
+                metrics.histogram("command_seconds", "command=\"cameraspectate\"", "Command execution time")));
+        } catch (Exception e) {
+            getLogger().at(Level.SEVERE).withCause(e).log("CameraPlugin: Could not register camera spectate command");
+        }
+    }
+    
+    /**
+     * Death drop: flags, rules, their commands and systems, and optionally the death archive.
+     */
+    private void setupDeathDrop(boolean archiveEnabled) {
+        this.preventDeathItemDropManager = new PreventDeathItemDropManager(getLogger(), pluginLog, sessions);
+        preventDeathItemDropManager.loadState(getDataDirectory(), archiveEnabled);
+        preventDeathItemDropManager.setup(getCommandRegistry(), getEntityStoreRegistry(), metrics);
+        // Group based death drop rules have to be looked at again when a player's groups change
+        getEventRegistry().register(PlayerGroupEvent.class, event -> preventDeathItemDropManager.invalidateRules(event.getPlayerUuid()));
+    }
+    
+    /**
+     * Start the shared tick driver used to spread bulk camera changes over several ticks.
+     */
+    private void setupScheduler() {
+        this.tickScheduler = new TickScheduler(getLogger(), TickScheduler.DEFAULT_TICK_MILLIS);
+        this.broadcaster = new CameraBroadcaster<>(getLogger(), CameraBroadcaster.DEFAULT_PACKETS_PER_TICK, worldDispatcher);
+        this.tweenEngine = new CameraTweenEngine(packetCache, this::sendCameraTemplate, worldDispatcher);
+        this.zoomCoalescer = new CameraZoomCoalescer(this::setPreferredCameraDistance, worldDispatcher);
+        this.joinQueue = new CameraJoinQueue(this::applyCameraDistance, worldDispatcher);
+        joinQueue.setTickMillis(tickScheduler.getTickMillis());
+        tickScheduler.register(broadcaster);
+        tickScheduler.register(tweenEngine);
+        tickScheduler.register(zoomCoalescer);
+        tickScheduler.register(joinQueue);
+        if (zoneManager != null) {
+            tickScheduler.register(zoneManager);
+        }
+        tickScheduler.register(sessions);
+        tickScheduler.start();
+    }
+    
+    /**
+     * Camera tracks: the player that streams them from the tracks directory and its command.
+     * Track files are only mapped when first played.
+     */
+    private void setupCameraTracks() {
+        this.trackPlayer = new CameraTrackPlayer(getLogger(), getDataDirectory().resolve("tracks"), packetCache,
+            (playerRef, packet) -> playerRef.getPacketHandler().writeNoCache((Packet) packet), worldDispatcher,
+            (track, viewers) -> restoreCameras("track " + track, viewers));
+        tickScheduler.register(trackPlayer);
+        metrics.gauge("track_viewers", "Players watching a camera track", trackPlayer::getViewerCount);
+        metrics.counterFunction("track_packets_sent_total", "Camera track keyframe packets sent to players", trackPlayer::getPacketsSent);
+        metrics.counterFunction("track_keyframes_built_total", "Camera track keyframe packets built, each shared by all viewers",
+            trackPlayer::getKeyframesBuilt);
+        try {
+            getCommandRegistry().registerCommand((AbstractCommand) new CameraTrackCommand(trackPlayer,
+                metrics.histogram("command_seconds", "command=\"cameratrack\"", "Command execution time")));
+        } catch (Exception e) {
+            getLogger().at(Level.SEVERE).withCause(e).log("CameraPlugin: Could not register camera track command");
+        }
+    }
+    
+    /**
+     * Give players that stopped watching a camera track or spectating their own camera back, spread over ticks.
+     * @param name Short name used in log messages
+     */
+    private void restoreCameras(@Nonnull String name, @Nonnull List<PlayerRef> players) {
+        broadcaster.submit(name, players, this::applyCameraDistance);
+    }
+    
+    /**
+     * Gauges for the running components and the /camerastats command.
+     */
+    private void setupMetrics() {
+        metrics.gauge("broadcasts_pending", "Bulk camera changes still in progress", broadcaster::getPendingCount);
+        metrics.gauge("join_queue_pending", "Joined players still waiting for their camera", joinQueue::getPendingCount);
+        metrics.gauge("sessions", "Player sessions in memory, online and offline", sessions::size);
+        metrics.gauge("sessions_offline", "Sessions of players that left and are not evicted yet", sessions::getOfflineCount);
+        metrics.counterFunction("session_hits_total", "Session lookups and rejoins served from memory", sessions::getHits);
+        metrics.counterFunction("session_misses_total", "Session lookups and joins that had to go to disk", sessions::getMisses);
+        metrics.counterFunction("session_expired_total", "Offline sessions evicted after the TTL", sessions::getExpired);
+        metrics.counterFunction("session_evicted_over_cap_total", "Offline sessions evicted early because of sessionMaxOffline",
+            sessions::getEvictedOverCap);
         
-        getLogger().at(Level.INFO).log("CameraPlugin: Camera zoom command registered! Players can use /camerazoom <distance>");
+        // Show the metrics in game
+        try {
+            getCommandRegistry().registerCommand((AbstractCommand) new CameraStatsCommand(metrics,
+                metrics.histogram("command_seconds", "command=\"camerastats\"", "Command execution time")));
+        } catch (Exception e) {
+            getLogger().at(Level.SEVERE).withCause(e).log("CameraPlugin: Could not register camera stats command");
+        }
     }
     
     /**
      * Called when plugin is shutting down.
+     * Camera resets (one step per world, run on that world's thread) and the flushes of persistent
+     * state run in parallel and the whole shutdown is bounded by shutdownTimeoutMillis from the config.
      */
     @Override
     protected void shutdown() {
         getLogger().at(Level.INFO).log("CameraPlugin Plugin disabled!");
+        long timeoutMillis = configManager.get().getShutdownTimeoutMillis();
+        
+        configManager.close();
+        metricsServer.stop();
         
-        // Reset camera for all players
+        // Stop any bulk camera changes that are still in progress
+        if (tickScheduler != null) {
+            tickScheduler.stop();
+            broadcaster.cancelAll();
+        }
+        
+        ParallelShutdown steps = new ParallelShutdown(getLogger());
+        
+        // Reset camera for all players, one step per world keyed by its UUID (names need not be unique), all with the shared reset packet
+        AtomicInteger camerasReset = new AtomicInteger();
+        Map<UUID, List<PlayerRef>> playersByWorld = new HashMap<>();
         if (Universe.get() != null) {
-            Universe.get().getPlayers().forEach(this::resetCamera);
+            for (PlayerRef playerRef : Universe.get().getPlayers()) {
+                UUID worldUuid = playerRef.getWorldUuid();
+                playersByWorld.computeIfAbsent(worldUuid != null ? worldUuid : NO_WORLD, uuid -> new ArrayList<>()).add(playerRef);
+            }
+        }
+        playersByWorld.forEach((worldUuid, players) -> steps.add("cameras-" + worldUuid, () -> {
+            Runnable resets = () -> {
+                for (PlayerRef playerRef : players) {
+                    if (sendReset(playerRef)) {
+                        camerasReset.incrementAndGet();
+                    }
+                }
+            };
+            World world = findWorld(worldUuid);
+            if (world == null) {
+                // No world thread is ticking these players any more
+                resets.run();
+                return;
+            }
+            // The packets are written on the world thread; the step only waits, so a stuck world shows up as timed out
+            CompletableFuture<Void> done = new CompletableFuture<>();
+            world.execute(() -> {
+                try {
+                    resets.run();
+                } finally {
+                    done.complete(null);
+                }
+            });
+            done.join();
+        }));
+        
+        // Write pending item drop prevention changes and archived deaths to disk
+        if (preventDeathItemDropManager != null) {
+            steps.add("death-drop", () -> preventDeathItemDropManager.shutdown(timeoutMillis));
+        }
+        
+        // Write camera preferences to disk
+        if (profileStore != null) {
+            steps.add("camera-profiles", profileStore::close);
+        }
+        
+        ParallelShutdown.Result result = steps.run(timeoutMillis);
+        getLogger().at(Level.INFO).log("CameraPlugin: Shutdown took " + result.elapsedMillis() + " ms, reset "
+            + camerasReset.get() + " cameras in " + playersByWorld.size() + " worlds"
+            + (result.timedOut().isEmpty() ? "" : ", not finished within " + timeoutMillis + " ms: " + result.timedOut())
+            + (result.failed().isEmpty() ? "" : ", failed: " + result.failed())
+            + ". Camera packets sent: " + packetCache.getPacketsSent()
+            + ", suppressed: " + packetCache.getPacketsSuppressed()
+            + ", allocations saved: " + packetCache.getAllocationsSaved()
+            + ", bytes saved: " + packetCache.getBytesSaved());
+        
+        // Write out any queued log events last
+        pluginLog.close();
+    }
+    
+    /**
+     * Copy the bundled JFR settings profile into the data directory, replacing an older copy.
+     */
+    private void writeRecordingSettings() {
+        Path file = getDataDirectory().resolve(RECORDING_SETTINGS);
+        try (InputStream settings = CameraPlugin.class.getResourceAsStream("/" + RECORDING_SETTINGS)) {
+            if (settings != null) {
+                Files.createDirectories(file.getParent());
+                Files.copy(settings, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            getLogger().at(Level.WARNING).withCause(e).log("CameraPlugin: Could not write " + file);
+        }
+    }
+    
+    /**
+     * Apply a newly published config snapshot to the running components.
+     * Runs on the config watcher thread; every setter here only publishes new values, nothing waits for a world thread.
+     */
+    private void applyConfig(@Nonnull PluginConfig config) {
+        packetCache.configure(config.getShoulderOffsetDistance(), config.getCameraLerpSpeed());
+        broadcaster.setPacketsPerTick(config.getBroadcastPacketsPerTick());
+        tweenEngine.setKeyframeInterval(config.getTweenKeyframeInterval());
+        tweenEngine.setMaxPacketsPerTick(config.getTweenMaxPacketsPerTick());
+        tweenEngine.setKeyframeLerpSpeed(config.getTweenKeyframeLerpSpeed());
+        zoomCoalescer.setFlushIntervalTicks(config.getZoomFlushIntervalTicks());
+        zoomCoalescer.setRateLimit(config.getZoomBurst(), config.getZoomRefillPerSecond());
+        joinQueue.setPerTick(config.getJoinCameraPerTick());
+        joinQueue.setDelayTicks(config.getJoinCameraDelayTicks());
+        sessions.setTtlMillis(config.getSessionTtlSeconds() * 1000L);
+        sessions.setMaxOffline(config.getSessionMaxOffline());
+        metricsServer.configure(config.getMetricsBindAddress(), config.getMetricsPort());
+        pluginLog.setMinimumLevel(config.getLogLevel());
+        cameraLog.configure(1, config.getCameraLogMaxPerSecond());
+        if (followManager != null) {
+            followManager.configure(config.getFollowCameraDistance(), config.getFollowMoveThreshold(), config.getCameraLerpSpeed());
+        }
+        if (preventDeathItemDropManager != null) {
+            // PluginConfig.validate compiles the rules too, this only guards against a config that skipped it
+            try {
+                preventDeathItemDropManager.setRules(DeathDropRuleSet.compile(config.getDeathDropRules()));
+            } catch (IllegalArgumentException e) {
+                getLogger().at(Level.SEVERE).withCause(e).log("CameraPlugin: Invalid death drop rules, keeping the previous rules");
+            }
+            preventDeathItemDropManager.configureArchive(config.getDeathArchiveSegmentMegabytes() << 20, config.getDeathArchiveMaxSegments());
+        }
+    }
+    
+    /**
+     * Queue a joining player to get their saved or default camera.
+     * Applied later by the join queue, a few players per tick.
+     */
+    private void onPlayerConnect(@Nonnull PlayerConnectEvent event) {
+        sessions.connect(event.getPlayerRef().getUuid());
+        if (joinQueue != null) {
+            joinQueue.enqueue(event.getPlayerRef());
+        }
+        if (zoneManager != null) {
+            zoneManager.track(event.getPlayerRef());
+        }
+    }
+    
+    /**
+     * Drop per-player camera state when a player leaves.
+     */
+    private void onPlayerDisconnect(@Nonnull PlayerDisconnectEvent event) {
+        UUID playerUuid = event.getPlayerRef().getUuid();
+        packetCache.forget(playerUuid);
+        if (zoomCoalescer != null) {
+            zoomCoalescer.forget(playerUuid);
         }
+        if (tweenEngine != null) {
+            tweenEngine.cancel(playerUuid);
+        }
+        if (joinQueue != null) {
+            joinQueue.forget(playerUuid);
+        }
+        if (zoneManager != null) {
+            zoneManager.untrack(playerUuid);
+        }
+        if (trackPlayer != null) {
+            trackPlayer.forget(playerUuid);
+        }
+        if (followManager != null) {
+            followManager.forget(playerUuid);
+        }
+        // Saved state stays in the session until it expires, so a quick rejoin finds it
+        sessions.disconnect(playerUuid);
     }
     
     /**
-     * Apply camera zoom to a specific player using the default distance.
+     * Apply camera zoom to a specific player using the camera zone they are in,
+     * else their saved profile, or the default distance if they have none.
      */
     public void applyCameraDistance(@Nonnull PlayerRef playerRef) {
-        setCameraDistance(playerRef, this.defaultCameraDistance);
+        CameraZone zone = zoneManager != null ? zoneManager.getZone(playerRef.getUuid()) : null;
+        if (zone != null) {
+            setCameraDistance(playerRef, zone.distance(), zone.rightShoulder());
+            return;
+        }
+        
+        CameraProfile profile = getCameraProfile(playerRef);
+        if (profile != null) {
+            setCameraDistance(playerRef, profile);
+        } else {
+            setCameraDistance(playerRef, getDefaultCameraDistance());
+        }
+    }
+    
+    /**
+     * Called when a player enters or leaves a camera zone.
+     */
+    private void applyCameraZone(@Nonnull PlayerRef playerRef, @Nullable CameraZone zone) {
+        if (zone != null) {
+            setCameraDistance(playerRef, zone.distance(), zone.rightShoulder());
+        } else {
+            // Back to the player's own camera
+            applyCameraDistance(playerRef);
+        }
+    }
+    
+    /**
+     * Set camera zoom for a player and save it as their preferred distance.
+     * @param playerRef The player reference
+     * @param distance The camera distance (zoom level). Lower = closer, Higher = farther
+     * @return true if the player's camera shows the distance, false if the player left or a camera
+     *         track or spectator camera owns their camera (the distance is still saved then)
+     */
+    public boolean setPreferredCameraDistance(@Nonnull PlayerRef playerRef, float distance) {
+        CameraProfile profile = savePreferredCameraDistance(playerRef, distance);
+        if (profile == null) {
+            return false;
+        }
+        setCameraDistance(playerRef, profile);
+        return !isCameraTaken(playerRef.getUuid());
+    }
+    
+    /**
+     * Set how fast a player's camera moves and turns to new settings and save it in their profile.
+     * @param playerRef The player reference
+     * @param positionLerpSpeed How fast the camera moves to its new position, or CameraProfile.DEFAULT_LERP_SPEED for the configured speed
+     * @param rotationLerpSpeed How fast the camera turns to its new rotation, or CameraProfile.DEFAULT_LERP_SPEED for the configured speed
+     * @throws IllegalArgumentException if a lerp speed is negative or greater than 10
+     */
+    public void setPreferredCameraLerpSpeeds(@Nonnull PlayerRef playerRef, float positionLerpSpeed, float rotationLerpSpeed) {
+        // Same upper bound as cameraLerpSpeed in config.json
+        if (!(positionLerpSpeed >= 0.0f && positionLerpSpeed <= 10.0f) || !(rotationLerpSpeed >= 0.0f && rotationLerpSpeed <= 10.0f)) {
+            throw new IllegalArgumentException("Lerp speeds must be between 0 and 10");
+        }
+        if (!playerRef.isValid()) {
+            return;
+        }
+        
+        CameraProfile profile = getCameraProfile(playerRef);
+        profile = (profile != null ? profile : CameraProfile.of(getDefaultCameraDistance(), true)).withLerpSpeeds(positionLerpSpeed, rotationLerpSpeed);
+        saveCameraProfile(playerRef, profile);
+        applyCameraDistance(playerRef);
+    }
+    
+    /**
+     * Set the camera distance of many players, spread over several ticks like
+     * {@link #setCameraZoomForAllPlayers}. Their shoulder and lerp speeds are kept.
+     * Nothing is saved, only a player's own /camerazoom changes their preferred distance,
+     * and nothing is logged per player.
+     * @param name Short name used in log messages
+     * @param players The players to change
+     * @param distance The camera distance (zoom level)
+     * @return The broadcast handle, with progress and a completion future
+     */
+    @Nonnull
+    public CameraBroadcaster.Broadcast<PlayerRef> setCameraDistance(@Nonnull String name, @Nonnull Collection<PlayerRef> players, float distance) {
+        return broadcaster.submit(name, players, playerRef -> {
+            CameraProfile profile = getCameraProfile(playerRef);
+            sendCameraDistance(playerRef, profile != null ? profile.withDistance(distance) : CameraProfile.of(distance, true));
+        });
+    }
+    
+    /**
+     * Save a new preferred distance in the player's profile.
+     * @return The saved profile, or null if the player is no longer valid
+     */
+    @Nullable
+    private CameraProfile savePreferredCameraDistance(@Nonnull PlayerRef playerRef, float distance) {
+        if (!playerRef.isValid()) {
+            return null;
+        }
+        
+        CameraProfile profile = getCameraProfile(playerRef);
+        profile = profile != null ? profile.withDistance(distance) : CameraProfile.of(distance, true);
+        saveCameraProfile(playerRef, profile);
+        return profile;
+    }
+    
+    /**
+     * Write a profile to the profile store and the player's session.
+     */
+    private void saveCameraProfile(@Nonnull PlayerRef playerRef, @Nonnull CameraProfile profile) {
+        if (profileStore != null) {
+            profileStore.put(playerRef.getUuid(), profile);
+        }
+        PlayerSessionRegistry.Session session = sessions.get(playerRef.getUuid());
+        if (session != null) {
+            session.setCameraProfile(profile);
+        }
+    }
+    
+    /**
+     * Get the saved camera profile of a player.
+     * @return The profile, or null if the player has none
+     */
+    @Nullable
+    public CameraProfile getCameraProfile(@Nonnull PlayerRef playerRef) {
+        PlayerSessionRegistry.Session session = sessions.get(playerRef.getUuid());
+        if (session == null) {
+            return loadCameraProfile(playerRef.getUuid());
+        }
+        return session.getCameraProfile(this::loadCameraProfile);
+    }
+    
+    /**
+     * Read a camera profile from the profile store.
+     */
+    @Nullable
+    private CameraProfile loadCameraProfile(@Nonnull UUID playerUuid) {
+        return profileStore != null ? profileStore.get(playerUuid) : null;
     }
     
     /**
@@ -113,86 +653,321 @@ public class CameraPlugin extends JavaPlugin {
      * @param rightShoulder true for right shoulder, false for left shoulder
      */
     public void setCameraDistance(@Nonnull PlayerRef playerRef, float distance, boolean rightShoulder) {
+        if (sendCameraDistance(playerRef, distance, rightShoulder)) {
+            pluginLog.log(Level.INFO, cameraLog, "CameraPlugin: Set camera zoom to %s for player %s", distance, playerRef.getUsername());
+        }
+    }
+    
+    /**
+     * Set the camera of a player from a camera profile, including its lerp speeds.
+     * @param playerRef The player reference
+     * @param profile The camera settings to apply
+     */
+    public void setCameraDistance(@Nonnull PlayerRef playerRef, @Nonnull CameraProfile profile) {
+        if (sendCameraDistance(playerRef, profile)) {
+            pluginLog.log(Level.INFO, cameraLog, "CameraPlugin: Set camera zoom to %s for player %s", profile.distance(), playerRef.getUsername());
+        }
+    }
+    
+    /**
+     * Send a camera distance to a player without logging it.
+     * @return true if a packet was sent
+     */
+    private boolean sendCameraDistance(@Nonnull PlayerRef playerRef, float distance, boolean rightShoulder) {
+        return sendCameraDistance(playerRef, packetCache.template(distance, rightShoulder), rightShoulder);
+    }
+    
+    /**
+     * Send the camera of a profile to a player without logging it.
+     * @return true if a packet was sent
+     */
+    private boolean sendCameraDistance(@Nonnull PlayerRef playerRef, @Nonnull CameraProfile profile) {
+        return sendCameraDistance(playerRef, packetCache.template(profile), profile.rightShoulder());
+    }
+    
+    /**
+     * Send a camera template to a player without logging it, cancelling any running transition.
+     * @return true if a packet was sent
+     */
+    private boolean sendCameraDistance(@Nonnull PlayerRef playerRef, @Nonnull CameraPacketCache.Template template, boolean rightShoulder) {
+        if (!playerRef.isValid()) {
+            return false;
+        }
+        
+        // A direct change wins over a running transition
+        if (tweenEngine != null) {
+            tweenEngine.cancel(playerRef.getUuid());
+        }
+        
+        // Allocation is removed by the JIT when the event is disabled
+        CameraSendEvent event = new CameraSendEvent();
+        event.begin();
+        
+        // Shared, pre-built packet for this distance, shoulder and lerp speeds
+        boolean sent = sendCameraTemplate(playerRef, template);
+        
+        if (event.shouldCommit()) {
+            event.player = playerRef.getUsername();
+            event.distance = template.getDistance();
+            event.rightShoulder = rightShoulder;
+            event.sent = sent;
+            event.commit();
+        }
+        return sent;
+    }
+    
+    /**
+     * Smoothly move a player's camera to a new distance and shoulder over time.
+     * The transition starts from the last camera sent to the player (or the default distance).
+     * @param playerRef The player reference
+     * @param distance The target camera distance
+     * @param rightShoulder true for right shoulder, false for left shoulder
+     * @param seconds Length of the transition
+     */
+    public void tweenCameraDistance(@Nonnull PlayerRef playerRef, float distance, boolean rightShoulder, float seconds) {
         if (!playerRef.isValid()) {
             return;
         }
         
-        ServerCameraSettings cameraSettings = new ServerCameraSettings();
-        cameraSettings.distance = distance;
-        cameraSettings.positionLerpSpeed = 1.0f; // Smooth transition speed
-        cameraSettings.rotationLerpSpeed = 1.0f;
-        cameraSettings.isFirstPerson = false; // Third-person view
-        cameraSettings.displayCursor = true;
-        cameraSettings.displayReticle = true;
-        cameraSettings.allowPitchControls = true; // Allow mouse pitch/yaw control
-        cameraSettings.eyeOffset = true; // Use eye offset for proper third-person positioning
-        // Set shoulder offset for third-person camera
-        // X offset: positive = right shoulder, negative = left shoulder
-        // Adjust SHOULDER_OFFSET_DISTANCE constant to match game's default if needed
-        double shoulderOffset = rightShoulder ? SHOULDER_OFFSET_DISTANCE : -SHOULDER_OFFSET_DISTANCE;
-        cameraSettings.positionOffset = new Position(shoulderOffset, 0.0, 0.0);
-        // Keep defaults for rotation and look that follow the player:
-        // - rotationType = RotationType.AttachedToPlusOffset (default) - follows player rotation
-        // - applyLookType = ApplyLookType.LocalPlayerLookOrientation (default) - applies player look
-        // - mouseInputType = MouseInputType.LookAtTarget (default) - mouse controls look direction
-        // - positionDistanceOffsetType = PositionDistanceOffsetType.DistanceOffset (default) - uses distance field
-        // - attachedToType = AttachedToType.LocalPlayer (default) - attached to local player
-        // - movementForceRotationType = MovementForceRotationType.AttachedToHead (default) - follows head rotation
-
-        // int sa = ClientCameraView.VALUES.length;
-
-        // Send the camera settings to the client
-        // isLocked = false allows the player to control the camera with mouse
-        playerRef.getPacketHandler().writeNoCache(
-            (Packet) new SetServerCamera(ClientCameraView.Custom, false, cameraSettings)
-        );
+        CameraPacketCache.Template current = packetCache.getLastSent(playerRef.getUuid());
+        float fromDistance = current != null && current != CameraPacketCache.RESET_TEMPLATE ? current.getDistance() : getDefaultCameraDistance();
+        double fromOffset = current != null && current != CameraPacketCache.RESET_TEMPLATE ? current.getShoulderOffset() : packetCache.shoulderOffset(true);
+        int durationTicks = Math.round(seconds * 1000.0f / tickScheduler.getTickMillis());
+        tweenEngine.start(playerRef, fromDistance, fromOffset, distance, packetCache.shoulderOffset(rightShoulder), durationTicks);
+    }
+    
+    /**
+     * Send a camera template to a player unless they already have it, are watching a camera track or are spectating.
+     * @return true if the packet was sent, false if it was suppressed
+     */
+    boolean sendCameraTemplate(@Nonnull PlayerRef playerRef, @Nonnull CameraPacketCache.Template template) {
+        // A camera track or spectator camera owns the camera until it ends, the player's own camera is applied after it
+        if (isCameraTaken(playerRef.getUuid())) {
+            return false;
+        }
         
-        getLogger().at(Level.INFO).log("CameraPlugin: Set camera zoom to " + distance + " for player");
+        // Skip the send if the player already has exactly this camera
+        if (!packetCache.markSent(playerRef.getUuid(), template)) {
+            packetCache.recordSuppressed(template);
+            return false;
+        }
+        
+        // Send the camera settings to the client
+        playerRef.getPacketHandler().writeNoCache((Packet) template.getPacket());
+        packetCache.recordSent(template);
+        return true;
+    }
+    
+    /**
+     * Whether a camera track or spectator camera owns the camera of a player.
+     */
+    private boolean isCameraTaken(@Nonnull UUID playerUuid) {
+        return (trackPlayer != null && trackPlayer.isWatching(playerUuid))
+            || (followManager != null && followManager.isFollowing(playerUuid));
     }
     
     /**
      * Reset camera to default for a player.
      */
     public void resetCamera(@Nonnull PlayerRef playerRef) {
+        if (resetCameraQuietly(playerRef)) {
+            pluginLog.log(Level.INFO, cameraLog, "CameraPlugin: Reset camera for player %s", playerRef.getUsername());
+        }
+    }
+    
+    /**
+     * Reset a player's camera without logging it.
+     * @return true if the reset packet was sent
+     */
+    private boolean resetCameraQuietly(@Nonnull PlayerRef playerRef) {
         if (!playerRef.isValid()) {
-            return;
+            return false;
         }
         
-        playerRef.getPacketHandler().writeNoCache(
-            (Packet) new SetServerCamera(ClientCameraView.Custom, false, null)
-        );
+        if (tweenEngine != null) {
+            tweenEngine.cancel(playerRef.getUuid());
+        }
+        
+        CameraResetEvent event = new CameraResetEvent();
+        event.begin();
+        
+        boolean sent = sendReset(playerRef);
+        
+        if (event.shouldCommit()) {
+            event.player = playerRef.getUsername();
+            event.sent = sent;
+            event.commit();
+        }
+        return sent;
+    }
+    
+    /**
+     * Get a loaded world by UUID.
+     * @return The world, or null if it is not loaded or the UUID is NO_WORLD
+     */
+    @Nullable
+    private static World findWorld(@Nonnull UUID worldUuid) {
+        return worldUuid.equals(NO_WORLD) || Universe.get() == null ? null : Universe.get().getWorld(worldUuid);
+    }
+    
+    /**
+     * Send the shared reset packet to a player unless their camera is already reset.
+     * @return true if the packet was sent
+     */
+    private boolean sendReset(@Nonnull PlayerRef playerRef) {
+        if (!playerRef.isValid() || !packetCache.markReset(playerRef.getUuid())) {
+            return false;
+        }
         
-        getLogger().at(Level.INFO).log("CameraPlugin: Reset camera for player");
+        playerRef.getPacketHandler().writeNoCache((Packet) CameraPacketCache.RESET_PACKET);
+        return true;
     }
     
     /**
      * Set camera zoom for all online players.
+     * The change is spread over several ticks, see {@link CameraBroadcaster}, and every batch
+     * runs on the world threads of its players, see {@link WorldDispatcher}.
+     * @return The broadcast handle, with progress and a completion future
      */
-    public void setCameraZoomForAllPlayers(float distance) {
-        Universe.get().getPlayers().forEach(playerRef -> {
-            setCameraDistance(playerRef, distance);
-        });
+    @Nonnull
+    public CameraBroadcaster.Broadcast<PlayerRef> setCameraZoomForAllPlayers(float distance) {
+        // Logged once by the broadcaster when it is done, not per player
+        return broadcaster.submit("zoom " + distance, Universe.get().getPlayers(), playerRef -> sendCameraDistance(playerRef, distance, true));
     }
     
     /**
      * Reset camera for all online players.
+     * The change is spread over several ticks, see {@link CameraBroadcaster}, and every batch
+     * runs on the world threads of its players, see {@link WorldDispatcher}.
+     * @return The broadcast handle, with progress and a completion future
      */
-    public void resetCameraForAllPlayers() {
-        Universe.get().getPlayers().forEach(this::resetCamera);
+    @Nonnull
+    public CameraBroadcaster.Broadcast<PlayerRef> resetCameraForAllPlayers() {
+        return broadcaster.submit("reset", Universe.get().getPlayers(), this::resetCameraQuietly);
     }
     
     /**
-     * Set the default camera distance (used for new players).
+     * Set the default camera distance (used for new players) until the server stops.
+     * This is a runtime override: it is not written to config.json, and it is kept when
+     * config.json is reloaded as long as the reloaded min and max distance allow it.
+     * @throws IllegalArgumentException if the distance is outside minCameraDistance and maxCameraDistance
      */
     public void setDefaultCameraDistance(float distance) {
-        this.defaultCameraDistance = distance;
+        configManager.overrideDefaultCameraDistance(distance);
     }
     
     /**
      * Get the default camera distance.
      */
     public float getDefaultCameraDistance() {
-        return this.defaultCameraDistance;
+        return configManager.get().getDefaultCameraDistance();
+    }
+    
+    /**
+     * Get the current config snapshot. Cheap enough to call on every use; do not cache it.
+     */
+    @Nonnull
+    public PluginConfig getConfig() {
+        return configManager.get();
+    }
+    
+    /**
+     * Get the broadcast engine used for bulk camera changes.
+     */
+    @Nonnull
+    public CameraBroadcaster<PlayerRef> getBroadcaster() {
+        return this.broadcaster;
+    }
+    
+    /**
+     * Get the registry of per-player session state.
+     */
+    @Nonnull
+    public PlayerSessionRegistry getSessions() {
+        return this.sessions;
+    }
+    
+    /**
+     * Get the dispatcher that runs player work on the players' world threads.
+     */
+    @Nonnull
+    public WorldDispatcher getWorldDispatcher() {
+        return this.worldDispatcher;
+    }
+    
+    /**
+     * Get the per-player /camerazoom coalescer.
+     */
+    @Nonnull
+    public CameraZoomCoalescer getZoomCoalescer() {
+        return this.zoomCoalescer;
+    }
+    
+    /**
+     * Get the queue that applies cameras to joining players.
+     */
+    @Nonnull
+    public CameraJoinQueue getJoinQueue() {
+        return this.joinQueue;
+    }
+    
+    /**
+     * Get the camera zone manager.
+     * @return The manager, or null if camera zones are switched off
+     */
+    @Nullable
+    public CameraZoneManager getZoneManager() {
+        return this.zoneManager;
+    }
+    
+    /**
+     * Get the camera track player.
+     * @return The player, or null if camera tracks are switched off
+     */
+    @Nullable
+    public CameraTrackPlayer getTrackPlayer() {
+        return this.trackPlayer;
+    }
+    
+    /**
+     * Get the spectator camera manager.
+     * @return The manager, or null if spectator cameras are switched off
+     */
+    @Nullable
+    public CameraFollowManager getFollowManager() {
+        return this.followManager;
+    }
+    
+    /**
+     * Get the camera transition engine.
+     */
+    @Nonnull
+    public CameraTweenEngine getTweenEngine() {
+        return this.tweenEngine;
+    }
+    
+    /**
+     * Get the shared plugin tick driver.
+     */
+    @Nonnull
+    public TickScheduler getTickScheduler() {
+        return this.tickScheduler;
+    }
+    
+    /**
+     * Get the asynchronous hot path logger.
+     */
+    @Nonnull
+    public PluginLog getPluginLog() {
+        return this.pluginLog;
+    }
+    
+    /**
+     * Get the camera packet cache (templates and send counters).
+     */
+    @Nonnull
+    public CameraPacketCache getPacketCache() {
+        return this.packetCache;
     }
     
     /**
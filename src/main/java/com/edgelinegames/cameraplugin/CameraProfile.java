@@ -0,0 +1,51 @@
+package com.edgelinegames.cameraplugin;
+
+/**
+ * Saved camera preferences for a single player.
+ * A lerp speed of DEFAULT_LERP_SPEED means the player never chose one; cameraLerpSpeed
+ * from config.json is used for it instead.
+ * @param distance The camera distance (zoom level)
+ * @param rightShoulder true for right shoulder, false for left shoulder
+ * @param positionLerpSpeed How fast the camera moves to its new position
+ * @param rotationLerpSpeed How fast the camera turns to its new rotation
+ */
+public record CameraProfile(float distance, boolean rightShoulder, float positionLerpSpeed, float rotationLerpSpeed) {
+
+    // Stored for lerp speeds the player did not choose
+    public static final float DEFAULT_LERP_SPEED = 0.0f;
+
+    /**
+     * Create a profile that uses the configured lerp speeds.
+     */
+    public static CameraProfile of(float distance, boolean rightShoulder) {
+        return new CameraProfile(distance, rightShoulder, DEFAULT_LERP_SPEED, DEFAULT_LERP_SPEED);
+    }
+
+    /**
+     * Copy of this profile with a different distance.
+     */
+    public CameraProfile withDistance(float distance) {
+        return new CameraProfile(distance, rightShoulder, positionLerpSpeed, rotationLerpSpeed);
+    }
+
+    /**
+     * Copy of this profile with different lerp speeds.
+     */
+    public CameraProfile withLerpSpeeds(float positionLerpSpeed, float rotationLerpSpeed) {
+        return new CameraProfile(distance, rightShoulder, positionLerpSpeed, rotationLerpSpeed);
+    }
+
+    /**
+     * Whether the player chose a position lerp speed.
+     */
+    public boolean hasPositionLerpSpeed() {
+        return positionLerpSpeed > DEFAULT_LERP_SPEED;
+    }
+
+    /**
+     * Whether the player chose a rotation lerp speed.
+     */
+    public boolean hasRotationLerpSpeed() {
+        return rotationLerpSpeed > DEFAULT_LERP_SPEED;
+    }
+}
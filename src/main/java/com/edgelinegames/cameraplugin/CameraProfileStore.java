@@ -0,0 +1,582 @@
+package com.edgelinegames.cameraplugin;
+
+import com.hypixel.hytale.logger.HytaleLogger;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.logging.Level;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * Persistent per-player camera profiles stored in a memory-mapped file.
+ *
+ * The file is a header followed by an open-addressing hash table of fixed-size records,
+ * so the table on disk is the index: a lookup hashes the UUID, probes a few slots and reads
+ * the fields straight out of the mapping. Nothing is deserialized at startup and nothing
+ * per player is kept on the heap.
+ *
+ * When the table gets more than 70% full it is doubled on a background thread, in place:
+ * the used records are first saved to a side file and the larger table is built on the heap,
+ * then the same file is extended and the table copied into it. Building on the heap is a
+ * transient allocation of the whole doubled table (capacity x 40 bytes, 5 MB at 131072 slots),
+ * dropped once it is copied. The file is never replaced or truncated while it is mapped, and
+ * an interrupted grow is finished from the side file on the next open. The side file is
+ * written and synced without holding the lock, so gets only wait for the copy into the
+ * mapping. Puts made while a grow runs also append their record to the side file, so a crash
+ * at any point of the grow replays every profile that reached the mapping. If the table
+ * fills up to 90% before the grow is done, new players are not saved.
+ *
+ * File layout (big endian):
+ *   header: magic(int) version(int) capacity(int) count(int), padded to HEADER_SIZE
+ *   record: uuidMost(long) uuidLeast(long) flags(int) distance(float)
+ *           positionLerpSpeed(float) rotationLerpSpeed(float) updatedAt(long)
+ * A lerp speed of 0 means the player did not choose one, see CameraProfile.
+ * Side file: magic(int) count(int), then count records copied from the table, then the
+ * records put while the grow ran. A torn last record is ignored.
+ */
+public class CameraProfileStore implements AutoCloseable {
+
+    private static final int MAGIC = 0x43504653; // "CPFS"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 64;
+    private static final int GROW_HEADER_SIZE = 8;
+    private static final int RECORD_SIZE = 40;
+    private static final int DEFAULT_CAPACITY = 1 << 16;
+    private static final float GROW_LOAD = 0.7f;
+    private static final float MAX_LOAD = 0.9f;
+
+    // Record field offsets
+    private static final int OFF_MOST = 0;
+    private static final int OFF_LEAST = 8;
+    private static final int OFF_FLAGS = 16;
+    private static final int OFF_DISTANCE = 20;
+    private static final int OFF_POSITION_LERP = 24;
+    private static final int OFF_ROTATION_LERP = 28;
+    private static final int OFF_UPDATED = 32;
+
+    // Record flags
+    private static final int FLAG_USED = 1;
+    private static final int FLAG_RIGHT_SHOULDER = 1 << 1;
+
+    private final HytaleLogger logger;
+    private final Path file;
+    private final Path growFile;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final AtomicBoolean growing = new AtomicBoolean();
+    // Records put while a grow runs (null when no grow runs), guarded by the write lock
+    private ByteBuffer lateRecords;
+    // Side file of the running grow, where the next late record goes and why one could not be written, guarded by the write lock
+    private FileChannel growChannel;
+    private long lateOffset;
+    private IOException lateFailure;
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private int capacity;
+    private int count;
+    private boolean closed;
+
+    private CameraProfileStore(@Nonnull HytaleLogger logger, @Nonnull Path file) {
+        this.logger = logger;
+        this.file = file;
+        this.growFile = file.resolveSibling(file.getFileName() + ".grow");
+    }
+
+    /**
+     * Open (or create) a profile store.
+     * @param logger The logger to use for logging messages
+     * @param file The backing file
+     * @return The opened store
+     * @throws IOException if the file cannot be opened or is not a profile store
+     */
+    @Nonnull
+    public static CameraProfileStore open(@Nonnull HytaleLogger logger, @Nonnull Path file) throws IOException {
+        CameraProfileStore store = new CameraProfileStore(logger, file);
+        long start = System.nanoTime();
+        store.map();
+        store.finishGrow();
+        logger.at(Level.INFO).log("CameraProfileStore: Opened " + store.count + " profiles in "
+            + (System.nanoTime() - start) / 1_000_000 + " ms");
+        return store;
+    }
+
+    /**
+     * Look up the profile for a player.
+     * @param playerUuid The player UUID
+     * @return The stored profile, or null if the player has none
+     */
+    @Nullable
+    public CameraProfile get(@Nonnull UUID playerUuid) {
+        lock.readLock().lock();
+        try {
+            int slot = findSlot(buffer, capacity, playerUuid.getMostSignificantBits(), playerUuid.getLeastSignificantBits());
+            int position = recordPosition(slot);
+            int flags = buffer.getInt(position + OFF_FLAGS);
+            if ((flags & FLAG_USED) == 0) {
+                return null;
+            }
+            return new CameraProfile(
+                buffer.getFloat(position + OFF_DISTANCE),
+                (flags & FLAG_RIGHT_SHOULDER) != 0,
+                buffer.getFloat(position + OFF_POSITION_LERP),
+                buffer.getFloat(position + OFF_ROTATION_LERP)
+            );
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Save the profile for a player, replacing any previous one.
+     * @param playerUuid The player UUID
+     * @param profile The profile to save
+     */
+    public void put(@Nonnull UUID playerUuid, @Nonnull CameraProfile profile) {
+        boolean grow;
+        lock.writeLock().lock();
+        try {
+            if (closed) {
+                return;
+            }
+            long most = playerUuid.getMostSignificantBits();
+            long least = playerUuid.getLeastSignificantBits();
+            int position = recordPosition(findSlot(buffer, capacity, most, least));
+            boolean stored = true;
+            if ((buffer.getInt(position + OFF_FLAGS) & FLAG_USED) == 0) {
+                if (count + 1 > capacity * MAX_LOAD) {
+                    // The grow has not caught up yet, the profile stays in the player's session only
+                    stored = false;
+                } else {
+                    count++;
+                    buffer.putInt(12, count);
+                }
+            }
+            if (stored) {
+                writeRecord(buffer, position, most, least, profile, System.currentTimeMillis());
+                if (lateRecords != null) {
+                    // A grow is running and has already copied the records: save this one to the side file
+                    // and let the grow add it before the swap
+                    recordLate(position);
+                }
+            } else {
+                logger.at(Level.WARNING).log("CameraProfileStore: Profile store is full, camera profile of " + playerUuid + " not saved");
+            }
+            grow = count > capacity * GROW_LOAD;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        if (grow) {
+            scheduleGrow();
+        }
+    }
+
+    /**
+     * Get the number of stored profiles.
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return count;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Write dirty pages of the mapping, and the records put during a running grow, to disk.
+     */
+    public void flush() {
+        lock.readLock().lock();
+        try {
+            if (!closed) {
+                buffer.force();
+                if (growChannel != null) {
+                    growChannel.force(false);
+                }
+            }
+        } catch (IOException e) {
+            logger.at(Level.WARNING).withCause(e).log("CameraProfileStore: Could not flush the profiles put during the grow");
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        lock.writeLock().lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            buffer.force();
+            channel.close();
+        } catch (IOException e) {
+            logger.at(Level.WARNING).withCause(e).log("CameraProfileStore: Could not close profile store");
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void map() throws IOException {
+        FileChannel fileChannel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            long size = fileChannel.size();
+            int fileCapacity = DEFAULT_CAPACITY;
+            if (size > 0) {
+                // Read the header through the channel, a mapping of it would stay alive until it is collected
+                ByteBuffer header = ByteBuffer.allocate(16);
+                if (size < HEADER_SIZE || fileChannel.read(header, 0) < header.capacity()
+                    || header.getInt(0) != MAGIC || header.getInt(4) != VERSION) {
+                    throw new IOException("Not a camera profile store: " + file);
+                }
+                fileCapacity = header.getInt(8);
+                // The probe mask only works for a power of two
+                if (fileCapacity <= 0 || Integer.bitCount(fileCapacity) != 1) {
+                    throw new IOException("Camera profile store " + file + " has an invalid capacity: " + fileCapacity);
+                }
+            }
+
+            MappedByteBuffer mapped = fileChannel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) fileCapacity * RECORD_SIZE);
+            mapped.order(ByteOrder.BIG_ENDIAN);
+            if (size == 0) {
+                mapped.putInt(0, MAGIC);
+                mapped.putInt(4, VERSION);
+                mapped.putInt(8, fileCapacity);
+                mapped.putInt(12, 0);
+            }
+
+            this.channel = fileChannel;
+            this.buffer = mapped;
+            this.capacity = fileCapacity;
+            this.count = mapped.getInt(12);
+        } catch (IOException | RuntimeException e) {
+            fileChannel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Start a grow on a background thread unless one is already running.
+     */
+    private void scheduleGrow() {
+        if (!growing.compareAndSet(false, true)) {
+            return;
+        }
+        Thread.ofVirtual().name("CameraPlugin-ProfileStore-Grow").start(() -> {
+            try {
+                grow();
+            } catch (IOException e) {
+                logger.at(Level.SEVERE).withCause(e).log("CameraProfileStore: Could not grow profile store");
+            } finally {
+                growing.set(false);
+            }
+        });
+    }
+
+    /**
+     * Double the table. The records are copied out under the read lock, the side file is written
+     * and synced and the new table is built on the heap without any lock; the write lock is only
+     * held to copy the built table into the extended mapping and swap it in.
+     * Records put while the grow runs are appended to the side file by put() as they arrive, and
+     * added to the new table before the swap.
+     */
+    private void grow() throws IOException {
+        long start = System.nanoTime();
+        FileChannel sideChannel = FileChannel.open(growFile, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+            StandardOpenOption.WRITE);
+        boolean swapped = false;
+        try {
+            int newCapacity;
+            ByteBuffer records;
+            lock.readLock().lock();
+            try {
+                if (closed || count <= capacity * GROW_LOAD) {
+                    return;
+                }
+                newCapacity = capacity << 1;
+                records = usedRecords();
+                // Puts need the write lock, so none can run between the copy and this
+                lateRecords = ByteBuffer.allocate(64 * RECORD_SIZE);
+                growChannel = sideChannel;
+                lateOffset = GROW_HEADER_SIZE + (long) records.remaining();
+            } finally {
+                lock.readLock().unlock();
+            }
+
+            // Save every record first, so a crash while the table is replaced loses nothing
+            writeGrowFile(sideChannel, records);
+            long newSize = HEADER_SIZE + (long) newCapacity * RECORD_SIZE;
+            if (channel.size() < newSize) {
+                // Extend with a write instead of letting map() resize the file, which fails while it is mapped on some platforms
+                channel.write(ByteBuffer.wrap(new byte[1]), newSize - 1);
+            }
+            Table table = buildTable(newCapacity, records);
+
+            MappedByteBuffer mapped = null;
+            while (mapped == null) {
+                ByteBuffer late;
+                lock.writeLock().lock();
+                try {
+                    if (closed) {
+                        return;
+                    }
+                    if (lateFailure != null) {
+                        throw new IOException("Could not save a profile put during the grow to " + growFile, lateFailure);
+                    }
+                    late = lateRecords.flip();
+                    if (!late.hasRemaining()) {
+                        mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, newSize);
+                        mapped.order(ByteOrder.BIG_ENDIAN);
+                        mapped.put(0, table.image(), 0, table.image().capacity());
+                        // The old mapping covers the start of the same file and is dropped with the buffer
+                        this.buffer = mapped;
+                        this.capacity = newCapacity;
+                        this.count = table.count();
+                        this.lateRecords = null;
+                        this.growChannel = null;
+                        swapped = true;
+                        continue;
+                    }
+                    lateRecords = ByteBuffer.allocate(64 * RECORD_SIZE);
+                } finally {
+                    lock.writeLock().unlock();
+                }
+                // Records put since the copy are already in the side file: add them, then try the swap again
+                table = table.with(late);
+            }
+
+            mapped.force();
+            sideChannel.close();
+            Files.delete(growFile);
+            logger.at(Level.INFO).log("CameraProfileStore: Grew profile store to " + newCapacity + " slots in "
+                + (System.nanoTime() - start) / 1_000_000 + " ms");
+        } finally {
+            if (!swapped) {
+                lock.writeLock().lock();
+                try {
+                    lateRecords = null;
+                    growChannel = null;
+                    lateFailure = null;
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            }
+            sideChannel.close();
+            if (!swapped) {
+                // The table was not touched, so the side file must not be replayed on the next open
+                Files.deleteIfExists(growFile);
+            }
+        }
+    }
+
+    /**
+     * Finish a grow that was interrupted by a crash, or drop a side file that was not completely written.
+     */
+    private void finishGrow() throws IOException {
+        if (!Files.exists(growFile)) {
+            return;
+        }
+
+        ByteBuffer records = null;
+        try (FileChannel growChannel = FileChannel.open(growFile, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(GROW_HEADER_SIZE);
+            long size = growChannel.size();
+            if (growChannel.read(header, 0) == GROW_HEADER_SIZE && header.getInt(0) == MAGIC
+                && size >= GROW_HEADER_SIZE + (long) header.getInt(4) * RECORD_SIZE) {
+                // The copied records and every whole record put after them
+                records = ByteBuffer.allocate((int) ((size - GROW_HEADER_SIZE) / RECORD_SIZE) * RECORD_SIZE);
+                long position = GROW_HEADER_SIZE;
+                while (records.hasRemaining()) {
+                    int read = growChannel.read(records, position);
+                    if (read < 0) {
+                        throw new IOException("Unexpected end of " + growFile);
+                    }
+                    position += read;
+                }
+                records.flip();
+            }
+        }
+
+        if (records != null) {
+            // The side file is complete, so the table may be half replaced: rebuild it again from the side file
+            int newCapacity = capacity;
+            while (records.remaining() / RECORD_SIZE > newCapacity * GROW_LOAD) {
+                newCapacity <<= 1;
+            }
+            Table table = buildTable(newCapacity, records);
+            long newSize = HEADER_SIZE + (long) newCapacity * RECORD_SIZE;
+            if (channel.size() < newSize) {
+                channel.write(ByteBuffer.wrap(new byte[1]), newSize - 1);
+            }
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, newSize);
+            mapped.order(ByteOrder.BIG_ENDIAN);
+            mapped.put(0, table.image(), 0, table.image().capacity());
+            mapped.force();
+            this.buffer = mapped;
+            this.capacity = newCapacity;
+            this.count = table.count();
+            logger.at(Level.WARNING).log("CameraProfileStore: Finished an interrupted grow, restored " + count + " profiles");
+        }
+        // Without a complete side file the table was not touched yet
+        Files.delete(growFile);
+    }
+
+    /**
+     * Copy every used record out of the table.
+     */
+    @Nonnull
+    private ByteBuffer usedRecords() {
+        ByteBuffer records = ByteBuffer.allocate(count * RECORD_SIZE);
+        for (int slot = 0; slot < capacity; slot++) {
+            int position = recordPosition(slot);
+            if ((buffer.getInt(position + OFF_FLAGS) & FLAG_USED) == 0) {
+                continue;
+            }
+            for (int i = 0; i < RECORD_SIZE; i += 4) {
+                records.putInt(buffer.getInt(position + i));
+            }
+        }
+        return records.flip();
+    }
+
+    /**
+     * Save a record written by put() while a grow is running to the side file, and keep it for
+     * the grow to add to the new table. Called under the write lock.
+     */
+    private void recordLate(int position) {
+        ByteBuffer record = buffer.slice(position, RECORD_SIZE);
+        if (lateRecords.remaining() < RECORD_SIZE) {
+            ByteBuffer larger = ByteBuffer.allocate(lateRecords.capacity() * 2);
+            lateRecords = larger.put(lateRecords.flip());
+        }
+        lateRecords.put(record.duplicate());
+        if (lateFailure != null) {
+            return;
+        }
+        try {
+            // Behind the copied records, which the grow may still be writing; replayed after them
+            writeFully(growChannel, record, lateOffset);
+            lateOffset += RECORD_SIZE;
+        } catch (IOException e) {
+            // The grow gives up before the swap, the old table still has the record
+            lateFailure = e;
+        }
+    }
+
+    /**
+     * Write the copied records to the side file. The header goes in last, so a torn file has no magic.
+     */
+    private static void writeGrowFile(@Nonnull FileChannel growChannel, @Nonnull ByteBuffer records) throws IOException {
+        writeFully(growChannel, records.duplicate(), GROW_HEADER_SIZE);
+        growChannel.force(true);
+        ByteBuffer header = ByteBuffer.allocate(GROW_HEADER_SIZE);
+        header.putInt(MAGIC).putInt(records.remaining() / RECORD_SIZE).flip();
+        writeFully(growChannel, header, 0);
+        growChannel.force(true);
+    }
+
+    private static void writeFully(@Nonnull FileChannel target, @Nonnull ByteBuffer data, long position) throws IOException {
+        while (data.hasRemaining()) {
+            position += target.write(data, position);
+        }
+    }
+
+    /**
+     * Build a table with the given capacity on the heap, including its header.
+     * Records later in the list replace earlier records of the same player.
+     */
+    @Nonnull
+    private static Table buildTable(int tableCapacity, @Nonnull ByteBuffer records) {
+        ByteBuffer image = ByteBuffer.allocate(HEADER_SIZE + tableCapacity * RECORD_SIZE);
+        image.putInt(0, MAGIC);
+        image.putInt(4, VERSION);
+        image.putInt(8, tableCapacity);
+        Table table = new Table(image, tableCapacity, 0);
+        return table.with(records);
+    }
+
+    /**
+     * A table being built on the heap for a grow.
+     * @param image Header and records, laid out like the file
+     * @param capacity Number of slots
+     * @param count Number of used slots
+     */
+    private record Table(@Nonnull ByteBuffer image, int capacity, int count) {
+
+        /**
+         * Add records to the table, replacing earlier records of the same players.
+         * @return The table with the new count
+         */
+        @Nonnull
+        Table with(@Nonnull ByteBuffer records) {
+            int used = count;
+            for (int offset = records.position(); offset < records.limit(); offset += RECORD_SIZE) {
+                if ((records.getInt(offset + OFF_FLAGS) & FLAG_USED) == 0) {
+                    // A hole left in the side file by a crash while records were appended
+                    continue;
+                }
+                long most = records.getLong(offset + OFF_MOST);
+                long least = records.getLong(offset + OFF_LEAST);
+                int target = recordPosition(findSlot(image, capacity, most, least));
+                if ((image.getInt(target + OFF_FLAGS) & FLAG_USED) == 0) {
+                    used++;
+                }
+                image.put(target, records, offset, RECORD_SIZE);
+            }
+            image.putInt(12, used);
+            return new Table(image, capacity, used);
+        }
+    }
+
+    /**
+     * Find the slot holding the given UUID, or the empty slot where it would go.
+     */
+    private static int findSlot(@Nonnull ByteBuffer table, int tableCapacity, long most, long least) {
+        int mask = tableCapacity - 1;
+        int slot = hash(most, least) & mask;
+        while (true) {
+            int position = recordPosition(slot);
+            if ((table.getInt(position + OFF_FLAGS) & FLAG_USED) == 0) {
+                return slot;
+            }
+            if (table.getLong(position + OFF_MOST) == most && table.getLong(position + OFF_LEAST) == least) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    private static void writeRecord(@Nonnull MappedByteBuffer table, int position, long most, long least,
+                                    @Nonnull CameraProfile profile, long updatedAt) {
+        table.putLong(position + OFF_MOST, most);
+        table.putLong(position + OFF_LEAST, least);
+        table.putFloat(position + OFF_DISTANCE, profile.distance());
+        table.putFloat(position + OFF_POSITION_LERP, profile.positionLerpSpeed());
+        table.putFloat(position + OFF_ROTATION_LERP, profile.rotationLerpSpeed());
+        table.putLong(position + OFF_UPDATED, updatedAt);
+        // Flags last so a half written record is never seen as used after a crash
+        table.putInt(position + OFF_FLAGS, FLAG_USED | (profile.rightShoulder() ? FLAG_RIGHT_SHOULDER : 0));
+    }
+
+    private static int recordPosition(int slot) {
+        return HEADER_SIZE + slot * RECORD_SIZE;
+    }
+
+    private static int hash(long most, long least) {
+        long h = most ^ least;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        return (int) h;
+    }
+}
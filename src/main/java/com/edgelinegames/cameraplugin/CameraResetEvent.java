@@ -0,0 +1,26 @@
+package com.edgelinegames.cameraplugin;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR event for a camera reset sent to one player by CameraPlugin.resetCamera.
+ */
+@Name("cameraplugin.CameraReset")
+@Label("Camera Reset")
+@Category({"CameraPlugin", "Camera"})
+@Description("A camera reset for one player")
+@StackTrace(false)
+class CameraResetEvent extends Event {
+
+    @Label("Player")
+    String player;
+
+    @Label("Sent")
+    @Description("False if the player's camera was already reset and no packet was sent")
+    boolean sent;
+}
@@ -0,0 +1,33 @@
+package com.edgelinegames.cameraplugin;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR event for a camera change sent to one player by CameraPlugin.setCameraDistance.
+ * Costs nothing while no recording has it enabled (see cameraplugin.jfc).
+ */
+@Name("cameraplugin.CameraSend")
+@Label("Camera Send")
+@Category({"CameraPlugin", "Camera"})
+@Description("A camera distance change for one player")
+@StackTrace(false)
+class CameraSendEvent extends Event {
+
+    @Label("Player")
+    String player;
+
+    @Label("Distance")
+    float distance;
+
+    @Label("Right Shoulder")
+    boolean rightShoulder;
+
+    @Label("Sent")
+    @Description("False if the player already had this camera and no packet was sent")
+    boolean sent;
+}
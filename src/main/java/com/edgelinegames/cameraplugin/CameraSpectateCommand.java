@@ -0,0 +1,184 @@
+package com.edgelinegames.cameraplugin;
+
+import com.hypixel.hytale.component.Ref;
+import com.hypixel.hytale.component.Store;
+import com.hypixel.hytale.server.core.Message;
+import com.hypixel.hytale.server.core.command.system.CommandContext;
+import com.hypixel.hytale.server.core.command.system.arguments.system.OptionalArg;
+import com.hypixel.hytale.server.core.command.system.arguments.system.RequiredArg;
+import com.hypixel.hytale.server.core.command.system.arguments.types.ArgTypes;
+import com.hypixel.hytale.server.core.command.system.basecommands.AbstractPlayerCommand;
+import com.hypixel.hytale.server.core.universe.PlayerRef;
+import com.hypixel.hytale.server.core.universe.Universe;
+import com.hypixel.hytale.server.core.universe.world.World;
+import com.hypixel.hytale.server.core.universe.world.storage.EntityStore;
+import java.util.List;
+import java.util.UUID;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * Command to make a camera follow another player.
+ * Usage: /cameraspectate <player> [players]
+ *        /cameraspectate stop [players]
+ * Following a player needs the cameraplugin.cameraspectate.spectate permission; stop is always allowed.
+ * With a player selector (see {@link PlayerSelector}) every selected player in the target's
+ * world spectates, which needs the cameraplugin.cameraspectate.others permission.
+ */
+public class CameraSpectateCommand extends AbstractPlayerCommand {
+
+    private static final Message MESSAGE_SPECTATE_STARTED = Message.raw("Spectating {target}, use /cameraspectate stop to get your camera back");
+    private static final Message MESSAGE_SPECTATE_STARTED_SELECTED = Message.raw("{count} players are spectating {target} ({selector})");
+    private static final Message MESSAGE_SPECTATE_STOPPED = Message.raw("Stopped spectating");
+    private static final Message MESSAGE_SPECTATE_STOPPED_SELECTED = Message.raw("{count} players stopped spectating ({selector})");
+    private static final Message MESSAGE_SPECTATE_NOT_SPECTATING = Message.raw("You are not spectating anyone");
+    private static final Message MESSAGE_SPECTATE_NOT_FOUND = Message.raw("{target} is not online");
+    private static final Message MESSAGE_SPECTATE_SELF = Message.raw("You cannot spectate yourself");
+    private static final Message MESSAGE_SPECTATE_OTHER_WORLD = Message.raw("{target} is in another world");
+    private static final Message MESSAGE_SPECTATE_NO_PERMISSION = Message.raw("You do not have permission to change the camera of other players.");
+    private static final Message MESSAGE_SPECTATE_NOT_ALLOWED = Message.raw("You do not have permission to spectate other players.");
+    private static final Message MESSAGE_SPECTATE_BAD_SELECTOR = Message.raw("{error}. Use @a, @w, @w:<world>, @r:<radius> or a name pattern like Event*.");
+    private static final Message MESSAGE_SPECTATE_NOBODY = Message.raw("No players match {selector}");
+
+    // Permission needed to follow another player with the camera
+    static final String PERMISSION_SPECTATE = "cameraplugin.cameraspectate.spectate";
+
+    // Permission needed to make other players spectate with a selector
+    static final String PERMISSION_OTHERS = "cameraplugin.cameraspectate.others";
+
+    private final CameraFollowManager manager;
+    private final RequiredArg<String> targetArg;
+    private final OptionalArg<String> playersArg;
+    private final PluginMetrics.Histogram latency;
+
+    public CameraSpectateCommand(@Nonnull CameraFollowManager manager, @Nonnull PluginMetrics.Histogram latency) {
+        super("cameraspectate", "Follow another player with your camera");
+        this.manager = manager;
+        this.latency = latency;
+        this.targetArg = withRequiredArg("player", "Player to spectate, or stop", ArgTypes.STRING);
+        this.playersArg = withOptionalArg("players", "Players who spectate: @a, @w, @w:<world>, @r:<radius> or a name pattern", ArgTypes.STRING);
+    }
+
+    @Override
+    protected void execute(@Nonnull CommandContext context, @Nonnull Store<EntityStore> store, @Nonnull Ref<EntityStore> ref, @Nonnull PlayerRef playerRef, @Nonnull World world) {
+        long start = System.nanoTime();
+        PluginCommandEvent event = new PluginCommandEvent();
+        event.begin();
+        try {
+            String target = this.targetArg.get(context);
+            String selectorText = this.playersArg.get(context);
+            boolean stop = "stop".equalsIgnoreCase(target);
+            if (!stop && !context.sender().hasPermission(PERMISSION_SPECTATE)) {
+                context.sendMessage(MESSAGE_SPECTATE_NOT_ALLOWED);
+                return;
+            }
+
+            List<PlayerRef> observers = List.of(playerRef);
+            if (selectorText != null) {
+                observers = resolve(context, playerRef, selectorText);
+                if (observers == null) {
+                    return;
+                }
+            }
+
+            if (stop) {
+                stop(context, observers, selectorText);
+            } else {
+                spectate(context, playerRef, observers, target, selectorText);
+            }
+        } finally {
+            latency.recordSince(start);
+            if (event.shouldCommit()) {
+                event.command = "cameraspectate";
+                event.player = playerRef.getUsername();
+                event.commit();
+            }
+        }
+    }
+
+    /**
+     * Resolve the selector, answering the sender if that fails.
+     * @return The selected players, or null if there are none
+     */
+    @Nullable
+    private List<PlayerRef> resolve(@Nonnull CommandContext context, @Nonnull PlayerRef sender, @Nonnull String selectorText) {
+        if (!context.sender().hasPermission(PERMISSION_OTHERS)) {
+            context.sendMessage(MESSAGE_SPECTATE_NO_PERMISSION);
+            return null;
+        }
+        List<PlayerRef> selected;
+        try {
+            selected = PlayerSelector.parse(selectorText).resolve(Universe.get().getPlayers(), sender);
+        } catch (IllegalArgumentException e) {
+            context.sendMessage(MESSAGE_SPECTATE_BAD_SELECTOR.param("error", e.getMessage()));
+            return null;
+        }
+        if (selected.isEmpty()) {
+            context.sendMessage(MESSAGE_SPECTATE_NOBODY.param("selector", selectorText));
+            return null;
+        }
+        return selected;
+    }
+
+    private void spectate(@Nonnull CommandContext context, @Nonnull PlayerRef sender, @Nonnull List<PlayerRef> observers,
+                          @Nonnull String targetName, @Nullable String selectorText) {
+        PlayerRef target = findPlayer(targetName);
+        Ref<EntityStore> targetRef = target != null ? target.getReference() : null;
+        if (target == null || targetRef == null || !targetRef.isValid()) {
+            context.sendMessage(MESSAGE_SPECTATE_NOT_FOUND.param("target", targetName));
+            return;
+        }
+        if (selectorText == null && target.getUuid().equals(sender.getUuid())) {
+            context.sendMessage(MESSAGE_SPECTATE_SELF);
+            return;
+        }
+
+        // Follow cameras use world coordinates, so only players in the target's world can spectate
+        UUID targetWorld = target.getWorldUuid();
+        int count = 0;
+        for (PlayerRef observer : observers) {
+            if (targetWorld != null && targetWorld.equals(observer.getWorldUuid())
+                && manager.follow(observer, targetRef, target.getUsername())) {
+                count++;
+            }
+        }
+
+        if (selectorText != null) {
+            context.sendMessage(MESSAGE_SPECTATE_STARTED_SELECTED
+                .param("count", String.valueOf(count))
+                .param("target", target.getUsername())
+                .param("selector", selectorText));
+        } else if (count == 0) {
+            context.sendMessage(MESSAGE_SPECTATE_OTHER_WORLD.param("target", target.getUsername()));
+        } else {
+            context.sendMessage(MESSAGE_SPECTATE_STARTED.param("target", target.getUsername()));
+        }
+    }
+
+    private void stop(@Nonnull CommandContext context, @Nonnull List<PlayerRef> observers, @Nullable String selectorText) {
+        int count = 0;
+        for (PlayerRef observer : observers) {
+            if (manager.unfollow(observer)) {
+                count++;
+            }
+        }
+
+        if (selectorText != null) {
+            context.sendMessage(MESSAGE_SPECTATE_STOPPED_SELECTED
+                .param("count", String.valueOf(count))
+                .param("selector", selectorText));
+        } else {
+            context.sendMessage(count > 0 ? MESSAGE_SPECTATE_STOPPED : MESSAGE_SPECTATE_NOT_SPECTATING);
+        }
+    }
+
+    @Nullable
+    private static PlayerRef findPlayer(@Nonnull String name) {
+        for (PlayerRef playerRef : Universe.get().getPlayers()) {
+            if (playerRef.isValid() && playerRef.getUsername().equalsIgnoreCase(name)) {
+                return playerRef;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,59 @@
+package com.edgelinegames.cameraplugin;
+
+import com.hypixel.hytale.component.Ref;
+import com.hypixel.hytale.component.Store;
+import com.hypixel.hytale.server.core.Message;
+import com.hypixel.hytale.server.core.command.system.CommandContext;
+import com.hypixel.hytale.server.core.command.system.basecommands.AbstractPlayerCommand;
+import com.hypixel.hytale.server.core.universe.PlayerRef;
+import com.hypixel.hytale.server.core.universe.world.World;
+import com.hypixel.hytale.server.core.universe.world.storage.EntityStore;
+import javax.annotation.Nonnull;
+
+/**
+ * Command to show the plugin metrics in game.
+ * Usage: /camerastats
+ * Needs cameraplugin.camerastats.
+ */
+public class CameraStatsCommand extends AbstractPlayerCommand {
+    
+    private static final Message MESSAGE_HEADER = Message.raw("CameraPlugin metrics:");
+    private static final Message MESSAGE_LINE = Message.raw("  {line}");
+    private static final Message MESSAGE_NO_PERMISSION = Message.raw("You do not have permission to see the camera plugin metrics.");
+    
+    // Permission needed to use the command
+    static final String PERMISSION = "cameraplugin.camerastats";
+    
+    private final PluginMetrics metrics;
+    private final PluginMetrics.Histogram latency;
+    
+    public CameraStatsCommand(@Nonnull PluginMetrics metrics, @Nonnull PluginMetrics.Histogram latency) {
+        super("camerastats", "Show how much work the camera plugin is doing");
+        this.metrics = metrics;
+        this.latency = latency;
+    }
+    
+    @Override
+    protected void execute(@Nonnull CommandContext context, @Nonnull Store<EntityStore> store, @Nonnull Ref<EntityStore> ref, @Nonnull PlayerRef playerRef, @Nonnull World world) {
+        long start = System.nanoTime();
+        PluginCommandEvent event = new PluginCommandEvent();
+        event.begin();
+        try {
+            if (!context.sender().hasPermission(PERMISSION)) {
+                context.sendMessage(MESSAGE_NO_PERMISSION);
+                return;
+            }
+            context.sendMessage(MESSAGE_HEADER);
+            for (String line : metrics.summarize()) {
+                context.sendMessage(MESSAGE_LINE.param("line", line));
+            }
+        } finally {
+            latency.recordSince(start);
+            if (event.shouldCommit()) {
+                event.command = "camerastats";
+                event.player = playerRef.getUsername();
+                event.commit();
+            }
+        }
+    }
+}
@@ -0,0 +1,261 @@
+package com.edgelinegames.cameraplugin;
+
+import com.hypixel.hytale.protocol.ClientCameraView;
+import com.hypixel.hytale.protocol.Direction;
+import com.hypixel.hytale.protocol.Position;
+import com.hypixel.hytale.protocol.RotationType;
+import com.hypixel.hytale.protocol.ServerCameraSettings;
+import com.hypixel.hytale.protocol.packets.camera.SetServerCamera;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import javax.annotation.Nonnull;
+
+/**
+ * A cinematic camera path read from a memory-mapped keyframe file.
+ *
+ * Keyframes are fixed-size records read straight out of the read-only mapping when the
+ * playback cursor reaches them, so a track of any length costs no heap beyond this object;
+ * the OS pages the file in as it is played and can drop it again under memory pressure.
+ * Keyframes are evenly spaced, ticksPerKeyframe apart, so the keyframe for a tick is a
+ * division and not a search. The client smooths between keyframes with their lerp speed.
+ *
+ * File layout (big endian):
+ *   header: magic(int) version(int) keyframeCount(int) ticksPerKeyframe(int), padded to HEADER_SIZE
+ *   keyframe: distance(float) offsetX(float) offsetY(float) offsetZ(float)
+ *             yaw(float) pitch(float) roll(float) lerpSpeed(float)
+ * Offsets are relative to the player, rotations in radians. Every float must be finite and the
+ * distance not negative; open checks each keyframe once, a file that breaks this is rejected.
+ * The file layout is the authoring interface for external tools; write is a minimal writer
+ * of it for tools and tests in this package.
+ *
+ * A track file that is in use must be replaced with a new file (as write does), never
+ * rewritten in place, or running playbacks read the new bytes half way through.
+ */
+public final class CameraTrack {
+
+    // Extension of track files in the tracks directory
+    public static final String EXTENSION = ".ctrk";
+
+    private static final int MAGIC = 0x4354524B; // "CTRK"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 32;
+    private static final int KEYFRAME_SIZE = 32;
+
+    // Keyframe field offsets
+    private static final int OFF_DISTANCE = 0;
+    private static final int OFF_OFFSET_X = 4;
+    private static final int OFF_OFFSET_Y = 8;
+    private static final int OFF_OFFSET_Z = 12;
+    private static final int OFF_YAW = 16;
+    private static final int OFF_PITCH = 20;
+    private static final int OFF_ROLL = 24;
+    private static final int OFF_LERP = 28;
+
+    /**
+     * One camera keyframe. Offsets are relative to the player, rotations in radians.
+     */
+    record Keyframe(float distance, float offsetX, float offsetY, float offsetZ,
+                    float yaw, float pitch, float roll, float lerpSpeed) {
+
+        /**
+         * Check that open accepts the keyframe: every value finite and the distance not negative.
+         */
+        boolean isValid() {
+            return distance >= 0.0f && Float.isFinite(distance)
+                && Float.isFinite(offsetX) && Float.isFinite(offsetY) && Float.isFinite(offsetZ)
+                && Float.isFinite(yaw) && Float.isFinite(pitch) && Float.isFinite(roll)
+                && Float.isFinite(lerpSpeed);
+        }
+    }
+
+    private final String name;
+    private final MappedByteBuffer buffer;
+    private final int keyframeCount;
+    private final int ticksPerKeyframe;
+    private final long lastModifiedMillis;
+
+    private CameraTrack(@Nonnull String name, @Nonnull MappedByteBuffer buffer, int keyframeCount, int ticksPerKeyframe, long lastModifiedMillis) {
+        this.name = name;
+        this.buffer = buffer;
+        this.keyframeCount = keyframeCount;
+        this.ticksPerKeyframe = ticksPerKeyframe;
+        this.lastModifiedMillis = lastModifiedMillis;
+    }
+
+    /**
+     * Map a track file.
+     * @param name The track name
+     * @param file The track file
+     * @return The mapped track
+     * @throws IOException if the file cannot be read or is not a valid track
+     */
+    @Nonnull
+    public static CameraTrack open(@Nonnull String name, @Nonnull Path file) throws IOException {
+        long lastModified = Files.getLastModifiedTime(file).toMillis();
+        // The mapping stays valid after the channel is closed
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_SIZE) {
+                throw new IOException("Not a camera track: " + file);
+            }
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Camera track too large: " + file);
+            }
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            if (mapped.getInt(0) != MAGIC || mapped.getInt(4) != VERSION) {
+                throw new IOException("Not a camera track: " + file);
+            }
+            int count = mapped.getInt(8);
+            int ticksPerKeyframe = mapped.getInt(12);
+            if (count <= 0 || ticksPerKeyframe <= 0 || size != HEADER_SIZE + (long) count * KEYFRAME_SIZE) {
+                throw new IOException("Corrupt camera track: " + file);
+            }
+            for (int index = 0; index < count; index++) {
+                int position = HEADER_SIZE + index * KEYFRAME_SIZE;
+                for (int offset = 0; offset < KEYFRAME_SIZE; offset += Float.BYTES) {
+                    if (!Float.isFinite(mapped.getFloat(position + offset))) {
+                        throw new IOException("Camera track has a NaN or infinite value in keyframe " + index + ": " + file);
+                    }
+                }
+                if (mapped.getFloat(position + OFF_DISTANCE) < 0.0f) {
+                    throw new IOException("Camera track has a negative distance in keyframe " + index + ": " + file);
+                }
+            }
+            return new CameraTrack(name, mapped, count, ticksPerKeyframe, lastModified);
+        }
+    }
+
+    /**
+     * Write a track file, replacing any existing one without disturbing running playbacks.
+     * @param file The track file
+     * @param ticksPerKeyframe Ticks between two keyframes
+     * @param keyframes The keyframes, in order
+     * @throws IOException if the file cannot be written
+     */
+    static void write(@Nonnull Path file, int ticksPerKeyframe, @Nonnull List<Keyframe> keyframes) throws IOException {
+        if (keyframes.isEmpty() || ticksPerKeyframe <= 0) {
+            throw new IllegalArgumentException("A camera track needs at least one keyframe and a positive keyframe interval");
+        }
+        ByteBuffer out = ByteBuffer.allocate(HEADER_SIZE + keyframes.size() * KEYFRAME_SIZE);
+        out.putInt(MAGIC).putInt(VERSION).putInt(keyframes.size()).putInt(ticksPerKeyframe);
+        out.position(HEADER_SIZE);
+        for (Keyframe keyframe : keyframes) {
+            if (!keyframe.isValid()) {
+                throw new IllegalArgumentException("Keyframe with a NaN or infinite value or a negative distance: " + keyframe);
+            }
+            out.putFloat(keyframe.distance())
+                .putFloat(keyframe.offsetX()).putFloat(keyframe.offsetY()).putFloat(keyframe.offsetZ())
+                .putFloat(keyframe.yaw()).putFloat(keyframe.pitch()).putFloat(keyframe.roll())
+                .putFloat(keyframe.lerpSpeed());
+        }
+        out.flip();
+
+        Path tempFile = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            while (out.hasRemaining()) {
+                channel.write(out);
+            }
+            channel.force(true);
+        }
+        Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Get the keyframe index shown at a tick of the playback.
+     * @return The index, or -1 once the track is over
+     */
+    public int keyframeAt(long elapsedTicks) {
+        long index = elapsedTicks / ticksPerKeyframe;
+        return index < keyframeCount ? (int) index : -1;
+    }
+
+    /**
+     * Read one keyframe. Playback does not need this, see {@link #packet(int)}.
+     */
+    @Nonnull
+    Keyframe keyframe(int index) {
+        int position = position(index);
+        return new Keyframe(
+            buffer.getFloat(position + OFF_DISTANCE),
+            buffer.getFloat(position + OFF_OFFSET_X),
+            buffer.getFloat(position + OFF_OFFSET_Y),
+            buffer.getFloat(position + OFF_OFFSET_Z),
+            buffer.getFloat(position + OFF_YAW),
+            buffer.getFloat(position + OFF_PITCH),
+            buffer.getFloat(position + OFF_ROLL),
+            buffer.getFloat(position + OFF_LERP)
+        );
+    }
+
+    /**
+     * Build the camera packet for a keyframe, read straight from the mapping.
+     * The packet is meant to be built once and written to every viewer.
+     */
+    @Nonnull
+    public SetServerCamera packet(int index) {
+        int position = position(index);
+        float lerpSpeed = buffer.getFloat(position + OFF_LERP);
+
+        ServerCameraSettings cameraSettings = new ServerCameraSettings();
+        cameraSettings.distance = buffer.getFloat(position + OFF_DISTANCE);
+        cameraSettings.positionLerpSpeed = lerpSpeed;
+        cameraSettings.rotationLerpSpeed = lerpSpeed;
+        cameraSettings.isFirstPerson = false;
+        // A cutscene: no cursor, no reticle and no mouse look
+        cameraSettings.displayCursor = false;
+        cameraSettings.displayReticle = false;
+        cameraSettings.allowPitchControls = false;
+        cameraSettings.eyeOffset = true;
+        cameraSettings.positionOffset = new Position(
+            buffer.getFloat(position + OFF_OFFSET_X),
+            buffer.getFloat(position + OFF_OFFSET_Y),
+            buffer.getFloat(position + OFF_OFFSET_Z));
+        // The rotation comes from the track instead of following the player
+        cameraSettings.rotationType = RotationType.Custom;
+        cameraSettings.rotation = new Direction(
+            buffer.getFloat(position + OFF_YAW),
+            buffer.getFloat(position + OFF_PITCH),
+            buffer.getFloat(position + OFF_ROLL));
+
+        // Locked, the player cannot move the camera during the track
+        return new SetServerCamera(ClientCameraView.Custom, true, cameraSettings);
+    }
+
+    @Nonnull
+    public String getName() {
+        return name;
+    }
+
+    public int getKeyframeCount() {
+        return keyframeCount;
+    }
+
+    public int getTicksPerKeyframe() {
+        return ticksPerKeyframe;
+    }
+
+    /**
+     * Get the length of the track in ticks.
+     */
+    public long getLengthTicks() {
+        return (long) keyframeCount * ticksPerKeyframe;
+    }
+
+    public long getLastModifiedMillis() {
+        return lastModifiedMillis;
+    }
+
+    private int position(int index) {
+        if (index < 0 || index >= keyframeCount) {
+            throw new IndexOutOfBoundsException("Keyframe " + index + " of " + keyframeCount);
+        }
+        return HEADER_SIZE + index * KEYFRAME_SIZE;
+    }
+}
@@ -0,0 +1,173 @@
+package com.edgelinegames.cameraplugin;
+
+import com.hypixel.hytale.component.Ref;
+import com.hypixel.hytale.component.Store;
+import com.hypixel.hytale.server.core.Message;
+import com.hypixel.hytale.server.core.command.system.CommandContext;
+import com.hypixel.hytale.server.core.command.system.arguments.system.OptionalArg;
+import com.hypixel.hytale.server.core.command.system.arguments.system.RequiredArg;
+import com.hypixel.hytale.server.core.command.system.arguments.types.ArgTypes;
+import com.hypixel.hytale.server.core.command.system.basecommands.AbstractPlayerCommand;
+import com.hypixel.hytale.server.core.universe.PlayerRef;
+import com.hypixel.hytale.server.core.universe.Universe;
+import com.hypixel.hytale.server.core.universe.world.World;
+import com.hypixel.hytale.server.core.universe.world.storage.EntityStore;
+import java.io.IOException;
+import java.nio.file.NoSuchFileException;
+import java.util.List;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * Command to play cinematic camera tracks.
+ * Usage: /cameratrack play <track> [players]
+ *        /cameratrack stop [track]
+ *        /cameratrack list
+ * Playing to a player selector (see {@link PlayerSelector}) or stopping a track for everyone
+ * needs the cameraplugin.cameratrack.others permission.
+ */
+public class CameraTrackCommand extends AbstractPlayerCommand {
+
+    private static final Message MESSAGE_TRACK_PLAYING = Message.raw("Playing camera track {track} ({seconds} s) for {count} players");
+    private static final Message MESSAGE_TRACK_NOT_FOUND = Message.raw("There is no camera track named {track}");
+    private static final Message MESSAGE_TRACK_INVALID = Message.raw("Could not play camera track {track}: {reason}");
+    private static final Message MESSAGE_TRACK_STOPPED = Message.raw("Camera track stopped");
+    private static final Message MESSAGE_TRACK_STOPPED_ALL = Message.raw("Camera track {track} stopped for everyone");
+    private static final Message MESSAGE_TRACK_NOT_WATCHING = Message.raw("You are not watching a camera track");
+    private static final Message MESSAGE_TRACK_LIST_EMPTY = Message.raw("There are no camera tracks");
+    private static final Message MESSAGE_TRACK_ENTRY = Message.raw("{track}: {keyframes} keyframes, {seconds} s");
+    private static final Message MESSAGE_TRACK_NO_PERMISSION = Message.raw("You do not have permission to play or stop camera tracks for other players.");
+    private static final Message MESSAGE_TRACK_BAD_SELECTOR = Message.raw("{error}. Use @a, @w, @w:<world>, @r:<radius> or a name pattern like Event*.");
+    private static final Message MESSAGE_TRACK_NOBODY = Message.raw("No players match {selector}");
+    private static final Message MESSAGE_TRACK_USAGE = Message.raw("Usage: /cameratrack play <track> [players], /cameratrack stop [track], /cameratrack list");
+
+    // Permission needed to play a track to other players or stop it for everyone
+    static final String PERMISSION_OTHERS = "cameraplugin.cameratrack.others";
+
+    private final CameraTrackPlayer player;
+    private final RequiredArg<String> actionArg;
+    private final OptionalArg<String> trackArg;
+    private final OptionalArg<String> playersArg;
+    private final PluginMetrics.Histogram latency;
+
+    public CameraTrackCommand(@Nonnull CameraTrackPlayer player, @Nonnull PluginMetrics.Histogram latency) {
+        super("cameratrack", "Play cinematic camera tracks");
+        this.player = player;
+        this.latency = latency;
+        this.actionArg = withRequiredArg("action", "play/stop/list", ArgTypes.STRING);
+        this.trackArg = withOptionalArg("track", "Track name", ArgTypes.STRING);
+        this.playersArg = withOptionalArg("players", "Players to show the track to: @a, @w, @w:<world>, @r:<radius> or a name pattern", ArgTypes.STRING);
+    }
+
+    @Override
+    protected void execute(@Nonnull CommandContext context, @Nonnull Store<EntityStore> store, @Nonnull Ref<EntityStore> ref, @Nonnull PlayerRef playerRef, @Nonnull World world) {
+        long start = System.nanoTime();
+        PluginCommandEvent event = new PluginCommandEvent();
+        event.begin();
+        try {
+            String action = this.actionArg.get(context);
+            String track = this.trackArg.get(context);
+
+            if ("play".equalsIgnoreCase(action) && track != null) {
+                play(context, playerRef, track);
+            } else if ("stop".equalsIgnoreCase(action)) {
+                stop(context, playerRef, track);
+            } else if ("list".equalsIgnoreCase(action)) {
+                list(context);
+            } else {
+                context.sendMessage(MESSAGE_TRACK_USAGE);
+            }
+        } finally {
+            latency.recordSince(start);
+            if (event.shouldCommit()) {
+                event.command = "cameratrack";
+                event.player = playerRef.getUsername();
+                event.commit();
+            }
+        }
+    }
+
+    private void play(@Nonnull CommandContext context, @Nonnull PlayerRef sender, @Nonnull String track) {
+        List<PlayerRef> targets = List.of(sender);
+        String selectorText = this.playersArg.get(context);
+        if (selectorText != null) {
+            if (!context.sender().hasPermission(PERMISSION_OTHERS)) {
+                context.sendMessage(MESSAGE_TRACK_NO_PERMISSION);
+                return;
+            }
+            try {
+                targets = PlayerSelector.parse(selectorText).resolve(Universe.get().getPlayers(), sender);
+            } catch (IllegalArgumentException e) {
+                context.sendMessage(MESSAGE_TRACK_BAD_SELECTOR.param("error", e.getMessage()));
+                return;
+            }
+            if (targets.isEmpty()) {
+                context.sendMessage(MESSAGE_TRACK_NOBODY.param("selector", selectorText));
+                return;
+            }
+        }
+
+        CameraTrack played;
+        try {
+            played = player.play(track, targets);
+        } catch (NoSuchFileException e) {
+            context.sendMessage(MESSAGE_TRACK_NOT_FOUND.param("track", track));
+            return;
+        } catch (IOException | IllegalArgumentException e) {
+            context.sendMessage(MESSAGE_TRACK_INVALID.param("track", track).param("reason", String.valueOf(e.getMessage())));
+            return;
+        }
+        context.sendMessage(MESSAGE_TRACK_PLAYING
+            .param("track", track)
+            .param("seconds", seconds(played))
+            .param("count", String.valueOf(targets.size())));
+    }
+
+    private void stop(@Nonnull CommandContext context, @Nonnull PlayerRef sender, @Nullable String track) {
+        if (track == null) {
+            if (!player.isWatching(sender.getUuid())) {
+                context.sendMessage(MESSAGE_TRACK_NOT_WATCHING);
+                return;
+            }
+            player.stop(sender.getUuid());
+            context.sendMessage(MESSAGE_TRACK_STOPPED);
+            return;
+        }
+        if (!context.sender().hasPermission(PERMISSION_OTHERS)) {
+            context.sendMessage(MESSAGE_TRACK_NO_PERMISSION);
+            return;
+        }
+        player.stopTrack(track);
+        context.sendMessage(MESSAGE_TRACK_STOPPED_ALL.param("track", track));
+    }
+
+    private void list(@Nonnull CommandContext context) {
+        List<String> names;
+        try {
+            names = player.getTrackNames();
+        } catch (IOException e) {
+            names = List.of();
+        }
+        if (names.isEmpty()) {
+            context.sendMessage(MESSAGE_TRACK_LIST_EMPTY);
+            return;
+        }
+        for (String name : names) {
+            try {
+                CameraTrack track = player.load(name);
+                context.sendMessage(MESSAGE_TRACK_ENTRY
+                    .param("track", name)
+                    .param("keyframes", String.valueOf(track.getKeyframeCount()))
+                    .param("seconds", seconds(track)));
+            } catch (IOException e) {
+                context.sendMessage(MESSAGE_TRACK_INVALID.param("track", name).param("reason", String.valueOf(e.getMessage())));
+            }
+        }
+    }
+
+    @Nonnull
+    private static String seconds(@Nonnull CameraTrack track) {
+        long tickMillis = CameraPlugin.getInstance().getTickScheduler().getTickMillis();
+        return String.format("%.1f", track.getLengthTicks() * tickMillis / 1000.0);
+    }
+}
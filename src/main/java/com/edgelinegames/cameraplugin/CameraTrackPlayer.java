@@ -0,0 +1,416 @@
+package com.edgelinegames.cameraplugin;
+
+import com.hypixel.hytale.logger.HytaleLogger;
+import com.hypixel.hytale.protocol.packets.camera.SetServerCamera;
+import com.hypixel.hytale.server.core.universe.PlayerRef;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * Plays cinematic camera tracks to players, advanced by the shared TickScheduler.
+ *
+ * There is one playback per track: everyone watching a track shares its cursor, and
+ * players added while it runs join at the current keyframe, so a whole lobby sees the same
+ * frame in the same tick. When the cursor reaches a keyframe its packet is built once from
+ * the mapped file (see {@link CameraTrack}) and written to every viewer; there is no per
+ * viewer state besides list membership. Unlike tweens and broadcasts there is no per-tick
+ * packet cap, since spreading a keyframe over ticks would break the sync. The viewers are
+ * grouped by world through the dispatcher, and each world thread writes the shared packet
+ * to its own viewers, so all worlds get the keyframe in the same tick.
+ *
+ * While a player watches a track, other camera changes are held back by CameraPlugin; when
+ * the track ends or is stopped the listener gives the players their own camera back.
+ *
+ * Plays and stops may come from any thread; they are queued and applied at the start of the
+ * next tick, so playbacks are only ever touched by the tick thread.
+ */
+public class CameraTrackPlayer implements TickScheduler.TickTask {
+
+    // Track names double as file names
+    private static final Pattern TRACK_NAME = Pattern.compile("[A-Za-z0-9_-]{1,64}");
+
+    /**
+     * Writes a keyframe packet to a player.
+     */
+    @FunctionalInterface
+    public interface Sender {
+        void send(@Nonnull PlayerRef playerRef, @Nonnull SetServerCamera packet);
+    }
+
+    /**
+     * Called on the tick thread when players stop watching a track, because it ended or was stopped.
+     */
+    @FunctionalInterface
+    public interface Listener {
+        void finished(@Nonnull String track, @Nonnull List<PlayerRef> viewers);
+    }
+
+    private record Play(@Nonnull CameraTrack track, @Nonnull List<PlayerRef> players) {}
+
+    private record Stop(@Nonnull UUID playerUuid) {}
+
+    private record StopTrack(@Nonnull String track) {}
+
+    private record Forget(@Nonnull UUID playerUuid) {}
+
+    /**
+     * A running track and the players watching it. Only touched by the tick thread.
+     */
+    private static final class Playback {
+
+        private final CameraTrack track;
+        private final long startTick;
+        private final List<PlayerRef> viewers = new ArrayList<>();
+        private int shownKeyframe = -1;
+        private SetServerCamera shownPacket;
+
+        private Playback(@Nonnull CameraTrack track, long startTick) {
+            this.track = track;
+            this.startTick = startTick;
+        }
+    }
+
+    private final HytaleLogger logger;
+    private final Path directory;
+    private final CameraPacketCache packetCache;
+    private final Sender sender;
+    private final CameraBroadcaster.Dispatcher<PlayerRef> dispatcher;
+    private final Listener listener;
+    private final Queue<Object> pending = new ConcurrentLinkedQueue<>();
+    private final Map<String, CameraTrack> tracks = new ConcurrentHashMap<>();
+
+    // Track each player is watching or about to watch
+    private final Map<UUID, String> watching = new ConcurrentHashMap<>();
+
+    // Running playbacks by track name (only touched by the tick thread)
+    private final Map<String, Playback> playbacks = new HashMap<>();
+    private final Map<UUID, Playback> playbackByViewer = new HashMap<>();
+    private volatile int playbackCount;
+
+    // Counters
+    private final LongAdder packetsSent = new LongAdder();
+    private final LongAdder keyframesBuilt = new LongAdder();
+
+    /**
+     * Constructor.
+     * @param logger The logger to use for logging messages
+     * @param directory Directory holding the track files
+     * @param packetCache The camera packet cache, told to forget what the viewers had before
+     * @param sender Writes keyframe packets to players
+     * @param dispatcher Runs the writes on the viewers' world threads
+     * @param listener Gives players their camera back when they stop watching
+     */
+    public CameraTrackPlayer(@Nonnull HytaleLogger logger, @Nonnull Path directory, @Nonnull CameraPacketCache packetCache,
+                             @Nonnull Sender sender, @Nonnull CameraBroadcaster.Dispatcher<PlayerRef> dispatcher,
+                             @Nonnull Listener listener) {
+        this.logger = logger;
+        this.directory = directory;
+        this.packetCache = packetCache;
+        this.sender = sender;
+        this.dispatcher = dispatcher;
+        this.listener = listener;
+    }
+
+    /**
+     * Play a track to players. If the track is already playing they join it at its current
+     * keyframe; players watching another track switch over.
+     * @param name The track name
+     * @param players The players to show the track to
+     * @return The track
+     * @throws IllegalArgumentException if the name is not a valid track name
+     * @throws IOException if the track file cannot be read
+     */
+    @Nonnull
+    public CameraTrack play(@Nonnull String name, @Nonnull Collection<PlayerRef> players) throws IOException {
+        CameraTrack track = load(name);
+        for (PlayerRef playerRef : players) {
+            watching.put(playerRef.getUuid(), track.getName());
+            // The keyframes bypass the cache, the camera the player had before is no longer on the client
+            packetCache.forget(playerRef.getUuid());
+        }
+        pending.add(new Play(track, List.copyOf(players)));
+        return track;
+    }
+
+    /**
+     * Stop the track a player is watching and give them their camera back.
+     * Cheap when the player is not watching anything.
+     */
+    public void stop(@Nonnull UUID playerUuid) {
+        if (watching.containsKey(playerUuid)) {
+            pending.add(new Stop(playerUuid));
+        }
+    }
+
+    /**
+     * Stop a track for everyone watching it.
+     */
+    public void stopTrack(@Nonnull String name) {
+        pending.add(new StopTrack(name));
+    }
+
+    /**
+     * Drop a player that left without giving their camera back.
+     */
+    public void forget(@Nonnull UUID playerUuid) {
+        if (watching.remove(playerUuid) != null) {
+            pending.add(new Forget(playerUuid));
+        }
+    }
+
+    /**
+     * Check if a player is watching a track, or about to.
+     */
+    public boolean isWatching(@Nonnull UUID playerUuid) {
+        return watching.containsKey(playerUuid);
+    }
+
+    /**
+     * Get the track a player is watching.
+     * @return The track name, or null if the player is not watching any
+     */
+    @Nullable
+    public String getWatching(@Nonnull UUID playerUuid) {
+        return watching.get(playerUuid);
+    }
+
+    /**
+     * Get the names of the track files in the tracks directory, sorted.
+     */
+    @Nonnull
+    public List<String> getTrackNames() throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return List.of();
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(file -> file.getFileName().toString())
+                .filter(file -> file.endsWith(CameraTrack.EXTENSION))
+                .map(file -> file.substring(0, file.length() - CameraTrack.EXTENSION.length()))
+                .filter(name -> TRACK_NAME.matcher(name).matches())
+                .sorted()
+                .toList();
+        }
+    }
+
+    /**
+     * Map a track, reusing the mapping until the file is replaced.
+     * @throws IllegalArgumentException if the name is not a valid track name
+     * @throws IOException if the track file cannot be read
+     */
+    @Nonnull
+    public CameraTrack load(@Nonnull String name) throws IOException {
+        if (!TRACK_NAME.matcher(name).matches()) {
+            throw new IllegalArgumentException("Track names may only use letters, digits, - and _");
+        }
+        Path file = directory.resolve(name + CameraTrack.EXTENSION);
+        long lastModified = Files.getLastModifiedTime(file).toMillis();
+        CameraTrack cached = tracks.get(name);
+        if (cached != null && cached.getLastModifiedMillis() == lastModified) {
+            return cached;
+        }
+        // A running playback keeps the mapping of the old file until it ends
+        CameraTrack track = CameraTrack.open(name, file);
+        tracks.put(name, track);
+        logger.at(Level.INFO).log("CameraTrackPlayer: Mapped track " + name + " with " + track.getKeyframeCount() + " keyframes");
+        return track;
+    }
+
+    /**
+     * Get the number of players watching or about to watch a track.
+     */
+    public int getViewerCount() {
+        return watching.size();
+    }
+
+    /**
+     * Get the number of running playbacks (as of the last tick).
+     */
+    public int getPlaybackCount() {
+        return playbackCount;
+    }
+
+    public long getPacketsSent() {
+        return packetsSent.sum();
+    }
+
+    public long getKeyframesBuilt() {
+        return keyframesBuilt.sum();
+    }
+
+    @Override
+    public void tick(long tick) {
+        applyPending(tick);
+
+        Iterator<Playback> iterator = playbacks.values().iterator();
+        while (iterator.hasNext()) {
+            Playback playback = iterator.next();
+            int keyframe = playback.track.keyframeAt(tick - playback.startTick);
+            if (keyframe < 0 || playback.viewers.isEmpty()) {
+                iterator.remove();
+                finish(playback, playback.viewers);
+                continue;
+            }
+            if (keyframe != playback.shownKeyframe) {
+                // One packet per keyframe, shared by every viewer
+                playback.shownKeyframe = keyframe;
+                playback.shownPacket = playback.track.packet(keyframe);
+                keyframesBuilt.increment();
+                sendToAll(playback);
+            }
+        }
+        playbackCount = playbacks.size();
+    }
+
+    private void sendToAll(@Nonnull Playback playback) {
+        List<PlayerRef> viewers = playback.viewers;
+        for (int i = viewers.size() - 1; i >= 0; i--) {
+            PlayerRef playerRef = viewers.get(i);
+            if (!playerRef.isValid()) {
+                removeViewer(playback, i);
+                watching.remove(playerRef.getUuid(), playback.track.getName());
+            }
+        }
+        // The viewer list keeps changing on the tick thread, the world threads get a copy
+        send(playback.track.getName(), new ArrayList<>(viewers), playback.shownPacket);
+    }
+
+    /**
+     * Write a keyframe to players on their world threads.
+     */
+    private void send(@Nonnull String track, @Nonnull List<PlayerRef> players, @Nonnull SetServerCamera packet) {
+        if (players.isEmpty()) {
+            return;
+        }
+        dispatcher.dispatch("camera track " + track, players, playerRef -> {
+            // Stopped, left or switched tracks since the keyframe was picked
+            if (track.equals(watching.get(playerRef.getUuid()))) {
+                send(playerRef, packet);
+            }
+        });
+    }
+
+    private void send(@Nonnull PlayerRef playerRef, @Nonnull SetServerCamera packet) {
+        try {
+            sender.send(playerRef, packet);
+            packetsSent.increment();
+        } catch (Exception e) {
+            logger.at(Level.WARNING).withCause(e).log("CameraTrackPlayer: Could not send a keyframe to " + playerRef.getUsername());
+        }
+    }
+
+    private void applyPending(long tick) {
+        Object next;
+        while ((next = pending.poll()) != null) {
+            if (next instanceof Play play) {
+                String name = play.track().getName();
+                Playback playback = playbacks.computeIfAbsent(name, key -> new Playback(play.track(), tick));
+                List<PlayerRef> joined = new ArrayList<>(play.players().size());
+                for (PlayerRef playerRef : play.players()) {
+                    UUID playerUuid = playerRef.getUuid();
+                    // Played again, stopped or left since it was queued
+                    if (!name.equals(watching.get(playerUuid)) || playbackByViewer.get(playerUuid) == playback) {
+                        continue;
+                    }
+                    Playback previous = playbackByViewer.get(playerUuid);
+                    if (previous != null) {
+                        removeViewer(previous, previous.viewers.indexOf(playerRef));
+                    }
+                    playback.viewers.add(playerRef);
+                    playbackByViewer.put(playerUuid, playback);
+                    joined.add(playerRef);
+                }
+                // Late joiners start at the keyframe everyone else is seeing
+                if (playback.shownPacket != null) {
+                    send(name, joined, playback.shownPacket);
+                }
+            } else if (next instanceof Stop stop) {
+                Playback playback = playbackByViewer.get(stop.playerUuid());
+                int index = playback != null ? indexOf(playback, stop.playerUuid()) : -1;
+                if (index >= 0) {
+                    PlayerRef playerRef = playback.viewers.get(index);
+                    removeViewer(playback, index);
+                    finish(playback, List.of(playerRef));
+                }
+            } else if (next instanceof StopTrack stopTrack) {
+                Playback playback = playbacks.remove(stopTrack.track());
+                if (playback != null) {
+                    finish(playback, playback.viewers);
+                }
+            } else if (next instanceof Forget forget) {
+                Playback playback = playbackByViewer.get(forget.playerUuid());
+                if (playback != null) {
+                    removeViewer(playback, indexOf(playback, forget.playerUuid()));
+                }
+            }
+        }
+    }
+
+    /**
+     * Hand players that stopped watching a playback to the listener, skipping those that
+     * already moved on to another track.
+     */
+    private void finish(@Nonnull Playback playback, @Nonnull List<PlayerRef> viewers) {
+        String name = playback.track.getName();
+        List<PlayerRef> finished = new ArrayList<>(viewers.size());
+        for (PlayerRef playerRef : viewers) {
+            if (playbackByViewer.get(playerRef.getUuid()) == playback) {
+                playbackByViewer.remove(playerRef.getUuid());
+            }
+            if (watching.remove(playerRef.getUuid(), name)) {
+                // Nothing the cache remembers from before the track is on the client anymore
+                packetCache.forget(playerRef.getUuid());
+                finished.add(playerRef);
+            }
+        }
+        if (!finished.isEmpty()) {
+            try {
+                listener.finished(name, finished);
+            } catch (Exception e) {
+                logger.at(Level.WARNING).withCause(e).log("CameraTrackPlayer: Could not restore cameras after track " + name);
+            }
+        }
+    }
+
+    private static int indexOf(@Nonnull Playback playback, @Nonnull UUID playerUuid) {
+        List<PlayerRef> viewers = playback.viewers;
+        for (int i = 0; i < viewers.size(); i++) {
+            if (viewers.get(i).getUuid().equals(playerUuid)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Remove a viewer by moving the last viewer into its place.
+     */
+    private void removeViewer(@Nonnull Playback playback, int index) {
+        if (index < 0) {
+            return;
+        }
+        List<PlayerRef> viewers = playback.viewers;
+        PlayerRef removed = viewers.get(index);
+        PlayerRef last = viewers.remove(viewers.size() - 1);
+        if (index < viewers.size()) {
+            viewers.set(index, last);
+        }
+        playbackByViewer.remove(removed.getUuid(), playback);
+    }
+}
@@ -0,0 +1,298 @@
+package com.edgelinegames.cameraplugin;
+
+import com.hypixel.hytale.server.core.universe.PlayerRef;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.Nonnull;
+
+/**
+ * Server-side camera zoom and shoulder transitions.
+ *
+ * All running tweens live in flat parallel arrays and are advanced by the shared
+ * TickScheduler; there are no per-player timers or tasks. Instead of sending a packet every
+ * tick, each tween sends a keyframe every keyframeInterval ticks (staggered by slot so they do
+ * not all fire in the same tick) with a softer lerp speed, and the client smooths between
+ * keyframes. A hard per-tick packet cap bounds the cost of thousands of simultaneous tweens;
+ * keyframes over the cap are skipped, the final exact camera never is. The cap is shared by
+ * starting at a different slot every tick, so no tween is starved of keyframes.
+ *
+ * Starts and cancels may come from any thread; they are queued and applied at the start of
+ * the next tick, so the arrays are only ever touched by the tick thread. The keyframes picked
+ * in a tick are sent on the players' world threads through the dispatcher, and a keyframe is
+ * dropped there if a direct camera change or a newer tween came first. Intermediate keyframes
+ * come from the packet cache's own keyframe cache, not the shared templates.
+ */
+public class CameraTweenEngine implements TickScheduler.TickTask {
+
+    // Defaults for keyframe rate and per-tick packet cap
+    public static final int DEFAULT_KEYFRAME_INTERVAL = 3;
+    public static final int DEFAULT_MAX_PACKETS_PER_TICK = 500;
+    public static final float DEFAULT_KEYFRAME_LERP_SPEED = 0.3f;
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    /**
+     * Sends a camera template to a player (CameraPlugin does the suppression and counting).
+     */
+    @FunctionalInterface
+    public interface Sender {
+        void send(@Nonnull PlayerRef playerRef, @Nonnull CameraPacketCache.Template template);
+    }
+
+    private record Keyframe(long generation, @Nonnull CameraPacketCache.Template template, boolean last) {}
+
+    private record Command(@Nonnull PlayerRef playerRef, long generation, float fromDistance, double fromOffset,
+                           float toDistance, double toOffset, int durationTicks) {}
+
+    private final CameraPacketCache packetCache;
+    private final Sender sender;
+    private final CameraBroadcaster.Dispatcher<PlayerRef> dispatcher;
+    private final Queue<Object> pending = new ConcurrentLinkedQueue<>();
+    // Generation of the last start per player with a tween running or queued; a finished tween
+    // only clears the entry if no newer start replaced it in the meantime
+    private final Map<UUID, Long> tweening = new ConcurrentHashMap<>();
+    private final AtomicLong generations = new AtomicLong();
+
+    // Tween state, one slot per running tween (only touched by the tick thread)
+    private final Map<UUID, Integer> slotByPlayer = new HashMap<>();
+    private PlayerRef[] players = new PlayerRef[INITIAL_CAPACITY];
+    private long[] generation = new long[INITIAL_CAPACITY];
+    private float[] fromDistance = new float[INITIAL_CAPACITY];
+    private float[] toDistance = new float[INITIAL_CAPACITY];
+    private double[] fromOffset = new double[INITIAL_CAPACITY];
+    private double[] toOffset = new double[INITIAL_CAPACITY];
+    private long[] startTick = new long[INITIAL_CAPACITY];
+    private int[] durationTicks = new int[INITIAL_CAPACITY];
+    private int size;
+
+    private volatile int keyframeInterval = DEFAULT_KEYFRAME_INTERVAL;
+    private volatile int maxPacketsPerTick = DEFAULT_MAX_PACKETS_PER_TICK;
+    private volatile float keyframeLerpSpeed = DEFAULT_KEYFRAME_LERP_SPEED;
+
+    /**
+     * Constructor.
+     * @param packetCache The shared camera packet templates
+     * @param sender Sends a template to a player
+     * @param dispatcher Runs the sends on the players' world threads
+     */
+    public CameraTweenEngine(@Nonnull CameraPacketCache packetCache, @Nonnull Sender sender,
+                             @Nonnull CameraBroadcaster.Dispatcher<PlayerRef> dispatcher) {
+        this.packetCache = packetCache;
+        this.sender = sender;
+        this.dispatcher = dispatcher;
+    }
+
+    /**
+     * Start a transition, replacing any running one for the same player.
+     * @param playerRef The player
+     * @param fromDistance Distance at the start
+     * @param fromOffset Shoulder offset at the start
+     * @param toDistance Distance at the end
+     * @param toOffset Shoulder offset at the end
+     * @param durationTicks Length of the transition in ticks
+     */
+    public void start(@Nonnull PlayerRef playerRef, float fromDistance, double fromOffset,
+                      float toDistance, double toOffset, int durationTicks) {
+        long startGeneration = generations.incrementAndGet();
+        tweening.put(playerRef.getUuid(), startGeneration);
+        pending.add(new Command(playerRef, startGeneration, fromDistance, fromOffset, toDistance, toOffset, Math.max(1, durationTicks)));
+    }
+
+    /**
+     * Stop a running transition for a player, leaving the camera where it is.
+     * Cheap when the player has no transition running.
+     */
+    public void cancel(@Nonnull UUID playerUuid) {
+        if (tweening.remove(playerUuid) != null) {
+            pending.add(playerUuid);
+        }
+    }
+
+    /**
+     * Check if a player has a transition running or queued.
+     */
+    public boolean isTweening(@Nonnull UUID playerUuid) {
+        return tweening.containsKey(playerUuid);
+    }
+
+    /**
+     * Set how often (in ticks) a running tween sends a keyframe.
+     */
+    public void setKeyframeInterval(int keyframeInterval) {
+        this.keyframeInterval = Math.max(1, keyframeInterval);
+    }
+
+    /**
+     * Set the most keyframe packets sent per tick across all tweens.
+     */
+    public void setMaxPacketsPerTick(int maxPacketsPerTick) {
+        this.maxPacketsPerTick = Math.max(1, maxPacketsPerTick);
+    }
+
+    /**
+     * Set the lerp speed sent with intermediate keyframes.
+     */
+    public void setKeyframeLerpSpeed(float keyframeLerpSpeed) {
+        this.keyframeLerpSpeed = keyframeLerpSpeed;
+    }
+
+    /**
+     * Get the number of running tweens (as of the last tick).
+     */
+    public int getActiveCount() {
+        return size;
+    }
+
+    @Override
+    public void tick(long tick) {
+        applyPending(tick);
+        if (size == 0) {
+            return;
+        }
+
+        // Finished tweens first, the final camera is never skipped
+        List<PlayerRef> batch = new ArrayList<>();
+        Map<UUID, Keyframe> keyframes = new HashMap<>();
+        int slot = 0;
+        while (slot < size) {
+            PlayerRef playerRef = players[slot];
+            if (!playerRef.isValid()) {
+                tweening.remove(playerRef.getUuid(), generation[slot]);
+                removeSlot(slot);
+                continue;
+            }
+            if (tick - startTick[slot] >= durationTicks[slot]) {
+                // Always land exactly on the target, with the normal lerp speed
+                batch.add(playerRef);
+                keyframes.put(playerRef.getUuid(), new Keyframe(generation[slot],
+                    packetCache.template(toDistance[slot], toOffset[slot], packetCache.getLerpSpeed()), true));
+                removeSlot(slot);
+                continue;
+            }
+            slot++;
+        }
+
+        // Intermediate keyframes within the budget, starting at a different slot every tick
+        int count = size;
+        int interval = keyframeInterval;
+        int budget = maxPacketsPerTick;
+        float lerpSpeed = keyframeLerpSpeed;
+        int first = count > 0 ? (int) (tick % count) : 0;
+        for (int i = 0; i < count && budget > 0; i++) {
+            slot = (first + i) % count;
+            long elapsed = tick - startTick[slot];
+            if ((elapsed + slot) % interval != 0) {
+                continue;
+            }
+            float t = ease((float) elapsed / durationTicks[slot]);
+            float distance = fromDistance[slot] + (toDistance[slot] - fromDistance[slot]) * t;
+            double offset = fromOffset[slot] + (toOffset[slot] - fromOffset[slot]) * t;
+            batch.add(players[slot]);
+            keyframes.put(players[slot].getUuid(), new Keyframe(generation[slot], packetCache.keyframe(distance, offset, lerpSpeed), false));
+            budget--;
+        }
+
+        if (!batch.isEmpty()) {
+            dispatcher.dispatch("camera tween", batch, playerRef -> send(playerRef, keyframes.get(playerRef.getUuid())))
+                .whenComplete((result, error) -> {
+                    // Final keyframes that could not be sent still end their tween
+                    for (Map.Entry<UUID, Keyframe> entry : keyframes.entrySet()) {
+                        if (entry.getValue().last()) {
+                            tweening.remove(entry.getKey(), entry.getValue().generation());
+                        }
+                    }
+                });
+        }
+    }
+
+    /**
+     * Send a keyframe on the player's world thread, unless its tween was cancelled or replaced since it was picked.
+     */
+    private void send(@Nonnull PlayerRef playerRef, @Nonnull Keyframe keyframe) {
+        UUID playerUuid = playerRef.getUuid();
+        Long current = tweening.get(playerUuid);
+        if (current == null || current != keyframe.generation()) {
+            return;
+        }
+        sender.send(playerRef, keyframe.template());
+        if (keyframe.last()) {
+            tweening.remove(playerUuid, keyframe.generation());
+        }
+    }
+
+    private void applyPending(long tick) {
+        Object next;
+        while ((next = pending.poll()) != null) {
+            if (next instanceof Command command) {
+                UUID playerUuid = command.playerRef().getUuid();
+                Integer existing = slotByPlayer.get(playerUuid);
+                int slot = existing != null ? existing : addSlot(playerUuid);
+                players[slot] = command.playerRef();
+                generation[slot] = command.generation();
+                fromDistance[slot] = command.fromDistance();
+                fromOffset[slot] = command.fromOffset();
+                toDistance[slot] = command.toDistance();
+                toOffset[slot] = command.toOffset();
+                startTick[slot] = tick;
+                durationTicks[slot] = command.durationTicks();
+            } else if (next instanceof UUID playerUuid) {
+                Integer slot = slotByPlayer.get(playerUuid);
+                if (slot != null) {
+                    removeSlot(slot);
+                }
+            }
+        }
+    }
+
+    private int addSlot(@Nonnull UUID playerUuid) {
+        if (size == players.length) {
+            int capacity = size * 2;
+            players = Arrays.copyOf(players, capacity);
+            generation = Arrays.copyOf(generation, capacity);
+            fromDistance = Arrays.copyOf(fromDistance, capacity);
+            toDistance = Arrays.copyOf(toDistance, capacity);
+            fromOffset = Arrays.copyOf(fromOffset, capacity);
+            toOffset = Arrays.copyOf(toOffset, capacity);
+            startTick = Arrays.copyOf(startTick, capacity);
+            durationTicks = Arrays.copyOf(durationTicks, capacity);
+        }
+        int slot = size++;
+        slotByPlayer.put(playerUuid, slot);
+        return slot;
+    }
+
+    /**
+     * Remove a slot by moving the last slot into it.
+     */
+    private void removeSlot(int slot) {
+        int last = --size;
+        slotByPlayer.remove(players[slot].getUuid());
+        if (slot != last) {
+            players[slot] = players[last];
+            generation[slot] = generation[last];
+            fromDistance[slot] = fromDistance[last];
+            toDistance[slot] = toDistance[last];
+            fromOffset[slot] = fromOffset[last];
+            toOffset[slot] = toOffset[last];
+            startTick[slot] = startTick[last];
+            durationTicks[slot] = durationTicks[last];
+            slotByPlayer.put(players[slot].getUuid(), slot);
+        }
+        players[last] = null;
+    }
+
+    /**
+     * Smoothstep easing, slow at both ends.
+     */
+    private static float ease(float t) {
+        return t * t * (3.0f - 2.0f * t);
+    }
+}
@@ -0,0 +1,45 @@
+package com.edgelinegames.cameraplugin;
+
+/**
+ * A box in a world that sets the camera of players inside it.
+ * Bounds are block coordinates and inclusive on both ends.
+ * @param name Unique name of the zone
+ * @param world Name of the world the zone is in
+ * @param distance The camera distance inside the zone
+ * @param rightShoulder true for right shoulder, false for left shoulder
+ */
+public record CameraZone(String name, String world, int minX, int minY, int minZ, int maxX, int maxY, int maxZ,
+                         float distance, boolean rightShoulder) {
+
+    /**
+     * Create a zone from two corners in any order.
+     */
+    public static CameraZone of(String name, String world, int x1, int y1, int z1, int x2, int y2, int z2,
+                                float distance, boolean rightShoulder) {
+        return new CameraZone(name, world, Math.min(x1, x2), Math.min(y1, y2), Math.min(z1, z2),
+            Math.max(x1, x2), Math.max(y1, y2), Math.max(z1, z2), distance, rightShoulder);
+    }
+
+    /**
+     * Check if a position is inside the zone.
+     */
+    public boolean contains(double x, double y, double z) {
+        return x >= minX && x < maxX + 1.0 && y >= minY && y < maxY + 1.0 && z >= minZ && z < maxZ + 1.0;
+    }
+
+    /**
+     * Check if the zone contains every position in a grid column (all heights).
+     */
+    boolean covers(int cellMinX, int cellMinZ, int cellSize) {
+        return minY == Integer.MIN_VALUE && maxY == Integer.MAX_VALUE
+            && minX <= cellMinX && maxX >= cellMinX + cellSize - 1
+            && minZ <= cellMinZ && maxZ >= cellMinZ + cellSize - 1;
+    }
+
+    /**
+     * Volume of the zone; where zones overlap the smallest one wins.
+     */
+    double volume() {
+        return ((double) maxX - minX + 1) * ((double) maxY - minY + 1) * ((double) maxZ - minZ + 1);
+    }
+}
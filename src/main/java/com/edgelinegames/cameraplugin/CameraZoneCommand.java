@@ -0,0 +1,150 @@
+package com.edgelinegames.cameraplugin;
+
+import com.hypixel.hytale.component.Ref;
+import com.hypixel.hytale.component.Store;
+import com.hypixel.hytale.math.vector.Vector3d;
+import com.hypixel.hytale.server.core.Message;
+import com.hypixel.hytale.server.core.command.system.CommandContext;
+import com.hypixel.hytale.server.core.command.system.arguments.system.OptionalArg;
+import com.hypixel.hytale.server.core.command.system.arguments.system.RequiredArg;
+import com.hypixel.hytale.server.core.command.system.arguments.types.ArgTypes;
+import com.hypixel.hytale.server.core.command.system.basecommands.AbstractPlayerCommand;
+import com.hypixel.hytale.server.core.universe.PlayerRef;
+import com.hypixel.hytale.server.core.universe.world.World;
+import com.hypixel.hytale.server.core.universe.world.storage.EntityStore;
+import java.util.List;
+import javax.annotation.Nonnull;
+
+/**
+ * Command to manage camera zones.
+ * Usage: /camerazone add <name> <distance> <radius> [height] [left|right]
+ *        /camerazone remove <name>
+ *        /camerazone list
+ * A new zone is centered on the sender. Without a height it reaches from bedrock to the sky.
+ * Adding and removing zones needs the cameraplugin.camerazone.edit permission.
+ */
+public class CameraZoneCommand extends AbstractPlayerCommand {
+
+    private static final Message MESSAGE_ZONE_ADDED = Message.raw("Camera zone {name} set to {distance} blocks");
+    private static final Message MESSAGE_ZONE_REMOVED = Message.raw("Camera zone {name} removed");
+    private static final Message MESSAGE_ZONE_NOT_FOUND = Message.raw("There is no camera zone named {name}");
+    private static final Message MESSAGE_ZONE_INVALID = Message.raw("Could not add camera zone: {reason}");
+    private static final Message MESSAGE_ZONE_LIST_EMPTY = Message.raw("There are no camera zones");
+    private static final Message MESSAGE_ZONE_ENTRY = Message.raw("{name} ({world}): {distance} blocks, {minX} {minY} {minZ} to {maxX} {maxY} {maxZ}");
+    private static final Message MESSAGE_ZONE_NO_PERMISSION = Message.raw("You do not have permission to edit camera zones.");
+    private static final Message MESSAGE_ZONE_USAGE = Message.raw("Usage: /camerazone add <name> <distance> <radius> [height] [left|right], /camerazone remove <name>, /camerazone list");
+
+    // Permission needed to add and remove zones
+    static final String PERMISSION_EDIT = "cameraplugin.camerazone.edit";
+
+    private final CameraZoneManager manager;
+    private final RequiredArg<String> actionArg;
+    private final OptionalArg<String> nameArg;
+    private final OptionalArg<Float> distanceArg;
+    private final OptionalArg<Integer> radiusArg;
+    private final OptionalArg<Integer> heightArg;
+    private final OptionalArg<String> shoulderArg;
+    private final PluginMetrics.Histogram latency;
+
+    public CameraZoneCommand(@Nonnull CameraZoneManager manager, @Nonnull PluginMetrics.Histogram latency) {
+        super("camerazone", "Manage camera zones");
+        this.manager = manager;
+        this.latency = latency;
+        this.actionArg = withRequiredArg("action", "add/remove/list", ArgTypes.STRING);
+        this.nameArg = withOptionalArg("name", "Zone name", ArgTypes.STRING);
+        this.distanceArg = withOptionalArg("distance", "Camera distance inside the zone", ArgTypes.FLOAT);
+        this.radiusArg = withOptionalArg("radius", "Horizontal radius in blocks", ArgTypes.INTEGER);
+        this.heightArg = withOptionalArg("height", "Vertical radius in blocks (default: whole column)", ArgTypes.INTEGER);
+        this.shoulderArg = withOptionalArg("shoulder", "left/right", ArgTypes.STRING);
+    }
+
+    @Override
+    protected void execute(@Nonnull CommandContext context, @Nonnull Store<EntityStore> store, @Nonnull Ref<EntityStore> ref, @Nonnull PlayerRef playerRef, @Nonnull World world) {
+        long start = System.nanoTime();
+        PluginCommandEvent event = new PluginCommandEvent();
+        event.begin();
+        try {
+            String action = this.actionArg.get(context);
+            String name = this.nameArg.get(context);
+
+            if ("list".equalsIgnoreCase(action)) {
+                list(context);
+            } else if (("add".equalsIgnoreCase(action) || "remove".equalsIgnoreCase(action))
+                && !context.sender().hasPermission(PERMISSION_EDIT)) {
+                context.sendMessage(MESSAGE_ZONE_NO_PERMISSION);
+            } else if ("remove".equalsIgnoreCase(action) && name != null) {
+                if (manager.removeZone(name)) {
+                    context.sendMessage(MESSAGE_ZONE_REMOVED.param("name", name));
+                } else {
+                    context.sendMessage(MESSAGE_ZONE_NOT_FOUND.param("name", name));
+                }
+            } else if ("add".equalsIgnoreCase(action) && name != null) {
+                add(context, playerRef, world, name);
+            } else {
+                context.sendMessage(MESSAGE_ZONE_USAGE);
+            }
+        } finally {
+            latency.recordSince(start);
+            if (event.shouldCommit()) {
+                event.command = "camerazone";
+                event.player = playerRef.getUsername();
+                event.commit();
+            }
+        }
+    }
+
+    private void add(@Nonnull CommandContext context, @Nonnull PlayerRef playerRef, @Nonnull World world, @Nonnull String name) {
+        Float distance = this.distanceArg.get(context);
+        Integer radius = this.radiusArg.get(context);
+        if (distance == null || radius == null) {
+            context.sendMessage(MESSAGE_ZONE_USAGE);
+            return;
+        }
+
+        if (radius < 0 || radius > CameraZoneManager.MAX_RADIUS) {
+            context.sendMessage(MESSAGE_ZONE_INVALID.param("reason", "radius must be between 0 and " + CameraZoneManager.MAX_RADIUS));
+            return;
+        }
+
+        Vector3d position = playerRef.getTransform().getPosition();
+        int x = (int) Math.floor(position.getX());
+        int y = (int) Math.floor(position.getY());
+        int z = (int) Math.floor(position.getZ());
+        Integer height = this.heightArg.get(context);
+        int minY = height != null ? y - Math.abs(height) : Integer.MIN_VALUE;
+        int maxY = height != null ? y + Math.abs(height) : Integer.MAX_VALUE;
+        boolean rightShoulder = !"left".equalsIgnoreCase(this.shoulderArg.get(context));
+
+        try {
+            // Same checks as the zones loaded from camera_zones.json
+            CameraZone zone = new CameraZone(name, world.getName(), x - radius, minY, z - radius, x + radius, maxY, z + radius,
+                distance, rightShoulder);
+            CameraZoneManager.validate(zone, CameraPlugin.getInstance().getConfig());
+            manager.addZone(zone);
+        } catch (IllegalArgumentException e) {
+            context.sendMessage(MESSAGE_ZONE_INVALID.param("reason", e.getMessage()));
+            return;
+        }
+        context.sendMessage(MESSAGE_ZONE_ADDED.param("name", name).param("distance", String.format("%.1f", distance)));
+    }
+
+    private void list(@Nonnull CommandContext context) {
+        List<CameraZone> zones = manager.getZones();
+        if (zones.isEmpty()) {
+            context.sendMessage(MESSAGE_ZONE_LIST_EMPTY);
+            return;
+        }
+        for (CameraZone zone : zones) {
+            context.sendMessage(MESSAGE_ZONE_ENTRY
+                .param("name", zone.name())
+                .param("world", zone.world())
+                .param("distance", String.format("%.1f", zone.distance()))
+                .param("minX", String.valueOf(zone.minX()))
+                .param("minY", zone.minY() == Integer.MIN_VALUE ? "-" : String.valueOf(zone.minY()))
+                .param("minZ", String.valueOf(zone.minZ()))
+                .param("maxX", String.valueOf(zone.maxX()))
+                .param("maxY", zone.maxY() == Integer.MAX_VALUE ? "-" : String.valueOf(zone.maxY()))
+                .param("maxZ", String.valueOf(zone.maxZ())));
+        }
+    }
+}
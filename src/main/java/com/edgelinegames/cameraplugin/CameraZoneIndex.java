@@ -0,0 +1,151 @@
+package com.edgelinegames.cameraplugin;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * Uniform grid over the camera zones of one world.
+ *
+ * The world is split into square columns of CELL_SIZE blocks on X and Z. Each cell keeps the
+ * zones that overlap it, smallest first, so a lookup only tests the few zones near a player.
+ * A cell is static when the same zone (or none) applies everywhere in it; players standing in
+ * a static cell only need a new lookup when they move into another cell.
+ *
+ * An index is immutable; editing zones builds a new one.
+ */
+public final class CameraZoneIndex {
+
+    // Cells are 2^CELL_SHIFT blocks wide
+    public static final int CELL_SHIFT = 5;
+    public static final int CELL_SIZE = 1 << CELL_SHIFT;
+
+    // Zones covering more cells than this are rejected, so one zone cannot blow up the index
+    public static final long MAX_CELLS_PER_ZONE = 1L << 16;
+
+    private static final Comparator<CameraZone> SMALLEST_FIRST = Comparator.comparingDouble(CameraZone::volume);
+
+    /**
+     * The zones overlapping one grid cell, smallest first.
+     */
+    public static final class Cell {
+        final CameraZone[] zones;
+        // Set when the same zone applies to every position in the cell (null zone included)
+        final boolean isStatic;
+
+        Cell(@Nonnull CameraZone[] zones, boolean isStatic) {
+            this.zones = zones;
+            this.isStatic = isStatic;
+        }
+
+        /**
+         * Find the zone for a position in this cell.
+         * @return The smallest zone containing the position, or null if there is none
+         */
+        @Nullable
+        public CameraZone find(double x, double y, double z) {
+            for (CameraZone zone : zones) {
+                if (zone.contains(x, y, z)) {
+                    return zone;
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Check if the same zone applies everywhere in this cell.
+         */
+        public boolean isStatic() {
+            return isStatic;
+        }
+    }
+
+    // Cell for every position no zone overlaps
+    public static final Cell EMPTY_CELL = new Cell(new CameraZone[0], true);
+
+    public static final CameraZoneIndex EMPTY = new CameraZoneIndex(Map.of(), 0);
+
+    private final Map<Long, Cell> cells;
+    private final int zoneCount;
+
+    private CameraZoneIndex(@Nonnull Map<Long, Cell> cells, int zoneCount) {
+        this.cells = cells;
+        this.zoneCount = zoneCount;
+    }
+
+    /**
+     * Build an index over a set of zones.
+     * @throws IllegalArgumentException if a zone covers more than MAX_CELLS_PER_ZONE cells
+     */
+    @Nonnull
+    public static CameraZoneIndex build(@Nonnull Collection<CameraZone> zones) {
+        Map<Long, List<CameraZone>> lists = new HashMap<>();
+        for (CameraZone zone : zones) {
+            int minCellX = zone.minX() >> CELL_SHIFT;
+            int maxCellX = zone.maxX() >> CELL_SHIFT;
+            int minCellZ = zone.minZ() >> CELL_SHIFT;
+            int maxCellZ = zone.maxZ() >> CELL_SHIFT;
+            if ((long) (maxCellX - minCellX + 1) * (maxCellZ - minCellZ + 1) > MAX_CELLS_PER_ZONE) {
+                throw new IllegalArgumentException("Camera zone " + zone.name() + " is too large");
+            }
+            for (int cellX = minCellX; cellX <= maxCellX; cellX++) {
+                for (int cellZ = minCellZ; cellZ <= maxCellZ; cellZ++) {
+                    lists.computeIfAbsent(key(cellX, cellZ), k -> new ArrayList<>(2)).add(zone);
+                }
+            }
+        }
+
+        Map<Long, Cell> cells = new HashMap<>(lists.size() * 2);
+        for (Map.Entry<Long, List<CameraZone>> entry : lists.entrySet()) {
+            List<CameraZone> list = entry.getValue();
+            list.sort(SMALLEST_FIRST);
+            int cellMinX = (int) (entry.getKey() >> 32) << CELL_SHIFT;
+            int cellMinZ = (int) (long) entry.getKey() << CELL_SHIFT;
+            // If the smallest zone covers the whole cell, nothing else in the cell can win
+            boolean isStatic = list.get(0).covers(cellMinX, cellMinZ, CELL_SIZE);
+            cells.put(entry.getKey(), new Cell(list.toArray(new CameraZone[0]), isStatic));
+        }
+        return new CameraZoneIndex(cells, zones.size());
+    }
+
+    /**
+     * Get the grid cell key of a position.
+     */
+    public static long cellKey(double x, double z) {
+        return key((int) Math.floor(x) >> CELL_SHIFT, (int) Math.floor(z) >> CELL_SHIFT);
+    }
+
+    /**
+     * Get the cell for a cell key, EMPTY_CELL if no zone overlaps it.
+     */
+    @Nonnull
+    public Cell cell(long cellKey) {
+        Cell cell = cells.get(cellKey);
+        return cell != null ? cell : EMPTY_CELL;
+    }
+
+    /**
+     * Find the zone for a position.
+     * @return The smallest zone containing the position, or null if there is none
+     */
+    @Nullable
+    public CameraZone find(double x, double y, double z) {
+        return cell(cellKey(x, z)).find(x, y, z);
+    }
+
+    /**
+     * Get the number of zones in this index.
+     */
+    public int getZoneCount() {
+        return zoneCount;
+    }
+
+    private static long key(int cellX, int cellZ) {
+        return ((long) cellX << 32) | (cellZ & 0xFFFFFFFFL);
+    }
+}
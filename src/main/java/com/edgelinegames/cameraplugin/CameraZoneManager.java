@@ -0,0 +1,374 @@
+package com.edgelinegames.cameraplugin;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+import com.hypixel.hytale.logger.HytaleLogger;
+import com.hypixel.hytale.math.vector.Vector3d;
+import com.hypixel.hytale.server.core.universe.PlayerRef;
+import com.hypixel.hytale.server.core.universe.Universe;
+import com.hypixel.hytale.server.core.universe.world.World;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * Camera zones: regions that set the camera of players inside them.
+ *
+ * Zones are kept per world in a CameraZoneIndex grid. Every tick the tracked players are
+ * handed to their world threads through the dispatcher, where each player's position is read
+ * and the camera applied. A player is only looked up in the index when they moved into
+ * another grid cell (or stand in one of the few cells where a zone edge runs through the
+ * cell), so the per-tick cost depends on the number of players, not on the number of zones.
+ * A tick is skipped while the worlds are still busy with the previous one.
+ *
+ * Zones are saved to camera_zones.json on a background thread. Edits are rare, so they
+ * rebuild the indexes and publish them with a single volatile write; ticks never wait for an edit.
+ */
+public class CameraZoneManager implements TickScheduler.TickTask {
+
+    private static final String FILE_NAME = "camera_zones.json";
+
+    // Largest horizontal radius of a zone, in blocks
+    static final int MAX_RADIUS = 2048;
+
+    /**
+     * Applies the camera for a player whose zone changed.
+     */
+    @FunctionalInterface
+    public interface Applier {
+        /**
+         * @param zone The zone the player is now in, or null if they left all zones
+         */
+        void apply(@Nonnull PlayerRef playerRef, @Nullable CameraZone zone);
+    }
+
+    /**
+     * Zone tracking state of one player (only touched by one world thread at a time, except zone).
+     */
+    static final class Tracker {
+        UUID worldUuid;
+        CameraZoneIndex index = CameraZoneIndex.EMPTY;
+        int version = -1;
+        long cellKey;
+        CameraZoneIndex.Cell cell;
+        volatile CameraZone zone;
+
+        /**
+         * Move the tracker to a new position.
+         * @return true if the player's zone changed
+         */
+        boolean update(double x, double y, double z) {
+            long key = CameraZoneIndex.cellKey(x, z);
+            if (cell == null || key != cellKey) {
+                cellKey = key;
+                cell = index.cell(key);
+            } else if (cell.isStatic()) {
+                // Same cell, same zone
+                return false;
+            }
+            CameraZone found = cell.find(x, y, z);
+            if (found == zone) {
+                return false;
+            }
+            zone = found;
+            return true;
+        }
+
+        /**
+         * Switch to another index, the next update looks the player up again.
+         */
+        void reset(@Nonnull CameraZoneIndex index, int version) {
+            this.index = index;
+            this.version = version;
+            this.cell = null;
+        }
+    }
+
+    private record Tracked(@Nonnull PlayerRef playerRef, @Nonnull Tracker tracker) {}
+
+    private final HytaleLogger logger;
+    private final Path file;
+    private final Applier applier;
+    private final CameraBroadcaster.Dispatcher<PlayerRef> dispatcher;
+    private final AtomicBoolean ticking = new AtomicBoolean();
+    private final Object saveLock = new Object();
+    // Number of the latest snapshot handed to a save (guarded by this) and of the one last written (guarded by saveLock)
+    private long saveSequence;
+    private long savedSequence;
+    private final Gson gson = new GsonBuilder().setPrettyPrinting().create();
+    private final Map<UUID, Tracked> tracked = new ConcurrentHashMap<>();
+
+    // All zones by lower case name, guarded by this
+    private final Map<String, CameraZone> zones = new LinkedHashMap<>();
+    // Published indexes by world name, replaced as a whole on every edit
+    private volatile Map<String, CameraZoneIndex> indexByWorld = Map.of();
+    private volatile int version;
+
+    /**
+     * Constructor.
+     * @param logger The logger to use for logging messages
+     * @param dataDirectory The plugin data directory holding camera_zones.json
+     * @param applier Applies the camera when a player's zone changes
+     * @param dispatcher Runs the per-player zone checks on the players' world threads
+     */
+    public CameraZoneManager(@Nonnull HytaleLogger logger, @Nonnull Path dataDirectory, @Nonnull Applier applier,
+                             @Nonnull CameraBroadcaster.Dispatcher<PlayerRef> dispatcher) {
+        this.logger = logger;
+        this.file = dataDirectory.resolve(FILE_NAME);
+        this.applier = applier;
+        this.dispatcher = dispatcher;
+    }
+
+    /**
+     * Load the saved zones. Keeps no zones if the file is missing or cannot be read, and
+     * skips zones that fail the same checks as a zone added with /camerazone add.
+     * @param config Config snapshot with the camera distance bounds
+     */
+    public synchronized void load(@Nonnull PluginConfig config) {
+        if (!Files.exists(file)) {
+            return;
+        }
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            CameraZone[] loaded = gson.fromJson(reader, CameraZone[].class);
+            zones.clear();
+            int skipped = 0;
+            if (loaded != null) {
+                for (int i = 0; i < loaded.length; i++) {
+                    CameraZone zone = loaded[i];
+                    try {
+                        validate(zone, config);
+                    } catch (IllegalArgumentException e) {
+                        skipped++;
+                        logger.at(Level.WARNING).log("CameraZoneManager: Skipped camera zone " + (i + 1) + " in " + file + ": " + e.getMessage());
+                        continue;
+                    }
+                    zones.put(zone.name().toLowerCase(Locale.ROOT), zone);
+                }
+            }
+            rebuild();
+            logger.at(Level.INFO).log("CameraZoneManager: Loaded " + zones.size() + " camera zones"
+                + (skipped > 0 ? ", skipped " + skipped + " invalid ones" : ""));
+        } catch (IOException | JsonParseException | IllegalArgumentException e) {
+            zones.clear();
+            logger.at(Level.SEVERE).withCause(e).log("CameraZoneManager: Could not load camera zones from " + file);
+        }
+    }
+
+    /**
+     * Check a zone before it is added or loaded.
+     * @param zone The zone, null for an empty entry in camera_zones.json
+     * @param config Config snapshot with the camera distance bounds
+     * @throws IllegalArgumentException with the reason if the zone is not valid
+     */
+    static void validate(@Nullable CameraZone zone, @Nonnull PluginConfig config) {
+        if (zone == null) {
+            throw new IllegalArgumentException("empty entry");
+        }
+        if (zone.name() == null || zone.name().isBlank()) {
+            throw new IllegalArgumentException("the zone has no name");
+        }
+        if (zone.world() == null || zone.world().isBlank()) {
+            throw new IllegalArgumentException("zone " + zone.name() + " has no world");
+        }
+        if (zone.minX() > zone.maxX() || zone.minY() > zone.maxY() || zone.minZ() > zone.maxZ()) {
+            throw new IllegalArgumentException("zone " + zone.name() + " has a min corner past its max corner");
+        }
+        if ((long) zone.maxX() - zone.minX() > 2L * MAX_RADIUS || (long) zone.maxZ() - zone.minZ() > 2L * MAX_RADIUS) {
+            throw new IllegalArgumentException("radius must be between 0 and " + MAX_RADIUS);
+        }
+        if (!(zone.distance() >= config.getMinCameraDistance() && zone.distance() <= config.getMaxCameraDistance())) {
+            throw new IllegalArgumentException("distance must be between "
+                + config.getMinCameraDistance() + " and " + config.getMaxCameraDistance());
+        }
+    }
+
+    /**
+     * Add a zone, replacing any zone with the same name, and save in the background.
+     * @throws IllegalArgumentException if the zone is too large to index
+     */
+    public synchronized void addZone(@Nonnull CameraZone zone) {
+        String key = zone.name().toLowerCase(Locale.ROOT);
+        CameraZone previous = zones.put(key, zone);
+        try {
+            rebuild();
+        } catch (IllegalArgumentException e) {
+            if (previous != null) {
+                zones.put(key, previous);
+            } else {
+                zones.remove(key);
+            }
+            throw e;
+        }
+        saveAsync();
+    }
+
+    /**
+     * Remove a zone by name and save in the background.
+     * @return true if the zone existed
+     */
+    public synchronized boolean removeZone(@Nonnull String name) {
+        if (zones.remove(name.toLowerCase(Locale.ROOT)) == null) {
+            return false;
+        }
+        rebuild();
+        saveAsync();
+        return true;
+    }
+
+    /**
+     * Get all zones, sorted by name.
+     */
+    @Nonnull
+    public synchronized List<CameraZone> getZones() {
+        List<CameraZone> list = new ArrayList<>(zones.values());
+        list.sort(Comparator.comparing(CameraZone::name));
+        return list;
+    }
+
+    /**
+     * Get the zone a player is in, as of the last tick.
+     * @return The zone, or null if the player is in none or is not tracked
+     */
+    @Nullable
+    public CameraZone getZone(@Nonnull UUID playerUuid) {
+        Tracked entry = tracked.get(playerUuid);
+        return entry != null ? entry.tracker().zone : null;
+    }
+
+    /**
+     * Start tracking a player (called when the player joins).
+     */
+    public void track(@Nonnull PlayerRef playerRef) {
+        tracked.put(playerRef.getUuid(), new Tracked(playerRef, new Tracker()));
+    }
+
+    /**
+     * Stop tracking a player (called when the player disconnects).
+     */
+    public void untrack(@Nonnull UUID playerUuid) {
+        tracked.remove(playerUuid);
+    }
+
+    @Override
+    public void tick(long tick) {
+        if (tracked.isEmpty() || !ticking.compareAndSet(false, true)) {
+            return;
+        }
+        int currentVersion = version;
+        Map<String, CameraZoneIndex> indexes = indexByWorld;
+        List<PlayerRef> players = new ArrayList<>(tracked.size());
+        for (Tracked entry : tracked.values()) {
+            players.add(entry.playerRef());
+        }
+        try {
+            dispatcher.dispatch("camera zones", players, playerRef -> update(playerRef, indexes, currentVersion))
+                .whenComplete((result, error) -> ticking.set(false));
+        } catch (RuntimeException e) {
+            ticking.set(false);
+            throw e;
+        }
+    }
+
+    /**
+     * Check the zone of one player, on the player's world thread.
+     */
+    private void update(@Nonnull PlayerRef playerRef, @Nonnull Map<String, CameraZoneIndex> indexes, int currentVersion) {
+        Tracked entry = tracked.get(playerRef.getUuid());
+        if (entry == null || entry.playerRef() != playerRef || !playerRef.isValid()) {
+            return;
+        }
+
+        Tracker tracker = entry.tracker();
+        UUID worldUuid = playerRef.getWorldUuid();
+        if (worldUuid == null) {
+            return;
+        }
+        if (tracker.version != currentVersion || !worldUuid.equals(tracker.worldUuid)) {
+            // Zones were edited or the player changed worlds
+            tracker.worldUuid = worldUuid;
+            tracker.reset(indexFor(indexes, worldUuid), currentVersion);
+        }
+
+        Vector3d position = playerRef.getTransform().getPosition();
+        if (tracker.update(position.getX(), position.getY(), position.getZ())) {
+            applier.apply(playerRef, tracker.zone);
+        }
+    }
+
+    @Nonnull
+    private static CameraZoneIndex indexFor(@Nonnull Map<String, CameraZoneIndex> indexes, @Nonnull UUID worldUuid) {
+        if (indexes.isEmpty()) {
+            return CameraZoneIndex.EMPTY;
+        }
+        World world = Universe.get().getWorld(worldUuid);
+        CameraZoneIndex index = world != null ? indexes.get(world.getName()) : null;
+        return index != null ? index : CameraZoneIndex.EMPTY;
+    }
+
+    /**
+     * Rebuild the indexes of all worlds from the zone map and publish them.
+     */
+    private void rebuild() {
+        Map<String, List<CameraZone>> byWorld = new HashMap<>();
+        for (CameraZone zone : zones.values()) {
+            byWorld.computeIfAbsent(zone.world(), world -> new ArrayList<>()).add(zone);
+        }
+        Map<String, CameraZoneIndex> indexes = new HashMap<>();
+        for (Map.Entry<String, List<CameraZone>> entry : byWorld.entrySet()) {
+            indexes.put(entry.getKey(), CameraZoneIndex.build(entry.getValue()));
+        }
+        this.indexByWorld = Map.copyOf(indexes);
+        this.version++;
+    }
+
+    /**
+     * Save a snapshot of all zones on a virtual thread, so the command thread never waits for the disk.
+     * Must be called while holding this.
+     */
+    private void saveAsync() {
+        CameraZone[] snapshot = zones.values().toArray(new CameraZone[0]);
+        long sequence = ++saveSequence;
+        Thread.ofVirtual().name("CameraPlugin-ZoneSave").start(() -> save(snapshot, sequence));
+    }
+
+    /**
+     * Write the zones to disk, through a temporary file so a crash never leaves half a file.
+     * Saves run one at a time, and a save of an older snapshot never replaces a newer one.
+     */
+    private void save(@Nonnull CameraZone[] snapshot, long sequence) {
+        synchronized (saveLock) {
+            if (sequence <= savedSequence) {
+                return;
+            }
+            savedSequence = sequence;
+            Path temp = file.resolveSibling(FILE_NAME + ".tmp");
+            try {
+                Files.createDirectories(file.getParent());
+                try (Writer writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                    gson.toJson(snapshot, writer);
+                }
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                logger.at(Level.SEVERE).withCause(e).log("CameraZoneManager: Could not save camera zones to " + file);
+            }
+        }
+    }
+}
@@ -0,0 +1,238 @@
+package com.edgelinegames.cameraplugin;
+
+import com.hypixel.hytale.server.core.universe.PlayerRef;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * Coalesces /camerazoom requests per player.
+ *
+ * Each player has one pending-zoom slot. A command only overwrites the slot; the slot is
+ * flushed at most once every flushIntervalTicks, so a macro sending dozens of zooms per second
+ * results in one camera change with the last value. A small token bucket per player rejects
+ * command floods before they reach the slot. The flushed players get their camera on their
+ * own world threads, through the dispatcher. Every request gets the outcome of the flush that
+ * took its slot, so an overwritten request reports the distance that was actually applied.
+ */
+public class CameraZoomCoalescer implements TickScheduler.TickTask {
+
+    // Default flush interval and token bucket settings
+    public static final int DEFAULT_FLUSH_INTERVAL_TICKS = 1;
+    public static final int DEFAULT_BURST = 5;
+    public static final float DEFAULT_REFILL_PER_SECOND = 5.0f;
+
+    /**
+     * Result of a zoom request.
+     */
+    public enum Result {
+        // The distance was saved and the player's camera shows it
+        APPLIED,
+        // The distance was saved, but a camera track or spectator camera owns the camera until it ends
+        SUPPRESSED,
+        // The player sent too many requests and this one was dropped
+        RATE_LIMITED,
+        // The player left before the slot was flushed
+        DROPPED
+    }
+
+    /**
+     * Outcome of a zoom request.
+     * @param result What happened to the request
+     * @param distance The distance that was applied, which is the last one in the slot when it was flushed
+     */
+    public record Outcome(@Nonnull Result result, float distance) {
+    }
+
+    private static final class Slot {
+        final PlayerRef playerRef;
+        final AtomicBoolean queued = new AtomicBoolean();
+        long lastFlushTick = Long.MIN_VALUE / 2;
+
+        // Last requested distance and the outcome of the requests waiting for it, guarded by the slot
+        float distance;
+        CompletableFuture<Outcome> pending;
+
+        // Token bucket, guarded by the slot
+        float tokens;
+        long lastRefillNanos;
+
+        Slot(@Nonnull PlayerRef playerRef, float tokens) {
+            this.playerRef = playerRef;
+            this.tokens = tokens;
+            this.lastRefillNanos = System.nanoTime();
+        }
+    }
+
+    private final Applier applier;
+    private final CameraBroadcaster.Dispatcher<PlayerRef> dispatcher;
+    private final Map<UUID, Slot> slots = new ConcurrentHashMap<>();
+    private final Queue<Slot> dirty = new ConcurrentLinkedQueue<>();
+    private volatile int flushIntervalTicks = DEFAULT_FLUSH_INTERVAL_TICKS;
+    private volatile int burst = DEFAULT_BURST;
+    private volatile float refillPerSecond = DEFAULT_REFILL_PER_SECOND;
+
+    /**
+     * Applies the coalesced distance to a player.
+     */
+    @FunctionalInterface
+    public interface Applier {
+        /**
+         * @return true if the player's camera shows the distance, false if it was suppressed
+         */
+        boolean apply(@Nonnull PlayerRef playerRef, float distance);
+    }
+
+    private record Flush(float distance, @Nullable CompletableFuture<Outcome> pending) {
+
+        void complete(@Nonnull Result result) {
+            if (pending != null) {
+                pending.complete(new Outcome(result, distance));
+            }
+        }
+    }
+
+    /**
+     * Constructor.
+     * @param applier Called on flush with the last requested distance
+     * @param dispatcher Runs the applier on the players' world threads
+     */
+    public CameraZoomCoalescer(@Nonnull Applier applier, @Nonnull CameraBroadcaster.Dispatcher<PlayerRef> dispatcher) {
+        this.applier = applier;
+        this.dispatcher = dispatcher;
+    }
+
+    /**
+     * Store a zoom request for a player.
+     * @param playerRef The player
+     * @param distance The requested distance
+     * @return The outcome, completed when the slot is flushed (right away if rate limited)
+     */
+    @Nonnull
+    public CompletableFuture<Outcome> submit(@Nonnull PlayerRef playerRef, float distance) {
+        Slot slot = slots.computeIfAbsent(playerRef.getUuid(), uuid -> new Slot(playerRef, burst));
+        if (!tryAcquire(slot)) {
+            return CompletableFuture.completedFuture(new Outcome(Result.RATE_LIMITED, distance));
+        }
+
+        CompletableFuture<Outcome> outcome;
+        synchronized (slot) {
+            slot.distance = distance;
+            if (slot.pending == null) {
+                slot.pending = new CompletableFuture<>();
+            }
+            outcome = slot.pending;
+        }
+        if (slot.queued.compareAndSet(false, true)) {
+            dirty.add(slot);
+        }
+        return outcome;
+    }
+
+    /**
+     * Drop the slot of a player (called when the player disconnects).
+     */
+    public void forget(@Nonnull UUID playerUuid) {
+        Slot slot = slots.remove(playerUuid);
+        if (slot != null) {
+            take(slot).complete(Result.DROPPED);
+        }
+    }
+
+    /**
+     * Set the minimum number of ticks between two camera changes for the same player.
+     */
+    public void setFlushIntervalTicks(int flushIntervalTicks) {
+        this.flushIntervalTicks = Math.max(1, flushIntervalTicks);
+    }
+
+    /**
+     * Set the token bucket size and refill rate.
+     */
+    public void setRateLimit(int burst, float refillPerSecond) {
+        this.burst = Math.max(1, burst);
+        this.refillPerSecond = Math.max(0.1f, refillPerSecond);
+    }
+
+    @Override
+    public void tick(long tick) {
+        int interval = flushIntervalTicks;
+        List<PlayerRef> players = null;
+        Map<UUID, Flush> flushes = null;
+        // Only look at the slots that were dirty when the tick started
+        for (int remaining = dirty.size(); remaining > 0; remaining--) {
+            Slot slot = dirty.poll();
+            if (slot == null) {
+                break;
+            }
+            if (tick - slot.lastFlushTick < interval) {
+                // Flushed too recently, try again next tick
+                dirty.add(slot);
+                continue;
+            }
+
+            // Clear the flag before reading the value, so a request racing with the flush is queued again
+            slot.queued.set(false);
+            Flush flush = take(slot);
+            slot.lastFlushTick = tick;
+            if (!slot.playerRef.isValid()) {
+                flush.complete(Result.DROPPED);
+                continue;
+            }
+            if (players == null) {
+                players = new ArrayList<>();
+                flushes = new HashMap<>();
+            }
+            players.add(slot.playerRef);
+            flushes.put(slot.playerRef.getUuid(), flush);
+        }
+
+        if (players != null) {
+            Map<UUID, Flush> flushed = flushes;
+            dispatcher.dispatch("camera zoom", players, playerRef -> {
+                Flush flush = flushed.get(playerRef.getUuid());
+                flush.complete(applier.apply(playerRef, flush.distance()) ? Result.APPLIED : Result.SUPPRESSED);
+            }).whenComplete((result, error) -> {
+                // Players whose apply failed, or whose world took no more tasks
+                for (Flush flush : flushed.values()) {
+                    flush.complete(Result.DROPPED);
+                }
+            });
+        }
+    }
+
+    /**
+     * Take the distance and the waiting requests out of a slot.
+     */
+    @Nonnull
+    private static Flush take(@Nonnull Slot slot) {
+        synchronized (slot) {
+            Flush flush = new Flush(slot.distance, slot.pending);
+            slot.pending = null;
+            return flush;
+        }
+    }
+
+    private boolean tryAcquire(@Nonnull Slot slot) {
+        synchronized (slot) {
+            long now = System.nanoTime();
+            float refilled = slot.tokens + (now - slot.lastRefillNanos) / 1_000_000_000.0f * refillPerSecond;
+            slot.tokens = Math.min(burst, refilled);
+            slot.lastRefillNanos = now;
+            if (slot.tokens < 1.0f) {
+                return false;
+            }
+            slot.tokens -= 1.0f;
+            return true;
+        }
+    }
+}
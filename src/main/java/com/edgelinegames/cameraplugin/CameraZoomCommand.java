@@ -4,51 +4,154 @@ import com.hypixel.hytale.component.Ref;
 import com.hypixel.hytale.component.Store;
 import com.hypixel.hytale.server.core.Message;
 import com.hypixel.hytale.server.core.command.system.CommandContext;
+import com.hypixel.hytale.server.core.command.system.arguments.system.OptionalArg;
 import com.hypixel.hytale.server.core.command.system.arguments.system.RequiredArg;
 import com.hypixel.hytale.server.core.command.system.arguments.types.ArgTypes;
 import com.hypixel.hytale.server.core.command.system.basecommands.AbstractPlayerCommand;
 import com.hypixel.hytale.server.core.universe.PlayerRef;
+import com.hypixel.hytale.server.core.universe.Universe;
 import com.hypixel.hytale.server.core.universe.world.World;
 import com.hypixel.hytale.server.core.universe.world.storage.EntityStore;
+import java.util.List;
 import javax.annotation.Nonnull;
 
 /**
  * Command to allow players to change their camera zoom distance.
- * Usage: /camerazoom <distance>
+ * Usage: /camerazoom <distance> [players]
+ * With a player selector (see {@link PlayerSelector}) the zoom is set for every selected player,
+ * which needs the cameraplugin.camerazoom.others permission. Only the sender's own zoom is saved
+ * as their preferred distance; selected players keep theirs and get it back on their next join.
  */
 public class CameraZoomCommand extends AbstractPlayerCommand {
     
     private static final Message MESSAGE_CAMERA_ZOOM_SET = Message.raw("Camera zoom set to {distance} blocks");
-    private static final Message MESSAGE_CAMERA_ZOOM_INVALID = Message.raw("Invalid distance! Please use a number between 1 and 100.");
-    private static final Message MESSAGE_CAMERA_ZOOM_USAGE = Message.raw("Usage: /camerazoom <distance> (1-100)");
+    private static final Message MESSAGE_CAMERA_ZOOM_SAVED = Message.raw("Camera zoom saved as {distance} blocks, it applies when your current camera ends");
+    private static final Message MESSAGE_CAMERA_ZOOM_INVALID = Message.raw("Invalid distance! Please use a number between {min} and {max}.");
+    private static final Message MESSAGE_CAMERA_ZOOM_USAGE = Message.raw("Usage: /camerazoom <distance> ({min}-{max}) [players]");
+    private static final Message MESSAGE_CAMERA_ZOOM_RATE_LIMITED = Message.raw("You are changing your camera zoom too fast, please slow down.");
+    private static final Message MESSAGE_CAMERA_ZOOM_NO_PERMISSION = Message.raw("You do not have permission to change the camera zoom of other players.");
+    private static final Message MESSAGE_CAMERA_ZOOM_BAD_SELECTOR = Message.raw("{error}. Use @a, @w, @w:<world>, @r:<radius> or a name pattern like Event*.");
+    private static final Message MESSAGE_CAMERA_ZOOM_NOBODY = Message.raw("No players match {selector}");
+    private static final Message MESSAGE_CAMERA_ZOOM_SET_SELECTED = Message.raw("Camera zoom set to {distance} blocks for {count} players ({selector})");
+    
+    // Permission needed to change the zoom of other players with a selector
+    static final String PERMISSION_OTHERS = "cameraplugin.camerazoom.others";
     
     private final RequiredArg<Float> distanceArg;
+    private final OptionalArg<String> playersArg;
+    private final PluginMetrics.Histogram latency;
     
-    public CameraZoomCommand() {
+    public CameraZoomCommand(@Nonnull PluginMetrics.Histogram latency) {
         super("camerazoom", "Change your camera zoom distance");
-        this.distanceArg = withRequiredArg("distance", "Camera distance (1-100 blocks)", ArgTypes.FLOAT);
+        this.latency = latency;
+        this.distanceArg = withRequiredArg("distance", "Camera distance in blocks, within minCameraDistance and maxCameraDistance of config.json", ArgTypes.FLOAT);
+        this.playersArg = withOptionalArg("players", "Players to change: @a, @w, @w:<world>, @r:<radius> or a name pattern", ArgTypes.STRING);
     }
     
     @Override
     protected void execute(@Nonnull CommandContext context, @Nonnull Store<EntityStore> store, @Nonnull Ref<EntityStore> ref, @Nonnull PlayerRef playerRef, @Nonnull World world) {
-        // Get the distance argument
-        Float distance = this.distanceArg.get(context);
-        if (distance == null) {
-            context.sendMessage(MESSAGE_CAMERA_ZOOM_USAGE);
+        long start = System.nanoTime();
+        PluginCommandEvent event = new PluginCommandEvent();
+        event.begin();
+        try {
+            // Get the distance argument
+            PluginConfig config = CameraPlugin.getInstance().getConfig();
+            Float distance = this.distanceArg.get(context);
+            if (distance == null) {
+                context.sendMessage(MESSAGE_CAMERA_ZOOM_USAGE
+                    .param("min", String.format("%.1f", config.getMinCameraDistance()))
+                    .param("max", String.format("%.1f", config.getMaxCameraDistance())));
+                return;
+            }
+            
+            // Validate distance range (minCameraDistance to maxCameraDistance of the current config)
+            if (!isValidDistance(config, distance)) {
+                context.sendMessage(MESSAGE_CAMERA_ZOOM_INVALID
+                    .param("min", String.format("%.1f", config.getMinCameraDistance()))
+                    .param("max", String.format("%.1f", config.getMaxCameraDistance())));
+                return;
+            }
+            
+            String selector = this.playersArg.get(context);
+            if (selector != null) {
+                zoomSelected(context, playerRef, selector, distance);
+                return;
+            }
+            
+            // Queue the camera zoom; repeated commands within a tick are merged and only the last one is applied,
+            // so the confirmation waits for the flush and reports the distance that actually was
+            CameraPlugin.getInstance().getZoomCoalescer().submit(playerRef, distance.floatValue())
+                .thenAccept(outcome -> confirm(context, outcome));
+        } finally {
+            latency.recordSince(start);
+            if (event.shouldCommit()) {
+                event.command = "camerazoom";
+                event.player = playerRef.getUsername();
+                event.commit();
+            }
+        }
+    }
+    
+    /**
+     * Answer a zoom request once its slot was flushed.
+     */
+    private static void confirm(@Nonnull CommandContext context, @Nonnull CameraZoomCoalescer.Outcome outcome) {
+        switch (outcome.result()) {
+            case APPLIED -> context.sendMessage(MESSAGE_CAMERA_ZOOM_SET.param("distance", formatApplied(outcome.distance())));
+            case SUPPRESSED -> context.sendMessage(MESSAGE_CAMERA_ZOOM_SAVED.param("distance", formatApplied(outcome.distance())));
+            case RATE_LIMITED -> context.sendMessage(MESSAGE_CAMERA_ZOOM_RATE_LIMITED);
+            case DROPPED -> {
+                // The player left, nobody to answer
+            }
+        }
+    }
+    
+    /**
+     * Set the zoom of every selected player without saving it. Applied in batches over several
+     * ticks and answered with one message when all players are done.
+     */
+    private void zoomSelected(@Nonnull CommandContext context, @Nonnull PlayerRef sender, @Nonnull String selectorText, float distance) {
+        if (!context.sender().hasPermission(PERMISSION_OTHERS)) {
+            context.sendMessage(MESSAGE_CAMERA_ZOOM_NO_PERMISSION);
             return;
         }
         
-        // Validate distance range (1-100 blocks)
-        if (distance < 1.0f || distance > 100.0f) {
-            context.sendMessage(MESSAGE_CAMERA_ZOOM_INVALID);
+        PlayerSelector selector;
+        try {
+            selector = PlayerSelector.parse(selectorText);
+        } catch (IllegalArgumentException e) {
+            context.sendMessage(MESSAGE_CAMERA_ZOOM_BAD_SELECTOR.param("error", e.getMessage()));
             return;
         }
         
-        // Apply the camera zoom (this runs on the world thread)
-        CameraPlugin.getInstance().setCameraDistance(playerRef, distance.floatValue());
+        List<PlayerRef> targets = selector.resolve(Universe.get().getPlayers(), sender);
+        if (targets.isEmpty()) {
+            context.sendMessage(MESSAGE_CAMERA_ZOOM_NOBODY.param("selector", selectorText));
+            return;
+        }
         
-        // Send confirmation message
-        context.sendMessage(MESSAGE_CAMERA_ZOOM_SET.param("distance", String.format("%.1f", distance)));
+        String applied = formatApplied(distance);
+        CameraPlugin.getInstance().setCameraDistance("camerazoom " + selectorText, targets, distance).getCompletion()
+            .thenAccept(broadcast -> context.sendMessage(MESSAGE_CAMERA_ZOOM_SET_SELECTED
+                .param("distance", applied)
+                .param("count", String.valueOf(broadcast.getProcessed()))
+                .param("selector", selectorText)));
+    }
+    
+    /**
+     * Check a requested distance against the bounds of a config snapshot.
+     */
+    static boolean isValidDistance(@Nonnull PluginConfig config, float distance) {
+        return distance >= config.getMinCameraDistance() && distance <= config.getMaxCameraDistance();
     }
+    
+    /**
+     * Format a distance as it will be applied (packets use 0.1 block steps).
+     */
+    @Nonnull
+    static String formatApplied(float distance) {
+        return String.format("%.1f", CameraPacketCache.quantizeDistance(distance) * CameraPacketCache.DISTANCE_STEP);
+    }
+
 }
 
@@ -0,0 +1,26 @@
+package com.edgelinegames.cameraplugin;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR event for one death handled by PreventDeathItemDropSystem, covering the drop decision
+ * and handing the inventory to the death archive.
+ */
+@Name("cameraplugin.DeathDropDecision")
+@Label("Death Drop Decision")
+@Category({"CameraPlugin", "Death Drop"})
+@Description("Whether a dying player keeps their items")
+@StackTrace(false)
+class DeathDropDecisionEvent extends Event {
+
+    @Label("Player")
+    String player;
+
+    @Label("Keeps Items")
+    boolean keepsItems;
+}
@@ -0,0 +1,50 @@
+package com.edgelinegames.cameraplugin;
+
+import javax.annotation.Nullable;
+
+/**
+ * One declarative death drop rule, as written in config.json under deathDropRules.
+ * Every condition that is set has to match; a rule without conditions matches everyone.
+ * Rules are checked in order and the first matching rule decides.
+ * @param name Name used in log and error messages
+ * @param world World name the player has to be in, or null for any world
+ * @param group Permission group the player has to be in, or null for any group
+ * @param region Box the player has to die in, or null for anywhere
+ * @param action "keep" to prevent the item drop (the default), "drop" to let items drop
+ */
+public record DeathDropRule(String name, @Nullable String world, @Nullable String group, @Nullable Region region,
+                            @Nullable String action) {
+
+    /**
+     * A box in block coordinates, inclusive on both ends.
+     */
+    public record Region(int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
+
+        public boolean contains(double x, double y, double z) {
+            return x >= minX && x < maxX + 1.0 && y >= minY && y < maxY + 1.0 && z >= minZ && z < maxZ + 1.0;
+        }
+    }
+
+    /**
+     * Check if the rule prevents the item drop when it matches.
+     */
+    public boolean keepsItems() {
+        return action == null || !action.equalsIgnoreCase("drop");
+    }
+
+    /**
+     * Check the rule for mistakes.
+     * @throws IllegalArgumentException describing the problem
+     */
+    void validate() {
+        if (name == null || name.isEmpty()) {
+            throw new IllegalArgumentException("Every death drop rule needs a name");
+        }
+        if (action != null && !action.equalsIgnoreCase("keep") && !action.equalsIgnoreCase("drop")) {
+            throw new IllegalArgumentException("Death drop rule " + name + " has an unknown action: " + action);
+        }
+        if (region != null && (region.minX() > region.maxX() || region.minY() > region.maxY() || region.minZ() > region.maxZ())) {
+            throw new IllegalArgumentException("Death drop rule " + name + " has a region with min greater than max");
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package com.edgelinegames.cameraplugin;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * Death drop rules compiled for fast evaluation.
+ *
+ * Compiling splits the rules by world, so a lookup never looks at rules for other worlds.
+ * decide() then resolves everything that only depends on the player's world and groups
+ * into a Decision: either a constant, or the few region boxes that still have to be checked
+ * against the death position, stored in flat arrays. A Decision is meant to be cached per
+ * player and only computed again when the player's world, groups or the rules change.
+ *
+ * A rule set is immutable; new rules are compiled into a new set.
+ */
+public final class DeathDropRuleSet {
+
+    /**
+     * The rules that apply to one world and group set.
+     */
+    public static final class Decision {
+
+        static final Decision KEEP = new Decision(new double[0], new boolean[0], true);
+        static final Decision DROP = new Decision(new double[0], new boolean[0], false);
+
+        // Region boxes in rule order, 6 values each: min x, y, z and max x, y, z (exclusive)
+        private final double[] boxes;
+        private final boolean[] keeps;
+        // Result when no region matches
+        private final boolean fallback;
+
+        private Decision(@Nonnull double[] boxes, @Nonnull boolean[] keeps, boolean fallback) {
+            this.boxes = boxes;
+            this.keeps = keeps;
+            this.fallback = fallback;
+        }
+
+        /**
+         * Check if the result depends on where the player died.
+         */
+        public boolean needsPosition() {
+            return keeps.length != 0;
+        }
+
+        /**
+         * Get the result for a decision that does not need a position.
+         */
+        public boolean keepsItems() {
+            return fallback;
+        }
+
+        /**
+         * Get the result for a death at the given position.
+         */
+        public boolean keepsItems(double x, double y, double z) {
+            for (int i = 0, box = 0; i < keeps.length; i++, box += 6) {
+                if (x >= boxes[box] && y >= boxes[box + 1] && z >= boxes[box + 2]
+                    && x < boxes[box + 3] && y < boxes[box + 4] && z < boxes[box + 5]) {
+                    return keeps[i];
+                }
+            }
+            return fallback;
+        }
+    }
+
+    private record Compiled(@Nullable String group, @Nullable DeathDropRule.Region region, boolean keep) {}
+
+    public static final DeathDropRuleSet EMPTY = new DeathDropRuleSet(Map.of(), new Compiled[0], 0);
+
+    private final Map<String, Compiled[]> byWorld;
+    private final Compiled[] anyWorld;
+    private final int size;
+
+    private DeathDropRuleSet(@Nonnull Map<String, Compiled[]> byWorld, @Nonnull Compiled[] anyWorld, int size) {
+        this.byWorld = byWorld;
+        this.anyWorld = anyWorld;
+        this.size = size;
+    }
+
+    /**
+     * Validate and compile a list of rules.
+     * @throws IllegalArgumentException if a rule is invalid
+     */
+    @Nonnull
+    public static DeathDropRuleSet compile(@Nonnull List<DeathDropRule> rules) {
+        if (rules.isEmpty()) {
+            return EMPTY;
+        }
+
+        List<Compiled> anyWorld = new ArrayList<>();
+        Map<String, List<Compiled>> byWorld = new HashMap<>();
+        for (DeathDropRule rule : rules) {
+            if (rule == null) {
+                throw new IllegalArgumentException("deathDropRules must not contain empty entries");
+            }
+            rule.validate();
+            Compiled compiled = new Compiled(rule.group(), rule.region(), rule.keepsItems());
+            if (rule.world() == null) {
+                // Applies to every world, including the ones that already have their own rules
+                anyWorld.add(compiled);
+                byWorld.values().forEach(list -> list.add(compiled));
+            } else {
+                byWorld.computeIfAbsent(rule.world(), world -> new ArrayList<>(anyWorld)).add(compiled);
+            }
+        }
+
+        Map<String, Compiled[]> compiledByWorld = new HashMap<>();
+        byWorld.forEach((world, list) -> compiledByWorld.put(world, list.toArray(new Compiled[0])));
+        return new DeathDropRuleSet(Map.copyOf(compiledByWorld), anyWorld.toArray(new Compiled[0]), rules.size());
+    }
+
+    /**
+     * Resolve the rules for a world and group set.
+     * @param world The world the player is in
+     * @param groups The permission groups of the player
+     */
+    @Nonnull
+    public Decision decide(@Nonnull String world, @Nonnull Set<String> groups) {
+        Compiled[] rules = byWorld.getOrDefault(world, anyWorld);
+        List<DeathDropRule.Region> regions = new ArrayList<>();
+        List<Boolean> regionKeeps = new ArrayList<>();
+        boolean fallback = false;
+        for (Compiled rule : rules) {
+            if (rule.group() != null && !groups.contains(rule.group())) {
+                continue;
+            }
+            if (rule.region() == null) {
+                // Matches everywhere, later rules can never be reached
+                fallback = rule.keep();
+                break;
+            }
+            regions.add(rule.region());
+            regionKeeps.add(rule.keep());
+        }
+
+        if (regions.isEmpty()) {
+            return fallback ? Decision.KEEP : Decision.DROP;
+        }
+        double[] boxes = new double[regions.size() * 6];
+        boolean[] keeps = new boolean[regions.size()];
+        for (int i = 0; i < keeps.length; i++) {
+            DeathDropRule.Region region = regions.get(i);
+            boxes[i * 6] = region.minX();
+            boxes[i * 6 + 1] = region.minY();
+            boxes[i * 6 + 2] = region.minZ();
+            boxes[i * 6 + 3] = region.maxX() + 1.0;
+            boxes[i * 6 + 4] = region.maxY() + 1.0;
+            boxes[i * 6 + 5] = region.maxZ() + 1.0;
+            keeps[i] = regionKeeps.get(i);
+        }
+        return new Decision(boxes, keeps, fallback);
+    }
+
+    /**
+     * Check if there are no rules at all.
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Get the number of rules.
+     */
+    public int size() {
+        return size;
+    }
+}
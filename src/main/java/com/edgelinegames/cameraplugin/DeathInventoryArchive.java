@@ -0,0 +1,762 @@
+package com.edgelinegames.cameraplugin;
+
+import com.hypixel.hytale.logger.HytaleLogger;
+import com.hypixel.hytale.server.core.inventory.Inventory;
+import com.hypixel.hytale.server.core.inventory.ItemStack;
+import com.hypixel.hytale.server.core.inventory.container.ItemContainer;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.logging.Level;
+import java.util.stream.Stream;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * Archive of player inventories at the moment of death, so support staff can restore items.
+ *
+ * On the world thread a death is only encoded into one compact byte array and put on a
+ * bounded queue; nothing there touches the disk. A writer on a virtual thread drains the
+ * queue in batches, deflates each batch into one block and appends it to the current
+ * segment file. Segments roll over at segmentBytes and the oldest are deleted past
+ * maxSegments.
+ *
+ * Every block starts with an uncompressed list of the players in it, so opening the archive
+ * only reads block headers to rebuild an in-memory index of each player's recent deaths.
+ * A lookup then reads and inflates just the blocks that hold that player's deaths. When a
+ * segment is deleted its entries leave the index, so the index only covers kept deaths.
+ *
+ * Player names are appended to players.idx whenever a player's first death (or a death under
+ * a new name) is archived, so deaths can also be looked up for players who are offline.
+ *
+ * Block layout: magic(int) count(int) rawLength(int) compressedLength(int),
+ * count x (uuidMost(long) uuidLeast(long)), then the deflated records.
+ * Record layout: uuidMost(long) uuidLeast(long) time(long) world(UTF) lossMode(UTF) itemsLength(int) items.
+ * Items layout: count(short), then section(byte) slot(short) itemId(UTF) quantity(int) durability(double).
+ * Name record layout: uuidMost(long) uuidLeast(long) name(UTF).
+ */
+public class DeathInventoryArchive implements AutoCloseable {
+
+    // Defaults for segment size and number of segments kept
+    public static final int DEFAULT_SEGMENT_BYTES = 16 << 20;
+    public static final int DEFAULT_MAX_SEGMENTS = 32;
+
+    private static final int BLOCK_MAGIC = 0x44494E56; // "DINV"
+    private static final int BLOCK_HEADER_SIZE = 16;
+    private static final String SEGMENT_PREFIX = "deaths-";
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final String NAMES_FILE = "players.idx";
+    // players.idx is rewritten on open past this many records when most of them are stale
+    private static final int NAMES_COMPACT_MIN_RECORDS = 4096;
+
+    // Deaths waiting for the writer; when it is full new deaths are not archived
+    private static final int QUEUE_CAPACITY = 8192;
+    // Most deaths per block, and how long the writer waits to fill a block
+    private static final int MAX_BATCH = 512;
+    private static final long BATCH_WAIT_MILLIS = 1_000L;
+    // Deaths per player kept in the lookup index
+    private static final int RECENT_PER_PLAYER = 16;
+
+    // Inventory sections in capture order, the index is stored as the section byte (see section())
+    private static final String[] SECTION_NAMES = {"hotbar", "storage", "armor", "utility"};
+
+    // Scratch buffer per world thread, so encoding a death only copies the result out once
+    private static final ThreadLocal<ByteArrayOutputStream> SCRATCH = ThreadLocal.withInitial(() -> new ByteArrayOutputStream(1024));
+
+    /**
+     * One archived item.
+     */
+    public record Item(@Nonnull String section, int slot, @Nonnull String itemId, int quantity, double durability) {}
+
+    /**
+     * One archived death.
+     */
+    public record Death(long timeMillis, @Nonnull String world, @Nonnull String lossMode, @Nonnull List<Item> items) {}
+
+    private record Snapshot(long most, long least, @Nonnull String name, long timeMillis, @Nonnull String world,
+                            @Nonnull String lossMode, @Nonnull byte[] items) {}
+
+    // Marker snapshot telling the writer to stop once everything before it is written
+    private static final Snapshot STOP = new Snapshot(0L, 0L, "", 0L, "", "", new byte[0]);
+
+    /**
+     * Block locations of one player's recent deaths, newest last. Guarded by itself.
+     */
+    private static final class Recent {
+        final long[] locations = new long[RECENT_PER_PLAYER];
+        int size;
+        // Last known name, only touched by the opening thread and then the writer
+        String name;
+
+        synchronized void add(long location) {
+            if (size > 0 && locations[size - 1] == location) {
+                return;
+            }
+            if (size == locations.length) {
+                System.arraycopy(locations, 1, locations, 0, size - 1);
+                size--;
+            }
+            locations[size++] = location;
+        }
+
+        /**
+         * Forget the locations in segments older than the given one.
+         * @return The number of locations left
+         */
+        synchronized int removeBefore(int oldestSegmentId) {
+            int keep = 0;
+            while (keep < size && (int) (locations[keep] >>> 40) < oldestSegmentId) {
+                keep++;
+            }
+            System.arraycopy(locations, keep, locations, 0, size - keep);
+            size -= keep;
+            return size;
+        }
+
+        synchronized long[] newestFirst() {
+            long[] result = new long[size];
+            for (int i = 0; i < size; i++) {
+                result[i] = locations[size - 1 - i];
+            }
+            return result;
+        }
+    }
+
+    private final HytaleLogger logger;
+    private final Path directory;
+    private final BlockingQueue<Snapshot> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final Map<UUID, Recent> recent = new ConcurrentHashMap<>();
+    // Players in the index by lower case name
+    private final Map<String, UUID> uuidsByName = new ConcurrentHashMap<>();
+    // Captures queue under the read lock, close flips running under the write lock, so STOP is always queued last
+    private final ReadWriteLock stateLock = new ReentrantReadWriteLock();
+    private final CountDownLatch stopped = new CountDownLatch(1);
+    private final AtomicLong archived = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final Thread writer;
+    private volatile int segmentBytes = DEFAULT_SEGMENT_BYTES;
+    private volatile int maxSegments = DEFAULT_MAX_SEGMENTS;
+    private volatile boolean running = true;
+
+    // Only touched by the writer after open
+    private FileChannel segment;
+    private FileChannel names;
+    private int segmentId;
+
+    private DeathInventoryArchive(@Nonnull HytaleLogger logger, @Nonnull Path directory) {
+        this.logger = logger;
+        this.directory = directory;
+        this.writer = Thread.ofVirtual().name("CameraPlugin-DeathArchive").unstarted(this::runWriter);
+    }
+
+    /**
+     * Open (or create) the archive in a directory, index its segments and start the writer.
+     * @param logger The logger to use for logging messages
+     * @param directory The directory holding the segment files
+     * @return The opened archive
+     * @throws IOException if the directory or a segment cannot be read
+     */
+    @Nonnull
+    public static DeathInventoryArchive open(@Nonnull HytaleLogger logger, @Nonnull Path directory) throws IOException {
+        long start = System.nanoTime();
+        Files.createDirectories(directory);
+        DeathInventoryArchive archive = new DeathInventoryArchive(logger, directory);
+
+        List<Integer> ids = archive.segmentIds();
+        int blocks = 0;
+        for (int id : ids) {
+            blocks += archive.indexSegment(id);
+        }
+        archive.loadNames();
+        archive.segmentId = ids.isEmpty() ? 0 : ids.get(ids.size() - 1);
+        archive.segment = FileChannel.open(archive.segmentPath(archive.segmentId),
+            StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        archive.names = FileChannel.open(directory.resolve(NAMES_FILE),
+            StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+
+        archive.writer.start();
+        logger.at(Level.INFO).log("DeathInventoryArchive: Indexed " + blocks + " blocks in " + ids.size() + " segments ("
+            + archive.recent.size() + " players) in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+        return archive;
+    }
+
+    /**
+     * Capture a dying player's inventory. Call on the world thread; only encodes and queues.
+     * @param playerUuid The player
+     * @param username The player's name, for lookups while the player is offline
+     * @param world Name of the world the player died in
+     * @param lossMode The items loss mode decided for this death
+     * @param inventory The player's inventory, null if it could not be read
+     * @return false if the archive is closed or its queue is full
+     */
+    public boolean capture(@Nonnull UUID playerUuid, @Nonnull String username, @Nonnull String world, @Nonnull String lossMode,
+                           @Nullable Inventory inventory) {
+        if (!running) {
+            return false;
+        }
+        Snapshot snapshot = new Snapshot(playerUuid.getMostSignificantBits(), playerUuid.getLeastSignificantBits(), username,
+            System.currentTimeMillis(), world, lossMode, encodeItems(inventory));
+        stateLock.readLock().lock();
+        try {
+            if (!running) {
+                return false;
+            }
+            if (!queue.offer(snapshot)) {
+                dropped.incrementAndGet();
+                return false;
+            }
+            return true;
+        } finally {
+            stateLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Find an archived player by name, ignoring case.
+     * @return The player's UUID, or null if no kept death is archived under that name
+     */
+    @Nullable
+    public UUID findPlayer(@Nonnull String name) {
+        return uuidsByName.get(name.toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * Set the segment size and how many segments are kept.
+     */
+    public void configure(int segmentBytes, int maxSegments) {
+        this.segmentBytes = Math.max(64 << 10, segmentBytes);
+        this.maxSegments = Math.max(1, maxSegments);
+    }
+
+    /**
+     * Fetch the most recent deaths of a player, newest first. Runs on a virtual thread.
+     * @param playerUuid The player
+     * @param limit Most deaths to return
+     */
+    @Nonnull
+    public CompletableFuture<List<Death>> lookup(@Nonnull UUID playerUuid, int limit) {
+        CompletableFuture<List<Death>> future = new CompletableFuture<>();
+        Thread.ofVirtual().name("CameraPlugin-DeathArchiveLookup").start(() -> {
+            try {
+                future.complete(read(playerUuid, limit));
+            } catch (Exception e) {
+                future.completeExceptionally(e);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Get the number of deaths written to the archive since it was opened.
+     */
+    public long getArchivedCount() {
+        return archived.get();
+    }
+
+    /**
+     * Get the number of deaths not archived because the queue was full.
+     */
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    /**
+     * Write out everything queued so far and stop the writer.
+     * @param timeoutMillis How long to wait for the writer to finish
+     */
+    public void close(long timeoutMillis) {
+        stateLock.writeLock().lock();
+        try {
+            if (!running) {
+                return;
+            }
+            running = false;
+        } finally {
+            stateLock.writeLock().unlock();
+        }
+        try {
+            // The queue may be full, wait for room for the stop marker as long as we wait for the writer
+            if (!queue.offer(STOP, timeoutMillis, TimeUnit.MILLISECONDS)
+                || !stopped.await(timeoutMillis, TimeUnit.MILLISECONDS)) {
+                logger.at(Level.WARNING).log("DeathInventoryArchive: Writer did not finish in time, " + queue.size() + " deaths not archived");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (dropped.get() > 0) {
+            logger.at(Level.WARNING).log("DeathInventoryArchive: " + dropped.get() + " deaths were not archived because the queue was full");
+        }
+    }
+
+    @Override
+    public void close() {
+        close(5_000L);
+    }
+
+    // Capture (world thread)
+
+    @Nonnull
+    private static byte[] encodeItems(@Nullable Inventory inventory) {
+        ByteArrayOutputStream bytes = SCRATCH.get();
+        bytes.reset();
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeShort(0);
+            int count = 0;
+            if (inventory != null) {
+                for (int section = 0; section < SECTION_NAMES.length; section++) {
+                    ItemContainer container = section(inventory, section);
+                    if (container == null) {
+                        continue;
+                    }
+                    for (short slot = 0; slot < container.getCapacity(); slot++) {
+                        ItemStack stack = container.getItemStack(slot);
+                        if (stack == null || stack.isEmpty()) {
+                            continue;
+                        }
+                        out.writeByte(section);
+                        out.writeShort(slot);
+                        out.writeUTF(stack.getItemId());
+                        out.writeInt(stack.getQuantity());
+                        out.writeDouble(stack.getDurability());
+                        count++;
+                    }
+                }
+            }
+            byte[] result = bytes.toByteArray();
+            result[0] = (byte) (count >>> 8);
+            result[1] = (byte) count;
+            return result;
+        } catch (IOException e) {
+            // Writing to a byte array does not fail
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Nullable
+    private static ItemContainer section(@Nonnull Inventory inventory, int section) {
+        return switch (section) {
+            case 0 -> inventory.getHotbar();
+            case 1 -> inventory.getStorage();
+            case 2 -> inventory.getArmor();
+            default -> inventory.getUtility();
+        };
+    }
+
+    // Writer (virtual thread)
+
+    private void runWriter() {
+        List<Snapshot> batch = new ArrayList<>(MAX_BATCH);
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            boolean stop = false;
+            while (!stop) {
+                Snapshot first = queue.poll(BATCH_WAIT_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, MAX_BATCH - 1);
+                stop = batch.remove(STOP);
+                if (!batch.isEmpty()) {
+                    writeBlock(batch, deflater);
+                    batch.clear();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            deflater.end();
+            try {
+                segment.close();
+                names.close();
+            } catch (IOException e) {
+                logger.at(Level.WARNING).withCause(e).log("DeathInventoryArchive: Could not close segment");
+            }
+            stopped.countDown();
+        }
+    }
+
+    private void writeBlock(@Nonnull List<Snapshot> batch, @Nonnull Deflater deflater) {
+        try {
+            ByteArrayOutputStream raw = new ByteArrayOutputStream(batch.size() * 256);
+            DataOutputStream out = new DataOutputStream(raw);
+            for (Snapshot snapshot : batch) {
+                out.writeLong(snapshot.most());
+                out.writeLong(snapshot.least());
+                out.writeLong(snapshot.timeMillis());
+                out.writeUTF(snapshot.world());
+                out.writeUTF(snapshot.lossMode());
+                out.writeInt(snapshot.items().length);
+                out.write(snapshot.items());
+            }
+            byte[] rawBytes = raw.toByteArray();
+
+            deflater.reset();
+            deflater.setInput(rawBytes);
+            deflater.finish();
+            byte[] compressed = new byte[rawBytes.length + 64];
+            int compressedLength = 0;
+            while (!deflater.finished()) {
+                if (compressedLength == compressed.length) {
+                    compressed = Arrays.copyOf(compressed, compressed.length * 2);
+                }
+                compressedLength += deflater.deflate(compressed, compressedLength, compressed.length - compressedLength);
+            }
+
+            ByteBuffer block = ByteBuffer.allocate(BLOCK_HEADER_SIZE + batch.size() * 16 + compressedLength);
+            block.putInt(BLOCK_MAGIC).putInt(batch.size()).putInt(rawBytes.length).putInt(compressedLength);
+            for (Snapshot snapshot : batch) {
+                block.putLong(snapshot.most()).putLong(snapshot.least());
+            }
+            block.put(compressed, 0, compressedLength).flip();
+
+            if (segment.size() > 0 && segment.size() + block.remaining() > segmentBytes) {
+                rollSegment();
+            }
+            long offset = segment.size();
+            try {
+                while (block.hasRemaining()) {
+                    segment.write(block);
+                }
+                segment.force(false);
+            } catch (IOException e) {
+                discardTornBlock(offset, e);
+                throw e;
+            }
+
+            long location = location(segmentId, offset);
+            ByteArrayOutputStream newNames = new ByteArrayOutputStream();
+            DataOutputStream namesOut = new DataOutputStream(newNames);
+            for (Snapshot snapshot : batch) {
+                UUID uuid = new UUID(snapshot.most(), snapshot.least());
+                Recent entry = recent.computeIfAbsent(uuid, key -> new Recent());
+                entry.add(location);
+                if (!snapshot.name().equals(entry.name)) {
+                    rename(uuid, entry, snapshot.name());
+                    namesOut.writeLong(snapshot.most());
+                    namesOut.writeLong(snapshot.least());
+                    namesOut.writeUTF(snapshot.name());
+                }
+            }
+            if (newNames.size() > 0) {
+                ByteBuffer buffer = ByteBuffer.wrap(newNames.toByteArray());
+                long namesOffset = names.size();
+                try {
+                    while (buffer.hasRemaining()) {
+                        names.write(buffer);
+                    }
+                    names.force(false);
+                } catch (IOException e) {
+                    // Same as for blocks: a torn record would take the names after it when players.idx is loaded
+                    try {
+                        names.truncate(namesOffset);
+                    } catch (IOException truncateFailure) {
+                        e.addSuppressed(truncateFailure);
+                    }
+                    throw e;
+                }
+            }
+            archived.addAndGet(batch.size());
+        } catch (IOException e) {
+            logger.at(Level.SEVERE).withCause(e).log("DeathInventoryArchive: Could not write " + batch.size() + " deaths");
+        }
+    }
+
+    /**
+     * Cut a block that failed partway off the segment. Opening the archive cuts a segment at
+     * its first torn block, so anything appended after one would be lost with it; if the
+     * segment cannot be cut, the next blocks go to a new segment instead.
+     * @param offset Where the failed block starts
+     * @param cause The failure, gets the failures of the cleanup added
+     */
+    private void discardTornBlock(long offset, @Nonnull IOException cause) {
+        try {
+            segment.truncate(offset);
+        } catch (IOException e) {
+            cause.addSuppressed(e);
+            try {
+                rollSegment();
+            } catch (IOException rollFailure) {
+                cause.addSuppressed(rollFailure);
+            }
+        }
+    }
+
+    private void rollSegment() throws IOException {
+        segment.close();
+        segmentId++;
+        segment = FileChannel.open(segmentPath(segmentId), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+
+        // Delete the oldest segments and drop their index entries
+        List<Integer> ids = segmentIds();
+        int deleted = Math.max(0, ids.size() - maxSegments);
+        for (int i = 0; i < deleted; i++) {
+            Files.deleteIfExists(segmentPath(ids.get(i)));
+        }
+        if (deleted > 0) {
+            int oldest = ids.get(deleted);
+            for (Iterator<Map.Entry<UUID, Recent>> it = recent.entrySet().iterator(); it.hasNext(); ) {
+                Map.Entry<UUID, Recent> entry = it.next();
+                if (entry.getValue().removeBefore(oldest) == 0) {
+                    it.remove();
+                    if (entry.getValue().name != null) {
+                        uuidsByName.remove(entry.getValue().name.toLowerCase(Locale.ROOT), entry.getKey());
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Point the name index at a player's current name.
+     */
+    private void rename(@Nonnull UUID uuid, @Nonnull Recent entry, @Nonnull String name) {
+        if (entry.name != null) {
+            uuidsByName.remove(entry.name.toLowerCase(Locale.ROOT), uuid);
+        }
+        entry.name = name;
+        uuidsByName.put(name.toLowerCase(Locale.ROOT), uuid);
+    }
+
+    /**
+     * Read players.idx into the name index, for players that have deaths in the index.
+     * The last name of a player wins; a torn record at the end (crash while writing) is cut off,
+     * and a file holding mostly players whose deaths were all deleted is rewritten.
+     */
+    private void loadNames() throws IOException {
+        Path path = directory.resolve(NAMES_FILE);
+        if (!Files.exists(path)) {
+            return;
+        }
+        byte[] bytes = Files.readAllBytes(path);
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+        int valid = 0;
+        int records = 0;
+        try {
+            while (valid < bytes.length) {
+                UUID uuid = new UUID(in.readLong(), in.readLong());
+                String name = in.readUTF();
+                valid = bytes.length - in.available();
+                records++;
+                Recent entry = recent.get(uuid);
+                if (entry != null) {
+                    rename(uuid, entry, name);
+                }
+            }
+        } catch (EOFException e) {
+            logger.at(Level.WARNING).log("DeathInventoryArchive: Cutting off " + (bytes.length - valid) + " damaged bytes at the end of " + path);
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+                channel.truncate(valid);
+            }
+        }
+
+        if (records > NAMES_COMPACT_MIN_RECORDS && records > uuidsByName.size() * 2) {
+            ByteArrayOutputStream live = new ByteArrayOutputStream(uuidsByName.size() * 32);
+            DataOutputStream out = new DataOutputStream(live);
+            for (Map.Entry<UUID, Recent> entry : recent.entrySet()) {
+                if (entry.getValue().name != null) {
+                    out.writeLong(entry.getKey().getMostSignificantBits());
+                    out.writeLong(entry.getKey().getLeastSignificantBits());
+                    out.writeUTF(entry.getValue().name);
+                }
+            }
+            Path temp = directory.resolve(NAMES_FILE + ".tmp");
+            Files.write(temp, live.toByteArray());
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+    }
+
+    // Index and lookup
+
+    /**
+     * Read the block headers of a segment into the index. A torn block at the end
+     * (crash while writing) is cut off.
+     * @return The number of blocks indexed
+     */
+    private int indexSegment(int id) throws IOException {
+        Path path = segmentPath(id);
+        int blocks = 0;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long size = channel.size();
+            long offset = 0;
+            ByteBuffer header = ByteBuffer.allocate(BLOCK_HEADER_SIZE);
+            while (offset + BLOCK_HEADER_SIZE <= size) {
+                header.clear();
+                channel.read(header, offset);
+                header.flip();
+                int magic = header.getInt();
+                int count = header.getInt();
+                header.getInt();
+                int compressedLength = header.getInt();
+                long blockEnd = offset + BLOCK_HEADER_SIZE + count * 16L + compressedLength;
+                if (magic != BLOCK_MAGIC || count <= 0 || compressedLength < 0 || blockEnd > size) {
+                    break;
+                }
+
+                ByteBuffer players = ByteBuffer.allocate(count * 16);
+                channel.read(players, offset + BLOCK_HEADER_SIZE);
+                players.flip();
+                long location = location(id, offset);
+                for (int i = 0; i < count; i++) {
+                    recent.computeIfAbsent(new UUID(players.getLong(), players.getLong()), uuid -> new Recent()).add(location);
+                }
+                offset = blockEnd;
+                blocks++;
+            }
+            if (offset < size) {
+                logger.at(Level.WARNING).log("DeathInventoryArchive: Cutting off " + (size - offset) + " damaged bytes at the end of " + path);
+                channel.truncate(offset);
+            }
+        }
+        return blocks;
+    }
+
+    @Nonnull
+    private List<Death> read(@Nonnull UUID playerUuid, int limit) throws IOException {
+        Recent entry = recent.get(playerUuid);
+        List<Death> deaths = new ArrayList<>();
+        if (entry == null) {
+            return deaths;
+        }
+
+        long most = playerUuid.getMostSignificantBits();
+        long least = playerUuid.getLeastSignificantBits();
+        for (long location : entry.newestFirst()) {
+            byte[] raw = readBlock(location);
+            if (raw == null) {
+                // Segment was rolled away
+                continue;
+            }
+            // A block lists its records oldest first; collect this player's and add them newest first
+            List<Death> inBlock = new ArrayList<>(1);
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(raw));
+            while (in.available() > 0) {
+                long recordMost = in.readLong();
+                long recordLeast = in.readLong();
+                long time = in.readLong();
+                String world = in.readUTF();
+                String lossMode = in.readUTF();
+                byte[] items = new byte[in.readInt()];
+                in.readFully(items);
+                if (recordMost == most && recordLeast == least) {
+                    inBlock.add(new Death(time, world, lossMode, decodeItems(items)));
+                }
+            }
+            for (int i = inBlock.size() - 1; i >= 0 && deaths.size() < limit; i--) {
+                deaths.add(inBlock.get(i));
+            }
+            if (deaths.size() >= limit) {
+                break;
+            }
+        }
+        return deaths;
+    }
+
+    @Nullable
+    private byte[] readBlock(long location) throws IOException {
+        try (FileChannel channel = FileChannel.open(segmentPath((int) (location >>> 40)), StandardOpenOption.READ)) {
+            long offset = location & ((1L << 40) - 1);
+            ByteBuffer header = ByteBuffer.allocate(BLOCK_HEADER_SIZE);
+            channel.read(header, offset);
+            header.flip();
+            header.getInt();
+            int count = header.getInt();
+            int rawLength = header.getInt();
+            int compressedLength = header.getInt();
+
+            ByteBuffer compressed = ByteBuffer.allocate(compressedLength);
+            long position = offset + BLOCK_HEADER_SIZE + count * 16L;
+            while (compressed.hasRemaining() && channel.read(compressed, position + compressed.position()) > 0) {
+                // Keep reading
+            }
+
+            Inflater inflater = new Inflater();
+            try {
+                inflater.setInput(compressed.array(), 0, compressed.position());
+                byte[] raw = new byte[rawLength];
+                int length = 0;
+                while (length < rawLength && !inflater.finished()) {
+                    length += inflater.inflate(raw, length, rawLength - length);
+                }
+                return raw;
+            } catch (DataFormatException e) {
+                throw new IOException("Damaged archive block", e);
+            } finally {
+                inflater.end();
+            }
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    @Nonnull
+    private static List<Item> decodeItems(@Nonnull byte[] items) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(items));
+        int count = in.readUnsignedShort();
+        List<Item> result = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int section = in.readUnsignedByte();
+            int slot = in.readShort();
+            String itemId = in.readUTF();
+            int quantity = in.readInt();
+            double durability = in.readDouble();
+            result.add(new Item(section < SECTION_NAMES.length ? SECTION_NAMES[section] : "unknown", slot, itemId, quantity, durability));
+        }
+        return result;
+    }
+
+    // Segment files
+
+    private static long location(int segmentId, long offset) {
+        return ((long) segmentId << 40) | offset;
+    }
+
+    @Nonnull
+    private Path segmentPath(int id) {
+        return directory.resolve(SEGMENT_PREFIX + String.format("%08d", id) + SEGMENT_SUFFIX);
+    }
+
+    @Nonnull
+    private List<Integer> segmentIds() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(path -> path.getFileName().toString())
+                .filter(name -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX))
+                .map(name -> name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()))
+                .filter(id -> id.chars().allMatch(Character::isDigit) && !id.isEmpty())
+                .map(Integer::parseInt)
+                .sorted()
+                .toList();
+        }
+    }
+}
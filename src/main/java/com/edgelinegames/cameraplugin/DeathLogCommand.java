@@ -0,0 +1,125 @@
+package com.edgelinegames.cameraplugin;
+
+import com.hypixel.hytale.component.Ref;
+import com.hypixel.hytale.component.Store;
+import com.hypixel.hytale.server.core.Message;
+import com.hypixel.hytale.server.core.command.system.CommandContext;
+import com.hypixel.hytale.server.core.command.system.arguments.system.OptionalArg;
+import com.hypixel.hytale.server.core.command.system.arguments.types.ArgTypes;
+import com.hypixel.hytale.server.core.command.system.basecommands.AbstractPlayerCommand;
+import com.hypixel.hytale.server.core.universe.PlayerRef;
+import com.hypixel.hytale.server.core.universe.world.World;
+import com.hypixel.hytale.server.core.universe.world.storage.EntityStore;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * Command to look up the archived inventories of a player's recent deaths.
+ * Usage: /deathlog [player] [count]
+ * The player is a name or UUID looked up in the archive, so it also works for players who are
+ * offline. If no player is specified, targets the command sender. Needs cameraplugin.deathlog.
+ */
+public class DeathLogCommand extends AbstractPlayerCommand {
+
+    private static final Message MESSAGE_NO_ARCHIVE = Message.raw("The death archive is not available");
+    private static final Message MESSAGE_NO_DEATHS = Message.raw("No archived deaths for {player}");
+    private static final Message MESSAGE_LOOKUP_FAILED = Message.raw("Could not read the death archive for {player}");
+    private static final Message MESSAGE_NO_PERMISSION = Message.raw("You do not have permission to look up archived deaths.");
+    private static final Message MESSAGE_DEATH = Message.raw("{time} in {world}, loss mode {mode}: {items}");
+
+    // Permission needed to use the command
+    static final String PERMISSION = "cameraplugin.deathlog";
+
+    private static final int DEFAULT_COUNT = 3;
+    private static final int MAX_COUNT = 16;
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss").withZone(ZoneId.systemDefault());
+
+    private final OptionalArg<String> playerArg;
+    private final OptionalArg<Integer> countArg;
+    private final PreventDeathItemDropManager manager;
+    private final PluginMetrics.Histogram latency;
+
+    public DeathLogCommand(@Nonnull PreventDeathItemDropManager manager, @Nonnull PluginMetrics.Histogram latency) {
+        super("deathlog", "Show the inventories of a player's recent deaths");
+        this.manager = manager;
+        this.latency = latency;
+        this.playerArg = withOptionalArg("player", "Player name or UUID (default: you)", ArgTypes.STRING);
+        this.countArg = withOptionalArg("count", "Number of deaths to show (default 3)", ArgTypes.INTEGER);
+    }
+
+    @Override
+    protected void execute(@Nonnull CommandContext context, @Nonnull Store<EntityStore> store, @Nonnull Ref<EntityStore> ref,
+                           @Nonnull PlayerRef playerRef, @Nonnull World world) {
+        long start = System.nanoTime();
+        PluginCommandEvent event = new PluginCommandEvent();
+        event.begin();
+        try {
+            if (!context.sender().hasPermission(PERMISSION)) {
+                context.sendMessage(MESSAGE_NO_PERMISSION);
+                return;
+            }
+            DeathInventoryArchive archive = manager.getArchive();
+            if (archive == null) {
+                context.sendMessage(MESSAGE_NO_ARCHIVE);
+                return;
+            }
+
+            Integer count = this.countArg.get(context);
+            int limit = count != null ? Math.max(1, Math.min(MAX_COUNT, count)) : DEFAULT_COUNT;
+            String target = this.playerArg.get(context);
+            String username = target != null ? target : playerRef.getUsername();
+            UUID targetUuid = target != null ? resolve(archive, target) : playerRef.getUuid();
+            if (targetUuid == null) {
+                context.sendMessage(MESSAGE_NO_DEATHS.param("player", username));
+                return;
+            }
+
+            // The archive reads from disk on its own thread; answer when it is done
+            archive.lookup(targetUuid, limit).whenComplete((deaths, error) -> {
+                if (error != null) {
+                    context.sendMessage(MESSAGE_LOOKUP_FAILED.param("player", username));
+                    return;
+                }
+                if (deaths.isEmpty()) {
+                    context.sendMessage(MESSAGE_NO_DEATHS.param("player", username));
+                    return;
+                }
+                for (DeathInventoryArchive.Death death : deaths) {
+                    String items = death.items().isEmpty() ? "nothing" : death.items().stream()
+                        .map(item -> item.quantity() + "x " + item.itemId())
+                        .collect(Collectors.joining(", "));
+                    context.sendMessage(MESSAGE_DEATH
+                        .param("time", TIME_FORMAT.format(Instant.ofEpochMilli(death.timeMillis())))
+                        .param("world", death.world())
+                        .param("mode", death.lossMode())
+                        .param("items", items));
+                }
+            });
+        } finally {
+            latency.recordSince(start);
+            if (event.shouldCommit()) {
+                event.command = "deathlog";
+                event.player = playerRef.getUsername();
+                event.commit();
+            }
+        }
+    }
+
+    /**
+     * Resolve a UUID, or a name through the archive's name index.
+     * @return The player's UUID, or null if no archived player has that name
+     */
+    @Nullable
+    private static UUID resolve(@Nonnull DeathInventoryArchive archive, @Nonnull String target) {
+        try {
+            return UUID.fromString(target);
+        } catch (IllegalArgumentException e) {
+            return archive.findPlayer(target);
+        }
+    }
+}
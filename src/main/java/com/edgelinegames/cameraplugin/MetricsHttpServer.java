@@ -0,0 +1,101 @@
+package com.edgelinegames.cameraplugin;
+
+import com.hypixel.hytale.logger.HytaleLogger;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Level;
+import javax.annotation.Nonnull;
+
+/**
+ * Optional HTTP endpoint that serves the plugin metrics at /metrics for Prometheus to scrape.
+ * Built on the JDK's own HTTP server; requests are answered on a virtual thread and never
+ * touch a world thread. Binds to the loopback address unless configured otherwise.
+ */
+public class MetricsHttpServer {
+
+    private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private final HytaleLogger logger;
+    private final PluginMetrics metrics;
+    private HttpServer server;
+    private ExecutorService executor;
+    private String bindAddress;
+    private int port;
+
+    /**
+     * Constructor.
+     * @param logger The logger to use for logging messages
+     * @param metrics The metrics to serve
+     */
+    public MetricsHttpServer(@Nonnull HytaleLogger logger, @Nonnull PluginMetrics metrics) {
+        this.logger = logger;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Start, restart or stop the server to match the given address and port.
+     * @param bindAddress Address to listen on
+     * @param port Port to listen on, or 0 to not serve metrics at all
+     */
+    public synchronized void configure(@Nonnull String bindAddress, int port) {
+        if (server != null && port == this.port && bindAddress.equals(this.bindAddress)) {
+            return;
+        }
+        stop();
+        this.bindAddress = bindAddress;
+        this.port = port;
+        if (port == 0) {
+            return;
+        }
+
+        try {
+            HttpServer created = HttpServer.create(new InetSocketAddress(bindAddress, port), 0);
+            created.createContext("/metrics", this::handle);
+            executor = Executors.newVirtualThreadPerTaskExecutor();
+            created.setExecutor(executor);
+            created.start();
+            server = created;
+            logger.at(Level.INFO).log("MetricsHttpServer: Serving metrics on http://" + bindAddress + ":" + port + "/metrics");
+        } catch (IOException | IllegalArgumentException e) {
+            logger.at(Level.SEVERE).withCause(e).log("MetricsHttpServer: Could not listen on " + bindAddress + ":" + port);
+            stop();
+        }
+    }
+
+    /**
+     * Stop serving metrics. Does nothing if not running.
+     */
+    public synchronized void stop() {
+        if (server != null) {
+            server.stop(0);
+            server = null;
+        }
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+    }
+
+    private void handle(@Nonnull HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            StringBuilder text = new StringBuilder(4096);
+            metrics.writePrometheus(text);
+            byte[] body = text.toString().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        }
+    }
+}
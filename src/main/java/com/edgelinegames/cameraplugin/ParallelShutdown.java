@@ -0,0 +1,84 @@
+package com.edgelinegames.cameraplugin;
+
+import com.hypixel.hytale.logger.HytaleLogger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import javax.annotation.Nonnull;
+
+/**
+ * Runs independent shutdown steps in parallel, each on its own virtual thread, and waits
+ * for them until a shared deadline. Steps that are still running at the deadline are left
+ * behind, so a stuck step can never hold up the server's shutdown.
+ */
+final class ParallelShutdown {
+
+    /**
+     * Outcome of a run.
+     * @param elapsedMillis Time from start until all steps finished or the deadline passed
+     * @param timedOut Names of the steps that did not finish in time
+     * @param failed Names of the steps that threw
+     */
+    record Result(long elapsedMillis, @Nonnull List<String> timedOut, @Nonnull List<String> failed) {}
+
+    private record Step(@Nonnull String name, @Nonnull Runnable action) {}
+
+    private final HytaleLogger logger;
+    private final List<Step> steps = new ArrayList<>();
+
+    /**
+     * Constructor.
+     * @param logger The logger failed steps are reported to
+     */
+    ParallelShutdown(@Nonnull HytaleLogger logger) {
+        this.logger = logger;
+    }
+
+    /**
+     * Add a step. Steps must not depend on each other and need unique names.
+     */
+    void add(@Nonnull String name, @Nonnull Runnable action) {
+        steps.add(new Step(name, action));
+    }
+
+    /**
+     * Start all steps and wait until they are done or the timeout has passed.
+     */
+    @Nonnull
+    Result run(long timeoutMillis) {
+        long start = System.nanoTime();
+        CountDownLatch done = new CountDownLatch(steps.size());
+        ConcurrentLinkedQueue<String> finished = new ConcurrentLinkedQueue<>();
+        ConcurrentLinkedQueue<String> failed = new ConcurrentLinkedQueue<>();
+        for (Step step : steps) {
+            Thread.ofVirtual().name("CameraPlugin-Shutdown-" + step.name()).start(() -> {
+                try {
+                    step.action().run();
+                } catch (Throwable t) {
+                    failed.add(step.name());
+                    logger.at(Level.SEVERE).withCause(t).log("CameraPlugin: Shutdown step " + step.name() + " failed");
+                } finally {
+                    finished.add(step.name());
+                    done.countDown();
+                }
+            });
+        }
+
+        try {
+            done.await(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        List<String> timedOut = new ArrayList<>();
+        for (Step step : steps) {
+            if (!finished.contains(step.name())) {
+                timedOut.add(step.name());
+            }
+        }
+        return new Result((System.nanoTime() - start) / 1_000_000, timedOut, List.copyOf(failed));
+    }
+}
@@ -0,0 +1,166 @@
+package com.edgelinegames.cameraplugin;
+
+import com.hypixel.hytale.math.vector.Vector3d;
+import com.hypixel.hytale.server.core.universe.PlayerRef;
+import com.hypixel.hytale.server.core.universe.Universe;
+import com.hypixel.hytale.server.core.universe.world.World;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.regex.Pattern;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * Selects many players at once for the bulk forms of the plugin commands.
+ *
+ * Syntax:
+ *   @a             all online players
+ *   @w             players in the sender's world
+ *   @w:name        players in the named world
+ *   @r:radius      players in the sender's world within radius blocks of the sender
+ *   pattern        players whose name matches, * and ? are wildcards (case-insensitive)
+ *
+ * Resolving walks the player list once.
+ */
+final class PlayerSelector {
+
+    // Largest radius for @r, a larger area is what @w is for
+    static final double MAX_RADIUS = 4096.0;
+
+    private enum Kind { ALL, WORLD, RADIUS, NAME }
+
+    private final String text;
+    private final Kind kind;
+    // World name for WORLD, null for the sender's world
+    private final String world;
+    private final double radius;
+    private final Pattern pattern;
+
+    private PlayerSelector(@Nonnull String text, @Nonnull Kind kind, @Nullable String world, double radius, @Nullable Pattern pattern) {
+        this.text = text;
+        this.kind = kind;
+        this.world = world;
+        this.radius = radius;
+        this.pattern = pattern;
+    }
+
+    /**
+     * Parse a selector.
+     * @throws IllegalArgumentException if the selector is malformed
+     */
+    @Nonnull
+    static PlayerSelector parse(@Nonnull String selector) {
+        if (selector.equalsIgnoreCase("@a")) {
+            return new PlayerSelector(selector, Kind.ALL, null, 0.0, null);
+        }
+        if (selector.equalsIgnoreCase("@w")) {
+            return new PlayerSelector(selector, Kind.WORLD, null, 0.0, null);
+        }
+        if (selector.regionMatches(true, 0, "@w:", 0, 3) && selector.length() > 3) {
+            return new PlayerSelector(selector, Kind.WORLD, selector.substring(3), 0.0, null);
+        }
+        if (selector.regionMatches(true, 0, "@r:", 0, 3)) {
+            double radius;
+            try {
+                radius = Double.parseDouble(selector.substring(3));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Radius must be a number: " + selector);
+            }
+            if (!(radius > 0.0 && radius <= MAX_RADIUS)) {
+                throw new IllegalArgumentException("Radius must be between 0 and " + (int) MAX_RADIUS);
+            }
+            return new PlayerSelector(selector, Kind.RADIUS, null, radius, null);
+        }
+        if (selector.startsWith("@") || selector.isEmpty()) {
+            throw new IllegalArgumentException("Unknown selector: " + selector);
+        }
+        return new PlayerSelector(selector, Kind.NAME, null, 0.0, Pattern.compile(globToRegex(selector), Pattern.CASE_INSENSITIVE));
+    }
+
+    /**
+     * Check if a string is meant as a selector rather than a plain value.
+     */
+    static boolean isSelector(@Nullable String value) {
+        return value != null && (value.startsWith("@") || value.indexOf('*') >= 0 || value.indexOf('?') >= 0);
+    }
+
+    /**
+     * Collect the selected players.
+     * @param players All online players
+     * @param sender The player running the command, used by @w and @r
+     */
+    @Nonnull
+    List<PlayerRef> resolve(@Nonnull Collection<PlayerRef> players, @Nonnull PlayerRef sender) {
+        List<PlayerRef> selected = new ArrayList<>();
+        UUID senderWorld = sender.getWorldUuid();
+        Vector3d center = kind == Kind.RADIUS ? sender.getTransform().getPosition() : null;
+        double radiusSquared = radius * radius;
+        // World names looked up once per world, not once per player
+        Map<UUID, Boolean> worldMatches = kind == Kind.WORLD && world != null ? new HashMap<>() : null;
+
+        for (PlayerRef playerRef : players) {
+            if (!playerRef.isValid()) {
+                continue;
+            }
+            boolean matches = switch (kind) {
+                case ALL -> true;
+                case NAME -> pattern.matcher(playerRef.getUsername()).matches();
+                case WORLD -> worldMatches != null
+                    ? isInWorld(playerRef.getWorldUuid(), worldMatches)
+                    : senderWorld != null && senderWorld.equals(playerRef.getWorldUuid());
+                case RADIUS -> senderWorld != null && senderWorld.equals(playerRef.getWorldUuid())
+                    && distanceSquared(center, playerRef.getTransform().getPosition()) <= radiusSquared;
+            };
+            if (matches) {
+                selected.add(playerRef);
+            }
+        }
+        return selected;
+    }
+
+    private boolean isInWorld(@Nullable UUID worldUuid, @Nonnull Map<UUID, Boolean> worldMatches) {
+        if (worldUuid == null) {
+            return false;
+        }
+        return worldMatches.computeIfAbsent(worldUuid, uuid -> {
+            World found = Universe.get().getWorld(uuid);
+            return found != null && found.getName().equalsIgnoreCase(world);
+        });
+    }
+
+    private static double distanceSquared(@Nonnull Vector3d a, @Nonnull Vector3d b) {
+        double dx = a.getX() - b.getX();
+        double dy = a.getY() - b.getY();
+        double dz = a.getZ() - b.getZ();
+        return dx * dx + dy * dy + dz * dz;
+    }
+
+    @Nonnull
+    private static String globToRegex(@Nonnull String glob) {
+        StringBuilder regex = new StringBuilder(glob.length() + 8);
+        int literalStart = 0;
+        for (int i = 0; i < glob.length(); i++) {
+            char c = glob.charAt(i);
+            if (c == '*' || c == '?') {
+                if (i > literalStart) {
+                    regex.append(Pattern.quote(glob.substring(literalStart, i)));
+                }
+                regex.append(c == '*' ? ".*" : ".");
+                literalStart = i + 1;
+            }
+        }
+        if (literalStart < glob.length()) {
+            regex.append(Pattern.quote(glob.substring(literalStart)));
+        }
+        return regex.toString();
+    }
+
+    @Override
+    public String toString() {
+        return text;
+    }
+}
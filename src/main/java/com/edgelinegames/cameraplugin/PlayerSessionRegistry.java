@@ -0,0 +1,258 @@
+package com.edgelinegames.cameraplugin;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * Per-player state shared by the camera and death drop features, with a lifecycle.
+ *
+ * A player gets a session when they connect. While online the session sits in the hot table
+ * and holds what the features looked up for the player (the camera profile, the death drop
+ * rule decision). On disconnect the session is kept for ttlMillis so a quick rejoin finds it
+ * warm, then evicted; everything in it can be read again from the cold tier (the camera
+ * profile store, the rules) the next time it is needed. At most maxOffline offline sessions
+ * are kept, the ones that have been offline the longest go first.
+ *
+ * State that only makes sense while connected (last sent packet, running tweens, queued
+ * joins) is still dropped by its owners on disconnect.
+ */
+public class PlayerSessionRegistry implements TickScheduler.TickTask {
+
+    // Defaults, see sessionTtlSeconds and sessionMaxOffline in config.json
+    public static final long DEFAULT_TTL_MILLIS = 10 * 60 * 1000L;
+    public static final int DEFAULT_MAX_OFFLINE = 10_000;
+
+    // Sweep for expired sessions at most once per second
+    private static final long SWEEP_INTERVAL_MILLIS = 1_000L;
+
+    private final Map<UUID, Session> sessions = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder expired = new LongAdder();
+    private final LongAdder evictedOverCap = new LongAdder();
+    private volatile long ttlMillis = DEFAULT_TTL_MILLIS;
+    private volatile int maxOffline = DEFAULT_MAX_OFFLINE;
+    private volatile int offlineCount;
+    private long lastSweepMillis;
+
+    /**
+     * Get or revive the session of a connecting player.
+     */
+    @Nonnull
+    public Session connect(@Nonnull UUID playerUuid) {
+        while (true) {
+            Session created = new Session(playerUuid);
+            Session session = sessions.putIfAbsent(playerUuid, created);
+            if (session == null) {
+                misses.increment();
+                return created;
+            }
+            synchronized (session) {
+                // An evicted session is already out of the table, take the next round with a new one
+                if (!session.evicted) {
+                    session.offlineSinceMillis = 0L;
+                    hits.increment();
+                    return session;
+                }
+            }
+        }
+    }
+
+    /**
+     * Mark the session of a leaving player as offline; it is evicted after the TTL.
+     */
+    public void disconnect(@Nonnull UUID playerUuid) {
+        Session session = sessions.get(playerUuid);
+        if (session != null) {
+            synchronized (session) {
+                session.offlineSinceMillis = System.currentTimeMillis();
+            }
+        }
+    }
+
+    /**
+     * Look up a player's session.
+     * @return The session, or null if the player has none and state has to come from the cold tier
+     */
+    @Nullable
+    public Session get(@Nonnull UUID playerUuid) {
+        Session session = sessions.get(playerUuid);
+        if (session != null) {
+            hits.increment();
+        } else {
+            misses.increment();
+        }
+        return session;
+    }
+
+    @Override
+    public void tick(long tick) {
+        long now = System.currentTimeMillis();
+        if (now - lastSweepMillis < SWEEP_INTERVAL_MILLIS) {
+            return;
+        }
+        lastSweepMillis = now;
+        sweep(now);
+    }
+
+    /**
+     * Evict sessions that have been offline longer than the TTL, then the longest offline
+     * ones until no more than maxOffline are left.
+     */
+    void sweep(long nowMillis) {
+        long ttl = ttlMillis;
+        List<Session> offline = new ArrayList<>();
+        for (Session session : sessions.values()) {
+            long offlineSince = session.offlineSinceMillis;
+            if (offlineSince == 0L) {
+                continue;
+            }
+            if (nowMillis - offlineSince >= ttl) {
+                if (evict(session)) {
+                    expired.increment();
+                }
+            } else {
+                offline.add(session);
+            }
+        }
+
+        int excess = offline.size() - maxOffline;
+        if (excess > 0) {
+            offline.sort(Comparator.comparingLong(session -> session.offlineSinceMillis));
+            for (int i = 0; i < excess; i++) {
+                if (evict(offline.get(i))) {
+                    evictedOverCap.increment();
+                }
+            }
+        }
+        offlineCount = Math.max(0, offline.size() - Math.max(0, excess));
+    }
+
+    private boolean evict(@Nonnull Session session) {
+        synchronized (session) {
+            // The player may have come back since the sweep looked at the session
+            if (session.offlineSinceMillis == 0L || session.evicted) {
+                return false;
+            }
+            session.evicted = true;
+            return sessions.remove(session.playerUuid, session);
+        }
+    }
+
+    /**
+     * Set how long an offline session is kept.
+     */
+    public void setTtlMillis(long ttlMillis) {
+        this.ttlMillis = Math.max(0L, ttlMillis);
+    }
+
+    /**
+     * Set the maximum number of offline sessions kept.
+     */
+    public void setMaxOffline(int maxOffline) {
+        this.maxOffline = Math.max(0, maxOffline);
+    }
+
+    /**
+     * Get the number of sessions, online and offline.
+     */
+    public int size() {
+        return sessions.size();
+    }
+
+    /**
+     * Get the number of offline sessions as of the last sweep.
+     */
+    public int getOfflineCount() {
+        return offlineCount;
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getExpired() {
+        return expired.sum();
+    }
+
+    public long getEvictedOverCap() {
+        return evictedOverCap.sum();
+    }
+
+    /**
+     * The state kept for one player. Fields are filled lazily by the features that use them.
+     */
+    public static final class Session {
+
+        private final UUID playerUuid;
+        // 0 while online; guarded by the session monitor together with evicted
+        private volatile long offlineSinceMillis;
+        private boolean evicted;
+
+        // Camera feature: the saved profile, loaded from the store on first use
+        private volatile CameraProfile cameraProfile;
+        private volatile boolean cameraProfileLoaded;
+
+        // Death drop feature: the rule decision for the player's world and groups
+        private volatile PreventDeathItemDropManager.CachedDecision deathDropDecision;
+
+        private Session(@Nonnull UUID playerUuid) {
+            this.playerUuid = playerUuid;
+        }
+
+        @Nonnull
+        public UUID getPlayerUuid() {
+            return playerUuid;
+        }
+
+        public boolean isOnline() {
+            return offlineSinceMillis == 0L;
+        }
+
+        /**
+         * Get the camera profile, loading it the first time.
+         * @param loader Reads the profile from the cold tier, may return null
+         */
+        @Nullable
+        public CameraProfile getCameraProfile(@Nonnull Function<UUID, CameraProfile> loader) {
+            if (!cameraProfileLoaded) {
+                synchronized (this) {
+                    if (!cameraProfileLoaded) {
+                        cameraProfile = loader.apply(playerUuid);
+                        cameraProfileLoaded = true;
+                    }
+                }
+            }
+            return cameraProfile;
+        }
+
+        /**
+         * Replace the cached camera profile after it was saved.
+         */
+        public synchronized void setCameraProfile(@Nullable CameraProfile profile) {
+            this.cameraProfile = profile;
+            this.cameraProfileLoaded = true;
+        }
+
+        @Nullable
+        PreventDeathItemDropManager.CachedDecision getDeathDropDecision() {
+            return deathDropDecision;
+        }
+
+        void setDeathDropDecision(@Nullable PreventDeathItemDropManager.CachedDecision decision) {
+            this.deathDropDecision = decision;
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.edgelinegames.cameraplugin;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR event for the execution of one of the plugin's commands.
+ */
+@Name("cameraplugin.Command")
+@Label("Plugin Command")
+@Category({"CameraPlugin", "Command"})
+@Description("Execution of a CameraPlugin command")
+@StackTrace(false)
+class PluginCommandEvent extends Event {
+
+    @Label("Command")
+    String command;
+
+    @Label("Player")
+    @Description("The player the command was run for")
+    String player;
+}
@@ -0,0 +1,313 @@
+package com.edgelinegames.cameraplugin;
+
+import java.util.List;
+import java.util.logging.Level;
+import javax.annotation.Nonnull;
+
+/**
+ * Typed plugin configuration, read from config.json with Gson.
+ *
+ * An instance is an immutable snapshot once it has been validated and published by
+ * PluginConfigManager; code reads it through CameraPlugin.getConfig() and never changes it.
+ * Field names match the JSON keys; missing keys keep the defaults below.
+ */
+public final class PluginConfig {
+
+    private String pluginName = "CameraPlugin";
+    private String version = "1.0.0";
+    private boolean debugMode = false;
+
+    // Optional modules, read once at startup (changing them needs a restart)
+    private boolean cameraZonesEnabled = true;
+    private boolean cameraTracksEnabled = true;
+    private boolean cameraFollowEnabled = true;
+    private boolean deathDropEnabled = true;
+    private boolean deathArchiveEnabled = true;
+
+    // Camera
+    private float defaultCameraDistance = 15.0f;
+    private float minCameraDistance = 1.0f;
+    private float maxCameraDistance = 100.0f;
+    // Shoulder offset distance for third-person camera
+    // Common values: 0.3-0.5 blocks (positive = right, negative = left)
+    private double shoulderOffsetDistance = 0.4;
+    private float cameraLerpSpeed = 1.0f;
+
+    // Bulk camera changes
+    private int broadcastPacketsPerTick = CameraBroadcaster.DEFAULT_PACKETS_PER_TICK;
+
+    // Camera apply on join
+    private int joinCameraPerTick = CameraJoinQueue.DEFAULT_PER_TICK;
+    private int joinCameraDelayTicks = CameraJoinQueue.DEFAULT_DELAY_TICKS;
+
+    // Camera transitions
+    private int tweenKeyframeInterval = CameraTweenEngine.DEFAULT_KEYFRAME_INTERVAL;
+    private int tweenMaxPacketsPerTick = CameraTweenEngine.DEFAULT_MAX_PACKETS_PER_TICK;
+    private float tweenKeyframeLerpSpeed = CameraTweenEngine.DEFAULT_KEYFRAME_LERP_SPEED;
+
+    // /camerazoom coalescing and rate limit
+    private int zoomFlushIntervalTicks = CameraZoomCoalescer.DEFAULT_FLUSH_INTERVAL_TICKS;
+    private int zoomBurst = CameraZoomCoalescer.DEFAULT_BURST;
+    private float zoomRefillPerSecond = CameraZoomCoalescer.DEFAULT_REFILL_PER_SECOND;
+
+    // Spectator cameras: distance from the followed entity, and how far it has to move before observers get an update
+    private float followCameraDistance = CameraFollowManager.DEFAULT_DISTANCE;
+    private double followMoveThreshold = CameraFollowManager.DEFAULT_MOVE_THRESHOLD;
+
+    // Death drop rules, first match wins (see DeathDropRule)
+    private List<DeathDropRule> deathDropRules = List.of();
+
+    // Death inventory archive
+    private int deathArchiveSegmentMegabytes = DeathInventoryArchive.DEFAULT_SEGMENT_BYTES >> 20;
+    private int deathArchiveMaxSegments = DeathInventoryArchive.DEFAULT_MAX_SEGMENTS;
+
+    // How long state of players that left is kept in memory, and how many of them at most
+    private int sessionTtlSeconds = 600;
+    private int sessionMaxOffline = 10_000;
+
+    // Longest time the plugin may take to shut down
+    private long shutdownTimeoutMillis = 5_000L;
+
+    // Local HTTP endpoint for Prometheus metrics, 0 turns it off
+    private int metricsPort = 0;
+    private String metricsBindAddress = "127.0.0.1";
+
+    // Logging
+    private String logLevel = "INFO";
+    private int cameraLogMaxPerSecond = 50;
+
+    /**
+     * Check every value and throw if any is out of range.
+     * @throws IllegalArgumentException describing the first invalid value
+     */
+    public void validate() {
+        require(minCameraDistance > 0.0f, "minCameraDistance must be greater than 0");
+        require(maxCameraDistance >= minCameraDistance, "maxCameraDistance must not be less than minCameraDistance");
+        require(defaultCameraDistance >= minCameraDistance && defaultCameraDistance <= maxCameraDistance,
+            "defaultCameraDistance must be between minCameraDistance and maxCameraDistance");
+        require(shoulderOffsetDistance >= 0.0 && shoulderOffsetDistance <= 5.0, "shoulderOffsetDistance must be between 0 and 5");
+        require(cameraLerpSpeed > 0.0f && cameraLerpSpeed <= 10.0f, "cameraLerpSpeed must be between 0 (exclusive) and 10");
+        require(broadcastPacketsPerTick >= 1, "broadcastPacketsPerTick must be at least 1");
+        require(joinCameraPerTick >= 1, "joinCameraPerTick must be at least 1");
+        require(joinCameraDelayTicks >= 0, "joinCameraDelayTicks must not be negative");
+        require(tweenKeyframeInterval >= 1, "tweenKeyframeInterval must be at least 1");
+        require(tweenMaxPacketsPerTick >= 1, "tweenMaxPacketsPerTick must be at least 1");
+        require(tweenKeyframeLerpSpeed > 0.0f && tweenKeyframeLerpSpeed <= 10.0f, "tweenKeyframeLerpSpeed must be between 0 (exclusive) and 10");
+        require(zoomFlushIntervalTicks >= 1, "zoomFlushIntervalTicks must be at least 1");
+        require(zoomBurst >= 1, "zoomBurst must be at least 1");
+        require(zoomRefillPerSecond > 0.0f, "zoomRefillPerSecond must be greater than 0");
+        require(followCameraDistance >= minCameraDistance && followCameraDistance <= maxCameraDistance,
+            "followCameraDistance must be between minCameraDistance and maxCameraDistance");
+        require(followMoveThreshold >= 0.0 && followMoveThreshold <= 16.0, "followMoveThreshold must be between 0 and 16");
+        require(cameraLogMaxPerSecond >= 0, "cameraLogMaxPerSecond must not be negative");
+        // Checked even with deathDropEnabled off: the flag is only read at startup, so a running death drop module still applies the rules
+        DeathDropRuleSet.compile(getDeathDropRules());
+        require(deathArchiveSegmentMegabytes >= 1 && deathArchiveSegmentMegabytes <= 1024, "deathArchiveSegmentMegabytes must be between 1 and 1024");
+        require(deathArchiveMaxSegments >= 1, "deathArchiveMaxSegments must be at least 1");
+        require(sessionTtlSeconds >= 0 && sessionTtlSeconds <= 86_400, "sessionTtlSeconds must be between 0 and 86400");
+        require(sessionMaxOffline >= 0, "sessionMaxOffline must not be negative");
+        require(metricsPort >= 0 && metricsPort <= 65535, "metricsPort must be between 0 and 65535");
+        require(metricsBindAddress != null && !metricsBindAddress.isBlank(), "metricsBindAddress must be set");
+        require(shutdownTimeoutMillis >= 100 && shutdownTimeoutMillis <= 60_000, "shutdownTimeoutMillis must be between 100 and 60000");
+        try {
+            Level.parse(logLevel);
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("logLevel is not a valid level: " + logLevel);
+        }
+    }
+
+    /**
+     * Copy of this config with a different default camera distance.
+     */
+    @Nonnull
+    public PluginConfig withDefaultCameraDistance(float distance) {
+        PluginConfig copy = copy();
+        copy.defaultCameraDistance = distance;
+        return copy;
+    }
+
+    public String getPluginName() {
+        return pluginName;
+    }
+
+    public String getVersion() {
+        return version;
+    }
+
+    public boolean isDebugMode() {
+        return debugMode;
+    }
+
+    public boolean isCameraZonesEnabled() {
+        return cameraZonesEnabled;
+    }
+
+    public boolean isCameraTracksEnabled() {
+        return cameraTracksEnabled;
+    }
+
+    public boolean isCameraFollowEnabled() {
+        return cameraFollowEnabled;
+    }
+
+    public boolean isDeathDropEnabled() {
+        return deathDropEnabled;
+    }
+
+    public boolean isDeathArchiveEnabled() {
+        return deathArchiveEnabled;
+    }
+
+    public float getDefaultCameraDistance() {
+        return defaultCameraDistance;
+    }
+
+    public float getMinCameraDistance() {
+        return minCameraDistance;
+    }
+
+    public float getMaxCameraDistance() {
+        return maxCameraDistance;
+    }
+
+    public double getShoulderOffsetDistance() {
+        return shoulderOffsetDistance;
+    }
+
+    public float getCameraLerpSpeed() {
+        return cameraLerpSpeed;
+    }
+
+    public int getBroadcastPacketsPerTick() {
+        return broadcastPacketsPerTick;
+    }
+
+    public int getJoinCameraPerTick() {
+        return joinCameraPerTick;
+    }
+
+    public int getJoinCameraDelayTicks() {
+        return joinCameraDelayTicks;
+    }
+
+    public int getTweenKeyframeInterval() {
+        return tweenKeyframeInterval;
+    }
+
+    public int getTweenMaxPacketsPerTick() {
+        return tweenMaxPacketsPerTick;
+    }
+
+    public float getTweenKeyframeLerpSpeed() {
+        return tweenKeyframeLerpSpeed;
+    }
+
+    public float getFollowCameraDistance() {
+        return followCameraDistance;
+    }
+
+    public double getFollowMoveThreshold() {
+        return followMoveThreshold;
+    }
+
+    public int getZoomFlushIntervalTicks() {
+        return zoomFlushIntervalTicks;
+    }
+
+    public int getZoomBurst() {
+        return zoomBurst;
+    }
+
+    public float getZoomRefillPerSecond() {
+        return zoomRefillPerSecond;
+    }
+
+    @Nonnull
+    public List<DeathDropRule> getDeathDropRules() {
+        return deathDropRules != null ? deathDropRules : List.of();
+    }
+
+    public int getDeathArchiveSegmentMegabytes() {
+        return deathArchiveSegmentMegabytes;
+    }
+
+    public int getDeathArchiveMaxSegments() {
+        return deathArchiveMaxSegments;
+    }
+
+    public int getSessionTtlSeconds() {
+        return sessionTtlSeconds;
+    }
+
+    public int getSessionMaxOffline() {
+        return sessionMaxOffline;
+    }
+
+    public long getShutdownTimeoutMillis() {
+        return shutdownTimeoutMillis;
+    }
+
+    public int getMetricsPort() {
+        return metricsPort;
+    }
+
+    @Nonnull
+    public String getMetricsBindAddress() {
+        return metricsBindAddress;
+    }
+
+    @Nonnull
+    public Level getLogLevel() {
+        return Level.parse(logLevel);
+    }
+
+    public int getCameraLogMaxPerSecond() {
+        return cameraLogMaxPerSecond;
+    }
+
+    @Nonnull
+    private PluginConfig copy() {
+        PluginConfig copy = new PluginConfig();
+        copy.pluginName = pluginName;
+        copy.version = version;
+        copy.debugMode = debugMode;
+        copy.cameraZonesEnabled = cameraZonesEnabled;
+        copy.cameraTracksEnabled = cameraTracksEnabled;
+        copy.cameraFollowEnabled = cameraFollowEnabled;
+        copy.deathDropEnabled = deathDropEnabled;
+        copy.deathArchiveEnabled = deathArchiveEnabled;
+        copy.defaultCameraDistance = defaultCameraDistance;
+        copy.minCameraDistance = minCameraDistance;
+        copy.maxCameraDistance = maxCameraDistance;
+        copy.shoulderOffsetDistance = shoulderOffsetDistance;
+        copy.cameraLerpSpeed = cameraLerpSpeed;
+        copy.broadcastPacketsPerTick = broadcastPacketsPerTick;
+        copy.joinCameraPerTick = joinCameraPerTick;
+        copy.joinCameraDelayTicks = joinCameraDelayTicks;
+        copy.tweenKeyframeInterval = tweenKeyframeInterval;
+        copy.tweenMaxPacketsPerTick = tweenMaxPacketsPerTick;
+        copy.tweenKeyframeLerpSpeed = tweenKeyframeLerpSpeed;
+        copy.followCameraDistance = followCameraDistance;
+        copy.followMoveThreshold = followMoveThreshold;
+        copy.zoomFlushIntervalTicks = zoomFlushIntervalTicks;
+        copy.zoomBurst = zoomBurst;
+        copy.zoomRefillPerSecond = zoomRefillPerSecond;
+        copy.deathDropRules = deathDropRules;
+        copy.deathArchiveSegmentMegabytes = deathArchiveSegmentMegabytes;
+        copy.deathArchiveMaxSegments = deathArchiveMaxSegments;
+        copy.sessionTtlSeconds = sessionTtlSeconds;
+        copy.sessionMaxOffline = sessionMaxOffline;
+        copy.shutdownTimeoutMillis = shutdownTimeoutMillis;
+        copy.metricsPort = metricsPort;
+        copy.metricsBindAddress = metricsBindAddress;
+        copy.logLevel = logLevel;
+        copy.cameraLogMaxPerSecond = cameraLogMaxPerSecond;
+        return copy;
+    }
+
+    private static void require(boolean condition, @Nonnull String message) {
+        if (!condition) {
+            throw new IllegalArgumentException(message);
+        }
+    }
+}
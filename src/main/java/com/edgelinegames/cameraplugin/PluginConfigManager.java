@@ -0,0 +1,223 @@
+package com.edgelinegames.cameraplugin;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.hypixel.hytale.logger.HytaleLogger;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import javax.annotation.Nonnull;
+
+/**
+ * Loads config.json, publishes it as an immutable snapshot and reloads it when the file changes.
+ *
+ * The current snapshot sits behind a single volatile reference, so readers on any thread get
+ * a consistent config with one field read and no locking. Reloads happen on a background
+ * watcher thread: the new file is parsed and validated first and only swapped in if it is
+ * valid, otherwise the old snapshot stays active and the error is logged.
+ *
+ * A default camera distance set at runtime is an override on top of the file: it is not
+ * written to config.json, and it is applied again to every reloaded snapshot until the server
+ * stops, unless the reloaded min and max distance no longer allow it.
+ */
+public class PluginConfigManager implements AutoCloseable {
+
+    private static final String FILE_NAME = "config.json";
+
+    // Wait this long after a change before reading, editors often write a file in several steps
+    private static final long RELOAD_DEBOUNCE_MILLIS = 250L;
+
+    private final HytaleLogger logger;
+    private final Path file;
+    private final Gson gson = new Gson();
+    private final List<Consumer<PluginConfig>> listeners = new CopyOnWriteArrayList<>();
+    private volatile PluginConfig current = new PluginConfig();
+    // Default camera distance set at runtime, or null (guarded by this)
+    private Float defaultCameraDistanceOverride;
+    private WatchService watchService;
+    private Thread watcher;
+
+    /**
+     * Constructor.
+     * @param logger The logger to use for logging messages
+     * @param dataDirectory The plugin data directory holding config.json
+     */
+    public PluginConfigManager(@Nonnull HytaleLogger logger, @Nonnull Path dataDirectory) {
+        this.logger = logger;
+        this.file = dataDirectory.resolve(FILE_NAME);
+    }
+
+    /**
+     * Get the current config snapshot. Never blocks.
+     */
+    @Nonnull
+    public PluginConfig get() {
+        return current;
+    }
+
+    /**
+     * Load the config file, writing the bundled default first if there is none.
+     * Falls back to the built-in defaults if the file cannot be read or is invalid.
+     */
+    public void load() {
+        try {
+            if (!Files.exists(file)) {
+                Files.createDirectories(file.getParent());
+                try (InputStream defaults = PluginConfigManager.class.getResourceAsStream("/" + FILE_NAME)) {
+                    if (defaults != null) {
+                        Files.copy(defaults, file);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            logger.at(Level.WARNING).withCause(e).log("PluginConfigManager: Could not write default config to " + file);
+        }
+        reload();
+    }
+
+    /**
+     * Read, validate and publish the config file.
+     * @return true if the new config was applied
+     */
+    public boolean reload() {
+        PluginConfig loaded;
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            loaded = gson.fromJson(reader, PluginConfig.class);
+            if (loaded == null) {
+                throw new JsonParseException("File is empty");
+            }
+            loaded.validate();
+        } catch (IOException | JsonParseException | IllegalArgumentException e) {
+            logger.at(Level.WARNING).log("PluginConfigManager: Keeping previous config, " + file + " is invalid: " + e.getMessage());
+            return false;
+        }
+
+        publish(loaded);
+        logger.at(Level.INFO).log("PluginConfigManager: Loaded config from " + file);
+        return true;
+    }
+
+    /**
+     * Replace the current snapshot and notify listeners. A runtime default camera distance is
+     * applied on top of the snapshot.
+     */
+    public synchronized void publish(@Nonnull PluginConfig config) {
+        config = applyOverrides(config);
+        this.current = config;
+        for (Consumer<PluginConfig> listener : listeners) {
+            try {
+                listener.accept(config);
+            } catch (Exception e) {
+                logger.at(Level.SEVERE).withCause(e).log("PluginConfigManager: Config listener failed");
+            }
+        }
+    }
+
+    /**
+     * Override the default camera distance of the current and every reloaded config, without
+     * writing it to config.json.
+     * @throws IllegalArgumentException if the distance is outside minCameraDistance and maxCameraDistance
+     */
+    public synchronized void overrideDefaultCameraDistance(float distance) {
+        PluginConfig config = current.withDefaultCameraDistance(distance);
+        config.validate();
+        defaultCameraDistanceOverride = distance;
+        publish(config);
+    }
+
+    /**
+     * Apply the runtime override to a snapshot, dropping it if the snapshot's bounds no longer allow it.
+     * Must be called while holding this.
+     */
+    @Nonnull
+    private PluginConfig applyOverrides(@Nonnull PluginConfig config) {
+        Float distance = defaultCameraDistanceOverride;
+        if (distance == null || distance == config.getDefaultCameraDistance()) {
+            return config;
+        }
+        if (distance < config.getMinCameraDistance() || distance > config.getMaxCameraDistance()) {
+            logger.at(Level.WARNING).log("PluginConfigManager: Dropping the default camera distance of " + distance
+                + " set at runtime, it is outside minCameraDistance and maxCameraDistance of " + file);
+            defaultCameraDistanceOverride = null;
+            return config;
+        }
+        return config.withDefaultCameraDistance(distance);
+    }
+
+    /**
+     * Register a listener that is called with every newly published snapshot,
+     * and right away with the current one.
+     */
+    public void addListener(@Nonnull Consumer<PluginConfig> listener) {
+        listeners.add(listener);
+        listener.accept(current);
+    }
+
+    /**
+     * Start watching the config file for changes.
+     */
+    public void startWatching() {
+        try {
+            watchService = file.getFileSystem().newWatchService();
+            file.getParent().register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        } catch (IOException e) {
+            logger.at(Level.WARNING).withCause(e).log("PluginConfigManager: Could not watch config file, hot reload disabled");
+            return;
+        }
+        watcher = Thread.ofPlatform().daemon().name("CameraPlugin-ConfigWatcher").start(this::runWatcher);
+    }
+
+    @Override
+    public void close() {
+        if (watchService != null) {
+            try {
+                watchService.close();
+            } catch (IOException e) {
+                logger.at(Level.WARNING).withCause(e).log("PluginConfigManager: Could not stop config watcher");
+            }
+        }
+        if (watcher != null) {
+            watcher.interrupt();
+        }
+    }
+
+    private void runWatcher() {
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                boolean changed = false;
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.context() instanceof Path changedPath && changedPath.getFileName().toString().equals(FILE_NAME)) {
+                        changed = true;
+                    }
+                }
+                key.reset();
+
+                if (changed) {
+                    Thread.sleep(RELOAD_DEBOUNCE_MILLIS);
+                    // Swallow the events caused by the rest of the write
+                    WatchKey extra;
+                    while ((extra = watchService.poll()) != null) {
+                        extra.pollEvents();
+                        extra.reset();
+                    }
+                    reload();
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // Shutting down
+        }
+    }
+}
@@ -0,0 +1,278 @@
+package com.edgelinegames.cameraplugin;
+
+import com.hypixel.hytale.logger.HytaleLogger;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * Asynchronous, allocation-free logging for hot paths.
+ *
+ * Callers record a constant message template plus a number and/or an existing object into a
+ * slot of a preallocated ring buffer; a background thread drains the buffer and does the
+ * actual formatting and logging. Each call first checks the level, then the category's
+ * sampling and rate limit, so filtered events cost a couple of field reads and no formatting.
+ * When the buffer is full, events are dropped and counted instead of blocking the caller.
+ *
+ * Templates use the logger's printf style placeholders ("%s").
+ */
+public class PluginLog implements AutoCloseable {
+
+    // Default number of slots in the ring buffer
+    public static final int DEFAULT_CAPACITY = 8192;
+
+    // How long the drain thread sleeps when the buffer is empty
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(5);
+
+    private static final int SHAPE_PLAIN = 0;
+    private static final int SHAPE_OBJECT = 1;
+    private static final int SHAPE_NUMBER = 2;
+    private static final int SHAPE_NUMBER_OBJECT = 3;
+
+    private final HytaleLogger logger;
+    private final Slot[] slots;
+    private final int mask;
+    private final AtomicLong claimed = new AtomicLong();
+    private final LongAdder dropped = new LongAdder();
+    private volatile long consumed;
+    private volatile int minimumLevel = Level.INFO.intValue();
+    private volatile boolean running;
+    private Thread drainThread;
+
+    /**
+     * A log category with its own sampling and rate limit.
+     */
+    public static final class Category {
+
+        private final String name;
+        private volatile int sampleEvery;
+        private volatile int maxPerSecond;
+        private final AtomicLong seen = new AtomicLong();
+        private final AtomicLong windowAndCount = new AtomicLong();
+        private final LongAdder filtered = new LongAdder();
+
+        private Category(@Nonnull String name, int sampleEvery, int maxPerSecond) {
+            this.name = name;
+            configure(sampleEvery, maxPerSecond);
+        }
+
+        /**
+         * Change sampling and rate limit.
+         * @param sampleEvery Log 1 out of every N events (1 = all)
+         * @param maxPerSecond Most events logged per second (0 = unlimited)
+         */
+        public void configure(int sampleEvery, int maxPerSecond) {
+            this.sampleEvery = Math.max(1, sampleEvery);
+            this.maxPerSecond = Math.max(0, maxPerSecond);
+        }
+
+        @Nonnull
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Get the number of events dropped by sampling or rate limiting.
+         */
+        public long getFilteredCount() {
+            return filtered.sum();
+        }
+
+        private boolean admit() {
+            int every = sampleEvery;
+            if (every > 1 && seen.getAndIncrement() % every != 0) {
+                filtered.increment();
+                return false;
+            }
+
+            int limit = maxPerSecond;
+            if (limit == 0) {
+                return true;
+            }
+            // Upper 32 bits hold the current one second window, lower 32 bits the count in it
+            long window = System.nanoTime() / 1_000_000_000L;
+            while (true) {
+                long current = windowAndCount.get();
+                long currentWindow = current >>> 32;
+                int count = currentWindow == (window & 0xFFFFFFFFL) ? (int) current : 0;
+                if (count >= limit) {
+                    filtered.increment();
+                    return false;
+                }
+                long next = ((window & 0xFFFFFFFFL) << 32) | (count + 1);
+                if (windowAndCount.compareAndSet(current, next)) {
+                    return true;
+                }
+            }
+        }
+    }
+
+    private static final class Slot {
+        // Sequence number of the event held by this slot, written last by the producer
+        volatile long sequence = -1;
+        Level level;
+        String template;
+        int shape;
+        double number;
+        Object object;
+    }
+
+    /**
+     * Constructor.
+     * @param logger The logger that drained events are written to
+     * @param capacity Number of ring buffer slots (rounded up to a power of two)
+     */
+    public PluginLog(@Nonnull HytaleLogger logger, int capacity) {
+        this.logger = logger;
+        int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+        this.slots = new Slot[size];
+        for (int i = 0; i < size; i++) {
+            slots[i] = new Slot();
+        }
+        this.mask = size - 1;
+    }
+
+    /**
+     * Create a new category.
+     * @param name Category name
+     * @param sampleEvery Log 1 out of every N events (1 = all)
+     * @param maxPerSecond Most events logged per second (0 = unlimited)
+     */
+    @Nonnull
+    public Category category(@Nonnull String name, int sampleEvery, int maxPerSecond) {
+        return new Category(name, sampleEvery, maxPerSecond);
+    }
+
+    /**
+     * Start the drain thread.
+     */
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        drainThread = Thread.ofPlatform().daemon().name("CameraPlugin-Log").start(this::runDrain);
+    }
+
+    /**
+     * Stop the drain thread after writing out everything still in the buffer.
+     */
+    @Override
+    public synchronized void close() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        LockSupport.unpark(drainThread);
+        try {
+            drainThread.join(TimeUnit.SECONDS.toMillis(2));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        long droppedCount = dropped.sum();
+        if (droppedCount > 0) {
+            logger.at(Level.INFO).log("PluginLog: " + droppedCount + " log events dropped because the buffer was full");
+        }
+    }
+
+    /**
+     * Set the lowest level that is recorded.
+     */
+    public void setMinimumLevel(@Nonnull Level level) {
+        this.minimumLevel = level.intValue();
+    }
+
+    /**
+     * Check whether events at this level are recorded at all.
+     */
+    public boolean isLoggable(@Nonnull Level level) {
+        return level.intValue() >= minimumLevel;
+    }
+
+    public void log(@Nonnull Level level, @Nonnull Category category, @Nonnull String template) {
+        if (isLoggable(level) && category.admit()) {
+            publish(level, template, SHAPE_PLAIN, 0.0, null);
+        }
+    }
+
+    public void log(@Nonnull Level level, @Nonnull Category category, @Nonnull String template, @Nullable Object object) {
+        if (isLoggable(level) && category.admit()) {
+            publish(level, template, SHAPE_OBJECT, 0.0, object);
+        }
+    }
+
+    public void log(@Nonnull Level level, @Nonnull Category category, @Nonnull String template, double number) {
+        if (isLoggable(level) && category.admit()) {
+            publish(level, template, SHAPE_NUMBER, number, null);
+        }
+    }
+
+    public void log(@Nonnull Level level, @Nonnull Category category, @Nonnull String template, double number, @Nullable Object object) {
+        if (isLoggable(level) && category.admit()) {
+            publish(level, template, SHAPE_NUMBER_OBJECT, number, object);
+        }
+    }
+
+    /**
+     * Get the number of events dropped because the buffer was full.
+     */
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    private void publish(@Nonnull Level level, @Nonnull String template, int shape, double number, @Nullable Object object) {
+        long sequence;
+        do {
+            sequence = claimed.get();
+            if (sequence - consumed >= slots.length) {
+                dropped.increment();
+                return;
+            }
+        } while (!claimed.compareAndSet(sequence, sequence + 1));
+
+        Slot slot = slots[(int) (sequence & mask)];
+        slot.level = level;
+        slot.template = template;
+        slot.shape = shape;
+        slot.number = number;
+        slot.object = object;
+        slot.sequence = sequence;
+    }
+
+    private void runDrain() {
+        while (true) {
+            boolean stopping = !running;
+            long next = consumed;
+            Slot slot = slots[(int) (next & mask)];
+            if (slot.sequence != next) {
+                if (stopping && next >= claimed.get()) {
+                    return;
+                }
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+                continue;
+            }
+
+            try {
+                write(slot);
+            } catch (Exception e) {
+                // Never let a bad event stop the drain thread
+            }
+            slot.object = null;
+            consumed = next + 1;
+        }
+    }
+
+    private void write(@Nonnull Slot slot) {
+        HytaleLogger.Api api = logger.at(slot.level);
+        switch (slot.shape) {
+            case SHAPE_OBJECT -> api.log(slot.template, slot.object);
+            case SHAPE_NUMBER -> api.log(slot.template, slot.number);
+            case SHAPE_NUMBER_OBJECT -> api.log(slot.template, slot.number, slot.object);
+            default -> api.log(slot.template);
+        }
+    }
+}
@@ -0,0 +1,267 @@
+package com.edgelinegames.cameraplugin;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * Registry of the plugin's metrics, written out in the Prometheus text format.
+ *
+ * Recording never allocates and never takes a lock: counters and histogram buckets are
+ * LongAdders, which stripe their cells across threads under contention. Values that other
+ * components already count are registered as functions and only read when exported.
+ * Metrics are registered once at startup; registering is not meant for hot paths.
+ */
+public class PluginMetrics {
+
+    // Histogram bucket bounds for durations, in nanoseconds (1 us to 100 ms)
+    public static final long[] DURATION_BUCKETS = {
+        1_000L, 5_000L, 10_000L, 50_000L, 100_000L, 500_000L, 1_000_000L, 5_000_000L, 10_000_000L, 50_000_000L, 100_000_000L
+    };
+
+    private enum Type { COUNTER, GAUGE, HISTOGRAM }
+
+    private record Entry(@Nonnull String name, @Nullable String labels, @Nonnull String help, @Nonnull Type type, @Nonnull Object source) {}
+
+    private final String prefix;
+    private final List<Entry> entries = new ArrayList<>();
+
+    /**
+     * Constructor.
+     * @param prefix Prefix for every metric name, without the trailing underscore
+     */
+    public PluginMetrics(@Nonnull String prefix) {
+        this.prefix = prefix + "_";
+    }
+
+    /**
+     * Register a counter.
+     * @param name Metric name without prefix, should end with _total
+     * @param labels Prometheus labels without braces (e.g. command="camerazoom"), or null
+     */
+    @Nonnull
+    public synchronized Counter counter(@Nonnull String name, @Nullable String labels, @Nonnull String help) {
+        Counter counter = new Counter();
+        entries.add(new Entry(prefix + name, labels, help, Type.COUNTER, counter));
+        return counter;
+    }
+
+    /**
+     * Register a counter whose value is kept somewhere else.
+     */
+    public synchronized void counterFunction(@Nonnull String name, @Nonnull String help, @Nonnull LongSupplier value) {
+        entries.add(new Entry(prefix + name, null, help, Type.COUNTER, value));
+    }
+
+    /**
+     * Register a gauge whose value is read when exported.
+     */
+    public synchronized void gauge(@Nonnull String name, @Nonnull String help, @Nonnull LongSupplier value) {
+        entries.add(new Entry(prefix + name, null, help, Type.GAUGE, value));
+    }
+
+    /**
+     * Register a histogram of durations in nanoseconds, exported in seconds.
+     * @param name Metric name without prefix, should end with _seconds
+     * @param labels Prometheus labels without braces, or null
+     */
+    @Nonnull
+    public synchronized Histogram histogram(@Nonnull String name, @Nullable String labels, @Nonnull String help) {
+        Histogram histogram = new Histogram(DURATION_BUCKETS);
+        entries.add(new Entry(prefix + name, labels, help, Type.HISTOGRAM, histogram));
+        return histogram;
+    }
+
+    /**
+     * Write every metric in the Prometheus text exposition format (version 0.0.4).
+     */
+    public void writePrometheus(@Nonnull StringBuilder out) {
+        // Entries with the same name but other labels share one HELP and TYPE line, so they are
+        // written together even when the modules registered them at different times
+        Map<String, List<Entry>> byName = new LinkedHashMap<>();
+        synchronized (this) {
+            for (Entry entry : entries) {
+                byName.computeIfAbsent(entry.name(), name -> new ArrayList<>()).add(entry);
+            }
+        }
+        List<Entry> snapshot = new ArrayList<>();
+        byName.values().forEach(snapshot::addAll);
+        String lastName = null;
+        for (Entry entry : snapshot) {
+            if (!entry.name().equals(lastName)) {
+                out.append("# HELP ").append(entry.name()).append(' ').append(entry.help()).append('\n');
+                out.append("# TYPE ").append(entry.name()).append(' ').append(entry.type().name().toLowerCase()).append('\n');
+                lastName = entry.name();
+            }
+            switch (entry.type()) {
+                case COUNTER, GAUGE -> {
+                    long value = entry.source() instanceof Counter counter ? counter.get() : ((LongSupplier) entry.source()).getAsLong();
+                    sample(out, entry.name(), entry.labels(), null).append(value).append('\n');
+                }
+                case HISTOGRAM -> ((Histogram) entry.source()).write(out, entry.name(), entry.labels());
+            }
+        }
+    }
+
+    /**
+     * Get one short readable line per metric, for in-game display.
+     * Histograms show their count and the estimated median and 99th percentile.
+     */
+    @Nonnull
+    public List<String> summarize() {
+        List<Entry> snapshot;
+        synchronized (this) {
+            snapshot = List.copyOf(entries);
+        }
+        List<String> lines = new ArrayList<>(snapshot.size());
+        for (Entry entry : snapshot) {
+            String name = entry.name().substring(prefix.length()) + (entry.labels() != null ? "{" + entry.labels() + "}" : "");
+            if (entry.source() instanceof Histogram histogram) {
+                lines.add(name + ": " + histogram.getCount() + " times, p50 <= " + formatNanos(histogram.quantile(0.5))
+                    + ", p99 <= " + formatNanos(histogram.quantile(0.99)));
+            } else {
+                long value = entry.source() instanceof Counter counter ? counter.get() : ((LongSupplier) entry.source()).getAsLong();
+                lines.add(name + ": " + value);
+            }
+        }
+        return lines;
+    }
+
+    @Nonnull
+    private static String formatNanos(long nanos) {
+        if (nanos == Long.MAX_VALUE) {
+            return "inf";
+        }
+        return nanos < 1_000_000L ? nanos / 1_000L + " us" : nanos / 1_000_000L + " ms";
+    }
+
+    @Nonnull
+    private static StringBuilder sample(@Nonnull StringBuilder out, @Nonnull String name, @Nullable String labels, @Nullable String le) {
+        out.append(name);
+        if (labels != null || le != null) {
+            out.append('{');
+            if (labels != null) {
+                out.append(labels);
+            }
+            if (le != null) {
+                out.append(labels != null ? ",le=\"" : "le=\"").append(le).append('"');
+            }
+            out.append('}');
+        }
+        return out.append(' ');
+    }
+
+    /**
+     * A monotonic counter.
+     */
+    public static final class Counter {
+
+        private final LongAdder value = new LongAdder();
+
+        private Counter() {
+        }
+
+        public void increment() {
+            value.increment();
+        }
+
+        public void add(long amount) {
+            value.add(amount);
+        }
+
+        public long get() {
+            return value.sum();
+        }
+    }
+
+    /**
+     * A histogram with fixed bucket bounds.
+     */
+    public static final class Histogram {
+
+        private final long[] bounds;
+        // One cell per bound plus the overflow bucket, not cumulative
+        private final LongAdder[] buckets;
+        private final LongAdder sum = new LongAdder();
+
+        private Histogram(@Nonnull long[] bounds) {
+            this.bounds = bounds;
+            this.buckets = new LongAdder[bounds.length + 1];
+            for (int i = 0; i < buckets.length; i++) {
+                buckets[i] = new LongAdder();
+            }
+        }
+
+        /**
+         * Record one value, in nanoseconds for duration histograms.
+         */
+        public void record(long value) {
+            int index = Arrays.binarySearch(bounds, value);
+            // Bounds are inclusive upper limits
+            buckets[index >= 0 ? index : -index - 1].increment();
+            sum.add(value);
+        }
+
+        /**
+         * Record the time since a System.nanoTime() start.
+         */
+        public void recordSince(long startNanos) {
+            record(System.nanoTime() - startNanos);
+        }
+
+        public long getCount() {
+            long count = 0;
+            for (LongAdder bucket : buckets) {
+                count += bucket.sum();
+            }
+            return count;
+        }
+
+        public long getSum() {
+            return sum.sum();
+        }
+
+        /**
+         * Estimate a quantile as the upper bound of the bucket it falls in.
+         * @return The bound, Long.MAX_VALUE if it is in the overflow bucket, or 0 if nothing was recorded
+         */
+        public long quantile(double quantile) {
+            long[] counts = new long[buckets.length];
+            long total = 0;
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] = buckets[i].sum();
+                total += counts[i];
+            }
+            if (total == 0) {
+                return 0L;
+            }
+            long rank = (long) Math.ceil(quantile * total);
+            long seen = 0;
+            for (int i = 0; i < bounds.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return bounds[i];
+                }
+            }
+            return Long.MAX_VALUE;
+        }
+
+        private void write(@Nonnull StringBuilder out, @Nonnull String name, @Nullable String labels) {
+            long cumulative = 0;
+            for (int i = 0; i < bounds.length; i++) {
+                cumulative += buckets[i].sum();
+                sample(out, name + "_bucket", labels, Double.toString(bounds[i] / 1e9)).append(cumulative).append('\n');
+            }
+            cumulative += buckets[bounds.length].sum();
+            sample(out, name + "_bucket", labels, "+Inf").append(cumulative).append('\n');
+            sample(out, name + "_sum", labels, null).append(sum.sum() / 1e9).append('\n');
+            sample(out, name + "_count", labels, null).append(cumulative).append('\n');
+        }
+    }
+}
@@ -8,15 +8,21 @@ import com.hypixel.hytale.server.core.command.system.arguments.system.OptionalAr
 import com.hypixel.hytale.server.core.command.system.arguments.types.ArgTypes;
 import com.hypixel.hytale.server.core.command.system.basecommands.AbstractTargetPlayerCommand;
 import com.hypixel.hytale.server.core.universe.PlayerRef;
+import com.hypixel.hytale.server.core.universe.Universe;
 import com.hypixel.hytale.server.core.universe.world.World;
 import com.hypixel.hytale.server.core.universe.world.storage.EntityStore;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 
 /**
  * Command to prevent a specific player from dropping items on death.
- * Usage: /preventdeathdrop [player]
- * If no player is specified, targets the command sender.
+ * Usage: /preventdeathdrop [player] [enable|disable|status] [players]
+ * If no player is specified, targets the command sender. With a player selector (see
+ * {@link PlayerSelector}) every selected player is changed, in batches over several ticks,
+ * and answered with one summary message; that needs the cameraplugin.preventdeathdrop.others
+ * permission.
  */
 public class PreventDeathItemDropCommand extends AbstractTargetPlayerCommand {
     
@@ -26,64 +32,183 @@ public class PreventDeathItemDropCommand extends AbstractTargetPlayerCommand {
     private static final Message MESSAGE_ALREADY_DISABLED = Message.raw("Item drop prevention is already disabled for {player}");
     private static final Message MESSAGE_STATUS_ENABLED = Message.raw("Item drop prevention is currently enabled for {player}");
     private static final Message MESSAGE_STATUS_DISABLED = Message.raw("Item drop prevention is currently disabled for {player}");
+    private static final Message MESSAGE_NO_PERMISSION = Message.raw("You do not have permission to change item drop prevention with a player selector.");
+    private static final Message MESSAGE_SELECTOR_TOGGLE = Message.raw("With a player selector, use enable, disable or status");
+    private static final Message MESSAGE_BAD_SELECTOR = Message.raw("{error}. Use @a, @w, @w:<world>, @r:<radius> or a name pattern like Event*.");
+    private static final Message MESSAGE_NOBODY = Message.raw("No players match {selector}");
+    private static final Message MESSAGE_SELECTED_ENABLED = Message.raw("Item drop prevention enabled for {changed} of {count} players ({selector})");
+    private static final Message MESSAGE_SELECTED_DISABLED = Message.raw("Item drop prevention disabled for {changed} of {count} players ({selector})");
+    private static final Message MESSAGE_SELECTED_STATUS = Message.raw("Item drop prevention is enabled for {enabled} of {count} players ({selector})");
+    
+    // Permission needed to change or check other players with a selector
+    static final String PERMISSION_OTHERS = "cameraplugin.preventdeathdrop.others";
     
     private final OptionalArg<String> toggleArg;
+    private final OptionalArg<String> playersArg;
     private final PreventDeathItemDropManager manager;
+    private final PluginMetrics.Histogram latency;
     
-    public PreventDeathItemDropCommand(@Nonnull PreventDeathItemDropManager manager) {
+    public PreventDeathItemDropCommand(@Nonnull PreventDeathItemDropManager manager, @Nonnull PluginMetrics.Histogram latency) {
         super("preventdeathdrop", "Prevent a player from dropping items on death");
         this.manager = manager;
+        this.latency = latency;
         this.toggleArg = withOptionalArg("toggle", "enable/disable/status", ArgTypes.STRING);
+        this.playersArg = withOptionalArg("players", "Players to change: @a, @w, @w:<world>, @r:<radius> or a name pattern", ArgTypes.STRING);
     }
     
     @Override
     protected void execute(@Nonnull CommandContext context, @Nullable Ref<EntityStore> sourceRef, 
                           @Nonnull Ref<EntityStore> targetRef, @Nonnull PlayerRef targetPlayerRef, 
                           @Nonnull World world, @Nonnull Store<EntityStore> store) {
-        String toggle = this.toggleArg.get(context);
-        boolean isEnabled = manager.isPreventDeathItemDropEnabled(targetPlayerRef);
-        
-        // If toggle argument is provided, use it; otherwise toggle the current state
-        if (toggle != null) {
-            String lowerToggle = toggle.toLowerCase();
-            if (lowerToggle.equals("enable") || lowerToggle.equals("on") || lowerToggle.equals("true")) {
-                if (isEnabled) {
-                    context.sendMessage(MESSAGE_ALREADY_ENABLED.param("player", targetPlayerRef.getUsername()));
-                } else {
-                    manager.setPreventDeathItemDrop(targetPlayerRef, true);
-                    context.sendMessage(MESSAGE_ENABLED.param("player", targetPlayerRef.getUsername()));
+        long start = System.nanoTime();
+        PluginCommandEvent event = new PluginCommandEvent();
+        event.begin();
+        try {
+            String toggle = this.toggleArg.get(context);
+            String selector = this.playersArg.get(context);
+            if (selector != null) {
+                // The selector replaces the single target; @w and @r are relative to the player running the command
+                PlayerRef sender = sourceRef != null ? store.getComponent(sourceRef, PlayerRef.getComponentType()) : null;
+                applySelected(context, sender != null ? sender : targetPlayerRef, selector, parseToggle(toggle));
+                return;
+            }
+            
+            boolean isEnabled = manager.isPreventDeathItemDropEnabled(targetPlayerRef);
+            
+            // If toggle argument is provided, use it; otherwise toggle the current state
+            switch (parseToggle(toggle)) {
+                case ENABLE -> {
+                    if (isEnabled) {
+                        context.sendMessage(MESSAGE_ALREADY_ENABLED.param("player", targetPlayerRef.getUsername()));
+                    } else {
+                        manager.setPreventDeathItemDrop(targetPlayerRef, true);
+                        context.sendMessage(MESSAGE_ENABLED.param("player", targetPlayerRef.getUsername()));
+                    }
                 }
-            } else if (lowerToggle.equals("disable") || lowerToggle.equals("off") || lowerToggle.equals("false")) {
-                if (!isEnabled) {
-                    context.sendMessage(MESSAGE_ALREADY_DISABLED.param("player", targetPlayerRef.getUsername()));
-                } else {
-                    manager.setPreventDeathItemDrop(targetPlayerRef, false);
-                    context.sendMessage(MESSAGE_DISABLED.param("player", targetPlayerRef.getUsername()));
+                case DISABLE -> {
+                    if (!isEnabled) {
+                        context.sendMessage(MESSAGE_ALREADY_DISABLED.param("player", targetPlayerRef.getUsername()));
+                    } else {
+                        manager.setPreventDeathItemDrop(targetPlayerRef, false);
+                        context.sendMessage(MESSAGE_DISABLED.param("player", targetPlayerRef.getUsername()));
+                    }
                 }
-            } else if (lowerToggle.equals("status") || lowerToggle.equals("check")) {
-                if (isEnabled) {
-                    context.sendMessage(MESSAGE_STATUS_ENABLED.param("player", targetPlayerRef.getUsername()));
-                } else {
-                    context.sendMessage(MESSAGE_STATUS_DISABLED.param("player", targetPlayerRef.getUsername()));
+                case STATUS -> {
+                    if (isEnabled) {
+                        context.sendMessage(MESSAGE_STATUS_ENABLED.param("player", targetPlayerRef.getUsername()));
+                    } else {
+                        context.sendMessage(MESSAGE_STATUS_DISABLED.param("player", targetPlayerRef.getUsername()));
+                    }
                 }
-            } else {
-                // Invalid toggle value, just toggle the state
-                manager.setPreventDeathItemDrop(targetPlayerRef, !isEnabled);
-                if (!isEnabled) {
-                    context.sendMessage(MESSAGE_ENABLED.param("player", targetPlayerRef.getUsername()));
-                } else {
-                    context.sendMessage(MESSAGE_DISABLED.param("player", targetPlayerRef.getUsername()));
+                case TOGGLE -> {
+                    // No (or an invalid) toggle argument, just toggle the current state
+                    manager.setPreventDeathItemDrop(targetPlayerRef, !isEnabled);
+                    if (!isEnabled) {
+                        context.sendMessage(MESSAGE_ENABLED.param("player", targetPlayerRef.getUsername()));
+                    } else {
+                        context.sendMessage(MESSAGE_DISABLED.param("player", targetPlayerRef.getUsername()));
+                    }
                 }
             }
-        } else {
-            // No toggle argument, just toggle the current state
-            manager.setPreventDeathItemDrop(targetPlayerRef, !isEnabled);
-            if (!isEnabled) {
-                context.sendMessage(MESSAGE_ENABLED.param("player", targetPlayerRef.getUsername()));
-            } else {
-                context.sendMessage(MESSAGE_DISABLED.param("player", targetPlayerRef.getUsername()));
+        } finally {
+            latency.recordSince(start);
+            if (event.shouldCommit()) {
+                event.command = "preventdeathdrop";
+                event.player = targetPlayerRef.getUsername();
+                event.commit();
+            }
+        }
+    }
+    
+    /**
+     * Apply a toggle to every selected player.
+     */
+    private void applySelected(@Nonnull CommandContext context, @Nonnull PlayerRef sender, @Nonnull String selectorText, @Nonnull Toggle toggle) {
+        if (!context.sender().hasPermission(PERMISSION_OTHERS)) {
+            context.sendMessage(MESSAGE_NO_PERMISSION);
+            return;
+        }
+        
+        if (toggle == Toggle.TOGGLE) {
+            // Flipping each player's own state is rarely what staff want for a whole group
+            context.sendMessage(MESSAGE_SELECTOR_TOGGLE);
+            return;
+        }
+        
+        PlayerSelector selector;
+        try {
+            selector = PlayerSelector.parse(selectorText);
+        } catch (IllegalArgumentException e) {
+            context.sendMessage(MESSAGE_BAD_SELECTOR.param("error", e.getMessage()));
+            return;
+        }
+        
+        List<PlayerRef> targets = selector.resolve(Universe.get().getPlayers(), sender);
+        if (targets.isEmpty()) {
+            context.sendMessage(MESSAGE_NOBODY.param("selector", selectorText));
+            return;
+        }
+        
+        if (toggle == Toggle.STATUS) {
+            int enabled = 0;
+            for (PlayerRef target : targets) {
+                if (manager.isPreventDeathItemDropEnabled(target.getUuid())) {
+                    enabled++;
+                }
             }
+            context.sendMessage(MESSAGE_SELECTED_STATUS
+                .param("enabled", String.valueOf(enabled))
+                .param("count", String.valueOf(targets.size()))
+                .param("selector", selectorText));
+            return;
+        }
+        
+        boolean enable = toggle == Toggle.ENABLE;
+        AtomicInteger changed = new AtomicInteger();
+        Message summary = enable ? MESSAGE_SELECTED_ENABLED : MESSAGE_SELECTED_DISABLED;
+        CameraPlugin.getInstance().getBroadcaster()
+            .submit("preventdeathdrop " + (enable ? "enable " : "disable ") + selectorText, targets, target -> {
+                if (manager.applyPreventDeathItemDrop(target, enable)) {
+                    changed.incrementAndGet();
+                }
+            })
+            .getCompletion()
+            .thenAccept(broadcast -> context.sendMessage(summary
+                .param("changed", String.valueOf(changed.get()))
+                .param("count", String.valueOf(broadcast.getTotal()))
+                .param("selector", selectorText)));
+    }
+    
+    /**
+     * What the toggle argument asks for.
+     */
+    enum Toggle {
+        ENABLE,
+        DISABLE,
+        STATUS,
+        TOGGLE
+    }
+    
+    /**
+     * Parse the toggle argument without allocating.
+     * @param toggle The raw argument, may be null
+     * @return The requested action, TOGGLE for a missing or unknown value
+     */
+    @Nonnull
+    static Toggle parseToggle(@Nullable String toggle) {
+        if (toggle == null) {
+            return Toggle.TOGGLE;
+        }
+        if (toggle.equalsIgnoreCase("enable") || toggle.equalsIgnoreCase("on") || toggle.equalsIgnoreCase("true")) {
+            return Toggle.ENABLE;
+        }
+        if (toggle.equalsIgnoreCase("disable") || toggle.equalsIgnoreCase("off") || toggle.equalsIgnoreCase("false")) {
+            return Toggle.DISABLE;
+        }
+        if (toggle.equalsIgnoreCase("status") || toggle.equalsIgnoreCase("check")) {
+            return Toggle.STATUS;
         }
+        return Toggle.TOGGLE;
     }
 }
 
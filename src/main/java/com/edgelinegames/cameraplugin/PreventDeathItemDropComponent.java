@@ -0,0 +1,22 @@
+package com.edgelinegames.cameraplugin;
+
+import com.hypixel.hytale.component.Component;
+import com.hypixel.hytale.server.core.universe.world.storage.EntityStore;
+import javax.annotation.Nonnull;
+
+/**
+ * Marker component for players that should not drop items on death.
+ * Carries no data; having the component is the flag. It is not saved with the entity,
+ * PreventDeathItemDropManager re-attaches it when a flagged player's entity is added.
+ */
+public class PreventDeathItemDropComponent implements Component<EntityStore> {
+
+    // The component is stateless, so every entity can share one instance
+    public static final PreventDeathItemDropComponent INSTANCE = new PreventDeathItemDropComponent();
+
+    @Nonnull
+    @Override
+    public Component<EntityStore> clone() {
+        return INSTANCE;
+    }
+}
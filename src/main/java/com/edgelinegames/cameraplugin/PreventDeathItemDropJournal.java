@@ -0,0 +1,298 @@
+package com.edgelinegames.cameraplugin;
+
+import com.hypixel.hytale.logger.HytaleLogger;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import javax.annotation.Nonnull;
+
+/**
+ * Durable, append-only journal of prevent death item drop flags.
+ *
+ * Every enable/disable is a fixed 17 byte record (op, uuid). Callers only put the record on
+ * a queue; a background writer drains the queue, writes everything it got in one go and
+ * fsyncs once per batch (group commit). When the journal holds many more records than there
+ * are enabled players, the writer rewrites it as a compact snapshot of the live set.
+ *
+ * File layout: magic(int) version(int), then records of op(byte) uuidMost(long) uuidLeast(long).
+ */
+public class PreventDeathItemDropJournal implements AutoCloseable {
+
+    private static final int MAGIC = 0x50444444; // "PDDD"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 8;
+    private static final int RECORD_SIZE = 17;
+    private static final byte OP_DISABLE = 0;
+    private static final byte OP_ENABLE = 1;
+
+    // Compact once the journal has this many records and at least COMPACT_RATIO times the live set
+    private static final long COMPACT_MIN_RECORDS = 10_000;
+    private static final int COMPACT_RATIO = 4;
+
+    // Most records written per batch (and per fsync)
+    private static final int MAX_BATCH = 4096;
+
+    private final HytaleLogger logger;
+    private final Path file;
+    private final Supplier<Collection<UUID>> liveSet;
+    private final BlockingQueue<Record> queue = new LinkedBlockingQueue<>();
+    private final CountDownLatch stopped = new CountDownLatch(1);
+    private final Thread writer;
+    private FileChannel activeChannel;
+    private volatile long recordCount;
+    private volatile boolean running = true;
+
+    private record Record(byte op, long most, long least) {}
+
+    // Marker record telling the writer to stop once everything before it is written
+    private static final Record STOP = new Record((byte) -1, 0L, 0L);
+
+    private PreventDeathItemDropJournal(@Nonnull HytaleLogger logger, @Nonnull Path file,
+                                        @Nonnull Supplier<Collection<UUID>> liveSet,
+                                        @Nonnull FileChannel channel, long recordCount) {
+        this.logger = logger;
+        this.file = file;
+        this.liveSet = liveSet;
+        this.activeChannel = channel;
+        this.recordCount = recordCount;
+        this.writer = Thread.ofPlatform().daemon().name("CameraPlugin-DropJournal").unstarted(this::runWriter);
+    }
+
+    /**
+     * Open (or create) the journal, replay it into the given set and start the writer.
+     * @param logger The logger to use for logging messages
+     * @param file The journal file
+     * @param into The set to fill with the UUIDs that are currently enabled
+     * @param liveSet Supplies the current enabled UUIDs, used when compacting
+     * @return The opened journal
+     * @throws IOException if the file cannot be read or is not a journal
+     */
+    @Nonnull
+    public static PreventDeathItemDropJournal open(@Nonnull HytaleLogger logger, @Nonnull Path file,
+                                                   @Nonnull Set<UUID> into,
+                                                   @Nonnull Supplier<Collection<UUID>> liveSet) throws IOException {
+        long start = System.nanoTime();
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long recordCount = replay(channel, file, into);
+
+        PreventDeathItemDropJournal journal = new PreventDeathItemDropJournal(logger, file, liveSet, channel, recordCount);
+        journal.writer.start();
+        logger.at(Level.INFO).log("PreventDeathItemDropJournal: Replayed " + recordCount + " records (" + into.size()
+            + " players enabled) in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+        return journal;
+    }
+
+    /**
+     * Queue an enable/disable record. Never blocks.
+     */
+    public void append(@Nonnull UUID playerUuid, boolean enabled) {
+        if (!running) {
+            return;
+        }
+        queue.offer(new Record(enabled ? OP_ENABLE : OP_DISABLE, playerUuid.getMostSignificantBits(), playerUuid.getLeastSignificantBits()));
+    }
+
+    /**
+     * Write out everything queued so far and stop the writer.
+     * @param timeoutMillis How long to wait for the writer to finish
+     */
+    public void close(long timeoutMillis) {
+        if (!running) {
+            return;
+        }
+        running = false;
+        queue.offer(STOP);
+        try {
+            if (!stopped.await(timeoutMillis, TimeUnit.MILLISECONDS)) {
+                logger.at(Level.WARNING).log("PreventDeathItemDropJournal: Writer did not finish in time, " + queue.size() + " records not written");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void close() {
+        close(5_000L);
+    }
+
+    /**
+     * Get the number of records currently in the journal file.
+     */
+    public long getRecordCount() {
+        return recordCount;
+    }
+
+    private static long replay(@Nonnull FileChannel channel, @Nonnull Path file, @Nonnull Set<UUID> into) throws IOException {
+        long size = channel.size();
+        if (size == 0) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC).putInt(VERSION).flip();
+            while (header.hasRemaining()) {
+                channel.write(header);
+            }
+            channel.force(true);
+            channel.position(HEADER_SIZE);
+            return 0;
+        }
+
+        // Read through the channel rather than a mapping: the file is truncated and replaced by
+        // compaction later, which fails on some platforms while a mapping of it is still alive
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        if (size >= HEADER_SIZE) {
+            readFully(channel, header, 0);
+        }
+        if (size < HEADER_SIZE || header.getInt(0) != MAGIC || header.getInt(4) != VERSION) {
+            channel.close();
+            throw new IOException("Not a prevent death item drop journal: " + file);
+        }
+
+        long records = (size - HEADER_SIZE) / RECORD_SIZE;
+        ByteBuffer data = ByteBuffer.allocate(MAX_BATCH * RECORD_SIZE);
+        long position = HEADER_SIZE;
+        for (long remaining = records; remaining > 0; ) {
+            int count = (int) Math.min(remaining, MAX_BATCH);
+            data.clear().limit(count * RECORD_SIZE);
+            readFully(channel, data, position);
+            for (int i = 0; i < count; i++) {
+                int offset = i * RECORD_SIZE;
+                UUID uuid = new UUID(data.getLong(offset + 1), data.getLong(offset + 9));
+                if (data.get(offset) == OP_ENABLE) {
+                    into.add(uuid);
+                } else {
+                    into.remove(uuid);
+                }
+            }
+            position += (long) count * RECORD_SIZE;
+            remaining -= count;
+        }
+
+        // Drop a torn record left behind by a crash
+        long end = HEADER_SIZE + records * RECORD_SIZE;
+        if (end != size) {
+            channel.truncate(end);
+        }
+        channel.position(end);
+        return records;
+    }
+
+    /**
+     * Fill the buffer from the channel, starting at the given file position.
+     */
+    private static void readFully(@Nonnull FileChannel channel, @Nonnull ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                throw new IOException("Unexpected end of journal");
+            }
+            position += read;
+        }
+    }
+
+    private void runWriter() {
+        List<Record> batch = new ArrayList<>(MAX_BATCH);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(MAX_BATCH * RECORD_SIZE);
+        boolean stop = false;
+        try {
+            while (!stop) {
+                batch.add(queue.take());
+                queue.drainTo(batch, MAX_BATCH - 1);
+
+                buffer.clear();
+                for (Record record : batch) {
+                    if (record == STOP) {
+                        stop = true;
+                        continue;
+                    }
+                    buffer.put(record.op()).putLong(record.most()).putLong(record.least());
+                }
+                int written = buffer.position() / RECORD_SIZE;
+                batch.clear();
+
+                if (written > 0) {
+                    buffer.flip();
+                    while (buffer.hasRemaining()) {
+                        activeChannel.write(buffer);
+                    }
+                    activeChannel.force(false);
+                    recordCount += written;
+                }
+
+                if (!stop && shouldCompact()) {
+                    compact();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            running = false;
+            logger.at(Level.SEVERE).withCause(e).log("PreventDeathItemDropJournal: Could not write journal, item drop prevention changes will not be saved");
+        } finally {
+            try {
+                activeChannel.close();
+            } catch (IOException e) {
+                logger.at(Level.WARNING).withCause(e).log("PreventDeathItemDropJournal: Could not close journal");
+            }
+            stopped.countDown();
+        }
+    }
+
+    private boolean shouldCompact() {
+        return recordCount >= COMPACT_MIN_RECORDS && recordCount >= (long) liveSet.get().size() * COMPACT_RATIO;
+    }
+
+    /**
+     * Rewrite the journal as one enable record per live UUID. Runs on the writer thread,
+     * so every record queued after the snapshot is simply appended to the new file.
+     */
+    private void compact() throws IOException {
+        long start = System.nanoTime();
+        long before = recordCount;
+        List<UUID> snapshot = new ArrayList<>(liveSet.get());
+        Path tempFile = file.resolveSibling(file.getFileName() + ".compact");
+
+        try (FileChannel tempChannel = FileChannel.open(tempFile, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(HEADER_SIZE + MAX_BATCH * RECORD_SIZE);
+            buffer.putInt(MAGIC).putInt(VERSION);
+            for (UUID uuid : snapshot) {
+                if (buffer.remaining() < RECORD_SIZE) {
+                    buffer.flip();
+                    while (buffer.hasRemaining()) {
+                        tempChannel.write(buffer);
+                    }
+                    buffer.clear();
+                }
+                buffer.put(OP_ENABLE).putLong(uuid.getMostSignificantBits()).putLong(uuid.getLeastSignificantBits());
+            }
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                tempChannel.write(buffer);
+            }
+            tempChannel.force(true);
+        }
+
+        activeChannel.close();
+        Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        activeChannel = FileChannel.open(file, StandardOpenOption.WRITE);
+        activeChannel.position(activeChannel.size());
+        recordCount = snapshot.size();
+
+        logger.at(Level.INFO).log("PreventDeathItemDropJournal: Compacted " + before + " records to " + recordCount
+            + " in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+    }
+}
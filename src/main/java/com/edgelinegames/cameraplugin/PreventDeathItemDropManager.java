@@ -1,52 +1,227 @@
 package com.edgelinegames.cameraplugin;
 
+import com.hypixel.hytale.component.CommandBuffer;
 import com.hypixel.hytale.component.ComponentRegistryProxy;
+import com.hypixel.hytale.component.ComponentType;
+import com.hypixel.hytale.component.Ref;
+import com.hypixel.hytale.component.Store;
 import com.hypixel.hytale.logger.HytaleLogger;
+import com.hypixel.hytale.math.vector.Vector3d;
 import com.hypixel.hytale.server.core.command.system.AbstractCommand;
 import com.hypixel.hytale.server.core.command.system.CommandRegistry;
+import com.hypixel.hytale.server.core.entity.entities.Player;
+import com.hypixel.hytale.server.core.modules.entity.damage.DeathComponent;
+import com.hypixel.hytale.server.core.modules.entity.component.TransformComponent;
+import com.hypixel.hytale.server.core.permissions.PermissionsModule;
 import com.hypixel.hytale.server.core.universe.PlayerRef;
+import com.hypixel.hytale.server.core.universe.world.World;
 import com.hypixel.hytale.server.core.universe.world.storage.EntityStore;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.logging.Level;
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 
 /**
  * Manager class for handling prevent death item drop functionality.
  * Tracks which players should have item drops prevented on death.
+ * The UUID set is the source of truth (and what gets saved); flagged players that are in a
+ * world also carry a PreventDeathItemDropComponent so the death system can match on it.
+ * On top of that, the rules from config.json can prevent drops by world, permission group and
+ * region; their result is cached per player, see keepsItemsByRule.
  */
 public class PreventDeathItemDropManager {
     
     // Set of player UUIDs that should have item drops prevented on death
     private final Set<UUID> preventDeathItemDropPlayers = ConcurrentHashMap.newKeySet();
     private final HytaleLogger logger;
+    private final PluginLog pluginLog;
+    private final PluginLog.Category dropLog;
+    
+    // Marker component type, registered in setup()
+    private ComponentType<EntityStore, PreventDeathItemDropComponent> markerType;
+    
+    // Durable journal of flag changes (null until loadState is called, or if it could not be opened)
+    private PreventDeathItemDropJournal journal;
+    
+    // Archive of inventories at death (null until it is open, if it is switched off or could not be opened)
+    private volatile DeathInventoryArchive archive;
+    private CompletableFuture<Void> archiveOpening = CompletableFuture.completedFuture(null);
+    private volatile int archiveSegmentBytes = DeathInventoryArchive.DEFAULT_SEGMENT_BYTES;
+    private volatile int archiveMaxSegments = DeathInventoryArchive.DEFAULT_MAX_SEGMENTS;
+    
+    // Compiled death drop rules; the decision for them is cached in the player's session
+    private volatile DeathDropRuleSet ruleSet = DeathDropRuleSet.EMPTY;
+    private final PlayerSessionRegistry sessions;
+    
+    /**
+     * A player's rule decision, valid as long as the rule set and the player's world are the same.
+     */
+    record CachedDecision(@Nonnull DeathDropRuleSet rules, @Nonnull String world, @Nonnull DeathDropRuleSet.Decision decision) {}
+    
+    /**
+     * Constructor for a manager with its own session registry.
+     * @param logger The logger to use for logging messages
+     * @param pluginLog The asynchronous logger used for per-player messages
+     */
+    public PreventDeathItemDropManager(@Nonnull HytaleLogger logger, @Nonnull PluginLog pluginLog) {
+        this(logger, pluginLog, new PlayerSessionRegistry());
+    }
     
     /**
      * Constructor.
      * @param logger The logger to use for logging messages
+     * @param pluginLog The asynchronous logger used for per-player messages
+     * @param sessions The session registry shared with the camera feature
      */
-    public PreventDeathItemDropManager(@Nonnull HytaleLogger logger) {
+    public PreventDeathItemDropManager(@Nonnull HytaleLogger logger, @Nonnull PluginLog pluginLog, @Nonnull PlayerSessionRegistry sessions) {
         this.logger = logger;
+        this.pluginLog = pluginLog;
+        this.dropLog = pluginLog.category("death-drop", 1, 20);
+        this.sessions = sessions;
+    }
+    
+    /**
+     * Get the number of players flagged to keep their items.
+     */
+    public int getPreventDeathItemDropCount() {
+        return preventDeathItemDropPlayers.size();
+    }
+    
+    /**
+     * Load the saved flags from the journal in the given directory and start recording changes,
+     * and open the death archive.
+     * @param dataDirectory The plugin data directory (from getDataDirectory())
+     */
+    public void loadState(@Nonnull Path dataDirectory) {
+        loadState(dataDirectory, true);
+    }
+    
+    /**
+     * Load the saved flags from the journal in the given directory and start recording changes.
+     * The flags are needed by the first death, so they are read right away; the death archive
+     * rebuilds its index from every segment and is opened in the background instead.
+     * @param dataDirectory The plugin data directory (from getDataDirectory())
+     * @param archiveEnabled Whether to open the death archive at all
+     */
+    public void loadState(@Nonnull Path dataDirectory, boolean archiveEnabled) {
+        try {
+            Files.createDirectories(dataDirectory);
+            this.journal = PreventDeathItemDropJournal.open(logger, dataDirectory.resolve("prevent_death_drop.journal"),
+                preventDeathItemDropPlayers, () -> preventDeathItemDropPlayers);
+        } catch (Exception e) {
+            logger.at(Level.SEVERE).withCause(e).log("PreventDeathItemDropManager: Could not open journal, item drop prevention will not be saved");
+        }
+        if (archiveEnabled) {
+            archiveOpening = CompletableFuture.runAsync(() -> openArchive(dataDirectory.resolve("death_archive")),
+                task -> Thread.ofVirtual().name("CameraPlugin-DeathArchive-Open").start(task));
+        }
+    }
+    
+    private void openArchive(@Nonnull Path directory) {
+        try {
+            DeathInventoryArchive opened = DeathInventoryArchive.open(logger, directory);
+            opened.configure(archiveSegmentBytes, archiveMaxSegments);
+            this.archive = opened;
+        } catch (Exception e) {
+            logger.at(Level.SEVERE).withCause(e).log("PreventDeathItemDropManager: Could not open death archive, inventories at death will not be recorded");
+        }
+    }
+    
+    /**
+     * Set the segment size and count of the death archive, now or once it is open.
+     */
+    public void configureArchive(int segmentBytes, int maxSegments) {
+        this.archiveSegmentBytes = segmentBytes;
+        this.archiveMaxSegments = maxSegments;
+        DeathInventoryArchive archive = this.archive;
+        if (archive != null) {
+            archive.configure(segmentBytes, maxSegments);
+        }
+    }
+    
+    /**
+     * Write out pending flag changes and archived deaths, and close the journal and archive.
+     */
+    public void shutdown() {
+        shutdown(5_000L);
+    }
+    
+    /**
+     * Write out pending flag changes and archived deaths, and close the journal and archive,
+     * waiting at most timeoutMillis in total.
+     */
+    public void shutdown(long timeoutMillis) {
+        long deadline = System.nanoTime() + timeoutMillis * 1_000_000L;
+        if (journal != null) {
+            journal.close(timeoutMillis);
+            journal = null;
+        }
+        try {
+            // The archive may still be opening in the background
+            archiveOpening.get(Math.max(0L, (deadline - System.nanoTime()) / 1_000_000L), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException e) {
+            logger.at(Level.WARNING).log("PreventDeathItemDropManager: Death archive did not finish opening before shutdown");
+        }
+        DeathInventoryArchive archive = this.archive;
+        if (archive != null) {
+            archive.close(Math.max(0L, (deadline - System.nanoTime()) / 1_000_000L));
+            this.archive = null;
+        }
+    }
+    
+    /**
+     * Get the death inventory archive.
+     * @return The archive, or null if it is not open
+     */
+    @Nullable
+    public DeathInventoryArchive getArchive() {
+        return archive;
     }
     
     /**
      * Setup the prevent death item drop functionality by registering the command and system.
      * @param commandRegistry The command registry to register the command (from getCommandRegistry())
      * @param entityStoreRegistry The entity store registry to register the system (from getEntityStoreRegistry())
+     * @param metrics The registry the commands and the system record their metrics in
      */
-    public void setup(@Nonnull CommandRegistry commandRegistry, @Nonnull ComponentRegistryProxy<EntityStore> entityStoreRegistry) {
+    public void setup(@Nonnull CommandRegistry commandRegistry, @Nonnull ComponentRegistryProxy<EntityStore> entityStoreRegistry,
+                      @Nonnull PluginMetrics metrics) {
+        metrics.gauge("prevent_death_drop_players", "Players flagged to keep their items on death", this::getPreventDeathItemDropCount);
+        
         // Register command to prevent item drops on death for specific players
         try {
-            commandRegistry.registerCommand((AbstractCommand) new PreventDeathItemDropCommand(this));
+            commandRegistry.registerCommand((AbstractCommand) new PreventDeathItemDropCommand(this,
+                metrics.histogram("command_seconds", "command=\"preventdeathdrop\"", "Command execution time")));
             logger.at(Level.INFO).log("PreventDeathItemDropManager: Prevent death item drop command registered!");
         } catch (Exception e) {
             logger.at(Level.SEVERE).withCause(e).log("PreventDeathItemDropManager: Could not register prevent death item drop command");
         }
         
-        // Register system to prevent item drops on death
+        // Register command to look up archived inventories at death
+        try {
+            commandRegistry.registerCommand((AbstractCommand) new DeathLogCommand(this,
+                metrics.histogram("command_seconds", "command=\"deathlog\"", "Command execution time")));
+        } catch (Exception e) {
+            logger.at(Level.SEVERE).withCause(e).log("PreventDeathItemDropManager: Could not register death log command");
+        }
+        
+        // Register the marker component and the systems that attach and act on it
         try {
-            entityStoreRegistry.registerSystem(new PreventDeathItemDropSystem(this));
+            this.markerType = entityStoreRegistry.registerComponent(PreventDeathItemDropComponent.class, () -> PreventDeathItemDropComponent.INSTANCE);
+            entityStoreRegistry.registerSystem(new PreventDeathItemDropMarkerSystem(this, markerType));
+            entityStoreRegistry.registerSystem(new PreventDeathItemDropSystem(this, markerType,
+                metrics.histogram("death_drop_system_seconds", null, "Time spent deciding and archiving one death"),
+                metrics.counter("death_drop_kept_total", null, "Deaths where the player kept their items")));
             logger.at(Level.INFO).log("PreventDeathItemDropManager: Prevent death item drop system registered!");
         } catch (Exception e) {
             logger.at(Level.SEVERE).withCause(e).log("PreventDeathItemDropManager: Could not register prevent death item drop system");
@@ -65,14 +240,102 @@ public class PreventDeathItemDropManager {
             return;
         }
         
-        UUID playerUuid = playerRef.getUuid();
+        applyPreventDeathItemDrop(playerRef, enabled);
+        
+        if (enabled) {
+            pluginLog.log(Level.INFO, dropLog, "PreventDeathItemDropManager: Enabled item drop prevention for player: %s", playerRef.getUsername());
+        } else {
+            pluginLog.log(Level.INFO, dropLog, "PreventDeathItemDropManager: Disabled item drop prevention for player: %s", playerRef.getUsername());
+        }
+    }
+    
+    /**
+     * Enable or disable item drop prevention for a specific player from inside a system,
+     * adding or removing the marker component through the given command buffer.
+     * @param playerRef The player reference
+     * @param enabled true to prevent item drops, false to allow them
+     * @param commandBuffer The command buffer of the running system
+     */
+    public void setPreventDeathItemDrop(@Nonnull PlayerRef playerRef, boolean enabled, @Nonnull CommandBuffer<EntityStore> commandBuffer) {
+        if (!playerRef.isValid() || !setFlag(playerRef.getUuid(), enabled)) {
+            return;
+        }
+        
+        Ref<EntityStore> ref = playerRef.getReference();
+        if (ref != null && ref.isValid()) {
+            updateMarker(ref, enabled, commandBuffer);
+        }
+        
+        if (enabled) {
+            pluginLog.log(Level.INFO, dropLog, "PreventDeathItemDropManager: Enabled item drop prevention for player: %s", playerRef.getUsername());
+        } else {
+            pluginLog.log(Level.INFO, dropLog, "PreventDeathItemDropManager: Disabled item drop prevention for player: %s", playerRef.getUsername());
+        }
+    }
+    
+    /**
+     * Enable or disable item drop prevention for a player without logging it, for bulk changes.
+     * @return true if the flag changed
+     */
+    public boolean applyPreventDeathItemDrop(@Nonnull PlayerRef playerRef, boolean enabled) {
+        if (!playerRef.isValid() || !setFlag(playerRef.getUuid(), enabled)) {
+            return false;
+        }
+        updateMarker(playerRef, enabled);
+        return true;
+    }
+    
+    /**
+     * Update the flag set and record the change in the journal.
+     * @return true if the flag changed
+     */
+    boolean setFlag(@Nonnull UUID playerUuid, boolean enabled) {
+        boolean changed = enabled ? preventDeathItemDropPlayers.add(playerUuid) : preventDeathItemDropPlayers.remove(playerUuid);
+        if (changed && journal != null) {
+            journal.append(playerUuid, enabled);
+        }
+        return changed;
+    }
+    
+    /**
+     * Add or remove the marker component through the command buffer of a running system.
+     * This is how systems change the marker; see updateMarker(PlayerRef, boolean) for everyone else.
+     */
+    void updateMarker(@Nonnull Ref<EntityStore> ref, boolean enabled, @Nonnull CommandBuffer<EntityStore> commandBuffer) {
+        if (markerType == null) {
+            return;
+        }
         if (enabled) {
-            preventDeathItemDropPlayers.add(playerUuid);
-            logger.at(Level.INFO).log("PreventDeathItemDropManager: Enabled item drop prevention for player: " + playerRef.getUsername());
+            commandBuffer.addComponent(ref, markerType, PreventDeathItemDropComponent.INSTANCE);
         } else {
-            preventDeathItemDropPlayers.remove(playerUuid);
-            logger.at(Level.INFO).log("PreventDeathItemDropManager: Disabled item drop prevention for player: " + playerRef.getUsername());
+            commandBuffer.tryRemoveComponent(ref, markerType);
+        }
+    }
+    
+    /**
+     * Add or remove the marker component on the player's entity, for callers outside a system
+     * (commands, the API, bulk changes) that have no command buffer to use.
+     * Runs on the player's world thread, so this is safe to call from any thread.
+     */
+    private void updateMarker(@Nonnull PlayerRef playerRef, boolean enabled) {
+        Ref<EntityStore> ref = playerRef.getReference();
+        if (markerType == null || ref == null || !ref.isValid()) {
+            // Not in a world right now, the marker system attaches it when the entity is added
+            return;
         }
+        
+        Store<EntityStore> store = ref.getStore();
+        World world = store.getExternalData().getWorld();
+        world.execute(() -> {
+            if (!ref.isValid()) {
+                return;
+            }
+            if (enabled) {
+                store.putComponent(ref, markerType, PreventDeathItemDropComponent.INSTANCE);
+            } else {
+                store.tryRemoveComponent(ref, markerType);
+            }
+        });
     }
     
     /**
@@ -89,7 +352,105 @@ public class PreventDeathItemDropManager {
     }
     
     /**
-     * Remove a player from the prevention list (called when player disconnects).
+     * Check if item drop prevention is enabled for a player UUID (online or not).
+     * @param playerUuid The player UUID
+     * @return true if item drops are prevented, false otherwise
+     */
+    public boolean isPreventDeathItemDropEnabled(@Nonnull UUID playerUuid) {
+        return preventDeathItemDropPlayers.contains(playerUuid);
+    }
+    
+    /**
+     * Replace the death drop rules. Cached decisions made with the old rules are no longer used.
+     * @param rules The compiled rules
+     */
+    public void setRules(@Nonnull DeathDropRuleSet rules) {
+        this.ruleSet = rules;
+    }
+    
+    /**
+     * Drop the cached rule decision of a player (called when the player's groups change).
+     * @param playerUuid The player UUID
+     */
+    public void invalidateRules(@Nonnull UUID playerUuid) {
+        PlayerSessionRegistry.Session session = sessions.get(playerUuid);
+        if (session != null) {
+            session.setDeathDropDecision(null);
+        }
+    }
+    
+    /**
+     * Check if the death drop rules prevent the item drop for a dying player.
+     * Runs on the world thread from the death system. With a cached decision this is a map
+     * lookup and a few field reads; only region rules also read the player's position.
+     * @param ref The player's entity
+     * @param store The store of the player's world
+     * @return true if a rule prevents the item drop
+     */
+    boolean keepsItemsByRule(@Nonnull Ref<EntityStore> ref, @Nonnull Store<EntityStore> store) {
+        DeathDropRuleSet rules = this.ruleSet;
+        if (rules.isEmpty()) {
+            return false;
+        }
+        
+        PlayerRef playerRef = store.getComponent(ref, PlayerRef.getComponentType());
+        if (playerRef == null) {
+            return false;
+        }
+        
+        UUID playerUuid = playerRef.getUuid();
+        String world = store.getExternalData().getWorld().getName();
+        PlayerSessionRegistry.Session session = sessions.get(playerUuid);
+        CachedDecision cached = session != null ? session.getDeathDropDecision() : null;
+        if (cached == null || cached.rules() != rules || !cached.world().equals(world)) {
+            // First death with these rules in this world, resolve the world and group rules once
+            Set<String> groups = PermissionsModule.get().getGroupsForUser(playerUuid);
+            cached = new CachedDecision(rules, world, rules.decide(world, groups));
+            if (session != null) {
+                session.setDeathDropDecision(cached);
+            }
+        }
+        
+        DeathDropRuleSet.Decision decision = cached.decision();
+        if (!decision.needsPosition()) {
+            return decision.keepsItems();
+        }
+        TransformComponent transform = store.getComponent(ref, TransformComponent.getComponentType());
+        if (transform == null) {
+            return decision.keepsItems();
+        }
+        Vector3d position = transform.getPosition();
+        return decision.keepsItems(position.getX(), position.getY(), position.getZ());
+    }
+    
+    /**
+     * Record the inventory of a dying player and the items loss mode decided for the death.
+     * Runs on the world thread from the death system; the disk write happens on the archive's writer.
+     * @param ref The player's entity
+     * @param store The store of the player's world
+     * @param deathComponent The death, with its final items loss mode
+     */
+    void archiveDeath(@Nonnull Ref<EntityStore> ref, @Nonnull Store<EntityStore> store, @Nonnull DeathComponent deathComponent) {
+        DeathInventoryArchive archive = this.archive;
+        if (archive == null) {
+            return;
+        }
+        
+        PlayerRef playerRef = store.getComponent(ref, PlayerRef.getComponentType());
+        if (playerRef == null) {
+            return;
+        }
+        Player player = store.getComponent(ref, Player.getComponentType());
+        String world = store.getExternalData().getWorld().getName();
+        if (!archive.capture(playerRef.getUuid(), playerRef.getUsername(), world, String.valueOf(deathComponent.getItemsLossMode()),
+                player != null ? player.getInventory() : null)) {
+            pluginLog.log(Level.WARNING, dropLog, "PreventDeathItemDropManager: Could not archive the death of player %s", playerRef.getUsername());
+        }
+    }
+    
+    /**
+     * Remove a player from the prevention list. Flags are saved and survive disconnects,
+     * so this is only for callers that want to clear a player's flag for good.
      * @param playerRef The player reference
      */
     public void removePreventDeathItemDrop(@Nonnull PlayerRef playerRef) {
@@ -97,7 +458,9 @@ public class PreventDeathItemDropManager {
             return;
         }
         
-        preventDeathItemDropPlayers.remove(playerRef.getUuid());
+        if (setFlag(playerRef.getUuid(), false)) {
+            updateMarker(playerRef, false);
+        }
     }
 }
 
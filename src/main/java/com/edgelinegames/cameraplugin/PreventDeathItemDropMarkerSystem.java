@@ -0,0 +1,54 @@
+package com.edgelinegames.cameraplugin;
+
+import com.hypixel.hytale.component.AddReason;
+import com.hypixel.hytale.component.CommandBuffer;
+import com.hypixel.hytale.component.ComponentType;
+import com.hypixel.hytale.component.Ref;
+import com.hypixel.hytale.component.RemoveReason;
+import com.hypixel.hytale.component.Store;
+import com.hypixel.hytale.component.query.Query;
+import com.hypixel.hytale.component.system.RefSystem;
+import com.hypixel.hytale.server.core.universe.PlayerRef;
+import com.hypixel.hytale.server.core.universe.world.storage.EntityStore;
+import javax.annotation.Nonnull;
+
+/**
+ * System that attaches the PreventDeathItemDropComponent marker to flagged players
+ * when their entity is added to a world (join, respawn, world change).
+ */
+public class PreventDeathItemDropMarkerSystem extends RefSystem<EntityStore> {
+
+    private final PreventDeathItemDropManager manager;
+    private final ComponentType<EntityStore, PreventDeathItemDropComponent> markerType;
+
+    public PreventDeathItemDropMarkerSystem(@Nonnull PreventDeathItemDropManager manager,
+                                            @Nonnull ComponentType<EntityStore, PreventDeathItemDropComponent> markerType) {
+        this.manager = manager;
+        this.markerType = markerType;
+    }
+
+    @Nonnull
+    @Override
+    public Query<EntityStore> getQuery() {
+        return PlayerRef.getComponentType();
+    }
+
+    @Override
+    public void onEntityAdded(@Nonnull Ref<EntityStore> ref, @Nonnull AddReason reason,
+                              @Nonnull Store<EntityStore> store, @Nonnull CommandBuffer<EntityStore> commandBuffer) {
+        PlayerRef playerRef = store.getComponent(ref, PlayerRef.getComponentType());
+        if (playerRef == null) {
+            return;
+        }
+
+        if (manager.isPreventDeathItemDropEnabled(playerRef) && store.getComponent(ref, markerType) == null) {
+            manager.updateMarker(ref, true, commandBuffer);
+        }
+    }
+
+    @Override
+    public void onEntityRemove(@Nonnull Ref<EntityStore> ref, @Nonnull RemoveReason reason,
+                               @Nonnull Store<EntityStore> store, @Nonnull CommandBuffer<EntityStore> commandBuffer) {
+        // Nothing to do, the marker goes away with the entity
+    }
+}
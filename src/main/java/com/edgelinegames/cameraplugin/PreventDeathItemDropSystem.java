@@ -1,82 +1,197 @@
 package com.edgelinegames.cameraplugin;
 
-import com.hypixel.hytale.component.ArchetypeChunk;
 import com.hypixel.hytale.component.CommandBuffer;
+import com.hypixel.hytale.component.ComponentType;
 import com.hypixel.hytale.component.Ref;
 import com.hypixel.hytale.component.Store;
 import com.hypixel.hytale.component.dependency.Dependency;
 import com.hypixel.hytale.component.dependency.Order;
 import com.hypixel.hytale.component.dependency.SystemDependency;
 import com.hypixel.hytale.component.query.Query;
-import com.hypixel.hytale.component.system.tick.EntityTickingSystem;
+import com.hypixel.hytale.component.system.RefChangeSystem;
 import com.hypixel.hytale.server.core.asset.type.gameplay.DeathConfig;
-import com.hypixel.hytale.server.core.modules.entity.EntityModule;
 import com.hypixel.hytale.server.core.modules.entity.damage.DeathComponent;
 import com.hypixel.hytale.server.core.modules.entity.damage.DeathSystems;
 import com.hypixel.hytale.server.core.universe.PlayerRef;
 import com.hypixel.hytale.server.core.universe.world.storage.EntityStore;
 import java.util.Set;
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 
 /**
  * System that prevents specific players from dropping items on death.
  * This system runs before DeathSystems.DropPlayerDeathItems to set the itemsLossMode to NONE
- * for players that have been marked to prevent item drops.
+ * for players that carry the PreventDeathItemDropComponent marker, or that a death drop rule
+ * (world, permission group, region) matches.
+ * It reacts to the DeathComponent being added, so it runs exactly once per death instead of
+ * every tick the entity stays dead. Every death is also handed to the death inventory archive.
+ * The per-death path works on a {@link DeathEntity}, so it can be benchmarked without a world.
  */
-public class PreventDeathItemDropSystem extends EntityTickingSystem<EntityStore> {
+public class PreventDeathItemDropSystem extends RefChangeSystem<EntityStore, DeathComponent> {
     
-    private static final Query<EntityStore> QUERY = Query.and(
-        DeathComponent.getComponentType(),
-        EntityModule.get().getPlayerComponentType()
-    );
-    
-    private static final Set<Dependency<EntityStore>> DEPENDENCIES = Set.<Dependency<EntityStore>>of(
-        new SystemDependency<EntityStore, DeathSystems.DropPlayerDeathItems>(Order.BEFORE, DeathSystems.DropPlayerDeathItems.class)
-    );
+    /**
+     * The parts of a dying player entity that the per-death path reads and writes.
+     * The system adapts an entity's Ref and Store to it; benchmarks use synthetic entities.
+     */
+    interface DeathEntity {
+        
+        /**
+         * Whether the entity carries the PreventDeathItemDropComponent marker.
+         */
+        boolean hasMarker();
+        
+        /**
+         * Whether a death drop rule prevents the item drop.
+         */
+        boolean keepsItemsByRule();
+        
+        /**
+         * Set the items loss mode of the death to NONE.
+         */
+        void keepItems();
+        
+        /**
+         * Hand the death, with its final items loss mode, to the death inventory archive.
+         */
+        void archive();
+        
+        /**
+         * Get the name of the player, only read when a JFR event is recorded.
+         */
+        @Nullable
+        String getPlayerName();
+    }
     
     private final PreventDeathItemDropManager manager;
+    private final ComponentType<EntityStore, PreventDeathItemDropComponent> markerType;
+    private final PluginMetrics.Histogram duration;
+    private final PluginMetrics.Counter matches;
+    // Built per instance rather than in a static initializer, so nothing is resolved until the module is set up
+    private final Set<Dependency<EntityStore>> dependencies;
     
-    public PreventDeathItemDropSystem(@Nonnull PreventDeathItemDropManager manager) {
+    public PreventDeathItemDropSystem(@Nonnull PreventDeathItemDropManager manager,
+                                      @Nonnull ComponentType<EntityStore, PreventDeathItemDropComponent> markerType,
+                                      @Nonnull PluginMetrics.Histogram duration, @Nonnull PluginMetrics.Counter matches) {
         this.manager = manager;
+        this.markerType = markerType;
+        this.duration = duration;
+        this.matches = matches;
+        this.dependencies = Set.<Dependency<EntityStore>>of(
+            new SystemDependency<EntityStore, DeathSystems.DropPlayerDeathItems>(Order.BEFORE, DeathSystems.DropPlayerDeathItems.class)
+        );
+    }
+    
+    @Nonnull
+    @Override
+    public ComponentType<EntityStore, DeathComponent> componentType() {
+        return DeathComponent.getComponentType();
     }
     
     @Nonnull
     @Override
     public Query<EntityStore> getQuery() {
-        return QUERY;
+        // All players, rules can match players without the marker
+        return PlayerRef.getComponentType();
     }
     
     @Nonnull
     @Override
     public Set<Dependency<EntityStore>> getDependencies() {
-        return DEPENDENCIES;
+        return dependencies;
+    }
+    
+    @Override
+    public void onComponentAdded(@Nonnull Ref<EntityStore> ref, @Nonnull DeathComponent deathComponent,
+                                 @Nonnull Store<EntityStore> store, @Nonnull CommandBuffer<EntityStore> commandBuffer) {
+        handleDeath(ref, store, deathComponent);
+    }
+    
+    @Override
+    public void onComponentSet(@Nonnull Ref<EntityStore> ref, @Nullable DeathComponent oldComponent, @Nonnull DeathComponent newComponent,
+                               @Nonnull Store<EntityStore> store, @Nonnull CommandBuffer<EntityStore> commandBuffer) {
+        // A replaced death component is a new death decision as well
+        handleDeath(ref, store, newComponent);
     }
     
     @Override
-    public void tick(float dt, int index, @Nonnull ArchetypeChunk<EntityStore> archetypeChunk, 
-                     @Nonnull Store<EntityStore> store, @Nonnull CommandBuffer<EntityStore> commandBuffer) {
-        DeathComponent deathComponent = archetypeChunk.getComponent(index, DeathComponent.getComponentType());
-        if (deathComponent == null) {
-            return;
+    public void onComponentRemoved(@Nonnull Ref<EntityStore> ref, @Nonnull DeathComponent deathComponent,
+                                   @Nonnull Store<EntityStore> store, @Nonnull CommandBuffer<EntityStore> commandBuffer) {
+        // Nothing to do when the player respawns
+    }
+    
+    private void handleDeath(@Nonnull Ref<EntityStore> ref, @Nonnull Store<EntityStore> store, @Nonnull DeathComponent deathComponent) {
+        handleDeath(new StoreDeathEntity(ref, store, deathComponent), duration, matches);
+    }
+    
+    /**
+     * Decide whether the player keeps their items and archive the death.
+     * Checks the marker first (flagged players always keep their items), then the rules.
+     * @param entity The dying player
+     * @param duration Records the time spent on the death
+     * @param matches Counts the deaths where the player keeps their items
+     * @return true if the player keeps their items
+     */
+    static boolean handleDeath(@Nonnull DeathEntity entity, @Nonnull PluginMetrics.Histogram duration, @Nonnull PluginMetrics.Counter matches) {
+        long start = System.nanoTime();
+        DeathDropDecisionEvent event = new DeathDropDecisionEvent();
+        event.begin();
+        
+        boolean keepsItems = entity.hasMarker() || entity.keepsItemsByRule();
+        if (keepsItems) {
+            entity.keepItems();
+            matches.increment();
         }
+        entity.archive();
         
-        // Get the Ref for this entity
-        Ref<EntityStore> ref = archetypeChunk.getReferenceTo(index);
-        if (ref == null || !ref.isValid()) {
-            return;
+        duration.recordSince(start);
+        if (event.shouldCommit()) {
+            event.player = entity.getPlayerName();
+            event.keepsItems = keepsItems;
+            event.commit();
         }
+        return keepsItems;
+    }
+    
+    /**
+     * A dying player entity in a world's store.
+     */
+    private final class StoreDeathEntity implements DeathEntity {
         
-        // Get the PlayerRef from the store
-        PlayerRef playerRef = store.getComponent(ref, PlayerRef.getComponentType());
-        if (playerRef == null) {
-            return;
+        private final Ref<EntityStore> ref;
+        private final Store<EntityStore> store;
+        private final DeathComponent deathComponent;
+        
+        StoreDeathEntity(@Nonnull Ref<EntityStore> ref, @Nonnull Store<EntityStore> store, @Nonnull DeathComponent deathComponent) {
+            this.ref = ref;
+            this.store = store;
+            this.deathComponent = deathComponent;
         }
         
-        // Check if this player should have item drops prevented
-        if (manager.isPreventDeathItemDropEnabled(playerRef)) {
-            // Set itemsLossMode to NONE to prevent item drops
+        @Override
+        public boolean hasMarker() {
+            return store.getComponent(ref, markerType) != null;
+        }
+        
+        @Override
+        public boolean keepsItemsByRule() {
+            return manager.keepsItemsByRule(ref, store);
+        }
+        
+        @Override
+        public void keepItems() {
             deathComponent.setItemsLossMode(DeathConfig.ItemsLossMode.NONE);
         }
+        
+        @Override
+        public void archive() {
+            manager.archiveDeath(ref, store, deathComponent);
+        }
+        
+        @Nullable
+        @Override
+        public String getPlayerName() {
+            PlayerRef playerRef = store.getComponent(ref, PlayerRef.getComponentType());
+            return playerRef != null ? playerRef.getUsername() : null;
+        }
     }
 }
-
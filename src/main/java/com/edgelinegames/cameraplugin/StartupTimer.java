@@ -0,0 +1,55 @@
+package com.edgelinegames.cameraplugin;
+
+import java.util.ArrayList;
+import java.util.List;
+import javax.annotation.Nonnull;
+
+/**
+ * Measures how long each module takes to start, for the single startup report line.
+ */
+final class StartupTimer {
+
+    private record Step(@Nonnull String module, long nanos) {}
+
+    private final long startNanos = System.nanoTime();
+    private final List<Step> steps = new ArrayList<>();
+    private final List<String> disabled = new ArrayList<>();
+
+    /**
+     * Run and time the startup of one module.
+     */
+    void run(@Nonnull String module, @Nonnull Runnable step) {
+        long start = System.nanoTime();
+        try {
+            step.run();
+        } finally {
+            steps.add(new Step(module, System.nanoTime() - start));
+        }
+    }
+
+    /**
+     * Record a module that is switched off in the config.
+     */
+    void skip(@Nonnull String module) {
+        disabled.add(module);
+    }
+
+    /**
+     * Get the report, e.g. "Started in 41 ms (camera 12 ms, zones 3 ms, death-drop 24 ms), disabled: none".
+     */
+    @Nonnull
+    String report() {
+        StringBuilder report = new StringBuilder("Started in ").append(millis(System.nanoTime() - startNanos)).append(" ms (");
+        for (int i = 0; i < steps.size(); i++) {
+            Step step = steps.get(i);
+            report.append(i == 0 ? "" : ", ").append(step.module()).append(' ').append(millis(step.nanos())).append(" ms");
+        }
+        report.append("), disabled: ").append(disabled.isEmpty() ? "none" : String.join(", ", disabled));
+        return report.toString();
+    }
+
+    @Nonnull
+    private static String millis(long nanos) {
+        return String.format("%.1f", nanos / 1_000_000.0);
+    }
+}
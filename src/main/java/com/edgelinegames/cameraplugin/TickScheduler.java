@@ -0,0 +1,102 @@
+package com.edgelinegames.cameraplugin;
+
+import com.hypixel.hytale.logger.HytaleLogger;
+import com.hypixel.hytale.server.core.HytaleServer;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import javax.annotation.Nonnull;
+
+/**
+ * Single shared tick driver for the plugin.
+ * Work that has to be spread over several ticks registers a task here instead of
+ * scheduling its own timer, so the plugin only ever has one repeating job on the server.
+ */
+public class TickScheduler {
+
+    // Default tick length, matches the server's default of 30 ticks per second
+    public static final long DEFAULT_TICK_MILLIS = 33L;
+
+    /**
+     * A task that is run once per plugin tick.
+     */
+    @FunctionalInterface
+    public interface TickTask {
+        /**
+         * @param tick The current plugin tick number
+         */
+        void tick(long tick);
+    }
+
+    private final HytaleLogger logger;
+    private final long tickMillis;
+    private final List<TickTask> tasks = new CopyOnWriteArrayList<>();
+    private ScheduledFuture<?> future;
+    private volatile long tick;
+
+    /**
+     * Constructor.
+     * @param logger The logger to use for logging messages
+     * @param tickMillis Milliseconds between ticks
+     */
+    public TickScheduler(@Nonnull HytaleLogger logger, long tickMillis) {
+        this.logger = logger;
+        this.tickMillis = tickMillis;
+    }
+
+    /**
+     * Start ticking. Does nothing if already started.
+     */
+    public synchronized void start() {
+        if (future != null) {
+            return;
+        }
+        future = HytaleServer.SCHEDULED_EXECUTOR.scheduleAtFixedRate(this::runTick, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stop ticking. Registered tasks are kept.
+     */
+    public synchronized void stop() {
+        if (future != null) {
+            future.cancel(false);
+            future = null;
+        }
+    }
+
+    /**
+     * Register a task to run every tick.
+     */
+    public void register(@Nonnull TickTask task) {
+        tasks.add(task);
+    }
+
+    /**
+     * Remove a previously registered task.
+     */
+    public void unregister(@Nonnull TickTask task) {
+        tasks.remove(task);
+    }
+
+    public long getTickMillis() {
+        return tickMillis;
+    }
+
+    public long getCurrentTick() {
+        return tick;
+    }
+
+    private void runTick() {
+        long currentTick = ++tick;
+        for (TickTask task : tasks) {
+            try {
+                task.tick(currentTick);
+            } catch (Exception e) {
+                // Never let one task kill the repeating job
+                logger.at(Level.SEVERE).withCause(e).log("TickScheduler: Tick task failed");
+            }
+        }
+    }
+}
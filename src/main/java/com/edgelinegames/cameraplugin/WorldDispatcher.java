@@ -0,0 +1,99 @@
+package com.edgelinegames.cameraplugin;
+
+import com.hypixel.hytale.logger.HytaleLogger;
+import com.hypixel.hytale.server.core.universe.PlayerRef;
+import com.hypixel.hytale.server.core.universe.Universe;
+import com.hypixel.hytale.server.core.universe.world.World;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import javax.annotation.Nonnull;
+
+/**
+ * Runs work for many players on the threads of the worlds they are in.
+ *
+ * Players are grouped by world and each group is handed to its world's executor as a single
+ * task, so a player is only ever touched from its own world thread and different worlds do
+ * their share at the same time. The returned future completes once every world is done.
+ * Players without a loaded world are handled right away on the calling thread.
+ */
+public class WorldDispatcher implements CameraBroadcaster.Dispatcher<PlayerRef> {
+
+    private final HytaleLogger logger;
+
+    /**
+     * Constructor.
+     * @param logger The logger failed actions are reported to
+     */
+    public WorldDispatcher(@Nonnull HytaleLogger logger) {
+        this.logger = logger;
+    }
+
+    @Nonnull
+    @Override
+    public CompletableFuture<Void> dispatch(@Nonnull String name, @Nonnull List<PlayerRef> players, @Nonnull Consumer<? super PlayerRef> action) {
+        Map<UUID, List<PlayerRef>> byWorld = new HashMap<>();
+        List<PlayerRef> local = new ArrayList<>();
+        for (PlayerRef playerRef : players) {
+            UUID worldUuid = playerRef.getWorldUuid();
+            if (worldUuid == null) {
+                local.add(playerRef);
+            } else {
+                byWorld.computeIfAbsent(worldUuid, uuid -> new ArrayList<>()).add(playerRef);
+            }
+        }
+
+        List<CompletableFuture<Void>> futures = new ArrayList<>(byWorld.size());
+        Universe universe = Universe.get();
+        for (Map.Entry<UUID, List<PlayerRef>> entry : byWorld.entrySet()) {
+            World world = universe != null ? universe.getWorld(entry.getKey()) : null;
+            if (world == null) {
+                // World was unloaded in the meantime, nothing else can be ticking these players
+                local.addAll(entry.getValue());
+                continue;
+            }
+            futures.add(runOn(world, name, entry.getValue(), action));
+        }
+        runAll(name, local, action);
+
+        if (futures.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]));
+    }
+
+    @Nonnull
+    private CompletableFuture<Void> runOn(@Nonnull World world, @Nonnull String name, @Nonnull List<PlayerRef> players, @Nonnull Consumer<? super PlayerRef> action) {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        try {
+            world.execute(() -> {
+                try {
+                    runAll(name, players, action);
+                } finally {
+                    future.complete(null);
+                }
+            });
+        } catch (Exception e) {
+            // The world is shutting down and takes no more tasks
+            logger.at(Level.WARNING).withCause(e).log("WorldDispatcher: Could not run " + name + " in world " + world.getName()
+                + " for " + players.size() + " players");
+            future.complete(null);
+        }
+        return future;
+    }
+
+    private void runAll(@Nonnull String name, @Nonnull List<PlayerRef> players, @Nonnull Consumer<? super PlayerRef> action) {
+        for (PlayerRef playerRef : players) {
+            try {
+                action.accept(playerRef);
+            } catch (Exception e) {
+                logger.at(Level.WARNING).withCause(e).log("WorldDispatcher: " + name + " failed for a player");
+            }
+        }
+    }
+}
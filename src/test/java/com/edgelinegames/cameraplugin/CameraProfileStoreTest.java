@@ -0,0 +1,243 @@
+package com.edgelinegames.cameraplugin;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.hypixel.hytale.logger.HytaleLogger;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Round trips, growing and crash recovery of the memory-mapped camera profile store.
+ * The file layouts written by hand here are the ones documented on CameraProfileStore.
+ */
+class CameraProfileStoreTest {
+
+    private static final HytaleLogger LOGGER = HytaleLogger.forEnclosingClass();
+
+    private static final int MAGIC = 0x43504653;
+    private static final int HEADER_SIZE = 64;
+    private static final int RECORD_SIZE = 40;
+    private static final int DEFAULT_CAPACITY = 1 << 16;
+    private static final int FLAG_USED = 1;
+    private static final int FLAG_RIGHT_SHOULDER = 1 << 1;
+
+    @TempDir
+    Path directory;
+
+    private Path file;
+    private Path growFile;
+
+    @BeforeEach
+    void setUp() {
+        file = directory.resolve("camera_profiles.dat");
+        growFile = directory.resolve("camera_profiles.dat.grow");
+    }
+
+    @Test
+    void profilesSurviveReopen() throws IOException {
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+        try (CameraProfileStore store = CameraProfileStore.open(LOGGER, file)) {
+            store.put(first, CameraProfile.of(12.5f, true));
+            store.put(second, new CameraProfile(30.0f, false, 2.5f, 0.75f));
+            assertEquals(2, store.size());
+        }
+
+        try (CameraProfileStore store = CameraProfileStore.open(LOGGER, file)) {
+            assertEquals(2, store.size());
+            assertEquals(CameraProfile.of(12.5f, true), store.get(first));
+            assertEquals(new CameraProfile(30.0f, false, 2.5f, 0.75f), store.get(second));
+            assertNull(store.get(UUID.randomUUID()));
+        }
+    }
+
+    @Test
+    void putReplacesTheProfileOfThePlayer() throws IOException {
+        UUID player = UUID.randomUUID();
+        try (CameraProfileStore store = CameraProfileStore.open(LOGGER, file)) {
+            store.put(player, CameraProfile.of(10.0f, true));
+            store.put(player, CameraProfile.of(20.0f, false));
+            assertEquals(1, store.size());
+            assertEquals(CameraProfile.of(20.0f, false), store.get(player));
+        }
+    }
+
+    @Test
+    void rejectsAFileThatIsNotAStore() throws IOException {
+        Files.write(file, new byte[HEADER_SIZE]);
+        assertThrows(IOException.class, () -> CameraProfileStore.open(LOGGER, file));
+    }
+
+    @Test
+    void rejectsACapacityThatIsNotAPowerOfTwo() throws IOException {
+        CameraProfileStore.open(LOGGER, file).close();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(4).putInt(0, 1000), 8);
+        }
+        assertThrows(IOException.class, () -> CameraProfileStore.open(LOGGER, file));
+    }
+
+    @Test
+    void growKeepsEveryProfile() throws Exception {
+        // Past 70% of the default capacity, so the table doubles while puts continue
+        int players = 50_000;
+        List<UUID> uuids = new ArrayList<>(players);
+        try (CameraProfileStore store = CameraProfileStore.open(LOGGER, file)) {
+            for (int i = 0; i < players; i++) {
+                UUID uuid = new UUID(i * 31L, i);
+                uuids.add(uuid);
+                store.put(uuid, CameraProfile.of(1.0f + (i % 100), (i & 1) == 0));
+            }
+
+            long grownSize = HEADER_SIZE + 2L * DEFAULT_CAPACITY * RECORD_SIZE;
+            long deadline = System.nanoTime() + 30_000_000_000L;
+            while (Files.size(file) != grownSize || Files.exists(growFile)) {
+                assertTrue(System.nanoTime() < deadline, "Profile store did not grow in time");
+                Thread.sleep(10);
+            }
+
+            assertEquals(players, store.size());
+            for (int i = 0; i < players; i++) {
+                assertEquals(CameraProfile.of(1.0f + (i % 100), (i & 1) == 0), store.get(uuids.get(i)));
+            }
+        }
+
+        try (CameraProfileStore store = CameraProfileStore.open(LOGGER, file)) {
+            assertEquals(players, store.size());
+            assertEquals(CameraProfile.of(1.0f + ((players - 1) % 100), ((players - 1) & 1) == 0), store.get(uuids.get(players - 1)));
+        }
+    }
+
+    @Test
+    void completeSideFileRestoresAHalfRebuiltTable() throws IOException {
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+        try (CameraProfileStore store = CameraProfileStore.open(LOGGER, file)) {
+            store.put(first, CameraProfile.of(5.0f, true));
+            store.put(second, CameraProfile.of(6.0f, true));
+        }
+
+        // A crash while the table was being replaced: the side file is complete, the table is garbage
+        List<byte[]> records = List.of(
+            record(first, 5.0f, true),
+            record(second, 6.0f, true),
+            // Added by a put while the grow ran, replaces the earlier record of the same player
+            record(second, 8.0f, false)
+        );
+        writeSideFile(records, records.size(), true);
+        zeroTable();
+
+        try (CameraProfileStore store = CameraProfileStore.open(LOGGER, file)) {
+            assertEquals(2, store.size());
+            assertEquals(CameraProfile.of(5.0f, true), store.get(first));
+            assertEquals(CameraProfile.of(8.0f, false), store.get(second));
+        }
+        assertFalse(Files.exists(growFile));
+    }
+
+    @Test
+    void sideFileWithoutHeaderIsDiscarded() throws IOException {
+        UUID player = UUID.randomUUID();
+        try (CameraProfileStore store = CameraProfileStore.open(LOGGER, file)) {
+            store.put(player, CameraProfile.of(5.0f, true));
+        }
+
+        // A crash while the side file was written: the header goes in last, so it has no magic yet
+        writeSideFile(List.of(record(player, 9.0f, false)), 1, false);
+
+        try (CameraProfileStore store = CameraProfileStore.open(LOGGER, file)) {
+            assertEquals(1, store.size());
+            assertEquals(CameraProfile.of(5.0f, true), store.get(player));
+        }
+        assertFalse(Files.exists(growFile));
+    }
+
+    @Test
+    void profilesPutDuringTheGrowAreReplayedFromTheSideFile() throws IOException {
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+        try (CameraProfileStore store = CameraProfileStore.open(LOGGER, file)) {
+            store.put(first, CameraProfile.of(5.0f, true));
+        }
+
+        // A crash after the copied records were saved: the put of the second player only reached the side file
+        // behind them, followed by a hole and a torn record
+        List<byte[]> records = List.of(
+            record(first, 5.0f, true),
+            record(second, 7.0f, false),
+            new byte[RECORD_SIZE]
+        );
+        writeSideFile(records, 1, true);
+        try (FileChannel channel = FileChannel.open(growFile, StandardOpenOption.APPEND)) {
+            channel.write(ByteBuffer.wrap(record(first, 9.0f, false), 0, RECORD_SIZE / 2));
+        }
+        zeroTable();
+
+        try (CameraProfileStore store = CameraProfileStore.open(LOGGER, file)) {
+            assertEquals(2, store.size());
+            assertEquals(CameraProfile.of(5.0f, true), store.get(first));
+            assertEquals(CameraProfile.of(7.0f, false), store.get(second));
+        }
+        assertFalse(Files.exists(growFile));
+    }
+
+    @Test
+    void sideFileShorterThanItsHeaderIsDiscarded() throws IOException {
+        UUID player = UUID.randomUUID();
+        try (CameraProfileStore store = CameraProfileStore.open(LOGGER, file)) {
+            store.put(player, CameraProfile.of(5.0f, true));
+        }
+
+        writeSideFile(List.of(record(player, 9.0f, false)), 2, true);
+
+        try (CameraProfileStore store = CameraProfileStore.open(LOGGER, file)) {
+            assertEquals(1, store.size());
+            assertEquals(CameraProfile.of(5.0f, true), store.get(player));
+        }
+        assertFalse(Files.exists(growFile));
+    }
+
+    private static byte[] record(UUID player, float distance, boolean rightShoulder) {
+        ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE);
+        record.putLong(player.getMostSignificantBits());
+        record.putLong(player.getLeastSignificantBits());
+        record.putInt(FLAG_USED | (rightShoulder ? FLAG_RIGHT_SHOULDER : 0));
+        record.putFloat(distance);
+        record.putFloat(CameraProfile.DEFAULT_LERP_SPEED);
+        record.putFloat(CameraProfile.DEFAULT_LERP_SPEED);
+        record.putLong(System.currentTimeMillis());
+        return record.array();
+    }
+
+    private void writeSideFile(List<byte[]> records, int headerCount, boolean withMagic) throws IOException {
+        ByteBuffer data = ByteBuffer.allocate(8 + records.size() * RECORD_SIZE);
+        data.putInt(withMagic ? MAGIC : 0).putInt(headerCount);
+        for (byte[] record : records) {
+            data.put(record);
+        }
+        Files.write(growFile, data.array());
+    }
+
+    private void zeroTable() throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            ByteBuffer zeros = ByteBuffer.allocate((int) (channel.size() - HEADER_SIZE));
+            while (zeros.hasRemaining()) {
+                channel.write(zeros, HEADER_SIZE + zeros.position());
+            }
+        }
+    }
+}
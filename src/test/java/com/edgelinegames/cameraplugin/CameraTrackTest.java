@@ -0,0 +1,145 @@
+package com.edgelinegames.cameraplugin;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.hypixel.hytale.protocol.ServerCameraSettings;
+import com.hypixel.hytale.protocol.packets.camera.SetServerCamera;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Round trips and validation of camera track files.
+ * The file layouts written by hand here are the ones documented on CameraTrack.
+ */
+class CameraTrackTest {
+
+    private static final int MAGIC = 0x4354524B;
+    private static final int HEADER_SIZE = 32;
+    private static final int KEYFRAME_SIZE = 32;
+
+    @TempDir
+    Path directory;
+
+    private Path file;
+
+    @BeforeEach
+    void setUp() {
+        file = directory.resolve("intro" + CameraTrack.EXTENSION);
+    }
+
+    @Test
+    void writtenTrackFollowsTheLayout() throws IOException {
+        List<CameraTrack.Keyframe> keyframes = List.of(
+            new CameraTrack.Keyframe(5.0f, 0.0f, 1.5f, 0.0f, 0.0f, 0.0f, 0.0f, 0.5f),
+            new CameraTrack.Keyframe(8.0f, 1.0f, 2.0f, -1.0f, 1.5f, -0.25f, 0.0f, 0.25f),
+            new CameraTrack.Keyframe(12.0f, 0.0f, 3.0f, 2.0f, 3.0f, 0.5f, 0.1f, 1.0f)
+        );
+        CameraTrack.write(file, 20, keyframes);
+        assertFalse(Files.exists(directory.resolve(file.getFileName() + ".tmp")));
+
+        ByteBuffer bytes = ByteBuffer.wrap(Files.readAllBytes(file));
+        assertEquals(HEADER_SIZE + 3 * KEYFRAME_SIZE, bytes.capacity());
+        assertEquals(MAGIC, bytes.getInt(0));
+        assertEquals(1, bytes.getInt(4));
+        assertEquals(3, bytes.getInt(8));
+        assertEquals(20, bytes.getInt(12));
+        for (int offset = 16; offset < HEADER_SIZE; offset++) {
+            assertEquals(0, bytes.get(offset));
+        }
+        int second = HEADER_SIZE + KEYFRAME_SIZE;
+        assertEquals(8.0f, bytes.getFloat(second));
+        assertEquals(-1.0f, bytes.getFloat(second + 12));
+        assertEquals(1.5f, bytes.getFloat(second + 16));
+        assertEquals(0.25f, bytes.getFloat(second + 28));
+
+        CameraTrack track = CameraTrack.open("intro", file);
+        assertEquals(3, track.getKeyframeCount());
+        assertEquals(20, track.getTicksPerKeyframe());
+        assertEquals(60, track.getLengthTicks());
+        assertEquals(0, track.keyframeAt(19));
+        assertEquals(1, track.keyframeAt(20));
+        assertEquals(-1, track.keyframeAt(60));
+        for (int i = 0; i < keyframes.size(); i++) {
+            assertEquals(keyframes.get(i), track.keyframe(i));
+        }
+
+        ServerCameraSettings settings = track.packet(1).cameraSettings;
+        assertEquals(8.0f, settings.distance);
+        assertEquals(0.25f, settings.positionLerpSpeed);
+        assertEquals(1.0, settings.positionOffset.x);
+        assertEquals(-1.0, settings.positionOffset.z);
+        assertEquals(1.5f, settings.rotation.yaw);
+        assertEquals(-0.25f, settings.rotation.pitch);
+    }
+
+    @Test
+    void handWrittenTrackIsRead() throws IOException {
+        ByteBuffer bytes = ByteBuffer.allocate(HEADER_SIZE + KEYFRAME_SIZE);
+        bytes.putInt(MAGIC).putInt(1).putInt(1).putInt(10);
+        bytes.position(HEADER_SIZE);
+        bytes.putFloat(6.0f).putFloat(0.5f).putFloat(1.0f).putFloat(0.0f)
+            .putFloat(0.0f).putFloat(0.0f).putFloat(0.0f).putFloat(1.0f);
+        Files.write(file, bytes.array());
+
+        CameraTrack track = CameraTrack.open("intro", file);
+        assertEquals(new CameraTrack.Keyframe(6.0f, 0.5f, 1.0f, 0.0f, 0.0f, 0.0f, 0.0f, 1.0f), track.keyframe(0));
+        SetServerCamera packet = track.packet(0);
+        assertEquals(6.0f, packet.cameraSettings.distance);
+    }
+
+    @Test
+    void rejectsAKeyframeWithNaN() throws IOException {
+        writeSingleKeyframe(5.0f, Float.NaN);
+        IOException e = assertThrows(IOException.class, () -> CameraTrack.open("intro", file));
+        assertTrue(e.getMessage().contains("keyframe 0"));
+    }
+
+    @Test
+    void rejectsAKeyframeWithAnInfiniteValue() throws IOException {
+        writeSingleKeyframe(Float.POSITIVE_INFINITY, 1.0f);
+        assertThrows(IOException.class, () -> CameraTrack.open("intro", file));
+    }
+
+    @Test
+    void rejectsANegativeDistance() throws IOException {
+        writeSingleKeyframe(-1.0f, 1.0f);
+        assertThrows(IOException.class, () -> CameraTrack.open("intro", file));
+    }
+
+    @Test
+    void rejectsAFileWhoseSizeDoesNotMatchItsHeader() throws IOException {
+        CameraTrack.write(file, 10, List.of(new CameraTrack.Keyframe(5.0f, 0.0f, 0.0f, 0.0f, 0.0f, 0.0f, 0.0f, 1.0f)));
+        ByteBuffer bytes = ByteBuffer.wrap(Files.readAllBytes(file));
+        bytes.putInt(8, 2);
+        Files.write(file, bytes.array());
+        assertThrows(IOException.class, () -> CameraTrack.open("intro", file));
+    }
+
+    @Test
+    void writeRejectsKeyframesOpenWouldReject() {
+        assertThrows(IllegalArgumentException.class, () -> CameraTrack.write(file, 10,
+            List.of(new CameraTrack.Keyframe(-2.0f, 0.0f, 0.0f, 0.0f, 0.0f, 0.0f, 0.0f, 1.0f))));
+        assertThrows(IllegalArgumentException.class, () -> CameraTrack.write(file, 10,
+            List.of(new CameraTrack.Keyframe(2.0f, 0.0f, 0.0f, 0.0f, Float.NaN, 0.0f, 0.0f, 1.0f))));
+        assertThrows(IllegalArgumentException.class, () -> CameraTrack.write(file, 10, List.of()));
+        assertFalse(Files.exists(file));
+    }
+
+    private void writeSingleKeyframe(float distance, float yaw) throws IOException {
+        ByteBuffer bytes = ByteBuffer.allocate(HEADER_SIZE + KEYFRAME_SIZE);
+        bytes.putInt(MAGIC).putInt(1).putInt(1).putInt(10);
+        bytes.position(HEADER_SIZE);
+        bytes.putFloat(distance).putFloat(0.0f).putFloat(0.0f).putFloat(0.0f)
+            .putFloat(yaw).putFloat(0.0f).putFloat(0.0f).putFloat(1.0f);
+        Files.write(file, bytes.array());
+    }
+}
@@ -0,0 +1,123 @@
+package com.edgelinegames.cameraplugin;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.hypixel.hytale.logger.HytaleLogger;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Round trips, torn block truncation and segment rolling of the death inventory archive.
+ */
+class DeathInventoryArchiveTest {
+
+    private static final HytaleLogger LOGGER = HytaleLogger.forEnclosingClass();
+
+    private static final int BLOCK_HEADER_SIZE = 16;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void deathsSurviveReopen() throws Exception {
+        UUID player = UUID.randomUUID();
+        DeathInventoryArchive archive = DeathInventoryArchive.open(LOGGER, directory);
+        assertTrue(archive.capture(player, "Steve", "default", "NONE", null));
+        assertTrue(archive.capture(player, "Steve", "arena", "ALL", null));
+        archive.close(5_000L);
+        assertEquals(2, archive.getArchivedCount());
+
+        DeathInventoryArchive reopened = DeathInventoryArchive.open(LOGGER, directory);
+        try {
+            assertEquals(player, reopened.findPlayer("steve"));
+            List<DeathInventoryArchive.Death> deaths = reopened.lookup(player, 10).get();
+            assertEquals(2, deaths.size());
+            // Newest first
+            assertEquals("arena", deaths.get(0).world());
+            assertEquals("ALL", deaths.get(0).lossMode());
+            assertEquals("default", deaths.get(1).world());
+            assertTrue(deaths.get(1).items().isEmpty());
+            assertEquals(1, reopened.lookup(player, 1).get().size());
+            assertTrue(reopened.lookup(UUID.randomUUID(), 10).get().isEmpty());
+        } finally {
+            reopened.close(5_000L);
+        }
+    }
+
+    @Test
+    void tornBlockAtTheEndIsCutOff() throws Exception {
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+        DeathInventoryArchive archive = DeathInventoryArchive.open(LOGGER, directory);
+        assertTrue(archive.capture(first, "First", "default", "NONE", null));
+        archive.close(5_000L);
+
+        // A crash while a block was written: only part of its header made it to disk
+        Path segment = segments().get(0);
+        long size = Files.size(segment);
+        Files.write(segment, new byte[BLOCK_HEADER_SIZE / 2], StandardOpenOption.APPEND);
+
+        DeathInventoryArchive reopened = DeathInventoryArchive.open(LOGGER, directory);
+        assertEquals(size, Files.size(segment));
+        assertEquals(1, reopened.lookup(first, 10).get().size());
+        // New blocks go right behind the last good one, so they are found again on the next open
+        assertTrue(reopened.capture(second, "Second", "default", "NONE", null));
+        reopened.close(5_000L);
+
+        DeathInventoryArchive again = DeathInventoryArchive.open(LOGGER, directory);
+        try {
+            assertEquals(1, again.lookup(first, 10).get().size());
+            assertEquals(1, again.lookup(second, 10).get().size());
+            assertEquals(second, again.findPlayer("second"));
+        } finally {
+            again.close(5_000L);
+        }
+    }
+
+    @Test
+    void oldSegmentsAreDeletedWithTheirDeaths() throws Exception {
+        UUID oldest = UUID.randomUUID();
+        DeathInventoryArchive archive = DeathInventoryArchive.open(LOGGER, directory);
+        archive.configure(64 << 10, 2);
+        assertTrue(archive.capture(oldest, "Oldest", "default", "NONE", null));
+
+        // Every block lists its players uncompressed, so this fills several 64 KB segments
+        UUID newest = null;
+        for (int i = 0; i < 20_000; i++) {
+            newest = UUID.randomUUID();
+            while (!archive.capture(newest, "Player" + i, "default", "NONE", null)) {
+                Thread.sleep(1);
+            }
+        }
+        archive.close(5_000L);
+
+        List<Path> segments = segments();
+        assertEquals(2, segments.size());
+        assertTrue(Files.notExists(directory.resolve("deaths-00000000.seg")));
+
+        DeathInventoryArchive reopened = DeathInventoryArchive.open(LOGGER, directory);
+        try {
+            assertTrue(reopened.lookup(oldest, 10).get().isEmpty());
+            assertNull(reopened.findPlayer("oldest"));
+            assertEquals(1, reopened.lookup(newest, 10).get().size());
+            assertEquals(newest, reopened.findPlayer("player19999"));
+        } finally {
+            reopened.close(5_000L);
+        }
+    }
+
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> path.getFileName().toString().endsWith(".seg")).sorted().toList();
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package com.edgelinegames.cameraplugin;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.hypixel.hytale.logger.HytaleLogger;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Replay, torn record truncation and compaction of the prevent death item drop journal.
+ */
+class PreventDeathItemDropJournalTest {
+
+    private static final HytaleLogger LOGGER = HytaleLogger.forEnclosingClass();
+
+    private static final int HEADER_SIZE = 8;
+    private static final int RECORD_SIZE = 17;
+    private static final int COMPACT_MIN_RECORDS = 10_000;
+
+    @TempDir
+    Path directory;
+
+    private Path file;
+
+    @BeforeEach
+    void setUp() {
+        file = directory.resolve("prevent_death_drop.journal");
+    }
+
+    @Test
+    void flagsSurviveReopen() throws IOException {
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+        Set<UUID> flags = ConcurrentHashMap.newKeySet();
+        PreventDeathItemDropJournal journal = PreventDeathItemDropJournal.open(LOGGER, file, flags, () -> flags);
+        journal.append(first, true);
+        journal.append(second, true);
+        journal.append(first, false);
+        journal.close(5_000L);
+
+        Set<UUID> replayed = ConcurrentHashMap.newKeySet();
+        PreventDeathItemDropJournal reopened = PreventDeathItemDropJournal.open(LOGGER, file, replayed, () -> replayed);
+        try {
+            assertEquals(Set.of(second), replayed);
+            assertEquals(3, reopened.getRecordCount());
+        } finally {
+            reopened.close(5_000L);
+        }
+    }
+
+    @Test
+    void tornRecordIsDroppedOnReplay() throws IOException {
+        UUID player = UUID.randomUUID();
+        Set<UUID> flags = ConcurrentHashMap.newKeySet();
+        PreventDeathItemDropJournal journal = PreventDeathItemDropJournal.open(LOGGER, file, flags, () -> flags);
+        journal.append(player, true);
+        journal.close(5_000L);
+
+        // A crash in the middle of the next record
+        Files.write(file, new byte[] {1, 2, 3, 4, 5}, StandardOpenOption.APPEND);
+
+        Set<UUID> replayed = ConcurrentHashMap.newKeySet();
+        PreventDeathItemDropJournal reopened = PreventDeathItemDropJournal.open(LOGGER, file, replayed, () -> replayed);
+        try {
+            assertEquals(Set.of(player), replayed);
+            assertEquals(1, reopened.getRecordCount());
+            assertEquals(HEADER_SIZE + RECORD_SIZE, Files.size(file));
+        } finally {
+            reopened.close(5_000L);
+        }
+    }
+
+    @Test
+    void recordsAfterATruncatedTornRecordAreKept() throws IOException {
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+        Set<UUID> flags = ConcurrentHashMap.newKeySet();
+        PreventDeathItemDropJournal.open(LOGGER, file, flags, () -> flags).close(5_000L);
+        Files.write(file, new byte[] {1, 2, 3}, StandardOpenOption.APPEND);
+
+        // The writer appends after the last whole record, not after the torn bytes
+        Set<UUID> replayed = ConcurrentHashMap.newKeySet();
+        PreventDeathItemDropJournal journal = PreventDeathItemDropJournal.open(LOGGER, file, replayed, () -> replayed);
+        journal.append(first, true);
+        journal.append(second, true);
+        journal.close(5_000L);
+
+        Set<UUID> again = ConcurrentHashMap.newKeySet();
+        PreventDeathItemDropJournal.open(LOGGER, file, again, () -> again).close(5_000L);
+        assertEquals(Set.of(first, second), again);
+    }
+
+    @Test
+    void rejectsAFileThatIsNotAJournal() throws IOException {
+        Files.write(file, new byte[] {0, 0, 0, 0, 0, 0, 0, 1});
+        Set<UUID> flags = ConcurrentHashMap.newKeySet();
+        assertThrows(IOException.class, () -> PreventDeathItemDropJournal.open(LOGGER, file, flags, () -> flags));
+    }
+
+    @Test
+    void compactionKeepsTheLiveSet() throws Exception {
+        UUID toggled = UUID.randomUUID();
+        UUID steady = UUID.randomUUID();
+        Set<UUID> flags = ConcurrentHashMap.newKeySet();
+        // The writer asks for the live set once it has enough records to consider compacting
+        AtomicInteger liveSetReads = new AtomicInteger();
+        PreventDeathItemDropJournal journal = PreventDeathItemDropJournal.open(LOGGER, file, flags, () -> {
+            liveSetReads.incrementAndGet();
+            return flags;
+        });
+
+        flags.add(steady);
+        journal.append(steady, true);
+        // Ends enabled: the last of the toggles is an enable
+        int toggles = COMPACT_MIN_RECORDS + 2_001;
+        for (int i = 0; i < toggles; i++) {
+            boolean enabled = (i & 1) == 0;
+            if (enabled) {
+                flags.add(toggled);
+            } else {
+                flags.remove(toggled);
+            }
+            journal.append(toggled, enabled);
+        }
+
+        long deadline = System.nanoTime() + 10_000_000_000L;
+        while (liveSetReads.get() < 2) {
+            assertTrue(System.nanoTime() < deadline, "Journal was not compacted in time");
+            Thread.sleep(10);
+        }
+        journal.close(5_000L);
+        assertFalse(Files.exists(directory.resolve("prevent_death_drop.journal.compact")));
+
+        Set<UUID> replayed = ConcurrentHashMap.newKeySet();
+        PreventDeathItemDropJournal reopened = PreventDeathItemDropJournal.open(LOGGER, file, replayed, () -> replayed);
+        try {
+            assertEquals(Set.of(steady, toggled), replayed);
+            assertTrue(reopened.getRecordCount() < COMPACT_MIN_RECORDS, "Journal still has " + reopened.getRecordCount() + " records");
+        } finally {
+            reopened.close(5_000L);
+        }
+    }
+
+    @Test
+    void leftoverCompactionFileIsIgnored() throws IOException {
+        UUID player = UUID.randomUUID();
+        Set<UUID> flags = ConcurrentHashMap.newKeySet();
+        PreventDeathItemDropJournal journal = PreventDeathItemDropJournal.open(LOGGER, file, flags, () -> flags);
+        journal.append(player, true);
+        journal.close(5_000L);
+
+        // A crash during compaction leaves the half written snapshot next to the journal
+        Files.write(directory.resolve("prevent_death_drop.journal.compact"), new byte[] {1, 2, 3});
+
+        Set<UUID> replayed = ConcurrentHashMap.newKeySet();
+        PreventDeathItemDropJournal.open(LOGGER, file, replayed, () -> replayed).close(5_000L);
+        assertEquals(Set.of(player), replayed);
+    }
+}